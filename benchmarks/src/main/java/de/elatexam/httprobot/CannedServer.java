@@ -0,0 +1,157 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process http server serving canned pages for the benchmarks, modelled
+ * after a Moodle login and course page:
+ * <ul>
+ * <li>/ - start page with link "Login"</li>
+ * <li>/login.html - form "formular" with button "submitOk"</li>
+ * <li>/course.html - large course page with many links and forms, link "Teilnehmer exportieren"</li>
+ * <li>/export.txt - text export of about one megabyte</li>
+ * </ul>
+ */
+public class CannedServer {
+
+	/** number of links on the course page */
+	public static final int LINKS = 2000;
+	/** number of forms on the course page */
+	public static final int FORMS = 50;
+
+	private final HttpServer server;
+	private final Map<String, byte[]> pages = new HashMap<String, byte[]>();
+	private final Map<String, String> types = new HashMap<String, String>();
+
+
+	public CannedServer() throws IOException {
+		this.page("/", "text/html; charset=utf-8",
+				"<html><head><title>Start</title></head><body><a href=\"/login.html\">Login</a></body></html>");
+		this.page("/login.html", "text/html; charset=utf-8",
+				"<html><head><title>Login</title></head><body>"
+				+ "<form name=\"formular\" method=\"post\" action=\"/course.html\">"
+				+ "<input type=\"text\" name=\"username\"/><input type=\"password\" name=\"password\"/>"
+				+ "<input type=\"submit\" name=\"submitOk\" value=\"Login\"/></form></body></html>");
+		this.page("/course.html", "text/html; charset=utf-8", coursePage());
+		this.page("/export.txt", "text/plain; charset=utf-8", export());
+
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		this.server.createContext("/", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				final String path = exchange.getRequestURI().getPath();
+				final byte[] body = CannedServer.this.pages.get(path);
+				if (body == null) {
+					exchange.sendResponseHeaders(404, -1);
+				} else {
+					exchange.getResponseHeaders().add("Content-Type", CannedServer.this.types.get(path));
+					exchange.sendResponseHeaders(200, body.length);
+					final OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				} // if else
+				exchange.close();
+			}
+		});
+		this.server.start();
+	}
+
+
+	private void page(final String path, final String type, final String content) throws UnsupportedEncodingException {
+		this.pages.put(path, content.getBytes("UTF-8"));
+		this.types.put(path, type);
+	}
+
+
+	static String coursePage() {
+		final StringBuilder sb = new StringBuilder("<html><head><title>Kurs</title></head><body>");
+		for (int i = 0; i < LINKS; i++) {
+			sb.append("<a id=\"link-").append(i).append("\" href=\"/course.html?id=").append(i).append("\">Kurs ").append(i).append("</a><br/>");
+		} // for
+		for (int i = 0; i < FORMS; i++) {
+			sb.append("<form name=\"form").append(i).append("\" method=\"post\" action=\"/export.txt\">")
+				.append("<input type=\"hidden\" name=\"id\" value=\"").append(i).append("\"/>")
+				.append("<input type=\"submit\" name=\"go").append(i).append("\" value=\"export ").append(i).append("\"/></form>");
+		} // for
+		sb.append("<a href=\"/export.txt\">Teilnehmer exportieren</a></body></html>");
+		return sb.toString();
+	} // coursePage
+
+
+	static String export() {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; sb.length() < 1024 * 1024; i++) {
+			sb.append("user").append(i).append(";user").append(i).append("@example.org;Vorname;Nachname\n");
+		} // for
+		return sb.toString();
+	} // export
+
+
+	/**
+	 * @return base url without trailing slash, e.g. http://127.0.0.1:4711
+	 */
+	public String getBaseURL() {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort();
+	}
+
+
+	/**
+	 * @return benchmark plan (login flow and export) pointing to this server
+	 */
+	public String getPlanXML() throws IOException {
+		final InputStream in = CannedServer.class.getResourceAsStream("/benchmarkPlan.xml");
+		try {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[8192];
+			int n;
+			while ((n = in.read(chunk)) != -1) {
+				baos.write(chunk, 0, n);
+			} // while
+			return baos.toString("UTF-8").replace("@BASE@", this.getBaseURL());
+		} finally {
+			in.close();
+		} // try finally
+	} // getPlanXML
+
+
+	public void stop() {
+		this.server.stop(0);
+	}
+
+} // class CannedServer
@@ -0,0 +1,83 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Step dispatch without network: a CONFIG step storing one parameter,
+ * executed as compiled step via Robot.callStep and, for comparison, the
+ * way the robot used to dispatch it (reflective lookup of "m" + mode on
+ * HTMLRobots for every call).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+	private Robot robot;
+	private Element eStep;
+	private Step step;
+	private HTMLRobots htmlRobots;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		this.robot = new Robot(new String[] { "LogLevel:ERROR" });
+		final Element param = new Element("param");
+		param.addContent(new Element("name").setText("benchmark"));
+		param.addContent(new Element("value").setText("value"));
+		this.eStep = new Element("step");
+		this.eStep.addContent(new Element("mode").setText("CONFIG"));
+		this.eStep.addContent(param);
+		this.step = StepRegistry.getDefault().compile(this.eStep);
+		this.htmlRobots = new HTMLRobots();
+	} // setUp
+
+
+	@Benchmark
+	public Boolean compiledStep() {
+		return this.robot.callStep(this.step);
+	}
+
+	@Benchmark
+	public Object reflectiveDispatch() throws Exception {
+		final Method m = this.htmlRobots.getClass().getMethod("m" + this.eStep.getChildText("mode"), Robot.class, Element.class);
+		return m.invoke(this.htmlRobots, this.robot, this.eStep).toString();
+	}
+
+} // class DispatchBenchmark
@@ -0,0 +1,89 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.meterware.httpunit.GetMethodWebRequest;
+
+/**
+ * End-to-end requests against the in-process CannedServer: single execHTTP
+ * calls for a large HTML page and a text export, and a complete run of the
+ * login plan in a new session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecHttpBenchmark {
+
+	private CannedServer server;
+	private Robot robot;
+	private RobotPlan plan;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		this.server = new CannedServer();
+		this.robot = new Robot(new String[] { "LogLevel:ERROR" });
+		this.plan = RobotPlan.load(new ByteArrayInputStream(this.server.getPlanXML().getBytes("UTF-8")));
+	} // setUp
+
+
+	@TearDown
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Benchmark
+	public Boolean coursePage() throws Exception {
+		return this.robot.execHTTP(new GetMethodWebRequest(this.server.getBaseURL() + "/course.html"));
+	}
+
+	@Benchmark
+	public Boolean export() throws Exception {
+		return this.robot.execHTTP(new GetMethodWebRequest(this.server.getBaseURL() + "/export.txt"));
+	}
+
+	@Benchmark
+	public int loginPlan() {
+		final Robot session = new Robot(new String[] { "LogLevel:ERROR", "un:benchmark", "pw:secret" });
+		session.run(this.plan);
+		return session.getLastResultStatus();
+	}
+
+} // class ExecHttpBenchmark
@@ -0,0 +1,124 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.meterware.httpunit.GetMethodWebRequest;
+import com.meterware.httpunit.WebForm;
+import com.meterware.httpunit.WebLink;
+import com.meterware.httpunit.WebResponse;
+
+/**
+ * Link and form lookups of GET_Link and POST on a large course page
+ * (see CannedServer), without the following request. The PageIndex of the
+ * page is built in setUp, except for indexAndLinkByText.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LookupBenchmark {
+
+	private CannedServer server;
+	private WebResponse coursePage;
+	private PageIndex index;
+	private PostStep postByName;
+	private PostStep postByButton;
+	private final Variables variables = new Variables();
+
+
+	@Setup
+	public void setUp() throws Exception {
+		this.server = new CannedServer();
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		robot.execHTTP(new GetMethodWebRequest(this.server.getBaseURL() + "/course.html"));
+		this.coursePage = robot.getLastWebResponse();
+		this.coursePage.getLinks(); // DOM aufbauen
+		this.index = new PageIndex(this.coursePage);
+		this.index.findLink("");
+		this.index.getForm(0);
+		this.postByName = new PostStep(postStep("name", "form" + (CannedServer.FORMS - 1)));
+		this.postByButton = new PostStep(postStep("button", "export " + (CannedServer.FORMS - 1)));
+	} // setUp
+
+
+	private static Element postStep(final String child, final String value) {
+		final Element eStep = new Element("step");
+		eStep.addContent(new Element("mode").setText("POST"));
+		eStep.addContent(new Element(child).setText(value));
+		return eStep;
+	}
+
+
+	@TearDown
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	@Benchmark
+	public WebLink linkByText() throws Exception {
+		return this.index.findLink("Teilnehmer exportieren");
+	}
+
+	@Benchmark
+	public WebLink lastLinkByText() throws Exception {
+		return this.index.findLink("Kurs " + (CannedServer.LINKS - 1));
+	}
+
+	@Benchmark
+	public WebLink linkMissing() throws Exception {
+		return this.index.findLink("gibt es nicht");
+	}
+
+	/** Index aufbauen und einmal suchen, so wie GET_Link auf einer neuen Seite. */
+	@Benchmark
+	public WebLink indexAndLinkByText() throws Exception {
+		return new PageIndex(this.coursePage).findLink("Teilnehmer exportieren");
+	}
+
+	@Benchmark
+	public WebForm formByName() throws Exception {
+		return this.postByName.findForm(this.index, this.variables);
+	}
+
+	@Benchmark
+	public WebForm formByButton() throws Exception {
+		return this.postByButton.findForm(this.index, this.variables);
+	}
+
+} // class LookupBenchmark
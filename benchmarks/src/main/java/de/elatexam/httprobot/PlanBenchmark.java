@@ -0,0 +1,83 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Loading of robotPlans: XML parsing with SAXBuilder and compilation into
+ * a RobotPlan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlanBenchmark {
+
+	private byte[] planXML;
+	private Element root;
+
+
+	@Setup
+	public void setUp() throws Exception {
+		final CannedServer server = new CannedServer();
+		try {
+			this.planXML = server.getPlanXML().getBytes("UTF-8");
+		} finally {
+			server.stop();
+		}
+		this.root = new SAXBuilder().build(new ByteArrayInputStream(this.planXML)).getRootElement();
+	} // setUp
+
+
+	@Benchmark
+	public Document parse() throws Exception {
+		return new SAXBuilder().build(new ByteArrayInputStream(this.planXML));
+	}
+
+	@Benchmark
+	public RobotPlan compile() throws Exception {
+		return RobotPlan.compile(this.root);
+	}
+
+	@Benchmark
+	public RobotPlan load() throws Exception {
+		return RobotPlan.load(new ByteArrayInputStream(this.planXML));
+	}
+
+} // class PlanBenchmark
@@ -0,0 +1,74 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+/**
+ * Step AUTH, see {@link HTMLRobots#mAUTH}.
+ */
+public class AuthStep implements Step {
+
+	public static final String MODE = "AUTH";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new AuthStep(eStep);
+		}
+	};
+
+	private final Template realm;
+	private final Template username;
+	private final Template password;
+
+
+	public AuthStep(final Element eStep) {
+		this.realm = Template.compile(eStep.getChildText("realm"));
+		this.username = Template.compile(eStep.getChildText("username") == null ? "" : eStep.getChildText("username"));
+		this.password = Template.compile(eStep.getChildText("password") == null ? "" : eStep.getChildText("password"));
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		if (this.realm != null) {
+			final Variables variables = robot.getVariables();
+			robot.setAuthentication(this.realm.resolve(variables), this.username.resolve(variables), this.password.resolve(variables));
+			return true;
+		} // if
+		return false;
+	} // execute
+
+} // class AuthStep
@@ -0,0 +1,352 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive of recorded http exchanges for offline, deterministic plan runs
+ * (see RobotConversation).<br>
+ * Every exchange is stored with method, url, a digest of the request body,
+ * status, headers and the decoded response body. On disk the archive is a
+ * single gzip compressed file; on replay it is held in memory and looked up
+ * by method and url, so serving a response costs a map lookup.<br>
+ * Cassettes are shared per file within the JVM ({@link #open(String, boolean)}),
+ * so robots of a RobotPool or LoadRunner record into and replay from the
+ * same instance.
+ */
+public class Cassette {
+
+	private static final int MAGIC = 0x48524331; // "HRC1"
+
+	private static final Map<String, Cassette> OPEN = new HashMap<String, Cassette>();
+
+	private final File file;
+	private final boolean recording;
+	private final List<Exchange> exchanges = new ArrayList<Exchange>();
+	private final Map<String, List<Exchange>> index = new HashMap<String, List<Exchange>>();
+
+
+	private Cassette(final File file, final boolean recording) {
+		this.file = file;
+		this.recording = recording;
+	}
+
+
+	/**
+	 * Returns the cassette for a file. A recording cassette starts empty and
+	 * replaces the file on {@link #save()}, a replay cassette is loaded once.
+	 *
+	 * @param fileName archive file
+	 * @param record true for recording, false for replay
+	 * @return shared cassette
+	 * @throws IOException replay archive missing or unreadable
+	 */
+	public static synchronized Cassette open(final String fileName, final boolean record) throws IOException {
+		final File file = new File(fileName).getAbsoluteFile();
+		final String key = (record ? "record:" : "replay:") + file.getPath();
+		Cassette cassette = Cassette.OPEN.get(key);
+		if (cassette == null) {
+			cassette = new Cassette(file, record);
+			if (!record) {
+				cassette.load();
+			}
+			Cassette.OPEN.put(key, cassette);
+		} // if
+		return cassette;
+	} // open
+
+
+	public boolean isRecording() {
+		return this.recording;
+	}
+
+
+	public File getFile() {
+		return this.file;
+	}
+
+
+	/**
+	 * @return number of recorded exchanges
+	 */
+	public synchronized int size() {
+		return this.exchanges.size();
+	}
+
+
+	/**
+	 * Adds an exchange (recording).
+	 */
+	public synchronized void add(final Exchange exchange) {
+		this.exchanges.add(exchange);
+		this.index(exchange);
+	} // add
+
+
+	/**
+	 * Returns all exchanges recorded for a request, in recording order.
+	 * Requests with a body are matched by body digest first and by method
+	 * and url only if the body differs (e.g. generated form tokens).
+	 *
+	 * @param method http method
+	 * @param url requested url
+	 * @param bodyDigest digest of the request body, null if none
+	 * @return matching exchanges, empty if none
+	 */
+	public synchronized List<Exchange> find(final String method, final String url, final String bodyDigest) {
+		List<Exchange> found = null;
+		if (bodyDigest != null) {
+			found = this.index.get(key(method, url, bodyDigest));
+		}
+		if (found == null) {
+			found = this.index.get(key(method, url, null));
+		}
+		return (found == null) ? Collections.<Exchange>emptyList() : found;
+	} // find
+
+
+	private void index(final Exchange exchange) {
+		this.indexUnder(key(exchange.method, exchange.url, null), exchange);
+		if (exchange.bodyDigest != null) {
+			this.indexUnder(key(exchange.method, exchange.url, exchange.bodyDigest), exchange);
+		}
+	} // index
+
+
+	private void indexUnder(final String key, final Exchange exchange) {
+		List<Exchange> list = this.index.get(key);
+		if (list == null) {
+			list = new ArrayList<Exchange>(1);
+			this.index.put(key, list);
+		}
+		list.add(exchange);
+	} // indexUnder
+
+
+	static String key(final String method, final String url, final String bodyDigest) {
+		return (bodyDigest == null) ? method + ' ' + url : method + ' ' + url + '#' + bodyDigest;
+	}
+
+
+	/**
+	 * @return hex encoded MD5 digest of a request body, null for an empty body
+	 */
+	static String digest(final byte[] body) {
+		if ((body == null) || (body.length == 0)) {
+			return null;
+		}
+		try {
+			final byte[] md5 = MessageDigest.getInstance("MD5").digest(body);
+			final StringBuilder sb = new StringBuilder(md5.length * 2);
+			for (final byte b : md5) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} // try catch
+	} // digest
+
+
+	/**
+	 * Writes all exchanges recorded so far, replacing the archive.
+	 */
+	public synchronized void save() throws IOException {
+		final File tmp = new File(this.file.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(Cassette.MAGIC);
+			out.writeInt(this.exchanges.size());
+			for (final Exchange exchange : this.exchanges) {
+				exchange.writeTo(out);
+			}
+		} finally {
+			out.close();
+		} // try finally
+		if (this.file.exists() && !this.file.delete()) {
+			throw new IOException("Cannot replace cassette " + this.file);
+		}
+		if (!tmp.renameTo(this.file)) {
+			throw new IOException("Cannot write cassette " + this.file);
+		}
+	} // save
+
+
+	private void load() throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(this.file))));
+		try {
+			final int magic = in.readInt();
+			if (magic != Cassette.MAGIC) {
+				throw new IOException("Not a cassette: " + this.file);
+			}
+			final int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				this.add(Exchange.readFrom(in));
+			}
+		} finally {
+			in.close();
+		} // try finally
+	} // load
+
+
+
+	/**
+	 * One recorded request/response pair. Header names are kept as sent by
+	 * the server, repeated headers (Set-Cookie) as separate entries.
+	 */
+	public static final class Exchange {
+
+		final String method;
+		final String url;
+		final String bodyDigest;
+		final int status;
+		final String message;
+		final long elapsedMillis;
+		final String[] headerNames;
+		final String[] headerValues;
+		final byte[] body;
+
+
+		public Exchange(final String method, final String url, final String bodyDigest, final int status, final String message,
+				final long elapsedMillis, final String[] headerNames, final String[] headerValues, final byte[] body) {
+			this.method = method;
+			this.url = url;
+			this.bodyDigest = bodyDigest;
+			this.status = status;
+			this.message = (message == null) ? "" : message;
+			this.elapsedMillis = elapsedMillis;
+			this.headerNames = headerNames;
+			this.headerValues = headerValues;
+			this.body = body;
+		} // Exchange
+
+
+		public String getMethod() {
+			return this.method;
+		}
+
+		public String getURL() {
+			return this.url;
+		}
+
+		public int getStatus() {
+			return this.status;
+		}
+
+		/**
+		 * @return response time at recording
+		 */
+		public long getElapsedMillis() {
+			return this.elapsedMillis;
+		}
+
+
+		void writeTo(final DataOutputStream out) throws IOException {
+			writeString(out, this.method);
+			writeString(out, this.url);
+			writeString(out, this.bodyDigest);
+			out.writeInt(this.status);
+			writeString(out, this.message);
+			out.writeLong(this.elapsedMillis);
+			out.writeInt(this.headerNames.length);
+			for (int i = 0; i < this.headerNames.length; i++) {
+				writeString(out, this.headerNames[i]);
+				writeString(out, this.headerValues[i]);
+			}
+			out.writeInt(this.body.length);
+			out.write(this.body);
+		} // writeTo
+
+
+		static Exchange readFrom(final DataInputStream in) throws IOException {
+			final String method = readString(in);
+			final String url = readString(in);
+			final String digest = readString(in);
+			final int status = in.readInt();
+			final String message = readString(in);
+			final long elapsed = in.readLong();
+			final int headers = in.readInt();
+			final String[] names = new String[headers];
+			final String[] values = new String[headers];
+			for (int i = 0; i < headers; i++) {
+				names[i] = readString(in);
+				values[i] = readString(in);
+			}
+			final byte[] body = new byte[in.readInt()];
+			in.readFully(body);
+			return new Exchange(method, url, ((digest == null) || (digest.length() == 0)) ? null : digest, status, message, elapsed, names, values, body);
+		} // readFrom
+
+	} // class Exchange
+
+
+	/**
+	 * Writes a string as UTF-8 with its length (-1 for null), without the 64K limit of writeUTF.
+	 */
+	static void writeString(final DataOutputStream out, final String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] b = s.getBytes("UTF-8");
+		out.writeInt(b.length);
+		out.write(b);
+	} // writeString
+
+
+	/**
+	 * Reads a string written by writeString.
+	 */
+	static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, "UTF-8");
+	} // readString
+
+
+} // class Cassette
@@ -0,0 +1,85 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jdom.Element;
+
+/**
+ * Step CONFIG, see {@link HTMLRobots#mCONFIG}.
+ */
+public class ConfigStep implements Step {
+
+	public static final String MODE = "CONFIG";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new ConfigStep(eStep);
+		}
+	};
+
+	/** names and values in document order */
+	private final List<String> names = new ArrayList<String>();
+	private final List<Template> values = new ArrayList<Template>();
+
+
+	public ConfigStep(final Element eStep) {
+		final List<Element> lParams = eStep.getChildren("param");
+		for (final Element param : lParams) {
+			final String name = param.getChildText("name");
+			final String value = param.getChildText("value");
+			if ((name != null) && !name.equals("") && (value != null) && !value.equals("")) {
+				this.names.add(name);
+				this.values.add(Template.compile(value));
+			} //if
+		} //for
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		for (int i = 0; i < this.names.size(); i++) {
+			final String value = this.values.get(i).resolve(robot.getVariables());
+			if (!robot.setHttpClientParameters(this.names.get(i), value)) {
+				robot.setPending("param", this.names.get(i), value);
+			}
+		} //for
+		robot.printLoggerWebClient();
+		return true;
+	} // execute
+
+} // class ConfigStep
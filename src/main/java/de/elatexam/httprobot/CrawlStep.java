@@ -0,0 +1,120 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+import org.jdom.Element;
+
+/**
+ * Step CRAWL, see {@link HTMLRobots#mCRAWL}.
+ */
+public class CrawlStep implements Step {
+
+	public static final String MODE = "CRAWL";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new CrawlStep(eStep);
+		}
+	};
+
+	private final Template patternText;
+	/** übersetztes Muster, null wenn es Verweise enthält */
+	private final Pattern pattern;
+	private final int depth;
+	private final int maxPages;
+	private final int threads;
+	private final int perHost;
+	private final Template name;
+	private final Template path;
+
+
+	public CrawlStep(final Element eStep) {
+		final String pattern = eStep.getChildText("pattern");
+		this.patternText = (pattern != null && !pattern.equals("")) ? Template.compile(pattern) : null;
+		this.pattern = (this.patternText != null && this.patternText.isConstant()) ? Pattern.compile(this.patternText.getText()) : null;
+		this.depth = intParam(eStep, "depth", 1);
+		this.maxPages = intParam(eStep, "maxPages", 100);
+		this.threads = intParam(eStep, "threads", 4);
+		this.perHost = intParam(eStep, "perHost", 2);
+		final String name = eStep.getChildText("name");
+		this.name = Template.compile((name != null && !name.equals("")) ? name : "crawl");
+		this.path = Template.compile(eStep.getChildText("path"));
+	}
+
+
+	private static int intParam(final Element eStep, final String param, final int defaultValue) {
+		final String value = eStep.getChildText(param);
+		if (value == null || value.equals("")) {
+			return defaultValue;
+		}
+		try {
+			final int n = Integer.parseInt(value.trim());
+			if (n < 1) {
+				throw new IllegalArgumentException("Invalid " + param + ", expected a positive number, but was: " + value);
+			}
+			return n;
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + param + ", expected a number, but was: " + value);
+		}
+	} // intParam
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		if (robot.getLastWebResponse() == null) {
+			return false;
+		}
+		final Variables variables = robot.getVariables();
+		File directory = null;
+		if (this.path != null) {
+			final String path = this.path.resolve(variables);
+			directory = path.equals("") ? robot.getDefaultSaveDirectory() : new File(path);
+			if (!directory.isDirectory()) {
+				return false;
+			}
+		} // if Dateiausgabe
+
+		Pattern pattern = this.pattern;
+		if (pattern == null && this.patternText != null) {
+			pattern = Pattern.compile(this.patternText.resolve(variables));
+		}
+		new Crawler(robot, pattern, this.depth, this.maxPages, this.threads, this.perHost, directory, this.name.resolve(variables)).crawl();
+		return true;
+	} // execute
+
+} // class CrawlStep
@@ -0,0 +1,538 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Breadth-first crawl from the last page of a Robot (see CrawlStep).
+ * <p>
+ * The robot's thread owns the frontier, the seen urls and the session: it
+ * hands out requests, at most perHost at a time per host and threads in
+ * total, and applies the cookies of every answer to the robot's
+ * conversation, so later requests and steps see them. The fetches run on a
+ * thread pool over the robot's transport (a PooledHttpTransport if none is
+ * set); links are read from the raw bodies with a SelectorScanner, without
+ * building a DOM.
+ * <p>
+ * Each level is fetched completely before the next one. Only as many urls as
+ * the page limit still allows are queued, and seen urls are kept in a
+ * UrlSeenSet, so memory does not grow with the number of links.
+ */
+final class Crawler {
+
+	/** Links, denen gefolgt wird */
+	private static final String LINKS = "a[href], area[href]";
+	/** höchstens so viele Links je Seite */
+	private static final int MAX_LINKS_PER_PAGE = 10000;
+	/** exakt gemerkte letzte Urls, siehe UrlSeenSet */
+	private static final int RECENT_URLS = 10000;
+	/** höchstens so viele Urls im Bloom-Filter von UrlSeenSet eingeplant (ca. 18 MB) */
+	private static final long MAX_SEEN_URLS = 10000000L;
+
+	private final Robot robot;
+	private final Pattern pattern;
+	private final int maxDepth;
+	private final int maxPages;
+	private final int threads;
+	private final int perHost;
+	private final File directory;
+	private final String name;
+
+	private UrlSeenSet seen = null;
+	private HttpTransport transport = null;
+	private Writer index = null;
+	private int pages = 0;
+	private int failed = 0;
+	private int fileNumber = 0;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(Crawler.class);
+
+
+	/**
+	 * @param robot Robot, dessen letzte Seite der Start ist
+	 * @param pattern Links, deren absolute Url hierauf passt, null für Links auf den Host der Startseite
+	 * @param maxDepth Tiefe, 1 für die Links der Startseite
+	 * @param maxPages höchstens so viele Anfragen
+	 * @param threads gleichzeitige Anfragen
+	 * @param perHost gleichzeitige Anfragen je Host
+	 * @param directory Verzeichnis für Seiten und Index, null wenn nichts gespeichert wird
+	 * @param name Name für Pending-Daten und Dateien
+	 */
+	Crawler(final Robot robot, final Pattern pattern, final int maxDepth, final int maxPages, final int threads, final int perHost, final File directory, final String name) {
+		this.robot = robot;
+		this.pattern = pattern;
+		this.maxDepth = maxDepth;
+		this.maxPages = maxPages;
+		this.threads = threads;
+		this.perHost = perHost;
+		this.directory = directory;
+		this.name = name;
+	}
+
+
+	/**
+	 * Führt den Crawl aus und speichert die Anzahl der Seiten als "crawl" /
+	 * NAME.count und NAME.failed, mit Verzeichnis den Index als "save" / NAME.
+	 */
+	void crawl() throws Exception {
+		final URL start = this.robot.getLastWebResponse().getURL();
+		final Pattern pattern = (this.pattern != null) ? this.pattern : Pattern.compile("^https?://" + Pattern.quote(start.getAuthority()) + "(/|$)");
+		//je Ebene werden höchstens maxPages neue Links übernommen, dazu Weiterleitungsziele
+		final long expected = (long) this.maxPages * (this.maxDepth + 1);
+		this.seen = new UrlSeenSet((int) Math.max(1, Math.min(Crawler.MAX_SEEN_URLS, expected)), 0.001, Crawler.RECENT_URLS);
+		this.seen.add(start.toString());
+
+		final Page first = new Page(start.toString(), null, null);
+		scanLinks(this.robot.getLastInputStreamResult(), this.robot.getLastResultCharset(), first);
+		List<String[]> level = this.select(first, pattern, new ArrayList<String[]>());
+
+		this.transport = this.robot.getHttpClient().getTransport();
+		final boolean ownTransport = (this.transport == null);
+		if (ownTransport) {
+			this.transport = this.robot.newPooledTransport();
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads, new CrawlThreadFactory());
+		String indexFile = null;
+		try {
+			if (this.directory != null) {
+				indexFile = this.directory.getAbsolutePath() + File.separatorChar + this.name + ".txt";
+				this.index = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8"));
+			}
+			final CompletionService<Page> done = new ExecutorCompletionService<Page>(executor);
+			for (int depth = 1; (depth <= this.maxDepth) && !level.isEmpty() && (this.pages < this.maxPages); depth++) {
+				Crawler.logger.debug("CRAWL Ebene " + depth + ": " + level.size() + " Urls");
+				level = this.crawlLevel(level, pattern, depth < this.maxDepth, done);
+			} // for Ebenen
+		} finally {
+			executor.shutdownNow();
+			if (ownTransport) {
+				this.transport.close();
+			}
+			if (this.index != null) {
+				this.index.close();
+				this.robot.setPending("save", this.name, indexFile);
+			}
+			this.robot.setPending("crawl", this.name + ".count", String.valueOf(this.pages));
+			this.robot.setPending("crawl", this.name + ".failed", String.valueOf(this.failed));
+		} // try finally
+		Crawler.logger.info("CRAWL " + this.name + ": " + this.pages + " Seiten, " + this.failed + " fehlerhaft, " + this.seen.size() + " Urls");
+	} // crawl
+
+
+	/**
+	 * Holt alle Urls einer Ebene.
+	 *
+	 * @param level Urls und Referer der Ebene
+	 * @param pattern Links und Weiterleitungsziele, denen gefolgt wird
+	 * @param scan Links für die nächste Ebene lesen, false für die letzte Ebene
+	 * @return Urls der nächsten Ebene
+	 */
+	private List<String[]> crawlLevel(final List<String[]> level, final Pattern pattern, final boolean scan, final CompletionService<Page> done) throws Exception {
+		// je Host eine Warteschlange, in Reihenfolge der Ebene
+		final Map<String, ArrayDeque<String[]>> queues = new LinkedHashMap<String, ArrayDeque<String[]>>();
+		for (final String[] entry : level) {
+			this.enqueue(queues, entry);
+		}
+		final Map<String, Integer> active = new HashMap<String, Integer>();
+		final List<String[]> next = new ArrayList<String[]>();
+		int inFlight = 0;
+
+		while (true) {
+			// verteilen, reihum je Host eine Anfrage, solange Plätze frei sind
+			boolean submitted = true;
+			while (submitted && (inFlight < this.threads) && (this.pages + inFlight < this.maxPages)) {
+				submitted = false;
+				for (final Iterator<Map.Entry<String, ArrayDeque<String[]>>> it = queues.entrySet().iterator(); it.hasNext();) {
+					if ((inFlight >= this.threads) || (this.pages + inFlight >= this.maxPages)) {
+						break;
+					}
+					final Map.Entry<String, ArrayDeque<String[]>> queue = it.next();
+					final Integer running = active.get(queue.getKey());
+					if ((running != null) && (running.intValue() >= this.perHost)) {
+						continue;
+					}
+					final String[] entry = queue.getValue().poll();
+					if (queue.getValue().isEmpty()) {
+						it.remove();
+					}
+					done.submit(this.newFetch(entry, scan));
+					active.put(queue.getKey(), Integer.valueOf((running == null) ? 1 : running.intValue() + 1));
+					inFlight++;
+					submitted = true;
+				} // for Hosts
+			} // while verteilen
+			if (inFlight == 0) {
+				break;
+			}
+
+			final Page page = done.take().get();
+			inFlight--;
+			final String host = hostOf(page.url);
+			active.put(host, Integer.valueOf(active.get(host).intValue() - 1));
+			this.record(page);
+
+			if (page.location != null) {
+				// Weiterleitung gehört zur selben Ebene, wenn das Ziel passt
+				final String target = resolve(page.url, page.location);
+				if ((target != null) && pattern.matcher(target).find() && this.seen.add(target)) {
+					this.enqueue(queues, new String[] { target, page.referer });
+				}
+			} else if (scan) {
+				this.select(page, pattern, next);
+			}
+		} // while
+		return next;
+	} // crawlLevel
+
+
+	private void enqueue(final Map<String, ArrayDeque<String[]>> queues, final String[] entry) {
+		final String host = hostOf(entry[0]);
+		ArrayDeque<String[]> queue = queues.get(host);
+		if (queue == null) {
+			queue = new ArrayDeque<String[]>();
+			queues.put(host, queue);
+		}
+		queue.add(entry);
+	} // enqueue
+
+
+	/**
+	 * Übernimmt die neuen, passenden Links einer Seite, solange das Limit
+	 * noch Seiten zulässt.
+	 */
+	private List<String[]> select(final Page page, final Pattern pattern, final List<String[]> next) {
+		for (final String link : page.links) {
+			if (next.size() >= this.maxPages - this.pages) {
+				break;
+			}
+			final String url = resolve(page.url, link);
+			if ((url != null) && pattern.matcher(url).find() && this.seen.add(url)) {
+				next.add(new String[] { url, page.url });
+			}
+		} // for
+		return next;
+	} // select
+
+
+	private Fetch newFetch(final String[] entry, final boolean scan) throws IOException {
+		final URL url = new URL(entry[0]);
+		final Map<String, String> headers = this.robot.getHttpClient().getClientHeaders(url);
+		if (entry[1] != null) {
+			headers.put("Referer", entry[1]);
+		}
+		final String file = (this.directory != null)
+			? this.directory.getAbsolutePath() + File.separatorChar + this.name + "-" + String.format("%06d", Integer.valueOf(++this.fileNumber)) : null;
+		return new Fetch(this.transport, url, entry[1], headers, scan, file);
+	} // newFetch
+
+
+	/**
+	 * Wertet eine geholte Seite im Thread des Robots aus: Zähler, Cookies, Index.
+	 */
+	private void record(final Page page) throws IOException {
+		this.pages++;
+		this.robot.addStepBytes(page.bytes);
+		if ((page.error != null) || (page.status >= 400)) {
+			this.failed++;
+			Crawler.logger.warn("CRAWL " + page.url + ": " + ((page.error != null) ? page.error.toString() : String.valueOf(page.status)));
+		}
+		for (final String cookie : page.cookies) {
+			final String pair = cookie.split(";", 2)[0];
+			final int eq = pair.indexOf('=');
+			if (eq > 0) {
+				this.robot.getHttpClient().putCookie(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+			}
+		} // for Cookies
+		if (this.index != null) {
+			this.index.write(page.url + "\t" + page.status + "\t" + (page.saved ? page.file : "-") + "\n");
+		}
+	} // record
+
+
+	/**
+	 * @return absolute http(s)-Url ohne Fragment, null wenn kein solcher Link
+	 */
+	static String resolve(final String base, final String link) {
+		try {
+			final URL url = new URL(new URL(base), link.trim());
+			if (!url.getProtocol().equals("http") && !url.getProtocol().equals("https")) {
+				return null;
+			}
+			final String s = url.toString();
+			final int hash = s.indexOf('#');
+			return (hash < 0) ? s : s.substring(0, hash);
+		} catch (final MalformedURLException e) {
+			return null;
+		} // try catch
+	} // resolve
+
+
+	private static String hostOf(final String url) {
+		try {
+			return new URL(url).getAuthority();
+		} catch (final MalformedURLException e) {
+			return "";
+		}
+	} // hostOf
+
+
+	/**
+	 * Liest die Links aus einer HTML-Seite.
+	 */
+	private static void scanLinks(final InputStream in, final String charset, final Page page) throws IOException {
+		if (in == null) {
+			return;
+		}
+		Charset cs;
+		try {
+			cs = Charset.forName(charset);
+		} catch (final IllegalArgumentException e) {
+			cs = Charset.forName("ISO-8859-1");
+		}
+		final Reader reader = new InputStreamReader(in, cs);
+		final TextScanner scanner = new SelectorScanner(Crawler.LINKS, "href");
+		final char[] chars = new char[8192];
+		int n;
+		while ((n = reader.read(chars)) != -1) {
+			scanner.feed(CharBuffer.wrap(chars, 0, n), page);
+		}
+		scanner.finish(page);
+	} // scanLinks
+
+
+
+	/**
+	 * Result of one request, filled by a Fetch and read by the robot's thread.
+	 */
+	private static final class Page implements TextScanner.Output {
+		final String url;
+		final String referer;
+		final String file;
+		final List<String> links = new ArrayList<String>();
+		final List<String> cookies = new ArrayList<String>();
+		int status = -1;
+		String location = null;
+		long bytes = 0;
+		Exception error = null;
+		/** Inhalt vollständig in file gespeichert */
+		boolean saved = false;
+
+		Page(final String url, final String referer, final String file) {
+			this.url = url;
+			this.referer = referer;
+			this.file = file;
+		}
+
+		public void emit(final String link) {
+			if (this.links.size() < Crawler.MAX_LINKS_PER_PAGE) {
+				this.links.add(link);
+			}
+		}
+	} // class Page
+
+
+
+	/**
+	 * One GET request on a crawl thread.
+	 */
+	private static final class Fetch implements Callable<Page> {
+		private final HttpTransport transport;
+		private final URL url;
+		private final Map<String, String> headers;
+		private final boolean scan;
+		private final Page page;
+
+		Fetch(final HttpTransport transport, final URL url, final String referer, final Map<String, String> headers, final boolean scan, final String file) {
+			this.transport = transport;
+			this.url = url;
+			this.headers = headers;
+			this.scan = scan;
+			this.page = new Page(url.toString(), referer, file);
+		}
+
+		public Page call() {
+			InputStream in = null;
+			OutputStream out = null;
+			try {
+				final HttpTransport.Response response = this.transport.send("GET", this.url, this.headers, null);
+				this.page.status = response.getStatus();
+				String contentType = null;
+				String contentEncoding = null;
+				long contentLength = -1;
+				final String[] names = response.getHeaderNames();
+				for (int i = 0; i < names.length; i++) {
+					if (names[i] == null) {
+						continue;
+					} else if (names[i].equalsIgnoreCase("Set-Cookie")) {
+						this.page.cookies.add(response.getHeaderValues()[i]);
+					} else if (names[i].equalsIgnoreCase("Location")) {
+						this.page.location = response.getHeaderValues()[i];
+					} else if (names[i].equalsIgnoreCase("Content-Type")) {
+						contentType = response.getHeaderValues()[i];
+					} else if (names[i].equalsIgnoreCase("Content-Encoding")) {
+						contentEncoding = response.getHeaderValues()[i];
+					} else if (names[i].equalsIgnoreCase("Content-Length")) {
+						try {
+							contentLength = Long.parseLong(response.getHeaderValues()[i].trim());
+						} catch (final NumberFormatException e) {
+							// ohne Länge keine Prüfung
+						}
+					}
+				} // for Header
+				if ((this.page.status < 300) || (this.page.status >= 400)) {
+					this.page.location = null;
+				}
+
+				in = response.getBody();
+				if (in == null) {
+					return this.page;
+				}
+				if ("gzip".equalsIgnoreCase(contentEncoding)) {
+					in = new GZIPInputStream(in);
+				}
+				if ((this.page.file != null) && (this.page.location == null)) {
+					out = new FileOutputStream(this.page.file);
+				}
+				final CountingInputStream counting = new CountingInputStream(in, out);
+				if (this.scan && (this.page.location == null) && (contentType != null) && contentType.toLowerCase().contains("html")) {
+					final String charset = HtmlScanner.getHeaderCharset(contentType);
+					scanLinks(counting, (charset != null) ? charset : "ISO-8859-1", this.page);
+				}
+				final byte[] rest = new byte[8192];
+				while (counting.read(rest) != -1) {
+					// Rest lesen (speichern, Verbindung freigeben)
+				}
+				this.page.bytes = counting.count;
+				if ((contentEncoding == null) && (contentLength >= 0) && (counting.count != contentLength)) {
+					throw new IOException("Antwort unvollständig: " + counting.count + " von " + contentLength + " Bytes");
+				}
+				this.page.saved = (out != null);
+			} catch (final Exception e) {
+				this.page.error = e;
+			} finally {
+				close(in);
+				close(out);
+				if ((out != null) && !this.page.saved) {
+					new File(this.page.file).delete();
+				}
+			} // try catch finally
+			return this.page;
+		} // call
+
+		private static void close(final java.io.Closeable c) {
+			if (c != null) {
+				try {
+					c.close();
+				} catch (final IOException e) {
+					// ignorieren, Ergebnis steht fest
+				}
+			}
+		} // close
+	} // class Fetch
+
+
+
+	/**
+	 * Counts the bytes read and copies them into a file, if given.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		private final OutputStream copy;
+		long count = 0;
+
+		CountingInputStream(final InputStream in, final OutputStream copy) {
+			super(in);
+			this.copy = copy;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b != -1) {
+				this.count++;
+				if (this.copy != null) this.copy.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			final int n = super.read(buffer, offset, length);
+			if (n > 0) {
+				this.count += n;
+				if (this.copy != null) this.copy.write(buffer, offset, n);
+			}
+			return n;
+		}
+	} // class CountingInputStream
+
+
+
+	private static final class CrawlThreadFactory implements ThreadFactory {
+		private static final AtomicInteger crawlNumber = new AtomicInteger();
+		private final int crawl = crawlNumber.incrementAndGet();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "crawl-" + this.crawl + "-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class CrawlThreadFactory
+
+} // class Crawler
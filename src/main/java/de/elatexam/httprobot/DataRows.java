@@ -0,0 +1,279 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams parameter rows from a data file for {@link DataRunner}, one row
+ * at a time, so files of any size can be used.
+ * <ul>
+ * <li>CSV: the first line holds the column names; fields are separated by
+ * ',' (or ';' if the header has no ','), quoted fields may contain
+ * separators, line breaks and doubled quotes.</li>
+ * <li>JSONL (*.jsonl, *.ndjson): one flat JSON object per line; strings,
+ * numbers and booleans are passed as text, null as "".</li>
+ * </ul>
+ */
+final class DataRows implements Closeable {
+
+	private final BufferedReader reader;
+	private final boolean json;
+	private final List<String> header;
+	private char separator = ',';
+	private Map<String, String> peeked = null;
+	private int line = 0;
+
+
+	/**
+	 * @param reader Daten
+	 * @param json true für JSONL, sonst CSV
+	 */
+	DataRows(final Reader reader, final boolean json) throws IOException {
+		this.reader = new BufferedReader(reader);
+		this.json = json;
+		if (json) {
+			this.peeked = this.next();
+			this.header = (this.peeked == null) ? Collections.<String>emptyList() : new ArrayList<String>(this.peeked.keySet());
+		} else {
+			final String first = this.reader.readLine();
+			this.line++;
+			if (first == null) {
+				this.header = Collections.emptyList();
+			} else {
+				final String names = first.startsWith("\uFEFF") ? first.substring(1) : first;
+				if ((names.indexOf(',') == -1) && (names.indexOf(';') != -1)) {
+					this.separator = ';';
+				}
+				this.header = this.parseCsv(names);
+			}
+		} // if else
+	}
+
+
+	/**
+	 * Öffnet eine Datei (UTF-8), JSONL bei Endung .jsonl oder .ndjson, sonst CSV.
+	 */
+	static DataRows open(final String fileName) throws IOException {
+		final String lower = fileName.toLowerCase();
+		final boolean json = lower.endsWith(".jsonl") || lower.endsWith(".ndjson");
+		return new DataRows(new InputStreamReader(new FileInputStream(fileName), "UTF-8"), json);
+	} // open
+
+
+	/**
+	 * @return Spaltennamen (CSV: Kopfzeile, JSONL: Schlüssel der ersten Zeile)
+	 */
+	List<String> getColumns() {
+		return Collections.unmodifiableList(this.header);
+	}
+
+
+	/**
+	 * @return nächste Zeile (Spalte -> Wert), null am Ende der Datei
+	 */
+	Map<String, String> next() throws IOException {
+		if (this.peeked != null) {
+			final Map<String, String> row = this.peeked;
+			this.peeked = null;
+			return row;
+		}
+		String text;
+		do {
+			text = this.reader.readLine();
+			this.line++;
+			if (text == null) {
+				return null;
+			}
+		} while (text.trim().length() == 0);
+
+		if (this.json) {
+			return this.parseJson(text);
+		}
+		// Zeilenumbrüche in Anführungszeichen: Folgezeilen anhängen
+		while (!isBalanced(text)) {
+			final String more = this.reader.readLine();
+			this.line++;
+			if (more == null) {
+				throw new IOException("Unterminated quoted field in line " + this.line);
+			}
+			text = text + "\n" + more;
+		} // while
+		final List<String> fields = this.parseCsv(text);
+		final Map<String, String> row = new LinkedHashMap<String, String>();
+		for (int i = 0; i < this.header.size(); i++) {
+			row.put(this.header.get(i), (i < fields.size()) ? fields.get(i) : "");
+		}
+		return row;
+	} // next
+
+
+	public void close() throws IOException {
+		this.reader.close();
+	}
+
+
+	private static boolean isBalanced(final String text) {
+		int quotes = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '"') {
+				quotes++;
+			}
+		}
+		return (quotes % 2) == 0;
+	} // isBalanced
+
+
+	private List<String> parseCsv(final String text) {
+		final List<String> fields = new ArrayList<String>();
+		final StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				} else if ((i + 1 < text.length()) && (text.charAt(i + 1) == '"')) {
+					field.append('"');
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == this.separator) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c != '\r') {
+				field.append(c);
+			}
+		} // for
+		fields.add(field.toString());
+		return fields;
+	} // parseCsv
+
+
+	/**
+	 * Liest ein flaches JSON-Objekt.
+	 */
+	private Map<String, String> parseJson(final String text) throws IOException {
+		final Map<String, String> row = new LinkedHashMap<String, String>();
+		final int[] pos = { skip(text, 0) };
+		expect(text, pos, '{');
+		pos[0] = skip(text, pos[0]);
+		if ((pos[0] < text.length()) && (text.charAt(pos[0]) == '}')) {
+			return row;
+		}
+		while (true) {
+			final String key = this.jsonString(text, pos);
+			expect(text, pos, ':');
+			pos[0] = skip(text, pos[0]);
+			final String value;
+			if ((pos[0] < text.length()) && (text.charAt(pos[0]) == '"')) {
+				value = this.jsonString(text, pos);
+			} else {
+				final int start = pos[0];
+				while ((pos[0] < text.length()) && (",} \t".indexOf(text.charAt(pos[0])) == -1)) {
+					pos[0]++;
+				}
+				final String literal = text.substring(start, pos[0]);
+				if (literal.length() == 0 || literal.startsWith("{") || literal.startsWith("[")) {
+					throw new IOException("Expected a string, number or boolean in line " + this.line + " for key: " + key);
+				}
+				value = literal.equals("null") ? "" : literal;
+			}
+			row.put(key, value);
+			pos[0] = skip(text, pos[0]);
+			if ((pos[0] < text.length()) && (text.charAt(pos[0]) == ',')) {
+				pos[0]++;
+				continue;
+			}
+			expect(text, pos, '}');
+			return row;
+		} // while
+	} // parseJson
+
+
+	private String jsonString(final String text, final int[] pos) throws IOException {
+		expect(text, pos, '"');
+		final StringBuilder sb = new StringBuilder();
+		while (pos[0] < text.length()) {
+			final char c = text.charAt(pos[0]++);
+			if (c == '"') {
+				return sb.toString();
+			} else if (c != '\\') {
+				sb.append(c);
+			} else if (pos[0] < text.length()) {
+				final char e = text.charAt(pos[0]++);
+				switch (e) {
+				case 'n': sb.append('\n'); break;
+				case 't': sb.append('\t'); break;
+				case 'r': sb.append('\r'); break;
+				case 'b': sb.append('\b'); break;
+				case 'f': sb.append('\f'); break;
+				case 'u':
+					if (pos[0] + 4 > text.length()) {
+						throw new IOException("Invalid escape in line " + this.line);
+					}
+					sb.append((char) Integer.parseInt(text.substring(pos[0], pos[0] + 4), 16));
+					pos[0] += 4;
+					break;
+				default: sb.append(e);
+				} // switch
+			}
+		} // while
+		throw new IOException("Unterminated string in line " + this.line);
+	} // jsonString
+
+
+	private void expect(final String text, final int[] pos, final char c) throws IOException {
+		pos[0] = skip(text, pos[0]);
+		if ((pos[0] >= text.length()) || (text.charAt(pos[0]) != c)) {
+			throw new IOException("Expected '" + c + "' in line " + this.line + " at position " + (pos[0] + 1));
+		}
+		pos[0]++;
+	} // expect
+
+
+	private static int skip(final String text, int pos) {
+		while ((pos < text.length()) && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	} // skip
+
+} // class DataRows
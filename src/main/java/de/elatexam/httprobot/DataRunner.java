@@ -0,0 +1,357 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+
+/**
+ * Data mode: runs a robotPlan once per row of a data file (CSV or JSONL).<br>
+ * The plan is split into a shared prefix, typically the login, and the
+ * steps per row. The prefix runs once; its session (cookies, http
+ * authentication, pending values and last page, see RobotSession) is then
+ * forked into a fresh {@link Robot} per row, which gets the columns of the
+ * row as parameters (param:COLUMN, the row number as data:row) and runs the
+ * remaining steps. Rows are processed in parallel and read from the file
+ * while the run goes on, at most twice the number of threads ahead. A
+ * SESSION_SAVE step within the prefix lets later runs skip the login, too.
+ * <br>
+ * Aufruf: java de.elatexam.httprobot.DataRunner XMLDateiname DataFile:Datei Parameter<br>
+ * with the data parameters
+ * <ul>
+ * <li>DataFile: - [CSV- oder JSONL-Datei (*.jsonl), Kopfzeile bzw. Schlüssel sind die Parameternamen]</li>
+ * <li>DataThreads: 4 [gleichzeitig abgearbeitete Zeilen]</li>
+ * <li>DataPrefix: - [Anzahl gemeinsamer Schritte, ohne Angabe alle Schritte vor dem ersten, der eine Spalte verwendet (${SPALTE} oder param:SPALTE)]</li>
+ * <li>DataSave: - [Verzeichnis, letzte Antwort jeder Zeile als [Zeile]-[Dateiname] speichern]</li>
+ * </ul>
+ * All other parameters are passed to the robots (see Robot.init); options
+ * changed by CONFIG steps of the prefix are not forked. Per row a line
+ * "row, ok|failed, last status, file" is printed.
+ */
+public class DataRunner {
+
+	private int threads = 4;
+	private File saveDirectory = null;
+	private PrintStream out = null;
+	private final String[] parameters;
+
+	/** Parameter des DataRunner, alle anderen gehen an die Robots */
+	private static final List<String> OPTIONS = Arrays.asList("DataFile", "DataThreads", "DataPrefix", "DataSave");
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(DataRunner.class);
+
+
+	/**
+	 * @param parameters
+	 *            Übergabe Parameter der Robots, Format: NAME:WERT
+	 */
+	public DataRunner(final String[] parameters) {
+		this.parameters = parameters;
+	}
+
+
+	public void setThreads(final int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads, expected at least 1, but was: " + threads);
+		this.threads = threads;
+	}
+
+	/**
+	 * @param saveDirectory
+	 *            directory for the last response of every row, null for none
+	 */
+	public void setSaveDirectory(final File saveDirectory) {
+		this.saveDirectory = saveDirectory;
+	}
+
+	/**
+	 * @param out
+	 *            receives one line per row, null for none
+	 */
+	public void setOutput(final PrintStream out) {
+		this.out = out;
+	}
+
+
+	/**
+	 * Finds the end of the shared prefix: the first step using one of the
+	 * columns as parameter reference (an element with ${COLUMN}, ${param:COLUMN} or the text param:COLUMN).
+	 *
+	 * @param eXMLRobotPlan
+	 *            XML-Rootelement (org.jdom.Element)
+	 * @param columns
+	 *            column names of the data file
+	 * @return number of steps before that step, -1 if no step uses a column
+	 */
+	public static int findPrefix(final Element eXMLRobotPlan, final Collection<String> columns) {
+		final List<Element> steps = eXMLRobotPlan.getChildren("step");
+		for (int i = 0; i < steps.size(); i++) {
+			if (usesColumn(steps.get(i), columns)) {
+				return i;
+			}
+		} // for
+		return -1;
+	} // findPrefix
+
+
+	private static boolean usesColumn(final Element element, final Collection<String> columns) {
+		final Template text;
+		try {
+			text = Template.compile(element.getTextTrim());
+		} catch (final IllegalArgumentException e) {
+			return false; // wird beim Übersetzen des Schrittes gemeldet
+		}
+		for (final String column : columns) {
+			if (text.references(Variables.key("param", column))) {
+				return true;
+			}
+		} // for
+		for (final Object child : element.getChildren()) {
+			if (usesColumn((Element) child, columns)) {
+				return true;
+			}
+		} // for
+		return false;
+	} // usesColumn
+
+
+	/**
+	 * Runs the prefix once and the remaining steps for every row of the file.
+	 *
+	 * @param plan
+	 *            compiled plan
+	 * @param prefix
+	 *            number of shared steps
+	 * @param dataFile
+	 *            CSV or JSONL file
+	 * @return number of failed rows
+	 * @throws IllegalStateException
+	 *             if a step of the prefix fails; no row is run then
+	 */
+	public int run(final RobotPlan plan, final int prefix, final String dataFile) throws IOException, InterruptedException {
+		final DataRows rows = DataRows.open(dataFile);
+		try {
+			return this.run(plan, prefix, rows);
+		} finally {
+			rows.close();
+		}
+	} // run
+
+
+	int run(final RobotPlan plan, final int prefix, final DataRows rows) throws IOException, InterruptedException {
+		final List<Step> steps = plan.getSteps();
+		if ((prefix < 0) || (prefix > steps.size()))
+			throw new IllegalArgumentException("Invalid prefix, expected 0 to " + steps.size() + " steps, but was: " + prefix);
+
+		// gemeinsamer Teil (Login) genau einmal
+		final long t0 = System.currentTimeMillis();
+		final Robot first = new Robot(this.parameters);
+		final RobotSession session;
+		try {
+			for (int i = first.restoreCheckpoint(steps.subList(0, prefix)); i < prefix; i++) {
+				if (!Boolean.TRUE.equals(first.callStep(steps.get(i)))) {
+					throw new IllegalStateException("Shared step " + (i + 1) + " (" + steps.get(i).getMode() + ") failed, no rows were run");
+				}
+				first.awaitRefresh();
+			} // for
+			session = first.getSession();
+		} finally {
+			first.finish();
+		} // try finally
+		DataRunner.logger.info("DataRunner: gemeinsame Schritte in " + (System.currentTimeMillis() - t0) + " ms");
+
+		final List<Step> rowSteps = steps.subList(prefix, steps.size());
+		final ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		final Semaphore ahead = new Semaphore(2 * this.threads);
+		final AtomicInteger failed = new AtomicInteger();
+		int count = 0;
+		try {
+			Map<String, String> row;
+			while ((row = rows.next()) != null) {
+				ahead.acquire();
+				final int number = ++count;
+				final Map<String, String> values = row;
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							if (!DataRunner.this.runRow(session, rowSteps, number, values)) {
+								failed.incrementAndGet();
+							}
+						} finally {
+							ahead.release();
+						} // try finally
+					}
+				});
+			} // while
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} // try finally
+		DataRunner.logger.info("DataRunner: " + count + " Zeilen, " + failed.get() + " fehlgeschlagen, " + (System.currentTimeMillis() - t0) + " ms");
+		return failed.get();
+	} // run
+
+
+	/**
+	 * Runs the steps of one row in a robot forked from the shared session.
+	 *
+	 * @return all steps successful
+	 */
+	private boolean runRow(final RobotSession session, final List<Step> steps, final int number, final Map<String, String> row) {
+		boolean success = true;
+		String fileName = null;
+		int status = 0;
+		try {
+			final Robot robot = new Robot(this.parameters);
+			try {
+				robot.restoreSession(session);
+				for (final Map.Entry<String, String> column : row.entrySet()) {
+					robot.setPending("param", column.getKey(), column.getValue());
+				}
+				robot.setPending("data", "row", String.valueOf(number));
+				for (final Step step : steps) {
+					success &= Boolean.TRUE.equals(robot.callStep(step));
+					robot.awaitRefresh();
+				} // for
+			} finally {
+				robot.finish();
+			} // try finally
+			status = robot.getLastResultStatus();
+			if (this.saveDirectory != null) {
+				fileName = this.save(robot, number);
+			}
+		} catch (final Exception e) {
+			DataRunner.logger.warn("DataRunner: Zeile " + number + " abgebrochen: " + e);
+			success = false;
+		} // try catch
+		if (this.out != null) {
+			synchronized (this.out) {
+				this.out.println(number + "\t" + (success ? "ok" : "failed") + "\t" + status + "\t" + ((fileName != null) ? fileName : "-"));
+			}
+		} // if
+		return success;
+	} // runRow
+
+
+	private String save(final Robot robot, final int number) throws IOException {
+		final byte[] result = robot.getLastByteResult();
+		if ((result == null) || (result.length == 0)) {
+			return null;
+		}
+		final String fileName = this.saveDirectory.getAbsolutePath() + File.separatorChar + number + "-" + robot.getLastResultName();
+		final FileOutputStream fos = new FileOutputStream(fileName);
+		try {
+			fos.write(result);
+		} finally {
+			fos.close();
+		} // try finally
+		return fileName;
+	} // save
+
+
+
+	/**
+	 * Hauptmethode, siehe Klassenbeschreibung.
+	 *
+	 * @param args Parameter
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		if ((args == null) || (args.length == 0)) {
+			System.out.println("Parameter fehlt!");
+			System.out.println("java DataRunner XMLDateiname DataFile:Datei DataThreads:N DataPrefix:N DataSave:Verzeichnis Parameter");
+			return;
+		} // if
+
+		final List<String> robotParameters = new ArrayList<String>();
+		final List<String[]> dataParameters = new ArrayList<String[]>();
+		for (int i = 1; i < args.length; i++) {
+			final int idx = args[i].indexOf(':');
+			if (idx == -1)
+				throw new IllegalArgumentException("Invalid parameter syntax, expected: 'name:value', but was: " + args[i]);
+			if (DataRunner.OPTIONS.contains(args[i].substring(0, idx))) {
+				dataParameters.add(new String[] { args[i].substring(0, idx), args[i].substring(idx + 1) });
+			} else {
+				robotParameters.add(args[i]);
+			}
+		} // for
+
+		final DataRunner runner = new DataRunner(robotParameters.toArray(new String[robotParameters.size()]));
+		String dataFile = null;
+		int prefix = -1;
+		for (final String[] p : dataParameters) {
+			if (p[0].equals("DataFile")) {
+				dataFile = p[1];
+			} else if (p[0].equals("DataThreads")) {
+				runner.setThreads(Integer.parseInt(p[1]));
+			} else if (p[0].equals("DataPrefix")) {
+				prefix = Integer.parseInt(p[1]);
+			} else if (p[0].equals("DataSave")) {
+				final File directory = new File(p[1]);
+				if (!directory.isDirectory())
+					throw new IllegalArgumentException("DataSave is not a directory: " + p[1]);
+				runner.setSaveDirectory(directory);
+			}
+		} // for
+		if (dataFile == null)
+			throw new IllegalArgumentException("Missing data parameter: DataFile");
+
+		final Document xmlFile = new SAXBuilder().build(args[0]);
+		final RobotPlan plan = RobotPlan.compile(xmlFile.getRootElement());
+		final DataRows rows = DataRows.open(dataFile);
+		try {
+			if (prefix < 0) {
+				prefix = findPrefix(xmlFile.getRootElement(), rows.getColumns());
+				if (prefix < 0)
+					throw new IllegalArgumentException("No step uses a column of " + dataFile + " (${COLUMN} or param:COLUMN), set DataPrefix");
+			} // if
+			runner.setOutput(System.out);
+			final int failed = runner.run(plan, prefix, rows);
+			System.out.println("DataRunner: " + failed + " failed rows");
+		} finally {
+			rows.close();
+		} // try finally
+	} // main
+
+} // class DataRunner
@@ -0,0 +1,366 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Structured event log of the robots: requests, responses, cookies, forms
+ * and steps as JSON lines.<br>
+ * Events are handed to a bounded ring buffer and written by a background
+ * thread, so the request thread only captures the values it already has;
+ * formatting and I/O happen elsewhere. If the writer falls behind, new
+ * events are dropped and counted instead of slowing the robots down (the
+ * count is written as a "dropped" event). Response bodies are captured
+ * only for every n-th response and only up to a maximum number of bytes.
+ * Cookie and form values are not logged, only their names. Robots without
+ * an event log (see Robot, parameter EventLog) do not create any events.
+ * <br>
+ * One instance per file is shared by all robots of the JVM (see
+ * {@link #open(String)}).
+ *
+ * <pre>
+ * {"ts":1700000000000,"robot":3,"event":"response","url":"https://...","status":200,"ms":41,"bytes":18230}
+ * </pre>
+ */
+public final class EventLog {
+
+	/** Standard für die Größe des Ringpuffers (Ereignisse) */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/** Standard: Inhalt jeder n-ten Antwort aufzeichnen */
+	public static final int DEFAULT_BODY_SAMPLE = 100;
+
+	/** Standard für die aufgezeichneten Bytes einer Antwort */
+	public static final int DEFAULT_MAX_BODY_BYTES = 2048;
+
+	private static final Map<String, EventLog> OPEN = new HashMap<String, EventLog>();
+	private static final AtomicInteger robotNumber = new AtomicInteger();
+
+	private final File file;
+	private final BlockingQueue<Event> queue;
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong responses = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong offered = new AtomicLong();
+	private volatile int bodySample = DEFAULT_BODY_SAMPLE;
+	private volatile int maxBodyBytes = DEFAULT_MAX_BODY_BYTES;
+	private final Writer out;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(EventLog.class);
+
+
+	private EventLog(final File file, final int capacity) throws IOException {
+		this.file = file;
+		this.queue = new ArrayBlockingQueue<Event>(capacity);
+		this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"), 65536);
+		final Thread writer = new Thread(new Runnable() {
+			public void run() {
+				EventLog.this.drain();
+			}
+		}, "eventlog-" + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+
+	/**
+	 * Returns the event log writing into a file, opening it on first use.
+	 * Events are appended.
+	 *
+	 * @param fileName log file
+	 * @return shared event log
+	 * @throws IOException file not writable
+	 */
+	public static synchronized EventLog open(final String fileName) throws IOException {
+		final File file = new File(fileName).getAbsoluteFile();
+		EventLog log = EventLog.OPEN.get(file.getPath());
+		if (log == null) {
+			log = new EventLog(file, DEFAULT_CAPACITY);
+			EventLog.OPEN.put(file.getPath(), log);
+		}
+		return log;
+	} // open
+
+
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @param bodySample capture the body of every n-th response, 0 for none
+	 */
+	public void setBodySample(final int bodySample) {
+		if (bodySample < 0)
+			throw new IllegalArgumentException("Invalid body sample, expected at least 0, but was: " + bodySample);
+		this.bodySample = bodySample;
+	}
+
+	/**
+	 * @param maxBodyBytes captured bytes of a sampled body
+	 */
+	public void setMaxBodyBytes(final int maxBodyBytes) {
+		if (maxBodyBytes < 0)
+			throw new IllegalArgumentException("Invalid body size, expected at least 0, but was: " + maxBodyBytes);
+		this.maxBodyBytes = maxBodyBytes;
+	}
+
+	/**
+	 * @return events dropped because the ring buffer was full
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+
+	/**
+	 * @return number identifying a robot in the events
+	 */
+	static int nextRobot() {
+		return EventLog.robotNumber.incrementAndGet();
+	}
+
+
+	/**
+	 * Decides whether the body of the next response is captured.
+	 *
+	 * @return bytes to capture, 0 for none
+	 */
+	int sampleBody() {
+		final int sample = this.bodySample;
+		return ((sample > 0) && (this.responses.incrementAndGet() % sample == 0)) ? this.maxBodyBytes : 0;
+	} // sampleBody
+
+
+	/**
+	 * Hands an event to the writer; never blocks.
+	 *
+	 * @param robot robot number (nextRobot)
+	 * @param event type of the event
+	 * @param fields name/value pairs, values may be null; Strings, Numbers and Booleans
+	 */
+	void log(final int robot, final String event, final Object... fields) {
+		this.offer(new Event(System.currentTimeMillis(), robot, event, fields, null, null));
+	} // log
+
+
+	/**
+	 * Like log, with the captured head of a response body.
+	 *
+	 * @param body captured bytes, decoded by the writer
+	 * @param charset charset of the body, null for ISO-8859-1
+	 */
+	void logBody(final int robot, final String event, final byte[] body, final String charset, final Object... fields) {
+		this.offer(new Event(System.currentTimeMillis(), robot, event, fields, body, charset));
+	} // logBody
+
+
+	private void offer(final Event event) {
+		if (this.queue.offer(event)) {
+			this.offered.incrementAndGet();
+		} else {
+			this.dropped.incrementAndGet();
+		}
+	} // offer
+
+
+	/**
+	 * Waits until all events handed over so far are written, at most the
+	 * given time.
+	 *
+	 * @return true, if everything is written
+	 */
+	public boolean flush(final long timeoutMillis) throws InterruptedException {
+		final long target = this.offered.get();
+		final long end = System.currentTimeMillis() + timeoutMillis;
+		synchronized (this.written) {
+			while (this.written.get() < target) {
+				final long wait = end - System.currentTimeMillis();
+				if (wait <= 0) {
+					return false;
+				}
+				this.written.wait(wait);
+			} // while
+		} // synchronized
+		return true;
+	} // flush
+
+
+
+	/**
+	 * Schreibthread: entnimmt die Ereignisse blockweise und schreibt sie,
+	 * geleert wird die Datei, sobald der Puffer leer ist.
+	 */
+	private void drain() {
+		final List<Event> batch = new ArrayList<Event>(256);
+		final StringBuilder sb = new StringBuilder(512);
+		long reportedDropped = 0;
+		while (true) {
+			try {
+				final Event first = this.queue.poll(1, TimeUnit.SECONDS);
+				if (first != null) {
+					batch.add(first);
+					this.queue.drainTo(batch, 255);
+				}
+				final long dropped = this.dropped.get();
+				if (dropped != reportedDropped) {
+					batch.add(new Event(System.currentTimeMillis(), 0, "dropped", new Object[] { "count", Long.valueOf(dropped - reportedDropped) }, null, null));
+					reportedDropped = dropped;
+				}
+				for (final Event event : batch) {
+					sb.setLength(0);
+					event.appendTo(sb);
+					this.out.write(sb.append('\n').toString());
+				} // for
+				if (this.queue.isEmpty()) {
+					this.out.flush();
+				}
+			} catch (final InterruptedException e) {
+				return;
+			} catch (final IOException e) {
+				EventLog.logger.error("Ereignisprotokoll nicht schreibbar: " + this.file, e);
+			} catch (final RuntimeException e) {
+				EventLog.logger.error("Ereignis nicht geschrieben", e);
+			} // try catch
+			int written = 0;
+			for (final Event event : batch) {
+				if (event.robot != 0) {
+					written++;
+				}
+			} // for
+			batch.clear();
+			if (written > 0) {
+				synchronized (this.written) {
+					this.written.addAndGet(written);
+					this.written.notifyAll();
+				}
+			} // if
+		} // while
+	} // drain
+
+
+
+	/**
+	 * Ein Ereignis mit den beim Auftreten erfassten Werten, formatiert wird
+	 * erst im Schreibthread.
+	 */
+	private static final class Event {
+		final long time;
+		final int robot;
+		final String event;
+		final Object[] fields;
+		final byte[] body;
+		final String charset;
+
+		Event(final long time, final int robot, final String event, final Object[] fields, final byte[] body, final String charset) {
+			this.time = time;
+			this.robot = robot;
+			this.event = event;
+			this.fields = fields;
+			this.body = body;
+			this.charset = charset;
+		}
+
+		void appendTo(final StringBuilder sb) {
+			sb.append("{\"ts\":").append(this.time);
+			if (this.robot != 0) {
+				sb.append(",\"robot\":").append(this.robot);
+			}
+			sb.append(",\"event\":");
+			appendString(sb, this.event);
+			for (int i = 0; i + 1 < this.fields.length; i += 2) {
+				final Object value = this.fields[i + 1];
+				if (value == null) {
+					continue;
+				}
+				sb.append(',');
+				appendString(sb, String.valueOf(this.fields[i]));
+				sb.append(':');
+				if ((value instanceof Number) || (value instanceof Boolean)) {
+					sb.append(value);
+				} else if (value instanceof String[]) {
+					sb.append('[');
+					final String[] values = (String[]) value;
+					for (int j = 0; j < values.length; j++) {
+						if (j > 0) {
+							sb.append(',');
+						}
+						appendString(sb, values[j]);
+					} // for
+					sb.append(']');
+				} else {
+					appendString(sb, value.toString());
+				}
+			} // for
+			if (this.body != null) {
+				String text;
+				try {
+					text = new String(this.body, (this.charset != null) ? this.charset : "ISO-8859-1");
+				} catch (final UnsupportedEncodingException e) {
+					text = new String(this.body);
+				}
+				sb.append(",\"body\":");
+				appendString(sb, text);
+			} // if
+			sb.append('}');
+		} // appendTo
+	} // class Event
+
+
+	private static void appendString(final StringBuilder sb, final String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				sb.append(c);
+			}
+		} // for
+		sb.append('"');
+	} // appendString
+
+} // class EventLog
@@ -0,0 +1,74 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+import com.meterware.httpunit.WebLink;
+
+/**
+ * Step EXTRACT_Links, see {@link HTMLRobots#mEXTRACT_Links}.
+ */
+public class ExtractLinksStep implements Step {
+
+	public static final String MODE = "EXTRACT_Links";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new ExtractLinksStep(eStep);
+		}
+	};
+
+	private final Template linkName;
+
+
+	public ExtractLinksStep(final Element eStep) {
+		this.linkName = Template.compile(eStep.getChildText("name"));
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		final String linkName = this.linkName.resolve(robot.getVariables());
+		final StringBuilder sb = new StringBuilder();
+		for (final WebLink link : robot.getLastWebResponse().getLinks())
+			if (link.getURLString().contains(linkName))
+				sb.append(link.getText()).append("\n");
+
+		robot.setLastTextResult(sb.toString());
+		return true;
+	} // execute
+
+} // class ExtractLinksStep
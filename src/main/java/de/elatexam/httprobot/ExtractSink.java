@@ -0,0 +1,181 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * {@link ResultSink} extracting values from a response body while it is
+ * received (see ExtractStep). The bytes are decoded chunk by chunk and handed
+ * to a {@link TextScanner}; only the scanner's window is kept, so memory does not
+ * depend on the size of the page.
+ * <p>
+ * Values are stored as pending data of type "extract" (NAME, NAME.1 ...
+ * NAME.n) or, if a directory is given, written line by line into the file
+ * NAME.txt, whose name is stored as "save" / NAME. The number of values is
+ * stored as "extract" / NAME.count.
+ */
+final class ExtractSink implements ResultSink, TextScanner.Output {
+
+	private final Robot robot;
+	private final String name;
+	private final TextScanner scanner;
+	private final File directory;
+	private final int max;
+
+	private Charset charset = Charset.forName("ISO-8859-1");
+	private CharsetDecoder decoder = null;
+	private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+	private final CharBuffer chars = CharBuffer.allocate(8192);
+	private Writer writer = null;
+	private String fileName = null;
+	private int count = 0;
+
+
+	/**
+	 * @param robot Robot, der die Werte erhält
+	 * @param name Name der Werte
+	 * @param scanner Suche
+	 * @param directory Verzeichnis für NAME.txt, null für Pending-Daten
+	 * @param max höchstens so viele Werte, 0 für alle
+	 */
+	ExtractSink(final Robot robot, final String name, final TextScanner scanner, final File directory, final int max) {
+		this.robot = robot;
+		this.name = name;
+		this.scanner = scanner;
+		this.directory = directory;
+		this.max = max;
+	}
+
+
+	/**
+	 * @param charset Zeichensatz der Antwort, unbekannte werden ignoriert (ISO-8859-1)
+	 */
+	void setCharset(final String charset) {
+		try {
+			this.charset = Charset.forName(charset);
+		} catch (final IllegalArgumentException e) {
+			this.charset = Charset.forName("ISO-8859-1");
+		} // try catch
+	} // setCharset
+
+
+	public void open(final String resultName, final int contentLength) throws IOException {
+		this.decoder = this.charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.bytes.clear();
+		this.chars.clear();
+		this.count = 0;
+		if (this.directory != null) {
+			this.fileName = this.directory.getAbsolutePath() + File.separatorChar + this.name + ".txt";
+			this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.fileName), "UTF-8"));
+		}
+	} // open
+
+
+	public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+		int pos = offset;
+		final int end = offset + length;
+		while (pos < end) {
+			final int n = Math.min(this.bytes.remaining(), end - pos);
+			this.bytes.put(buffer, pos, n);
+			pos += n;
+			this.bytes.flip();
+			this.decode(false);
+			this.bytes.compact(); // angefangene Multibyte-Zeichen bleiben stehen
+		} // while
+	} // write
+
+
+	public void close() throws IOException {
+		try {
+			if (this.decoder != null) {
+				this.bytes.flip();
+				this.decode(true);
+				this.decoder.flush(this.chars);
+				this.feed();
+				this.scanner.finish(this);
+			}
+		} finally {
+			if (this.writer != null) {
+				this.writer.close();
+				this.writer = null;
+				this.robot.setPending("save", this.name, this.fileName);
+			}
+			this.robot.setPending("extract", this.name + ".count", String.valueOf(this.count));
+		} // try finally
+	} // close
+
+
+	private void decode(final boolean endOfInput) throws IOException {
+		CoderResult result;
+		do {
+			result = this.decoder.decode(this.bytes, this.chars, endOfInput);
+			this.feed();
+		} while (result.isOverflow());
+	} // decode
+
+
+	private void feed() throws IOException {
+		this.chars.flip();
+		if (this.chars.hasRemaining()) {
+			this.scanner.feed(this.chars, this);
+		}
+		this.chars.clear();
+	} // feed
+
+
+	/**
+	 * Nimmt einen gefundenen Wert entgegen (vom Scanner aufgerufen).
+	 */
+	public void emit(final String value) throws IOException {
+		if ((this.max > 0) && (this.count >= this.max)) {
+			return;
+		}
+		this.count++;
+		if (this.writer != null) {
+			this.writer.write(value);
+			this.writer.write('\n');
+		} else {
+			if (this.count == 1) {
+				this.robot.setPending("extract", this.name, value);
+			}
+			this.robot.setPending("extract", this.name + "." + this.count, value);
+		} // if else
+	} // emit
+
+} // class ExtractSink
@@ -0,0 +1,144 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.regex.Pattern;
+
+import org.jdom.Element;
+
+/**
+ * Step EXTRACT, see {@link HTMLRobots#mEXTRACT}.
+ */
+public class ExtractStep implements Step {
+
+	public static final String MODE = "EXTRACT";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new ExtractStep(eStep);
+		}
+	};
+
+	private final Template name;
+	private final Template patternText;
+	/** übersetztes Muster, null wenn es Verweise enthält */
+	private final Pattern pattern;
+	private final Template selector;
+	private final Template attribute;
+	private final Template path;
+	private final int max;
+	private final boolean stream;
+
+
+	public ExtractStep(final Element eStep) {
+		final String name = eStep.getChildText("name");
+		if ((name == null) || name.equals("")) {
+			throw new IllegalArgumentException("EXTRACT needs a <name> for the extracted values");
+		}
+		this.name = Template.compile(name);
+		final String pattern = eStep.getChildText("pattern");
+		this.patternText = (pattern != null && !pattern.equals("")) ? Template.compile(pattern) : null;
+		this.pattern = (this.patternText != null && this.patternText.isConstant()) ? Pattern.compile(this.patternText.getText()) : null;
+		final String selector = eStep.getChildText("select");
+		this.selector = (selector != null && !selector.equals("")) ? Template.compile(selector) : null;
+		if ((this.patternText == null) == (this.selector == null)) {
+			throw new IllegalArgumentException("EXTRACT needs either <pattern> or <select>");
+		}
+		if (this.selector != null && this.selector.isConstant()) {
+			new SelectorScanner(this.selector.getText(), null); // Selektor beim Laden prüfen
+		}
+		final String attribute = eStep.getChildText("attr");
+		this.attribute = (attribute != null && !attribute.equals("")) ? Template.compile(attribute) : null;
+		this.path = Template.compile(eStep.getChildText("path"));
+		final String max = eStep.getChildText("max");
+		if (max != null && !max.equals("")) {
+			try {
+				this.max = Integer.parseInt(max.trim());
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid max, expected a number, but was: " + max);
+			}
+		} else {
+			this.max = 0;
+		}
+		this.stream = Boolean.valueOf(eStep.getChildText("stream")).booleanValue();
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		final Variables variables = robot.getVariables();
+		File directory = null;
+		if (this.path != null) {
+			final String path = this.path.resolve(variables);
+			directory = path.equals("") ? robot.getDefaultSaveDirectory() : new File(path);
+			if (!directory.isDirectory()) {
+				return false;
+			}
+		} // if Dateiausgabe
+
+		final TextScanner scanner;
+		if (this.patternText != null) {
+			scanner = new RegexScanner((this.pattern != null) ? this.pattern : Pattern.compile(this.patternText.resolve(variables)));
+		} else {
+			scanner = new SelectorScanner(this.selector.resolve(variables), PostStep.resolve(this.attribute, variables));
+		} // if else
+		final ExtractSink sink = new ExtractSink(robot, this.name.resolve(variables), scanner, directory, this.max);
+
+		if (this.stream) {
+			//nächste Antwort beim Empfang durchsuchen, sie wird nicht im Speicher gehalten
+			robot.setResultSink(sink);
+			return true;
+		} // if stream
+
+		final InputStream in = robot.getLastInputStreamResult();
+		sink.setCharset(robot.getLastResultCharset());
+		sink.open(robot.getLastResultName(), -1);
+		try {
+			if (in != null) {
+				final byte[] chunk = new byte[8192];
+				int n;
+				while ((n = in.read(chunk)) != -1) {
+					sink.write(chunk, 0, n);
+				} // while
+			} // if
+		} finally {
+			sink.close();
+		} // try finally
+		return true;
+	} // execute
+
+} // class ExtractStep
@@ -0,0 +1,133 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link ResultSink} writing a response body directly into a file of the
+ * given directory, named after the response (see Robot.getLastResultName).
+ * The body is written to a temporary file that replaces the file on close,
+ * unless reading the body failed (see fail) or ended before the announced
+ * length, so the file is never left truncated.
+ */
+public class FileResultSink implements ResultSink {
+
+	private final File directory;
+	private String fileName = null;
+	private Long seq = null;
+	private File part = null;
+	private boolean failed = false;
+	private int contentLength = -1;
+	private long bytes = 0;
+	private FileOutputStream fos = null;
+	private FileChannel channel = null;
+
+
+	/**
+	 * @param directory
+	 *            existing directory the file is created in
+	 */
+	public FileResultSink(final File directory) {
+		this.directory = directory;
+	}
+
+
+	public void open(final String resultName, final int contentLength) throws IOException {
+		this.fileName = this.directory.getAbsolutePath() + File.separatorChar + resultName;
+		this.seq = SaveWriter.reserve(this.fileName);
+		this.part = SaveWriter.partFile(this.fileName, this.seq);
+		this.failed = false;
+		this.contentLength = contentLength;
+		this.bytes = 0;
+		try {
+			this.fos = new FileOutputStream(this.part);
+		} catch (final IOException e) {
+			SaveWriter.discard(this.part, this.fileName, this.seq);
+			throw e;
+		} // try catch
+		this.channel = this.fos.getChannel();
+	} // open
+
+
+	/**
+	 * Reading the body failed, the file is not replaced on close.
+	 */
+	void fail() {
+		this.failed = true;
+	}
+
+
+	/**
+	 * @return reading the body failed (see fail)
+	 */
+	boolean isFailed() {
+		return this.failed;
+	}
+
+
+	public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+		final ByteBuffer bb = ByteBuffer.wrap(buffer, offset, length);
+		while (bb.hasRemaining()) {
+			this.channel.write(bb);
+		} // while
+		this.bytes += length;
+	} // write
+
+
+	public void close() throws IOException {
+		if (this.fos == null) {
+			return;
+		}
+		boolean complete = false;
+		try {
+			this.fos.close();
+			this.fos = null;
+			if ((this.contentLength >= 0) && (this.bytes != this.contentLength)) {
+				this.failed = true;
+			}
+			complete = !this.failed && SaveWriter.rename(this.part, this.fileName, this.seq);
+		} finally {
+			if (!complete) {
+				SaveWriter.discard(this.part, this.fileName, this.seq);
+			}
+		} // try finally
+	} // close
+
+
+	/**
+	 * @return Dateiname inkl. absoluter Pfad der Datei, null before open
+	 */
+	public String getFileName() {
+		return this.fileName;
+	}
+
+} // class FileResultSink
@@ -0,0 +1,71 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+import com.meterware.httpunit.WebLink;
+
+/**
+ * Step GET_Link, see {@link HTMLRobots#mGET_Link}.
+ */
+public class GetLinkStep implements Step {
+
+	public static final String MODE = "GET_Link";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new GetLinkStep(eStep);
+		}
+	};
+
+	private final Template linkName;
+
+
+	public GetLinkStep(final Element eStep) {
+		this.linkName = Template.compile(eStep.getChildText("name"));
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		//Abfrage des Links nach versch. Kriterien
+		final String linkName = (this.linkName != null) ? this.linkName.resolve(robot.getVariables()) : null;
+		final WebLink link = robot.getPageIndex().findLink(linkName);
+		//http-Request
+		return ((link != null) && robot.execHTTP(link.getRequest()));
+	} // execute
+
+} // class GetLinkStep
@@ -0,0 +1,70 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+import com.meterware.httpunit.GetMethodWebRequest;
+
+/**
+ * Step GET, see {@link HTMLRobots#mGET}.
+ */
+public class GetStep implements Step {
+
+	public static final String MODE = "GET";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new GetStep(eStep);
+		}
+	};
+
+	private final Template url;
+
+
+	public GetStep(final Element eStep) {
+		this.url = Template.compile(eStep.getChildText("url"));
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		//http-Request
+		return (   (this.url != null)
+			    && robot.execHTTP(new GetMethodWebRequest(this.url.resolve(robot.getVariables())))
+			   );
+	} // execute
+
+} // class GetStep
@@ -1,438 +1,460 @@
-/*
- * ====================================================================
- *
- *  Licensed to the Apache Software Foundation (ASF) under one or more
- *  contributor license agreements.  See the NOTICE file distributed with
- *  this work for additional information regarding copyright ownership.
- *  The ASF licenses this file to You under the Apache License, Version 2.0
- *  (the "License"); you may not use this file except in compliance with
- *  the License.  You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- *  Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
- * ====================================================================
- *
- * This software consists of voluntary contributions made by many
- * individuals on behalf of the Apache Software Foundation.  For more
- * information on the Apache Software Foundation, please see
- * <http://www.apache.org/>.
- *
- */
-
-package de.elatexam.httprobot;
-
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.logging.Level;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import java.lang.reflect.*;
-
-import org.jdom.Element;
-
-
-import com.meterware.httpunit.*;
-
-import de.elatexam.httprobot.Robot;
-
-/**
- * Die Klasse HTMLRobots beinhaltet die einzelnen, speziellen
- * Abarbeitungsanweisungen für die entsprechenden XML-Dateien.<br>
- * Der eigentliche Bot ist in der Klasse Robot realisiert. Grundstruktur der
- * XML-Dateien:<br>
- * <br> 
- * {@code <robotPlan> }<br> 
- * {@code ��<step> }<br> 
- * {@code ����<mode> }<br> 
- * {@code ��</step> }<br> 
- * {@code ��<step> }<br> 
- * {@code ����<mode> }<br> 
- * {@code ��</step> }<br> 
- * {@code </robotPlan> }<br>
- * <br>
- * Wobei {@code <step>} die einzelnen Abarbeitungsschritte repräsentieren.<br>
- * <br>
- * Parameter können auch bei Aufruf Robot.main direk via java oder bei Aufruf
- * Robot.init als String[] übergeben werden.<br>
- * Format: PARAMETERNAME:PARAMETERWERT<br>
- * Ein Verweis in der XML-Datei ist via param:PARAMETERNAME möglich.<br>
- * <br>
- * Die Methoden werden entpsrechend der im Element {@code <mode>} festgelegten
- * Bezeichung aufgerufen, wobei dem angegebenen Namen ein "m" vorangetstellt
- * wird.<br>
- * Beispiel: {@code "<mode>GET</mode>"} --> Methodenaufruf: "mGET" <br>
- * 
- * @see Robot
- * @author Oliver Niedtner
- * @version 0.9.1
- */
-public class HTMLRobots {
-	
-	//Konfigurations-Funktion
-	/**Setzt bzw. �ndert die Konfigurationseinstellungen des Client.<br>
-	 * <br>
-	 * Aufbau:
-	 * {@code <mode> } - CONFIG<br> 
-	 * {@code <param> } - [ein zu setzender Parameter; XML-Bereich kann auch mehrfach vorkommen, entsprechend je Parameter]<br> 
-	 * {@code ��<name> } - [Konfigurations- / Parameterbezeichnung]<br>
-	 * {@code ��<value> } - [Konfigurations- / Parameterwert]: true / false (Ausnahme: LogLevel s.u.)<br> 
-	 * {@code </param> }<br>
-	 * Alle nicht unten aufgef�hrten Konfigurationseinstellungen werden als Parameter f�r die Abarbeitung genutzt und entsprechend gespeichert.<br>
-	 * Zugriff in der XML-Datei via "param:[Parameterbezeichnung] m�glich.<br>  
-	 * <br>
-	 * <br>
-	 * Konfigurations�bersicht / Standardeinstellungen:<br>
-	 * <ul>
-	 * <li>AutoRedirect: true [true | false]</li>
-	 * <li>AutoRefresh: true [true | false]</li>
-	 * <li>SendReferer: true [true | false]</li>
-	 * <li>AcceptGzip: true [true | false]</li>
-	 * <li>AcceptCookies: true [true | false]</li>
- 	 * <li>ExecJavaScript: true [true | false]</li>
- 	 * <li>ContinueIfError: true [true | false]</li>
- 	 * <li>UserAgent: httpunit/1.5 [String]</li>
-  	 * <li>LogLevel: WARN [ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF]</li>
-	 * </ul>
-	 * 
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mCONFIG (Robot robot, Element mStep) throws Exception {
-		List<Element> parameters = mStep.getChildren("param");
-		for (Element param : parameters) {
-			if ( (param.getChildText("name") != null) && !param.getChildText("name").equals("")
-				 && (param.getChildText("value") != null) && !param.getChildText("value").equals("")
-			   ) {
-					if (!robot.setHttpClientParameters(param.getChildText("name"), param.getChildText("value"))) {
-						robot.setPending("param", param.getChildText("name"), param.getChildText("value"));
-					}
-			} //if
-		} //for
-		robot.printLoggerWebClient();
-		return true;
-	}
-
-	
-	
-	// HTML-Funktionen
-	/**
-	 * Ruft den Inhalt via http ab.<br>
-	 * <br>
-	 * Verwendete HTML-Parameter:<br> 
-	 * {@code <mode> } - GET<br> 
-	 * {@code <url> } - [URL des Auffrufs]<br>
-	 * <br>
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mGET(Robot robot, Element mStep) throws Exception {
-		//http-Request
-		return (   (mStep.getChildText("url") != null) 
-			    && robot.execHTTP(new GetMethodWebRequest(mStep.getChildText("url")))
-			   );
-	} // mGET
-
-	
-	
-	/**
-	 * Ruft den Inhalt eines Links via http ab und simuliert somit ein Klick auf
-	 * diesen. <br>
-	 * Der Link wird in der letzten �bermittelten http-Antwort gesucht.<br>
-	 * <br>
-	 * Verwendete XML-Parameter:<br> 
-	 * {@code <mode> } - GET_Link<br> 
-	 * {@code <name> } - [Linkbezeichnung]<br>
-	 * <br>
-	 * Suchreihenfolge:
-	 * <ul>
-	 * <li>Linktext</li>
-	 * <li>Tag: name</li>
-	 * <li>Tag: id</li>
-	 * <li>Linkbild, Tag: alt</li>
-	 * </ul>
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mGET_Link(Robot robot, Element mStep) throws Exception {
-		WebResponse r;
-		//Abfrage des Links nach versch. Kriterien
-		String linkName = mStep.getChildText("name");
-    if (!robot.getPending(linkName).equals("")) {
-      linkName = robot.getPending(linkName);
-    }
-    WebLink link = robot.getLastWebResponse().getLinkWith(linkName);
-		if (link == null) link = robot.getLastWebResponse().getLinkWithName(linkName);
-		if (link == null) link = robot.getLastWebResponse().getLinkWithID(linkName);
-		if (link == null) link = robot.getLastWebResponse().getLinkWithImageText(linkName);
-		//http-Request
-		return ((link != null) && robot.execHTTP(link.getRequest()));
-	} // mGET_Link
-
-	/**
-	 * Find all links whose urls contains the string <code>name</code>. Stores each url as new line
-	 * in robot.lastTestResult.
-	 * @param robot
-	 * @param mStep
-	 * @return
-	 * @throws Exception
-	 */
-	public Boolean mEXTRACT_Links(Robot robot, Element mStep) throws Exception {
-	  String linkName = mStep.getChildText("name");
-	  StringBuilder sb=new StringBuilder();
-	  for(WebLink link:robot.getLastWebResponse().getLinks())
-      if(link.getURLString().contains(linkName))
-        sb.append(link.getText()).append("\n");
-	  
-	  robot.setLastTextResult(sb.toString());
-	  return true;
-	}
-
-	
-	/**
-	 * Speichert den letzten http-Response als Datei.<br>
-	 * <br>
-	 * Verwendete HTML-Parameter:<br> 
-	 * {@code <mode> } - SAVE<br> 
-	 * {@code <path> } - Speicherverzeichnis, wenn leer dann wird Unterverzeichnis "files" verwendet<br>
-	 * {@code <saveID> } - ID der Datei (zur Identifizierung des Abarbeitungsparamters)<br>
-	 * <br>
-	 * Gespeicherte Daten werden mit Dateinamen als Abarbeitungsparameter gespeichert:<br>
-	 * - Typ: save<br>
-	 * - Name: {@code <saveID> }<br>
-	 * - Value: Dateiname<br>
-	 * - siehe Robot.getPending<br>
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mSAVE(Robot robot, Element mStep) throws Exception {
-
-		String FileName = null;
-		//Verzeichnis angegeben?
-		if ((mStep.getChildText("path") != null) && !mStep.getChildText("path").equals("")) {
-			FileName = robot.saveLastResult(mStep.getChildText("path"));
-		} else {
-			FileName = robot.saveLastResult();
-		} //if else Verzeichnis angegeben?
-		
-		//im Pending speichern
-		robot.setPending(  "save" 
-				       	 , (mStep.getChildText("saveID") != null) ? mStep.getChildText("saveID") : "null" 
-				       	 , FileName);
-		return true;
-	} // mSAVE
-
-	
-	
-	
-	
-	/**
-	 * Belegt in einem Formular die Werte und sendet es an den Webserver.
-	 * Simuliert somit ein Ausf�llen und Abschicken des Formulares.<br>
-	 * Das Formular wird in der letzten �bermittelten
-	 * http-Antwort gesucht, es wird das entsprechende vorgegebene �bermittlungs-Verfahren (POST/GET) verwendet.<br>
-	 * <br>
-	 * Verwendete XML-Parameter:<br> 
-	 * {@code <mode> } - POST<br> 
-	 * {@code <name> } - [Formularbezeichnung]<br> 
-	 * {@code <id> } - [Formularidentifikationsnummer]<br> 
-	 * {@code <button> } - [Buttonname der zum �bermitteln des Formulares benutzt wird]<br> 
-	 * {@code <param> } - [ein mit Daten zu belegender Parameter; XML-Bereich kann auch mehrfach vorkommen, entsprechend je Parameter]<br> 
-	 * {@code ��<type> } - [Parameter-Typ entsprechend HTML-Syntax]<br> 
-	 * {@code ��<name> } - [Parameterbezeichnung]<br>
-	 * {@code ��<value> } - [Parameterwert]<br> 
-	 * {@code ��<state> } - [Parameterstatus (nur bei Typ 'checkbox' - checked = true, unchecked = false]<br> 
-	 * {@code </param> }<br>
-	 * <br>
-	 * Suchreihenfolge Formular:
-	 * <ul>
-	 * <li>Tag: name (XML-Paramter {@code <name>})</li>
-	 * <li>Tag: id (XML-Paramter {@code <name>})</li>
-	 * <li>Identifikationsnummer (XML-Paramter {@code <id>})</li>
-	 * <li>im Formular vorhander Button (XML-Paramter {@code <button>})</li>
-	 * </ul>
-	 * Suchreihenfolge Button:
-	 * <ul>
-	 * <li>Tag: name (XML-Paramter {@code <name>})</li>
-	 * <li>Tag: id (XML-Paramter {@code <name>})</li>
-	 * <li>Tag: value (XML-Paramter {@code <name>})</li>
-	 * <li>Standard-Request</li>
-	 * </ul>
-	 * <br>
-	 * Folgende Parameter-Typen werden unterst�tzt:<br>
-	 *  - checkbox<br>
-	 *  - multiple<br>
-	 *  - alle weiteren, die eine einfach Zuordnung zw. Parameterbezeichnung unf Parameterwert �bertragen<br>
-	 *  &nbsp;&nbsp; z.B.: hidden, input, text, select (vgl. HTML-Syntax)<br>
-	 *  <br>
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mPOST(Robot robot, Element mStep) throws Exception {
-		WebForm form = null;
-		SubmitButton sb = null;
-		if ((mStep.getChildText("name") != null) && !mStep.getChildText("name").equals("")) {
-			form = robot.getLastWebResponse().getFormWithName(mStep.getChildText("name"));
-			if (form == null) {
-				form = robot.getLastWebResponse().getFormWithID(mStep.getChildText("name"));
-			} //if - Abfrage via ID, wenn Tag "name=" im Quelltext nicht verwendet.
-		} //if mStep.getChildText("name")->ok
-		if (form == null) {
-			//wenn Spezifikation via Tag name/id nicht erfolgreich, dann Spezifikation via ID-Nummer oder Button-value
-			if ((mStep.getChildText("id") != null) && !mStep.getChildText("id").equals("")) {
-				form = robot.getLastWebResponse().getForms()[Integer.parseInt(mStep.getChildText("id"))];
-			} else {
-				for (WebForm form_elem : robot.getLastWebResponse().getForms()) {
-					if ((sb = this.getSubmitButton(form_elem, mStep.getChildText("button"))) != null) {
-						form = form_elem;
-						break;
-					} //if
-				} //for
-			} //if else
-		} //if form==null
-		if (form != null) {
-			robot.printLogger(form);
-			List<Element> parameters = mStep.getChildren("param");
-			for (Element param : parameters) {
-				Boolean state = Boolean.valueOf(param.getChildText("state"));
-				// checkbox
-				if (param.getChildText("type").equalsIgnoreCase("checkbox")) {
-					if (state) {
-						form.setCheckbox(param.getChildText("name"), param
-								.getChildText("value"), state);
-					} else {
-						form.removeParameter(param.getChildText("name"));
-					}
-					// multiple
-				} else if (param.getChildText("type").equals("multiple")) {
-					LinkedList<String> s = new LinkedList<String>(Arrays
-							.asList(form.getParameterValues(param
-									.getChildText("name"))));
-					if (state && !s.contains(param.getChildText("value"))) {
-						s.add(param.getChildText("value"));
-					} else if (!state
-							&& !s.contains(param.getChildText("value"))) {
-						s.remove(param.getChildText("value"));
-					} // if elseif
-					form.setParameter(param.getChildText("name"), (String[]) s
-							.toArray());
-					// sonst
-				} else {
-					String value = param.getChildText("value");
-					if (!robot.getPending(value).equals("")) {
-						value = robot.getPending(value);
-					}
-					form.setParameter(param.getChildText("name"), value);
-				} // if else if else
-			} // for parameters
-			robot.printLogger(form);
-			if (sb == null) sb = this.getSubmitButton(form, mStep.getChildText("button"));
-			return  robot.execHTTP(sb != null ? form.getRequest(sb) : form.getRequest()); //wenn sb==null, dann Standard-Button ausf�hren
-		} // if form != null
-		return false;
-	} // mPOST
-
-	
-	
-	/**
-	 * Legt eine http-Authentifizierung fest.<br>
-	 * <br>
-	 * Verwendete HTML-Parameter:<br> 
-	 * {@code <mode> } - AUTH<br> 
-	 * {@code <realm> } - [Bereich der Authentifizierung]<br> 
-	 * {@code <username>} - [Benutzername]<br>
-	 * {@code <password>} - [Passwort]<br>
-	 * <br>
-	 * 
-	 * @param robot
-	 *            Objektinstanz des eigentlichen Robot
-	 * @param mStep
-	 *            JDOM-XML-Element des Abarbeitungsschrittes
-	 * @return erfolgreiche Abarbeitung (true/false)
-	 * 
-	 */
-	public Boolean mAUTH(Robot robot, Element mStep) throws Exception {
-		if (mStep.getChildText("realm") != null) {
-			String username = mStep.getChildText("username") == null ? ""
-					: mStep.getChildText("username");
-			String password = mStep.getChildText("password") == null ? ""
-					: mStep.getChildText("password");
-			if (!robot.getPending(username).equals(""))
-				username = robot.getPending(username);
-			if (!robot.getPending(password).equals(""))
-				password = robot.getPending(password);
-			robot.setAuthentication(mStep.getChildText("realm"), username,
-					password);
-			return true;
-		} // if
-		return false;
-	} // mAUTH
-	
-	
-	
-	
-	
-	
-	
-	//Hilfsmethoden
-	/**
-	 * Hilfmethode zu mPOST<br> 
-	 * - gibt den entsprechenden Button im Formular zur�ck<br>
-	 * - Spezifikation der Suchreihenfolge siehe mPOST
-	 * 
-	 *  @param form entsprechenden Formular
-	 *  @param button spezifizierter Button
-	 *  @return Button, wenn nicht vorhanden null
-	 */
-	private SubmitButton getSubmitButton (WebForm form, String button) throws Exception{
-		SubmitButton sb = null;
-		if (( button != null) && !button.equals("")) {
-			sb = form.getSubmitButton(button);
-			if (sb == null) {
-				sb = form.getSubmitButtonWithID(button);
-			} //if
-			if (sb == null) {
-				for (SubmitButton sb_elem : form.getSubmitButtons()) {
-					if (sb_elem.getValue().equals(button)) {
-						sb = sb_elem;
-						break;
-					} //if
-				} //for
-			} //if
-		} //if name->ok
-		return sb;
-	}
-
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+/**
+ * Die Klasse HTMLRobots beinhaltet die einzelnen, speziellen
+ * Abarbeitungsanweisungen für die entsprechenden XML-Dateien.<br>
+ * Der eigentliche Bot ist in der Klasse Robot realisiert. Grundstruktur der
+ * XML-Dateien:<br>
+ * <br> 
+ * {@code <robotPlan> }<br> 
+ * {@code ��<step> }<br> 
+ * {@code ����<mode> }<br> 
+ * {@code ��</step> }<br> 
+ * {@code ��<step> }<br> 
+ * {@code ����<mode> }<br> 
+ * {@code ��</step> }<br> 
+ * {@code </robotPlan> }<br>
+ * <br>
+ * Wobei {@code <step>} die einzelnen Abarbeitungsschritte repräsentieren.<br>
+ * <br>
+ * Parameter können auch bei Aufruf Robot.main direk via java oder bei Aufruf
+ * Robot.init als String[] übergeben werden.<br>
+ * Format: PARAMETERNAME:PARAMETERWERT<br>
+ * Ein Verweis in der XML-Datei ist via param:PARAMETERNAME möglich.<br>
+ * In jedem Feld eines Schrittes (auch {@code <url>}, {@code <path>} und
+ * {@code <pattern>}) können Werte mit {@code ${type:name}} eingesetzt werden,
+ * z.B. {@code <url>http://host/course/view.php?id=${param:course}</url>} oder
+ * {@code ${save:export}}; {@code ${name}} steht für {@code ${param:name}},
+ * <code>$${</code> für ein wörtliches <code>${</code>. Die Felder werden beim
+ * Laden einmal übersetzt (siehe Template), nicht gesetzte Werte ergeben "".<br>
+ * <br>
+ * Die Methoden werden entpsrechend der im Element {@code <mode>} festgelegten
+ * Bezeichung aufgerufen, wobei dem angegebenen Namen ein "m" vorangetstellt
+ * wird.<br>
+ * Beispiel: {@code "<mode>GET</mode>"} --> Methodenaufruf: "mGET" <br>
+ * <br>
+ * Beim Laden wird der Ablaufplan einmalig in Step-Objekte übersetzt (siehe
+ * RobotPlan und StepRegistry), die Methoden dieser Klasse delegieren an diese.
+ * Eigene Schritttypen werden über eine StepFactory ergänzt.<br>
+ * 
+ * @see Robot
+ * @see StepRegistry
+ * @author Oliver Niedtner
+ * @version 0.9.1
+ */
+public class HTMLRobots {
+	
+	//Konfigurations-Funktion
+	/**Setzt bzw. �ndert die Konfigurationseinstellungen des Client.<br>
+	 * <br>
+	 * Aufbau:
+	 * {@code <mode> } - CONFIG<br> 
+	 * {@code <param> } - [ein zu setzender Parameter; XML-Bereich kann auch mehrfach vorkommen, entsprechend je Parameter]<br> 
+	 * {@code ��<name> } - [Konfigurations- / Parameterbezeichnung]<br>
+	 * {@code ��<value> } - [Konfigurations- / Parameterwert]: true / false (Ausnahme: LogLevel s.u.)<br> 
+	 * {@code </param> }<br>
+	 * Alle nicht unten aufgef�hrten Konfigurationseinstellungen werden als Parameter f�r die Abarbeitung genutzt und entsprechend gespeichert.<br>
+	 * Zugriff in der XML-Datei via "param:[Parameterbezeichnung] m�glich.<br>  
+	 * <br>
+	 * <br>
+	 * Konfigurations�bersicht / Standardeinstellungen:<br>
+	 * <ul>
+	 * <li>AutoRedirect: true [true | false]</li>
+	 * <li>AutoRefresh: true [true | false]</li>
+	 * <li>SendReferer: true [true | false]</li>
+	 * <li>AcceptGzip: true [true | false]</li>
+	 * <li>AcceptCookies: true [true | false]</li>
+ 	 * <li>ExecJavaScript: true [true | false]</li>
+ 	 * <li>ScriptCacheSize: 0 [übersetzte Skripte, die JVM-weit wiederverwendet werden, 0 = aus; ab 1 wird der Cache installiert; der zuletzt gesetzte Wert gilt für alle Robots]</li>
+ 	 * <li>ContinueIfError: true [true | false]</li>
+ 	 * <li>LazyHTML: true [true | false, HTML-Seiten erst parsen, wenn ein Schritt Links/Formulare benötigt]</li>
+ 	 * <li>MaxRedirects: 20 [Weiterleitungen und Refreshs je Schritt]</li>
+ 	 * <li>StepTimeout: 0 [Zeitlimit je Schritt in ms, 0 ohne Begrenzung]</li>
+ 	 * <li>PlanTimeout: 0 [Zeitlimit des Ablaufplans in ms, 0 ohne Begrenzung]</li>
+ 	 * <li>Hedge: off [off | p95 ..., GET nach diesem Perzentil der Antwortzeiten erneut senden]</li>
+ 	 * <li>HedgeMinDelay: 10 [kürzeste Wartezeit vor dem zweiten GET in ms]</li>
+ 	 * <li>UserAgent: httpunit/1.5 [String]</li>
+  	 * <li>LogLevel: WARN [ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF]</li>
+  	 * <li>MetricsFile: - [Dateiname für Metriken, *.json als JSON, sonst Prometheus-Textformat]</li>
+  	 * <li>SaveQueue: 8 [Dateien, die SAVE im Hintergrund schreibt, bevor der Schritt wartet; 0 = sofort]</li>
+  	 * <li>SaveSync: none [none | data | all, fsync vor dem Umbenennen]</li>
+  	 * <li>SaveThreads: 2 [Schreib-Threads für SAVE, JVM-weit]</li>
+  	 * <li>ResultStore: - [Verzeichnis, SAVE legt jeden Inhalt einmal unter seinem SHA-256 ab]</li>
+  	 * <li>ResultStoreCompression: none [none | gzip | deflate]</li>
+  	 * <li>ResultStoreRun: - [Lauf im Index des Ergebnisspeichers]</li>
+  	 * <li>EventLog: - [Dateiname, Anfragen, Antworten, Cookies, Formulare und Schritte als JSON-Zeilen]</li>
+  	 * <li>EventLogBodySample: 100 [Inhalt jeder n-ten Antwort protokollieren, 0 nie]</li>
+  	 * <li>EventLogBodyBytes: 2048 [protokollierte Bytes einer Antwort]</li>
+	 * </ul>
+	 * 
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mCONFIG (Robot robot, Element mStep) throws Exception {
+		return new ConfigStep(mStep).execute(robot);
+	} // mCONFIG
+
+	
+	
+	// HTML-Funktionen
+	/**
+	 * Ruft den Inhalt via http ab.<br>
+	 * <br>
+	 * Verwendete HTML-Parameter:<br> 
+	 * {@code <mode> } - GET<br> 
+	 * {@code <url> } - [URL des Auffrufs]<br>
+	 * <br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mGET(Robot robot, Element mStep) throws Exception {
+		return new GetStep(mStep).execute(robot);
+	} // mGET
+
+	
+	
+	/**
+	 * Ruft den Inhalt eines Links via http ab und simuliert somit ein Klick auf
+	 * diesen. <br>
+	 * Der Link wird in der letzten �bermittelten http-Antwort gesucht.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br> 
+	 * {@code <mode> } - GET_Link<br> 
+	 * {@code <name> } - [Linkbezeichnung]<br>
+	 * <br>
+	 * Suchreihenfolge:
+	 * <ul>
+	 * <li>Linktext</li>
+	 * <li>Tag: name</li>
+	 * <li>Tag: id</li>
+	 * <li>Linkbild, Tag: alt</li>
+	 * </ul>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mGET_Link(Robot robot, Element mStep) throws Exception {
+		return new GetLinkStep(mStep).execute(robot);
+	} // mGET_Link
+
+	/**
+	 * Find all links whose urls contains the string <code>name</code>. Stores each url as new line
+	 * in robot.lastTestResult.
+	 * @param robot
+	 * @param mStep
+	 * @return
+	 * @throws Exception
+	 */
+	public Boolean mEXTRACT_Links(Robot robot, Element mStep) throws Exception {
+		return new ExtractLinksStep(mStep).execute(robot);
+	} // mEXTRACT_Links
+
+
+	/**
+	 * Sucht Werte in einer Antwort, ohne einen DOM aufzubauen. Die Daten werden
+	 * blockweise dekodiert und durchsucht, der Speicherbedarf hängt nicht von
+	 * der Größe der Seite ab.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br> 
+	 * {@code <mode> } - EXTRACT<br> 
+	 * {@code <name> } - Name der gefundenen Werte<br>
+	 * {@code <pattern> } - regulärer Ausdruck; ausgegeben wird Gruppe 1, ohne Gruppen der ganze Treffer<br>
+	 * {@code <select> } - alternativ CSS-Selektor, nur einfache Selektoren wie {@code a[href*=id=]},
+	 * {@code input#sesskey}, {@code td.name} (auch mehrere durch Komma getrennt)<br>
+	 * {@code <attr> } - zu {@code <select>}: ausgegebenes Attribut, ohne Angabe der Text des Elements<br>
+	 * {@code <max> } - höchstens so viele Werte, ohne Angabe alle<br>
+	 * {@code <path> } - Werte zeilenweise in die Datei [name].txt in diesem Verzeichnis schreiben,
+	 * leer für Unterverzeichnis "files"; ohne Angabe als Pending-Daten<br>
+	 * {@code <stream> } - true: nicht die letzte, sondern die Antwort des nächsten Schrittes wird
+	 * beim Empfang durchsucht und nicht im Speicher gehalten (für sehr große Seiten; konstanter
+	 * Speicherbedarf nur mit Transport pooled, httpunit selbst liest jede Antwort vollständig)<br>
+	 * <br>
+	 * Gefundene Werte werden als Abarbeitungsparameter gespeichert:<br>
+	 * - Typ: extract, Name: {@code <name>}.count - Anzahl<br>
+	 * - Typ: extract, Name: {@code <name>} - erster Wert, {@code <name>}.1 bis {@code <name>}.n - alle Werte<br>
+	 * - mit {@code <path>}: Typ: save, Name: {@code <name>} - Dateiname<br>
+	 * - siehe Robot.getPending<br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mEXTRACT(Robot robot, Element mStep) throws Exception {
+		return new ExtractStep(mStep).execute(robot);
+	} // mEXTRACT
+
+
+	/**
+	 * Folgt ab der letzten Seite allen passenden Links, Ebene für Ebene
+	 * (Breitensuche). Die Seiten werden parallel mit den Cookies und Headern
+	 * der Sitzung geholt; neue Cookies gelten danach für den Robot. Die Links
+	 * werden ohne DOM und ohne JavaScript aus dem HTML gelesen, die letzte
+	 * Seite des Robots bleibt unverändert. Cache und Cassette werden nicht
+	 * verwendet.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br> 
+	 * {@code <mode> } - CRAWL<br> 
+	 * {@code <pattern> } - regulärer Ausdruck, der in der absoluten Url eines Links oder
+	 * Weiterleitungsziels vorkommen muss; ohne Angabe alle Links auf den Host der letzten Seite<br>
+	 * {@code <depth> } - Tiefe, 1 (Standard) nur die Links der letzten Seite<br>
+	 * {@code <maxPages> } - höchstens so viele Anfragen, Weiterleitungen eingeschlossen (Standard 100)<br>
+	 * {@code <threads> } - gleichzeitige Anfragen (Standard 4)<br>
+	 * {@code <perHost> } - gleichzeitige Anfragen je Host (Standard 2)<br>
+	 * {@code <name> } - Name für Abarbeitungsparameter und Dateien (Standard crawl)<br>
+	 * {@code <path> } - Seiten als [name]-000001, [name]-000002 ... und den Index [name].txt
+	 * (Url, Status, Datei je Zeile, "-" für Weiterleitungen und Fehler) in diesem Verzeichnis
+	 * speichern, leer für Unterverzeichnis "files"<br>
+	 * <br>
+	 * Bereits gesehene Urls werden in einem Bloom-Filter gemerkt (die letzten
+	 * 10000 exakt), eine neue Url wird mit Wahrscheinlichkeit 0,1% für bekannt
+	 * gehalten und übersprungen.<br>
+	 * <br>
+	 * Ergebnisse werden als Abarbeitungsparameter gespeichert:<br>
+	 * - Typ: crawl, Name: {@code <name>}.count - Anzahl Anfragen<br>
+	 * - Typ: crawl, Name: {@code <name>}.failed - davon fehlgeschlagen (Fehler oder Status ab 400)<br>
+	 * - mit {@code <path>}: Typ: save, Name: {@code <name>} - Dateiname des Index<br>
+	 * - siehe Robot.getPending<br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mCRAWL(Robot robot, Element mStep) throws Exception {
+		return new CrawlStep(mStep).execute(robot);
+	} // mCRAWL
+
+
+	/**
+	 * Führt Schritte gleichzeitig in derselben Sitzung aus (fork/join),
+	 * z.B. mehrere unabhängige Downloads nach dem Login.<br>
+	 * Jeder Zweig läuft in einer Kopie des Robots mit dessen Optionen,
+	 * Cookies, Authentifizierung und Abarbeitungsparametern. Nach dem Ende
+	 * aller Zweige werden deren neue Cookies und Abarbeitungsparameter (z.B.
+	 * save, extract) in der Reihenfolge der Zweige übernommen; die letzte
+	 * Seite des Robots bleibt unverändert. Mit StepTimeout bzw. PlanTimeout
+	 * wird höchstens bis zur Frist des Schrittes gewartet, danach werden
+	 * offene Zweige abgebrochen und gelten als fehlgeschlagen, ohne dass
+	 * ihre Cookies und Abarbeitungsparameter übernommen werden.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br>
+	 * {@code <mode> } - PARALLEL<br>
+	 * {@code <step> } - ein Schritt als eigener Zweig, beliebig oft<br>
+	 * {@code <branch> } - mehrere {@code <step>} als ein Zweig, nacheinander ausgeführt<br>
+	 * {@code <threads> } - gleichzeitige Zweige (Standard 4)<br>
+	 * {@code <name> } - Name für Abarbeitungsparameter (Standard parallel)<br>
+	 * <br>
+	 * Ergebnisse werden als Abarbeitungsparameter gespeichert:<br>
+	 * - Typ: parallel, Name: {@code <name>}.1, .2 ... - ok oder failed je Zweig<br>
+	 * - Typ: parallel, Name: {@code <name>}.1.status ... - letzter Statuscode des Zweiges<br>
+	 * - siehe Robot.getPending<br>
+	 * <br>
+	 * Erfolgreich, wenn alle Schritte aller Zweige erfolgreich waren.
+	 *
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 *
+	 */
+	public Boolean mPARALLEL(Robot robot, Element mStep) throws Exception {
+		return new ParallelStep(mStep).execute(robot);
+	} // mPARALLEL
+
+
+	/**
+	 * Speichert den Sitzungszustand nach dem Login verschlüsselt in einer
+	 * Datei: Cookies, http-Authentifizierung, Abarbeitungsparameter und die
+	 * letzte Seite. Ein späterer Lauf desselben Ablaufplans setzt die Sitzung
+	 * fort, solange sie gültig ist, und überspringt alle Schritte bis
+	 * einschließlich SESSION_SAVE; ist sie abgelaufen, folgt das vollständige
+	 * Login (siehe Robot.restoreCheckpoint). Verschlüsselt wird mit
+	 * SessionKey bzw. der Umgebungsvariable HTTPROBOT_SESSION_KEY, ohne
+	 * Schlüssel wird nichts gespeichert.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br> 
+	 * {@code <mode> } - SESSION_SAVE<br> 
+	 * {@code <file> } - Sitzungsdatei<br>
+	 * {@code <check> } - Adresse zur Prüfung der fortgesetzten Sitzung, ohne Angabe die gespeicherte Seite<br>
+	 * {@code <expect> } - regulärer Ausdruck, den die Prüfseite enthalten muss; ohne Angabe gilt
+	 * die Sitzung als gültig bei Status unter 400 ohne Weiterleitung auf eine andere Seite<br>
+	 * Ohne {@code <check> } und {@code <expect> } wird die Sitzung nur gespeichert, nie
+	 * fortgesetzt: die gespeicherte Seite (oft das Login-Formular) antwortet auch ohne
+	 * gültige Sitzung mit 200.<br>
+	 * {@code <maxAge> } - höchstes Alter der Sitzung in Sekunden (Standard 3600, 0 unbegrenzt)<br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mSESSION_SAVE(Robot robot, Element mStep) throws Exception {
+		return new SessionSaveStep(mStep).execute(robot);
+	} // mSESSION_SAVE
+
+	
+	/**
+	 * Speichert den letzten http-Response als Datei.<br>
+	 * <br>
+	 * Verwendete HTML-Parameter:<br> 
+	 * {@code <mode> } - SAVE<br> 
+	 * {@code <path> } - Speicherverzeichnis, wenn leer dann wird Unterverzeichnis "files" verwendet<br>
+	 * {@code <saveID> } - ID der Datei (zur Identifizierung des Abarbeitungsparamters)<br>
+	 * {@code <stream> } - true: nicht die letzte, sondern die Antwort des nächsten Schrittes wird
+	 * beim Empfang direkt in die Datei geschrieben und nicht im Speicher gehalten (für große Downloads)<br>
+	 * <br>
+	 * Die Datei wird im Hintergrund geschrieben (SaveQueue, SaveSync, SaveThreads), der nächste
+	 * Schritt läuft währenddessen weiter. Sie erscheint erst vollständig unter ihrem Namen
+	 * (temporäre Datei, dann Umbenennen), spätestens nach dem Ablaufplan.<br>
+	 * <br>
+	 * Mit dem Parameter ResultStore wird jeder Inhalt stattdessen einmal unter seinem Hash im
+	 * Ergebnisspeicher abgelegt ({@code <path> } wird ignoriert), der Index ordnet Lauf, Schritt
+	 * und saveID dem Inhalt zu (siehe ResultStore).<br>
+	 * <br>
+	 * Gespeicherte Daten werden mit Dateinamen als Abarbeitungsparameter gespeichert:<br>
+	 * - Typ: save<br>
+	 * - Name: {@code <saveID> }<br>
+	 * - Value: Dateiname<br>
+	 * - siehe Robot.getPending<br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mSAVE(Robot robot, Element mStep) throws Exception {
+		return new SaveStep(mStep).execute(robot);
+	} // mSAVE
+
+	
+	
+	
+	
+	/**
+	 * Belegt in einem Formular die Werte und sendet es an den Webserver.
+	 * Simuliert somit ein Ausf�llen und Abschicken des Formulares.<br>
+	 * Das Formular wird in der letzten �bermittelten
+	 * http-Antwort gesucht, es wird das entsprechende vorgegebene �bermittlungs-Verfahren (POST/GET) verwendet.<br>
+	 * <br>
+	 * Verwendete XML-Parameter:<br> 
+	 * {@code <mode> } - POST<br> 
+	 * {@code <name> } - [Formularbezeichnung]<br> 
+	 * {@code <id> } - [Formularidentifikationsnummer]<br> 
+	 * {@code <button> } - [Buttonname der zum �bermitteln des Formulares benutzt wird]<br> 
+	 * {@code <param> } - [ein mit Daten zu belegender Parameter; XML-Bereich kann auch mehrfach vorkommen, entsprechend je Parameter]<br> 
+	 * {@code ��<type> } - [Parameter-Typ entsprechend HTML-Syntax]<br> 
+	 * {@code ��<name> } - [Parameterbezeichnung]<br>
+	 * {@code ��<value> } - [Parameterwert]<br> 
+	 * {@code ��<state> } - [Parameterstatus (nur bei Typ 'checkbox' - checked = true, unchecked = false]<br> 
+	 * {@code </param> }<br>
+	 * <br>
+	 * Suchreihenfolge Formular:
+	 * <ul>
+	 * <li>Tag: name (XML-Paramter {@code <name>})</li>
+	 * <li>Tag: id (XML-Paramter {@code <name>})</li>
+	 * <li>Identifikationsnummer (XML-Paramter {@code <id>})</li>
+	 * <li>im Formular vorhander Button (XML-Paramter {@code <button>})</li>
+	 * </ul>
+	 * Suchreihenfolge Button:
+	 * <ul>
+	 * <li>Tag: name (XML-Paramter {@code <name>})</li>
+	 * <li>Tag: id (XML-Paramter {@code <name>})</li>
+	 * <li>Tag: value (XML-Paramter {@code <name>})</li>
+	 * <li>Standard-Request</li>
+	 * </ul>
+	 * <br>
+	 * Folgende Parameter-Typen werden unterst�tzt:<br>
+	 *  - checkbox<br>
+	 *  - multiple<br>
+	 *  - alle weiteren, die eine einfach Zuordnung zw. Parameterbezeichnung unf Parameterwert �bertragen<br>
+	 *  &nbsp;&nbsp; z.B.: hidden, input, text, select (vgl. HTML-Syntax)<br>
+	 *  <br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mPOST(Robot robot, Element mStep) throws Exception {
+		return new PostStep(mStep).execute(robot);
+	} // mPOST
+
+	
+	
+	/**
+	 * Legt eine http-Authentifizierung fest.<br>
+	 * <br>
+	 * Verwendete HTML-Parameter:<br> 
+	 * {@code <mode> } - AUTH<br> 
+	 * {@code <realm> } - [Bereich der Authentifizierung]<br> 
+	 * {@code <username>} - [Benutzername]<br>
+	 * {@code <password>} - [Passwort]<br>
+	 * <br>
+	 * 
+	 * @param robot
+	 *            Objektinstanz des eigentlichen Robot
+	 * @param mStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * 
+	 */
+	public Boolean mAUTH(Robot robot, Element mStep) throws Exception {
+		return new AuthStep(mStep).execute(robot);
+	} // mAUTH
+
+
 } // class HTMLRobots
\ No newline at end of file
@@ -0,0 +1,196 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedging of GET requests (parameter Hedge).<br>
+ * If a GET request has no response after the given percentile of the
+ * response times seen so far for its host, the same request is sent a
+ * second time and whichever response arrives first is used; the other one
+ * is discarded. Response times (until the headers arrive) are recorded per
+ * host in a histogram shared by all robots of the JVM. Until
+ * {@link #MIN_SAMPLES} responses of a host are known, its requests are not
+ * hedged, and the delay is never shorter than the minimum delay, so a fast
+ * backend is not hit twice for every request. Only GET requests are
+ * hedged; they are idempotent and may safely be sent twice.
+ */
+public class HedgePolicy {
+
+	/** Responses of a host needed before its requests are hedged */
+	public static final int MIN_SAMPLES = 20;
+
+	/** Default minimum delay before a request is hedged */
+	public static final long DEFAULT_MIN_DELAY_MILLIS = 10;
+
+	/** Bucket bounds in ms, about 20% apart so the percentile is close to the measured times */
+	private static final long[] BOUNDS = bounds(1, 120000, 1.2);
+
+	private static final ConcurrentMap<String, Histogram> LATENCIES = new ConcurrentHashMap<String, Histogram>();
+	private static final AtomicLong hedged = new AtomicLong();
+	private static final AtomicLong hedgeWins = new AtomicLong();
+
+	private final double quantile;
+	private final long minDelayMillis;
+
+
+	/**
+	 * @param quantile 0..1, e.g. 0.95
+	 * @param minDelayMillis lower bound of the delay
+	 */
+	public HedgePolicy(final double quantile, final long minDelayMillis) {
+		if ((quantile <= 0) || (quantile >= 1))
+			throw new IllegalArgumentException("Invalid hedge percentile, expected 0 < quantile < 1, but was: " + quantile);
+		if (minDelayMillis < 0)
+			throw new IllegalArgumentException("Invalid hedge delay, expected at least 0, but was: " + minDelayMillis);
+		this.quantile = quantile;
+		this.minDelayMillis = minDelayMillis;
+	}
+
+
+	/**
+	 * @param value off | p[percentile], e.g. p95 or p99.5
+	 * @param minDelayMillis lower bound of the delay
+	 * @return policy, null for off
+	 */
+	public static HedgePolicy parse(final String value, final long minDelayMillis) {
+		if (value.equalsIgnoreCase("off") || value.equals("") || value.equals("0")) {
+			return null;
+		}
+		final String percentile = (value.startsWith("p") || value.startsWith("P")) ? value.substring(1) : value;
+		try {
+			return new HedgePolicy(Double.parseDouble(percentile) / 100, minDelayMillis);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid hedge, expected off or a percentile like p95, but was: " + value);
+		}
+	} // parse
+
+
+	public double getQuantile() {
+		return this.quantile;
+	}
+
+
+	public long getMinDelayMillis() {
+		return this.minDelayMillis;
+	}
+
+
+	/**
+	 * @param url request
+	 * @return delay before the request is sent again, -1 if it is not hedged
+	 */
+	public long getDelayMillis(final URL url) {
+		final Histogram latencies = HedgePolicy.LATENCIES.get(key(url));
+		if ((latencies == null) || (latencies.getCount() < HedgePolicy.MIN_SAMPLES)) {
+			return -1;
+		}
+		return Math.max(this.minDelayMillis, latencies.getPercentile(this.quantile));
+	} // getDelayMillis
+
+
+	/**
+	 * Records the response time of a request to a host.
+	 *
+	 * @param millis time until the response headers arrived
+	 */
+	static void record(final URL url, final long millis) {
+		final String key = key(url);
+		Histogram latencies = HedgePolicy.LATENCIES.get(key);
+		if (latencies == null) {
+			final Histogram created = new Histogram(HedgePolicy.BOUNDS);
+			latencies = HedgePolicy.LATENCIES.putIfAbsent(key, created);
+			if (latencies == null) {
+				latencies = created;
+			}
+		} // if
+		latencies.record(millis);
+	} // record
+
+
+	/**
+	 * Counts a hedged request.
+	 *
+	 * @param won the second request answered first
+	 */
+	static void countHedge(final boolean won) {
+		HedgePolicy.hedged.incrementAndGet();
+		if (won) {
+			HedgePolicy.hedgeWins.incrementAndGet();
+		}
+	} // countHedge
+
+
+	/**
+	 * @return requests sent a second time in this JVM
+	 */
+	public static long getHedged() {
+		return HedgePolicy.hedged.get();
+	}
+
+
+	/**
+	 * @return hedged requests where the second request answered first
+	 */
+	public static long getHedgeWins() {
+		return HedgePolicy.hedgeWins.get();
+	}
+
+
+	private static String key(final URL url) {
+		return url.getProtocol() + "://" + url.getHost() + ':' + ((url.getPort() != -1) ? url.getPort() : url.getDefaultPort());
+	} // key
+
+
+	private static long[] bounds(final long first, final long last, final double factor) {
+		final List<Long> bounds = new ArrayList<Long>();
+		long previous = 0;
+		for (double b = first; b < last; b *= factor) {
+			final long bound = Math.round(b);
+			if (bound > previous) {
+				bounds.add(Long.valueOf(bound));
+				previous = bound;
+			}
+		} // for
+		if (last > previous) {
+			bounds.add(Long.valueOf(last));
+		}
+		final long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i).longValue();
+		}
+		return result;
+	} // bounds
+
+} // class HedgePolicy
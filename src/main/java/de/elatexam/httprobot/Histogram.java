@@ -0,0 +1,141 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram with fixed bucket bounds.<br>
+ * Recording is lock-free and constant in time and memory, so it can stay
+ * switched on for long runs. Percentiles are estimated from the buckets and
+ * are therefore as exact as the bucket bounds.
+ */
+public class Histogram {
+
+	/** Bucket bounds for latencies in milliseconds */
+	public static final long[] LATENCY_MILLIS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000 };
+
+	private final long[] bounds;
+	/** one counter per bound plus overflow */
+	private final AtomicLongArray buckets;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+
+	/**
+	 * @param bounds
+	 *            ascending, inclusive upper bounds of the buckets
+	 */
+	public Histogram(final long[] bounds) {
+		for (int i = 1; i < bounds.length; i++) {
+			if (bounds[i] <= bounds[i - 1])
+				throw new IllegalArgumentException("Invalid bucket bounds, expected ascending values, but was: " + bounds[i - 1] + ", " + bounds[i]);
+		} // for
+		this.bounds = bounds.clone();
+		this.buckets = new AtomicLongArray(bounds.length + 1);
+	}
+
+
+	public void record(final long value) {
+		int i = 0;
+		while ((i < this.bounds.length) && (value > this.bounds[i])) {
+			i++;
+		} // while
+		this.buckets.incrementAndGet(i);
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long m = this.max.get();
+		while ((value > m) && !this.max.compareAndSet(m, value)) {
+			m = this.max.get();
+		} // while
+	} // record
+
+
+	public long getCount() {
+		return this.count.get();
+	}
+
+	public long getSum() {
+		return this.sum.get();
+	}
+
+	/**
+	 * @return largest recorded value, 0 if empty
+	 */
+	public long getMax() {
+		return this.getCount() == 0 ? 0 : this.max.get();
+	}
+
+	public double getMean() {
+		final long c = this.getCount();
+		return c == 0 ? 0 : (double) this.getSum() / c;
+	}
+
+	/**
+	 * @return copy of the bucket bounds
+	 */
+	public long[] getBounds() {
+		return this.bounds.clone();
+	}
+
+	/**
+	 * @param index
+	 *            bucket index, getBounds().length for the overflow bucket
+	 * @return number of values in this bucket (not cumulative)
+	 */
+	public long getBucketCount(final int index) {
+		return this.buckets.get(index);
+	}
+
+
+	/**
+	 * Estimates a percentile as the upper bound of the bucket containing it
+	 * (limited by the largest recorded value).
+	 *
+	 * @param quantile
+	 *            0..1, e.g. 0.99
+	 * @return estimated value, 0 if empty
+	 */
+	public long getPercentile(final double quantile) {
+		final long c = this.getCount();
+		if (c == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(quantile * c);
+		long seen = 0;
+		for (int i = 0; i < this.bounds.length; i++) {
+			seen += this.buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(this.bounds[i], this.getMax());
+			}
+		} // for
+		return this.getMax();
+	} // getPercentile
+
+} // class Histogram
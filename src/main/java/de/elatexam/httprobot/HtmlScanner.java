@@ -0,0 +1,133 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads single values from raw HTML without building a DOM (see
+ * Robot.execHTTP, LazyHTML). Only meta tags in the head of the page are
+ * looked at (see {@link #head(byte[])}); the page is scanned as ISO-8859-1,
+ * which keeps the ASCII markup of all common encodings intact.
+ */
+final class HtmlScanner {
+
+	/** Bytes of a page searched for its head */
+	static final int HEAD_LIMIT = 16 * 1024;
+
+	private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+	/** Comments and scripts are skipped, the head ends with &lt;/head&gt; or &lt;body&gt; (group 2) */
+	private static final Pattern SKIPPED = Pattern.compile("<!--.*?(?:-->|\\z)|<(script|style)\\b.*?(?:</\\1\\s*>|\\z)|(</head\\s*>|<body\\b)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final Pattern META = Pattern.compile("<meta\\s[^>]*>", Pattern.CASE_INSENSITIVE);
+	private static final Pattern HTTP_EQUIV_REFRESH = Pattern.compile("http-equiv\\s*=\\s*[\"']?refresh[\"'\\s/>]", Pattern.CASE_INSENSITIVE);
+	private static final Pattern CONTENT = Pattern.compile("content\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))", Pattern.CASE_INSENSITIVE);
+	private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+
+	private HtmlScanner() {
+	}
+
+
+	/**
+	 * Markup of the head of a page, without comments, scripts and styles.
+	 *
+	 * @param page first bytes of the page (at most HEAD_LIMIT are used)
+	 * @return head as ISO-8859-1 string, up to &lt;/head&gt; or &lt;body&gt;
+	 */
+	static String head(final byte[] page) {
+		final String html = new String(page, 0, Math.min(page.length, HtmlScanner.HEAD_LIMIT), HtmlScanner.LATIN1);
+		final StringBuilder sb = new StringBuilder(html.length());
+		final Matcher skipped = HtmlScanner.SKIPPED.matcher(html);
+		int pos = 0;
+		while (skipped.find()) {
+			sb.append(html, pos, skipped.start());
+			if (skipped.group(2) != null) {
+				return sb.toString();
+			}
+			sb.append(' ');
+			pos = skipped.end();
+		} // while
+		return sb.append(html, pos, html.length()).toString();
+	} // head
+
+
+	/**
+	 * @param html head of the page (see head)
+	 * @return content of the first meta refresh tag, null if none
+	 */
+	static String findMetaRefresh(final String html) {
+		final Matcher meta = HtmlScanner.META.matcher(html);
+		while (meta.find()) {
+			final String tag = meta.group();
+			if (HtmlScanner.HTTP_EQUIV_REFRESH.matcher(tag).find()) {
+				final Matcher content = HtmlScanner.CONTENT.matcher(tag);
+				if (content.find()) {
+					for (int i = 1; i <= 3; i++) {
+						if (content.group(i) != null) {
+							return content.group(i);
+						}
+					}
+				} // if
+			} // if
+		} // while
+		return null;
+	} // findMetaRefresh
+
+
+	/**
+	 * @param html head of the page (see head)
+	 * @return character set declared by a meta tag (charset or http-equiv content-type), null if none
+	 */
+	static String findMetaCharset(final String html) {
+		final Matcher meta = HtmlScanner.META.matcher(html);
+		while (meta.find()) {
+			final Matcher charset = HtmlScanner.CHARSET.matcher(meta.group());
+			if (charset.find()) {
+				return charset.group(1);
+			}
+		} // while
+		return null;
+	} // findMetaCharset
+
+
+	/**
+	 * @param contentType value of the Content-Type header
+	 * @return character set of the header, null if none
+	 */
+	static String getHeaderCharset(final String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		final Matcher charset = HtmlScanner.CHARSET.matcher(contentType);
+		return charset.find() ? charset.group(1) : null;
+	} // getHeaderCharset
+
+} // class HtmlScanner
@@ -0,0 +1,338 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent validation cache for GET requests (see RobotConversation).<br>
+ * Responses carrying an ETag or Last-Modified header are kept with their
+ * decoded body, unless they are private to a user (see isCacheable). The
+ * next request for the same url (and the same values of the request
+ * headers named in Vary) is sent conditionally; a 304 answer is served
+ * from the cache. Entries are evicted least recently used once the
+ * cached bodies exceed the size limit. The cache is written to a gzip
+ * compressed file after Robot.run and shared per file within the JVM.
+ */
+public class HttpCache {
+
+	/** Default size limit of the cached bodies in bytes */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	private static final int MAGIC = 0x48524831; // "HRH1"
+
+	private static final Map<String, HttpCache> OPEN = new HashMap<String, HttpCache>();
+
+	private final File file;
+	private long maxBytes;
+	private long size = 0;
+	private boolean modified = false;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+
+	private HttpCache(final File file, final long maxBytes) {
+		this.file = file;
+		this.maxBytes = maxBytes;
+	}
+
+
+	/**
+	 * Returns the cache stored in a file, loading it on first use.
+	 *
+	 * @param fileName cache file, created on first save
+	 * @param maxBytes size limit of the cached bodies
+	 * @return shared cache
+	 * @throws IOException existing file unreadable
+	 */
+	public static synchronized HttpCache open(final String fileName, final long maxBytes) throws IOException {
+		final File file = new File(fileName).getAbsoluteFile();
+		HttpCache cache = HttpCache.OPEN.get(file.getPath());
+		if (cache == null) {
+			cache = new HttpCache(file, maxBytes);
+			if (file.exists()) {
+				cache.load();
+			}
+			HttpCache.OPEN.put(file.getPath(), cache);
+		} else {
+			cache.setMaxBytes(maxBytes);
+		} // if else
+		return cache;
+	} // open
+
+
+	public File getFile() {
+		return this.file;
+	}
+
+
+	public synchronized long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+
+	/**
+	 * Changes the size limit, evicting entries if necessary.
+	 */
+	public synchronized void setMaxBytes(final long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.evict();
+	} // setMaxBytes
+
+
+	/**
+	 * @return size of the cached bodies in bytes
+	 */
+	public synchronized long size() {
+		return this.size;
+	}
+
+
+	/**
+	 * @return largest body that is cached; bigger responses (exports) are
+	 *         passed through so they can still be streamed
+	 */
+	public synchronized long getMaxEntryBytes() {
+		return this.maxBytes / 8;
+	}
+
+
+	/**
+	 * Looks up the cached response of a url.
+	 *
+	 * @param url requested url
+	 * @param requestHeaders headers of the request, names in lower case
+	 * @return cached response, null if none or the varying headers differ
+	 */
+	public synchronized Cassette.Exchange get(final String url, final Map<String, String> requestHeaders) {
+		final Entry entry = this.entries.get(url);
+		if ((entry == null) || !entry.matches(requestHeaders)) {
+			return null;
+		}
+		return entry.exchange;
+	} // get
+
+
+	/**
+	 * Caches a response. Set-Cookie headers are not cached.
+	 *
+	 * @param exchange response with decoded body
+	 * @param requestHeaders headers of the request, names in lower case
+	 * @return response cached
+	 */
+	public synchronized boolean put(final Cassette.Exchange exchange, final Map<String, String> requestHeaders) {
+		final String vary = header(exchange, "Vary");
+		if (((vary != null) && vary.trim().equals("*")) || (exchange.body.length > this.getMaxEntryBytes())) {
+			return false;
+		}
+		final String[] varyNames = (vary == null) ? new String[0] : vary.trim().toLowerCase().split("\\s*,\\s*");
+		final String[] varyValues = new String[varyNames.length];
+		for (int i = 0; i < varyNames.length; i++) {
+			varyValues[i] = requestHeaders.get(varyNames[i]);
+		}
+		final Entry old = this.entries.put(exchange.url, new Entry(withHeaders(exchange, null), varyNames, varyValues));
+		if (old != null) {
+			this.size -= old.exchange.body.length;
+		}
+		this.size += exchange.body.length;
+		this.modified = true;
+		this.evict();
+		return true;
+	} // put
+
+
+	private void evict() {
+		final Iterator<Entry> it = this.entries.values().iterator();
+		while ((this.size > this.maxBytes) && it.hasNext()) {
+			this.size -= it.next().exchange.body.length;
+			it.remove();
+			this.modified = true;
+		} // while
+	} // evict
+
+
+	/**
+	 * The cache is shared by all robots using the file, so responses meant
+	 * for one user are not kept.
+	 *
+	 * @param credentials the request carried a Cookie or Authorization header
+	 * @return true if a response may be cached: status 200, a validator, neither
+	 *         "no-store" nor "private", and "public" if the request carried credentials
+	 */
+	static boolean isCacheable(final int status, final String etag, final String lastModified, final String cacheControl, final boolean credentials) {
+		final String directives = (cacheControl == null) ? "" : cacheControl.toLowerCase();
+		return (status == 200)
+			&& ((etag != null) || (lastModified != null))
+			&& (directives.indexOf("no-store") == -1)
+			&& (directives.indexOf("private") == -1)
+			&& (!credentials || (directives.indexOf("public") != -1));
+	} // isCacheable
+
+
+	/**
+	 * @return value of a header of a cached response, null if not present
+	 */
+	static String header(final Cassette.Exchange exchange, final String name) {
+		for (int i = 0; i < exchange.headerNames.length; i++) {
+			if (exchange.headerNames[i].equalsIgnoreCase(name)) {
+				return exchange.headerValues[i];
+			}
+		} // for
+		return null;
+	} // header
+
+
+	/**
+	 * Copy of a cached response with the Set-Cookie headers replaced.
+	 *
+	 * @param exchange cached response
+	 * @param setCookies Set-Cookie headers to add (of a 304 answer), null for none
+	 * @return response to serve
+	 */
+	static Cassette.Exchange withHeaders(final Cassette.Exchange exchange, final String[] setCookies) {
+		final List<String> names = new ArrayList<String>(exchange.headerNames.length);
+		final List<String> values = new ArrayList<String>(exchange.headerNames.length);
+		for (int i = 0; i < exchange.headerNames.length; i++) {
+			if (!exchange.headerNames[i].equalsIgnoreCase("Set-Cookie")) {
+				names.add(exchange.headerNames[i]);
+				values.add(exchange.headerValues[i]);
+			}
+		} // for
+		if (setCookies != null) {
+			for (final String cookie : setCookies) {
+				names.add("Set-Cookie");
+				values.add(cookie);
+			}
+		} // if
+		return new Cassette.Exchange(exchange.method, exchange.url, exchange.bodyDigest, exchange.status, exchange.message,
+				exchange.elapsedMillis, names.toArray(new String[names.size()]), values.toArray(new String[values.size()]), exchange.body);
+	} // withHeaders
+
+
+	/**
+	 * Writes the cache if it changed since it was loaded or last saved.
+	 */
+	public synchronized void save() throws IOException {
+		if (!this.modified) {
+			return;
+		}
+		final File tmp = new File(this.file.getPath() + ".tmp");
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+		try {
+			out.writeInt(HttpCache.MAGIC);
+			out.writeInt(this.entries.size());
+			for (final Entry entry : this.entries.values()) {
+				out.writeInt(entry.varyNames.length);
+				for (int i = 0; i < entry.varyNames.length; i++) {
+					Cassette.writeString(out, entry.varyNames[i]);
+					Cassette.writeString(out, entry.varyValues[i]);
+				}
+				entry.exchange.writeTo(out);
+			} // for
+		} finally {
+			out.close();
+		} // try finally
+		if (this.file.exists() && !this.file.delete()) {
+			throw new IOException("Cannot replace cache " + this.file);
+		}
+		if (!tmp.renameTo(this.file)) {
+			throw new IOException("Cannot write cache " + this.file);
+		}
+		this.modified = false;
+	} // save
+
+
+	private void load() throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(this.file))));
+		try {
+			final int magic = in.readInt();
+			if (magic != HttpCache.MAGIC) {
+				throw new IOException("Not a cache file: " + this.file);
+			}
+			final int count = in.readInt();
+			for (int n = 0; n < count; n++) {
+				final int vary = in.readInt();
+				final String[] names = new String[vary];
+				final String[] values = new String[vary];
+				for (int i = 0; i < vary; i++) {
+					names[i] = Cassette.readString(in);
+					values[i] = Cassette.readString(in);
+				} // for
+				final Cassette.Exchange exchange = Cassette.Exchange.readFrom(in);
+				this.entries.put(exchange.url, new Entry(exchange, names, values));
+				this.size += exchange.body.length;
+			} // for
+		} finally {
+			in.close();
+		} // try finally
+		this.evict();
+		this.modified = false;
+	} // load
+
+
+
+	private static final class Entry {
+
+		final Cassette.Exchange exchange;
+		final String[] varyNames;
+		final String[] varyValues;
+
+
+		Entry(final Cassette.Exchange exchange, final String[] varyNames, final String[] varyValues) {
+			this.exchange = exchange;
+			this.varyNames = varyNames;
+			this.varyValues = varyValues;
+		}
+
+
+		boolean matches(final Map<String, String> requestHeaders) {
+			for (int i = 0; i < this.varyNames.length; i++) {
+				final String value = requestHeaders.get(this.varyNames[i]);
+				if ((value == null) ? (this.varyValues[i] != null) : !value.equals(this.varyValues[i])) {
+					return false;
+				}
+			} // for
+			return true;
+		} // matches
+
+	} // class Entry
+
+} // class HttpCache
@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends the http requests of a Robot (see Robot.setTransport).<br>
+ * Without a transport requests are sent by httpunit itself. A transport
+ * only moves bytes: cookies, authentication headers, redirects and the
+ * parsing of the response (links, forms, scripting) stay with httpunit and
+ * the Robot, so plans behave the same with any transport.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Sends a request. The body of the returned response must be read to the
+	 * end or closed so the connection can be reused.
+	 *
+	 * @param method http method
+	 * @param url request url
+	 * @param headers request headers (User-Agent, Cookie, Referer, ...)
+	 * @param body request body, null if none
+	 * @return response, redirects are not followed
+	 * @throws IOException connection failed or timed out
+	 */
+	Response send(String method, URL url, Map<String, String> headers, byte[] body) throws IOException;
+
+
+	/**
+	 * Releases pooled connections.
+	 */
+	void close();
+
+
+
+	/**
+	 * Status, headers and body stream of a response. Repeated headers
+	 * (Set-Cookie) are passed as separate entries.
+	 */
+	public static final class Response {
+
+		private final int status;
+		private final String message;
+		private final String[] headerNames;
+		private final String[] headerValues;
+		private final InputStream body;
+
+
+		public Response(final int status, final String message, final String[] headerNames, final String[] headerValues, final InputStream body) {
+			this.status = status;
+			this.message = message;
+			this.headerNames = headerNames;
+			this.headerValues = headerValues;
+			this.body = body;
+		} // Response
+
+
+		public int getStatus() {
+			return this.status;
+		}
+
+		public String getMessage() {
+			return this.message;
+		}
+
+		public String[] getHeaderNames() {
+			return this.headerNames;
+		}
+
+		public String[] getHeaderValues() {
+			return this.headerValues;
+		}
+
+		public InputStream getBody() {
+			return this.body;
+		}
+
+	} // class Response
+
+} // interface HttpTransport
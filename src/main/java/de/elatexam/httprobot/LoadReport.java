@@ -0,0 +1,145 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and latency of a load run, aggregated per step mode.
+ *
+ * @see LoadRunner
+ */
+public class LoadReport {
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong iterations = new AtomicLong();
+	private volatile long startMillis = 0;
+	private volatile long endMillis = 0;
+
+
+	void start() {
+		this.startMillis = System.currentTimeMillis();
+	}
+
+	void stop() {
+		this.endMillis = System.currentTimeMillis();
+	}
+
+	void iterationFinished() {
+		this.iterations.incrementAndGet();
+	}
+
+
+	/**
+	 * Records one executed step.
+	 *
+	 * @param mode
+	 *            mode of the step
+	 * @param success
+	 *            result of the step
+	 * @param millis
+	 *            wall time of the step
+	 */
+	public void record(final String mode, final boolean success, final long millis) {
+		Entry entry = this.entries.get(mode);
+		if (entry == null) {
+			final Entry created = new Entry();
+			entry = this.entries.putIfAbsent(mode, created);
+			if (entry == null) {
+				entry = created;
+			}
+		} // if
+		entry.latency.record(millis);
+		if (!success) {
+			entry.errors.incrementAndGet();
+		}
+	} // record
+
+
+	public long getStartMillis() {
+		return this.startMillis;
+	}
+
+	/**
+	 * @return duration of the run in milliseconds (up to now while running)
+	 */
+	public long getElapsedMillis() {
+		final long end = (this.endMillis == 0) ? System.currentTimeMillis() : this.endMillis;
+		return Math.max(1, end - this.startMillis);
+	}
+
+	public long getIterations() {
+		return this.iterations.get();
+	}
+
+	/**
+	 * @return latency histograms per mode, sorted by mode
+	 */
+	public Map<String, Histogram> getLatencies() {
+		final Map<String, Histogram> result = new TreeMap<String, Histogram>();
+		for (final Map.Entry<String, Entry> e : this.entries.entrySet()) {
+			result.put(e.getKey(), e.getValue().latency);
+		}
+		return result;
+	}
+
+	public long getErrors(final String mode) {
+		final Entry entry = this.entries.get(mode);
+		return entry == null ? 0 : entry.errors.get();
+	}
+
+
+	/**
+	 * @return report as text table
+	 */
+	public String toString() {
+		final double seconds = this.getElapsedMillis() / 1000.0;
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Dauer: %.1f s, Iterationen: %d (%.2f/s)%n", seconds, this.getIterations(), this.getIterations() / seconds));
+		sb.append(String.format("%-16s %8s %7s %8s %8s %8s %8s %8s %8s%n",
+				"Mode", "Count", "Errors", "Req/s", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+		for (final Map.Entry<String, Histogram> e : this.getLatencies().entrySet()) {
+			final Histogram h = e.getValue();
+			sb.append(String.format("%-16s %8d %7d %8.2f %8.1f %8d %8d %8d %8d%n",
+					e.getKey(), h.getCount(), this.getErrors(e.getKey()), h.getCount() / seconds, h.getMean(),
+					h.getPercentile(0.5), h.getPercentile(0.9), h.getPercentile(0.99), h.getMax()));
+		} // for
+		return sb.toString();
+	} // toString
+
+
+
+	private static final class Entry {
+		final Histogram latency = new Histogram(Histogram.LATENCY_MILLIS);
+		final AtomicLong errors = new AtomicLong();
+	} // class Entry
+
+} // class LoadReport
@@ -0,0 +1,274 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load mode: replays a robotPlan with a number of virtual users.<br>
+ * Every virtual user runs the plan in a loop, each iteration in a fresh
+ * {@link Robot} (i.e. a new session including login). The robots of a user
+ * share one SAVE queue, which is drained, like the metrics, cache and
+ * cassette are written, only after the user's last iteration, outside the
+ * measured loop. Users are started
+ * evenly over the ramp-up time, wait the think time after every step and
+ * stop after the given number of iterations or when the duration is over,
+ * whichever comes first. The result is a {@link LoadReport} per step mode.
+ * <br>
+ * Aufruf: java de.elatexam.httprobot.LoadRunner XMLDateiname Parameter<br>
+ * with the load parameters
+ * <ul>
+ * <li>LoadUsers: 1 [Anzahl virtueller Benutzer]</li>
+ * <li>LoadRampUp: 0 [Sekunden bis alle Benutzer gestartet sind]</li>
+ * <li>LoadThinkTime: 0 [Millisekunden Pause nach jedem Schritt]</li>
+ * <li>LoadDuration: 0 [Sekunden, 0 = unbegrenzt]</li>
+ * <li>LoadIterations: 1 [Durchläufe je Benutzer, 0 = unbegrenzt]</li>
+ * <li>LoadMetricsFile: - [Dateiname für Metriken aller Benutzer, *.json als JSON, sonst Prometheus-Textformat]</li>
+ * </ul>
+ * All other parameters are passed to the robots (see Robot.init).
+ */
+public class LoadRunner {
+
+	private int users = 1;
+	private long rampUpMillis = 0;
+	private long thinkTimeMillis = 0;
+	private long durationMillis = 0;
+	private int iterations = 1;
+	private RobotMetrics metrics = null;
+	private final String[] parameters;
+
+	/** Parameter des LoadRunner, alle anderen gehen an die Robots */
+	private static final List<String> OPTIONS = Arrays.asList("LoadUsers", "LoadRampUp", "LoadThinkTime", "LoadDuration", "LoadIterations", "LoadMetricsFile");
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(LoadRunner.class);
+
+
+	/**
+	 * @param parameters
+	 *            Übergabe Parameter der Robots, Format: NAME:WERT
+	 */
+	public LoadRunner(final String[] parameters) {
+		this.parameters = parameters;
+	}
+
+
+	public void setUsers(final int users) {
+		if (users < 1)
+			throw new IllegalArgumentException("Invalid number of users, expected at least 1, but was: " + users);
+		this.users = users;
+	}
+
+	public void setRampUpMillis(final long rampUpMillis) {
+		this.rampUpMillis = rampUpMillis;
+	}
+
+	public void setThinkTimeMillis(final long thinkTimeMillis) {
+		this.thinkTimeMillis = thinkTimeMillis;
+	}
+
+	/**
+	 * @param durationMillis
+	 *            maximum duration of the run, 0 for unlimited
+	 */
+	public void setDurationMillis(final long durationMillis) {
+		this.durationMillis = durationMillis;
+	}
+
+	/**
+	 * @param iterations
+	 *            iterations per user, 0 for unlimited
+	 */
+	public void setIterations(final int iterations) {
+		this.iterations = iterations;
+	}
+
+
+	/**
+	 * @param metrics
+	 *            metrics shared by all virtual users, null for none
+	 */
+	public void setMetrics(final RobotMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+
+	/**
+	 * Runs the load test and waits for all virtual users.
+	 *
+	 * @param plan
+	 *            compiled plan
+	 * @return report of the run
+	 * @throws InterruptedException
+	 */
+	public LoadReport run(final RobotPlan plan) throws InterruptedException {
+		if ((this.iterations <= 0) && (this.durationMillis <= 0))
+			throw new IllegalStateException("Unbounded load run, set LoadIterations or LoadDuration");
+
+		final LoadReport report = new LoadReport();
+		final ExecutorService executor = Executors.newFixedThreadPool(this.users);
+		report.start();
+		final long deadline = (this.durationMillis > 0) ? report.getStartMillis() + this.durationMillis : 0;
+		final List<VirtualUser> virtualUsers = new ArrayList<VirtualUser>(this.users);
+		for (int i = 0; i < this.users; i++) {
+			final VirtualUser user = new VirtualUser(plan, report, i * this.rampUpMillis / this.users, deadline);
+			virtualUsers.add(user);
+			executor.execute(user);
+		} // for
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			executor.shutdownNow();
+			throw e;
+		} // try catch
+		report.stop();
+		LoadRunner.logger.info("LoadRunner: " + this.users + " Benutzer, " + report.getIterations() + " Iterationen");
+		return report;
+	} // run
+
+
+
+	private final class VirtualUser implements Runnable {
+		private final RobotPlan plan;
+		private final LoadReport report;
+		private final long startDelay;
+		private final long deadline;
+
+		VirtualUser(final RobotPlan plan, final LoadReport report, final long startDelay, final long deadline) {
+			this.plan = plan;
+			this.report = report;
+			this.startDelay = startDelay;
+			this.deadline = deadline;
+		}
+
+		private boolean isOver() {
+			return (this.deadline > 0) && (System.currentTimeMillis() >= this.deadline);
+		}
+
+		public void run() {
+			Robot robot = null;
+			try {
+				Thread.sleep(this.startDelay);
+				for (int it = 0; ((LoadRunner.this.iterations <= 0) || (it < LoadRunner.this.iterations)) && !this.isOver(); it++) {
+					final Robot previous = robot;
+					robot = new Robot(LoadRunner.this.parameters);
+					if (previous != null) {
+						robot.shareSaveWriter(previous);
+					}
+					if (LoadRunner.this.metrics != null) {
+						robot.setMetrics(LoadRunner.this.metrics);
+					}
+					for (final Step step : this.plan.getSteps()) {
+						if (this.isOver()) {
+							return;
+						}
+						final long t0 = System.nanoTime();
+						final boolean success = Boolean.TRUE.equals(robot.callStep(step));
+						this.report.record(step.getMode(), success, (System.nanoTime() - t0) / 1000000L);
+						long delay;
+						while ((delay = robot.getRefreshDelay()) >= 0) {
+							Thread.sleep(delay);
+							final long t1 = System.nanoTime();
+							final boolean refreshed = Boolean.TRUE.equals(robot.followRefresh());
+							this.report.record(RefreshStep.MODE, refreshed, (System.nanoTime() - t1) / 1000000L);
+						} // while Refresh
+						if (LoadRunner.this.thinkTimeMillis > 0) {
+							Thread.sleep(LoadRunner.this.thinkTimeMillis);
+						}
+					} // for steps
+					this.report.iterationFinished();
+				} // for iterations
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				//einmal je Benutzer, nach der letzten Iteration, auch bei Abbruch
+				if (robot != null) {
+					robot.finish();
+				}
+			} // try catch finally
+		} // run
+	} // class VirtualUser
+
+
+
+	/**
+	 * Hauptmethode, siehe Klassenbeschreibung.
+	 *
+	 * @param args Parameter
+	 * @throws Exception
+	 */
+	public static void main(final String[] args) throws Exception {
+		if ((args == null) || (args.length == 0)) {
+			System.out.println("Parameter fehlt!");
+			System.out.println("java LoadRunner XMLDateiname LoadUsers:N LoadRampUp:S LoadThinkTime:MS LoadDuration:S LoadIterations:N Parameter");
+			return;
+		} // if
+
+		final List<String> robotParameters = new ArrayList<String>();
+		final List<String[]> loadParameters = new ArrayList<String[]>();
+		for (int i = 1; i < args.length; i++) {
+			final int idx = args[i].indexOf(':');
+			if (idx == -1)
+				throw new IllegalArgumentException("Invalid parameter syntax, expected: 'name:value', but was: " + args[i]);
+			if (LoadRunner.OPTIONS.contains(args[i].substring(0, idx))) {
+				loadParameters.add(new String[] { args[i].substring(0, idx), args[i].substring(idx + 1) });
+			} else {
+				robotParameters.add(args[i]);
+			}
+		} // for
+
+		final LoadRunner runner = new LoadRunner(robotParameters.toArray(new String[robotParameters.size()]));
+		String metricsFile = null;
+		for (final String[] p : loadParameters) {
+			if (p[0].equals("LoadUsers")) {
+				runner.setUsers(Integer.parseInt(p[1]));
+			} else if (p[0].equals("LoadRampUp")) {
+				runner.setRampUpMillis(Long.parseLong(p[1]) * 1000L);
+			} else if (p[0].equals("LoadThinkTime")) {
+				runner.setThinkTimeMillis(Long.parseLong(p[1]));
+			} else if (p[0].equals("LoadDuration")) {
+				runner.setDurationMillis(Long.parseLong(p[1]) * 1000L);
+			} else if (p[0].equals("LoadIterations")) {
+				runner.setIterations(Integer.parseInt(p[1]));
+			} else if (p[0].equals("LoadMetricsFile")) {
+				metricsFile = p[1];
+				runner.setMetrics(new RobotMetrics());
+			}
+		} // for
+		System.out.println(runner.run(RobotPlan.load(args[0])));
+		if (metricsFile != null) {
+			runner.metrics.writeTo(metricsFile);
+		}
+	} // main
+
+} // class LoadRunner
@@ -0,0 +1,243 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.xml.sax.SAXException;
+
+import com.meterware.httpunit.HttpUnitOptions;
+import com.meterware.httpunit.SubmitButton;
+import com.meterware.httpunit.WebForm;
+import com.meterware.httpunit.WebImage;
+import com.meterware.httpunit.WebLink;
+import com.meterware.httpunit.WebResponse;
+
+/**
+ * Lookup tables for the links and forms of one response, used by GET_Link
+ * and POST (see Robot.getPageIndex). Each table is built on first use in a
+ * single pass over the page; link texts are read only as far as a lookup
+ * needs them, and each at most once. Matching follows the httpunit methods
+ * the steps called before (getLinkWith, getLinkWithName, ...,
+ * getFormWithName), including HttpUnitOptions.getMatchesIgnoreCase.
+ * <p>
+ * Not thread-safe, a response belongs to one robot.
+ */
+final class PageIndex {
+
+	private final WebResponse response;
+	private final boolean ignoreCase;
+
+	// Links
+	private WebLink[] links = null;
+	private String[] linkTexts = null;
+	private int linkTextCount = 0;
+	private Map<String, WebLink> linksByName = null;
+	private Map<String, WebLink> linksByID;
+	private Map<String, WebLink> linksByImageText = null;
+
+	// Formulare
+	private WebForm[] forms = null;
+	private Map<String, WebForm> formsByName;
+	private Map<String, WebForm> formsByID;
+	private Map<String, Integer> formsByButton;
+
+
+	PageIndex(final WebResponse response) {
+		this.response = response;
+		this.ignoreCase = HttpUnitOptions.getMatchesIgnoreCase();
+	}
+
+
+	/**
+	 * @return indizierte Antwort
+	 */
+	WebResponse getResponse() {
+		return this.response;
+	}
+
+
+	/**
+	 * Sucht einen Link wie getLinkWith, getLinkWithName, getLinkWithID und
+	 * getLinkWithImageText nacheinander.
+	 *
+	 * @param linkName Linktext (Teilstring), Name, ID oder Alt-Text eines Bildes
+	 * @return Link, wenn nicht vorhanden null
+	 */
+	WebLink findLink(final String linkName) throws SAXException {
+		if (this.links == null) {
+			this.links = this.response.getLinks();
+			this.linkTexts = new String[this.links.length];
+		}
+		if (linkName.equals("")) {
+			return (this.links.length > 0) ? this.links[0] : null; // jeder Text enthält ""
+		}
+		final String key = this.key(linkName);
+		WebLink link = this.findLinkWithText(key);
+		if (link == null) {
+			this.indexLinkNames();
+			link = this.linksByName.get(key);
+			if (link == null) link = this.linksByID.get(linkName);
+		}
+		if (link == null) {
+			this.indexImages();
+			link = this.linksByImageText.get(key);
+		}
+		return link;
+	} // findLink
+
+
+	/**
+	 * getLinkWith liefert den ersten Link, dessen Text den gesuchten enthält;
+	 * das lässt sich nicht über eine Hashtabelle suchen. Die Texte werden
+	 * deshalb nur einmal gelesen und (wie key) normalisiert gemerkt, weitere Links
+	 * werden erst gelesen, wenn die bekannten Texte nicht passen.
+	 */
+	private WebLink findLinkWithText(final String key) {
+		for (int i = 0; i < this.linkTextCount; i++) {
+			if (this.linkTexts[i].indexOf(key) >= 0) {
+				return this.links[i];
+			}
+		} // for gelesene Texte
+		while (this.linkTextCount < this.links.length) {
+			final int i = this.linkTextCount++;
+			final String text = this.links[i].getText();
+			this.linkTexts[i] = this.key(text == null ? "" : text);
+			if (this.linkTexts[i].indexOf(key) >= 0) {
+				return this.links[i];
+			}
+		} // while weitere Links
+		return null;
+	} // findLinkWithText
+
+
+	/**
+	 * Sucht ein Formular per name, sonst per id (wie getFormWithName, getFormWithID).
+	 *
+	 * @param name Name oder ID des Formulars
+	 * @return Formular, wenn nicht vorhanden null
+	 */
+	WebForm findForm(final String name) throws SAXException {
+		this.indexForms();
+		final WebForm form = this.formsByName.get(this.key(name));
+		return (form != null) ? form : this.formsByID.get(name);
+	} // findForm
+
+
+	/**
+	 * @param id laufende Nummer des Formulars
+	 * @return Formular (wie getForms()[id])
+	 */
+	WebForm getForm(final int id) throws SAXException {
+		this.indexForms();
+		return this.forms[id];
+	} // getForm
+
+
+	/**
+	 * Sucht das erste Formular mit einem Submit-Button, dessen Name, ID oder
+	 * Wert dem gesuchten entspricht (siehe PostStep.getSubmitButton).
+	 *
+	 * @param button Name, ID oder Wert des Buttons
+	 * @return Formular, wenn nicht vorhanden null
+	 */
+	WebForm findFormWithButton(final String button) throws SAXException {
+		if ((button == null) || button.equals("")) {
+			return null;
+		}
+		this.indexForms();
+		final Integer i = this.formsByButton.get(button);
+		return (i != null) ? this.forms[i.intValue()] : null;
+	} // findFormWithButton
+
+
+	private String key(final String s) {
+		return (this.ignoreCase && (s != null)) ? s.toUpperCase() : s;
+	}
+
+
+	private void indexLinkNames() {
+		if (this.linksByName != null) {
+			return;
+		}
+		this.linksByName = new HashMap<String, WebLink>();
+		this.linksByID = new HashMap<String, WebLink>();
+		for (final WebLink link : this.links) {
+			putFirst(this.linksByName, this.key(link.getName()), link);
+			putFirst(this.linksByID, link.getID(), link);
+		} // for
+	} // indexLinkNames
+
+
+	private void indexImages() throws SAXException {
+		if (this.linksByImageText != null) {
+			return;
+		}
+		this.linksByImageText = new HashMap<String, WebLink>();
+		for (final WebImage image : this.response.getImages()) {
+			// wie getLinkWithImageText zählt das erste Bild, auch wenn es nicht verlinkt ist
+			final String alt = this.key(image.getAltText());
+			if ((alt != null) && !alt.equals("") && !this.linksByImageText.containsKey(alt)) {
+				this.linksByImageText.put(alt, image.getLink());
+			}
+		} // for
+	} // indexImages
+
+
+	private void indexForms() throws SAXException {
+		if (this.forms != null) {
+			return;
+		}
+		final WebForm[] forms = this.response.getForms();
+		this.formsByName = new HashMap<String, WebForm>();
+		this.formsByID = new HashMap<String, WebForm>();
+		this.formsByButton = new HashMap<String, Integer>();
+		for (int i = 0; i < forms.length; i++) {
+			final WebForm form = forms[i];
+			putFirst(this.formsByName, this.key(form.getName()), form);
+			putFirst(this.formsByID, form.getID(), form);
+			for (final SubmitButton sb : form.getSubmitButtons()) {
+				putFirst(this.formsByButton, sb.getName(), Integer.valueOf(i));
+				putFirst(this.formsByButton, sb.getID(), Integer.valueOf(i));
+				putFirst(this.formsByButton, sb.getValue(), Integer.valueOf(i));
+			} // for buttons
+		} // for forms
+		this.forms = forms;
+	} // indexForms
+
+
+	/**
+	 * Wie bei den httpunit-Suchen gewinnt das erste Element.
+	 */
+	private static <T> void putFirst(final Map<String, T> map, final String key, final T value) {
+		if ((key != null) && !key.equals("") && !map.containsKey(key)) {
+			map.put(key, value);
+		}
+	} // putFirst
+
+} // class PageIndex
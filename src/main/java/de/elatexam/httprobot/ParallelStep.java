@@ -0,0 +1,220 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jdom.Element;
+
+/**
+ * Step PARALLEL, see {@link HTMLRobots#mPARALLEL}.<br>
+ * Every branch runs in a robot forked from the session of the calling
+ * robot (see Robot.fork), so the branches share cookies, authentication
+ * and pending values of the login but no page state. After the join,
+ * cookies and pending values set by the branches are applied to the
+ * calling robot in branch order; its last page stays unchanged. With a
+ * deadline (StepTimeout, PlanTimeout) the join waits until the deadline
+ * of the step at most; branches still running then are cancelled, fail
+ * and are not joined.
+ */
+public class ParallelStep implements Step {
+
+	public static final String MODE = "PARALLEL";
+
+	/** Standard für gleichzeitige Zweige */
+	public static final int DEFAULT_THREADS = 4;
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) throws Exception {
+			return new ParallelStep(eStep);
+		}
+	};
+
+	private final List<List<Step>> branches;
+	private final int threads;
+	private final Template name;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(ParallelStep.class);
+
+
+	/**
+	 * Jedes {@code <step>}-Kind ist ein Zweig, ein {@code <branch>} fasst
+	 * nacheinander auszuführende Schritte zu einem Zweig zusammen.
+	 */
+	public ParallelStep(final Element eStep) throws Exception {
+		final StepRegistry registry = StepRegistry.getDefault();
+		final List<List<Step>> branches = new ArrayList<List<Step>>();
+		for (final Object child : eStep.getChildren()) {
+			final Element eChild = (Element) child;
+			if (eChild.getName().equals("step")) {
+				branches.add(Collections.singletonList(registry.compile(eChild)));
+			} else if (eChild.getName().equals("branch")) {
+				final List<Element> lSteps = eChild.getChildren("step");
+				final List<Step> steps = new ArrayList<Step>(lSteps.size());
+				for (final Element eBranchStep : lSteps) {
+					steps.add(registry.compile(eBranchStep));
+				}
+				branches.add(Collections.unmodifiableList(steps));
+			} // if else
+		} // for
+		this.branches = Collections.unmodifiableList(branches);
+
+		final String threads = eStep.getChildText("threads");
+		if (threads == null || threads.equals("")) {
+			this.threads = ParallelStep.DEFAULT_THREADS;
+		} else {
+			try {
+				this.threads = Integer.parseInt(threads.trim());
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid threads, expected a number, but was: " + threads);
+			}
+			if (this.threads < 1) {
+				throw new IllegalArgumentException("Invalid threads, expected a positive number, but was: " + threads);
+			}
+		} // if else
+		final String name = eStep.getChildText("name");
+		this.name = Template.compile((name != null && !name.equals("")) ? name : "parallel");
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	/**
+	 * @return Zweige mit ihren Schritten (unveränderlich)
+	 */
+	public List<List<Step>> getBranches() {
+		return this.branches;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		if (this.branches.isEmpty()) {
+			return true;
+		}
+		final String name = this.name.resolve(robot.getVariables());
+		final RobotSession before = robot.getSession();
+		final List<Robot> forks = new ArrayList<Robot>(this.branches.size());
+		for (int i = 0; i < this.branches.size(); i++) {
+			forks.add(robot.fork());
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threads, this.branches.size()), new BranchThreadFactory());
+		final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(this.branches.size());
+		try {
+			for (int i = 0; i < this.branches.size(); i++) {
+				final Robot branch = forks.get(i);
+				final List<Step> steps = this.branches.get(i);
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						boolean success = true;
+						for (final Step step : steps) {
+							if (Thread.currentThread().isInterrupted()) {
+								// nach Ablauf der Frist abgebrochen
+								return false;
+							}
+							success &= Boolean.TRUE.equals(branch.callStep(step));
+							branch.awaitRefresh();
+						} // for
+						return success;
+					}
+				}));
+			} // for
+		} finally {
+			executor.shutdown();
+		} // try finally
+
+		//Join: Ergebnisse je Zweig, Cookies und Pending in Reihenfolge der Zweige
+		//höchstens bis zur Frist des Schrittes, danach werden offene Zweige abgebrochen
+		final long deadline = robot.getHttpClient().getDeadline();
+		boolean success = true;
+		for (int i = 0; i < results.size(); i++) {
+			final Robot branch = forks.get(i);
+			boolean ok = false;
+			boolean finished = true;
+			try {
+				ok = ((deadline == 0) ? results.get(i).get()
+					: results.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)).booleanValue();
+			} catch (final ExecutionException e) {
+				ParallelStep.logger.warn("PARALLEL " + name + ": Zweig " + (i + 1) + " abgebrochen: " + e.getCause());
+			} catch (final TimeoutException e) {
+				// bereits beendete Zweige behalten ihr Ergebnis, die übrigen werfen danach CancellationException
+				for (final Future<Boolean> result : results) {
+					result.cancel(true);
+				}
+				ParallelStep.logger.warn("PARALLEL " + name + ": Zweig " + (i + 1) + " nach Ablauf der Frist abgebrochen");
+				finished = false;
+			} catch (final CancellationException e) {
+				ParallelStep.logger.warn("PARALLEL " + name + ": Zweig " + (i + 1) + " nach Ablauf der Frist abgebrochen");
+				finished = false;
+			} // try catch
+			if (finished) {
+				robot.join(branch, before);
+			}
+			final String prefix = name + '.' + (i + 1);
+			robot.setPending("parallel", prefix, ok ? "ok" : "failed");
+			robot.setPending("parallel", prefix + ".status", String.valueOf(branch.getLastResultStatus()));
+			success &= ok;
+		} // for
+		return success;
+	} // execute
+
+
+
+	private static final class BranchThreadFactory implements ThreadFactory {
+		private static final AtomicInteger parallelNumber = new AtomicInteger();
+		private final int parallel = parallelNumber.incrementAndGet();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "parallel-" + this.parallel + "-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class BranchThreadFactory
+
+} // class ParallelStep
@@ -0,0 +1,416 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HttpTransport} on persistent HttpURLConnections.<br>
+ * Connections are kept alive and reused by the JVM's keep-alive cache once
+ * a response body has been read to the end or closed, so consecutive
+ * requests of a run to the same host skip the TCP/TLS setup. The number of
+ * concurrent connections per host is limited JVM-wide for all robots
+ * (setMaxConnectionsPerHost); connect and read timeouts are set per
+ * transport. Unlike httpunit's own request handling no system properties
+ * are touched per request, so robots of a RobotPool do not interfere.<br>
+ * A request sent with a {@link Call} can be cancelled from another thread
+ * and ends by its deadline: waiting for a connection, connect and read
+ * timeouts are limited to the time remaining.
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+	/** Unread rest of a body that is skipped on close to keep the connection */
+	private static final int DRAIN_LIMIT = 64 * 1024;
+
+	/** Default limit of concurrent connections per host */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+	private static volatile int maxConnectionsPerHost = PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	private static final ConcurrentMap<String, Semaphore> HOSTS = new ConcurrentHashMap<String, Semaphore>();
+
+	private int connectTimeoutMillis = 0;
+	private int readTimeoutMillis = 0;
+
+
+	public PooledHttpTransport() {
+	}
+
+
+	/**
+	 * @param connectTimeoutMillis connect timeout, 0 for none
+	 * @param readTimeoutMillis read timeout, 0 for none
+	 */
+	public PooledHttpTransport(final int connectTimeoutMillis, final int readTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	} // PooledHttpTransport
+
+
+	/**
+	 * Lets the JVM's keep-alive cache keep as many idle connections per host
+	 * as the default limit (system property http.maxConnections, JDK default
+	 * 5), unless the property is set on the command line. The property is
+	 * JVM-wide and read once, before the first http connection of the JVM;
+	 * Robot sets it when Transport:pooled is chosen.
+	 */
+	static void initKeepAlive() {
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", String.valueOf(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST));
+		}
+	} // initKeepAlive
+
+
+	/**
+	 * Sets the limit of concurrent connections per host. The limit applies
+	 * to hosts contacted after the call.
+	 */
+	public static void setMaxConnectionsPerHost(final int max) {
+		PooledHttpTransport.maxConnectionsPerHost = max;
+	}
+
+
+	public void setConnectTimeout(final int millis) {
+		this.connectTimeoutMillis = millis;
+	}
+
+
+	public void setReadTimeout(final int millis) {
+		this.readTimeoutMillis = millis;
+	}
+
+
+	public Response send(final String method, final URL url, final Map<String, String> headers, final byte[] body) throws IOException {
+		return this.send(method, url, headers, body, new Call(0));
+	} // send
+
+
+	/**
+	 * Sends a request that can be cancelled with call.
+	 *
+	 * @see HttpTransport#send(String, URL, Map, byte[])
+	 * @param call handle of the request, used for one request only
+	 */
+	public Response send(final String method, final URL url, final Map<String, String> headers, final byte[] body, final Call call) throws IOException {
+		final Semaphore permits = PooledHttpTransport.getPermits(url);
+		final long wait = call.limit((long) this.connectTimeoutMillis + this.readTimeoutMillis);
+		try {
+			if (wait <= 0) {
+				permits.acquire();
+			} else if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+				throw new IOException("No connection to " + url.getHost() + " available within " + wait + " ms (MaxConnectionsPerHost)");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for a connection to " + url.getHost());
+		} // try catch
+
+		boolean released = false;
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod(method);
+			connection.setInstanceFollowRedirects(false);
+			connection.setUseCaches(false);
+			connection.setConnectTimeout((int) call.limit(this.connectTimeoutMillis));
+			connection.setReadTimeout((int) call.limit(this.readTimeoutMillis));
+			for (final Map.Entry<String, String> header : headers.entrySet()) {
+				connection.setRequestProperty(header.getKey(), header.getValue());
+			}
+			if (body != null) {
+				connection.setDoOutput(true);
+				connection.setFixedLengthStreamingMode(body.length);
+			}
+			call.open(connection);
+			connection.connect();
+			// cancelled while connecting, disconnect only ends a connection once it is established
+			call.check();
+			if (body != null) {
+				final OutputStream out = connection.getOutputStream();
+				try {
+					out.write(body);
+				} finally {
+					out.close();
+				} // try finally
+			} // if body
+
+			final int status = connection.getResponseCode();
+			final List<String> names = new ArrayList<String>();
+			final List<String> values = new ArrayList<String>();
+			for (int i = 0; ; i++) {
+				final String value = connection.getHeaderField(i);
+				if (value == null) {
+					break;
+				}
+				final String name = connection.getHeaderFieldKey(i);
+				if (name != null) {
+					names.add(name);
+					values.add(value);
+				}
+			} // for
+
+			InputStream in = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+			if (in == null) {
+				in = new ByteArrayInputStream(new byte[0]);
+			}
+			final ReleasingInputStream stream = new ReleasingInputStream(in, permits, connection);
+			released = true;
+			call.received(stream);
+			return new Response(status, connection.getResponseMessage(),
+					names.toArray(new String[names.size()]), values.toArray(new String[values.size()]), stream);
+		} finally {
+			if (!released) {
+				permits.release();
+				if (connection != null) {
+					connection.disconnect();
+				}
+			} // if
+		} // try finally
+	} // send
+
+
+	public void close() {
+		// idle connections are held by the keep-alive cache of the JVM
+	}
+
+
+	private static Semaphore getPermits(final URL url) {
+		final String host = url.getProtocol() + "://" + url.getHost() + ":" + ((url.getPort() == -1) ? url.getDefaultPort() : url.getPort());
+		Semaphore permits = PooledHttpTransport.HOSTS.get(host);
+		if (permits == null) {
+			permits = new Semaphore(PooledHttpTransport.maxConnectionsPerHost, true);
+			final Semaphore existing = PooledHttpTransport.HOSTS.putIfAbsent(host, permits);
+			if (existing != null) {
+				permits = existing;
+			}
+		} // if
+		return permits;
+	} // getPermits
+
+
+
+	/**
+	 * Handle of a request sent with send(..., Call). cancel drops the
+	 * connection from any thread: a request waiting for its response ends
+	 * with an IOException, a response not yet read is discarded without
+	 * reading its rest, and the connection permit is returned.
+	 */
+	public static final class Call {
+
+		private final long deadlineNanos;
+		private HttpURLConnection connection = null;
+		private ReleasingInputStream body = null;
+		private boolean cancelled = false;
+
+
+		/**
+		 * @param deadlineNanos System.nanoTime by which the response must have arrived, 0 for none
+		 */
+		public Call(final long deadlineNanos) {
+			this.deadlineNanos = deadlineNanos;
+		}
+
+
+		/**
+		 * Cancels the request. A response body the caller already reads is
+		 * not affected; cancel only requests whose response is not used.
+		 */
+		public void cancel() {
+			final HttpURLConnection connection;
+			final ReleasingInputStream body;
+			synchronized (this) {
+				this.cancelled = true;
+				connection = this.connection;
+				body = this.body;
+			} // synchronized
+			if (body != null) {
+				body.abort();
+			} else if (connection != null) {
+				connection.disconnect();
+			}
+		} // cancel
+
+
+		public synchronized boolean isCancelled() {
+			return this.cancelled;
+		}
+
+
+		/**
+		 * @param timeoutMillis timeout, 0 for none
+		 * @return timeout limited to the time left until the deadline, 0 for none
+		 * @throws SocketTimeoutException deadline passed
+		 */
+		long limit(final long timeoutMillis) throws SocketTimeoutException {
+			if (this.deadlineNanos == 0) {
+				return timeoutMillis;
+			}
+			final long left = (this.deadlineNanos - System.nanoTime()) / 1000000L;
+			if (left <= 0) {
+				throw new SocketTimeoutException("Deadline passed");
+			}
+			return Math.min((timeoutMillis <= 0) ? Integer.MAX_VALUE : timeoutMillis, left);
+		} // limit
+
+
+		synchronized void open(final HttpURLConnection connection) throws IOException {
+			this.check();
+			this.connection = connection;
+		}
+
+
+		synchronized void check() throws IOException {
+			if (this.cancelled) {
+				throw new InterruptedIOException("Request cancelled");
+			}
+		}
+
+
+		void received(final ReleasingInputStream body) throws IOException {
+			synchronized (this) {
+				if (!this.cancelled) {
+					this.body = body;
+					return;
+				}
+			} // synchronized
+			body.abort();
+			throw new InterruptedIOException("Request cancelled");
+		} // received
+
+	} // class Call
+
+
+
+	/**
+	 * Drops the connection of a response body instead of reading its rest;
+	 * for bodies of other transports nothing happens.
+	 *
+	 * @return body of this transport
+	 */
+	static boolean abort(final InputStream body) {
+		if (body instanceof ReleasingInputStream) {
+			((ReleasingInputStream) body).abort();
+			return true;
+		}
+		return false;
+	} // abort
+
+
+
+	/**
+	 * Body stream returning the connection permit at the end of the body or
+	 * on close, whichever comes first. A small unread rest (redirect pages)
+	 * is skipped on close, so the connection goes back to the keep-alive
+	 * cache instead of being dropped.
+	 */
+	private static final class ReleasingInputStream extends FilterInputStream {
+
+		private Semaphore permits;
+		private final HttpURLConnection connection;
+
+
+		ReleasingInputStream(final InputStream in, final Semaphore permits, final HttpURLConnection connection) {
+			super(in);
+			this.permits = permits;
+			this.connection = connection;
+		}
+
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b == -1) {
+				this.release();
+			}
+			return b;
+		} // read
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			final int n = super.read(buffer, offset, length);
+			if (n == -1) {
+				this.release();
+			}
+			return n;
+		} // read
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (this.permits != null) {
+					final byte[] skip = new byte[4096];
+					int drained = 0;
+					int n;
+					while ((drained < PooledHttpTransport.DRAIN_LIMIT) && ((n = super.read(skip, 0, skip.length)) != -1)) {
+						drained += n;
+					}
+				} // if
+				super.close();
+			} finally {
+				this.release();
+			} // try finally
+		} // close
+
+
+		/**
+		 * Drops the connection unless the body is complete or closed.
+		 */
+		void abort() {
+			synchronized (this) {
+				if (this.permits == null) {
+					return;
+				}
+			} // synchronized
+			this.connection.disconnect();
+			this.release();
+		} // abort
+
+
+		private synchronized void release() {
+			if (this.permits != null) {
+				this.permits.release();
+				this.permits = null;
+			}
+		} // release
+
+	} // class ReleasingInputStream
+
+} // class PooledHttpTransport
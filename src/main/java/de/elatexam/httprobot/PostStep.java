@@ -0,0 +1,229 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jdom.Element;
+
+import com.meterware.httpunit.SubmitButton;
+import com.meterware.httpunit.WebForm;
+
+/**
+ * Step POST, see {@link HTMLRobots#mPOST}.
+ */
+public class PostStep implements Step {
+
+	public static final String MODE = "POST";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new PostStep(eStep);
+		}
+	};
+
+	private final Template name;
+	private final Integer id;
+	private final Template button;
+	private final List<Param> parameters = new ArrayList<Param>();
+
+
+	public PostStep(final Element eStep) {
+		final String name = eStep.getChildText("name");
+		this.name = (name != null && !name.equals("")) ? Template.compile(name) : null;
+		final String id = eStep.getChildText("id");
+		if (id != null && !id.equals("")) {
+			try {
+				this.id = Integer.valueOf(id.trim());
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid form id, expected a number, but was: " + id);
+			}
+		} else {
+			this.id = null;
+		}
+		this.button = Template.compile(eStep.getChildText("button"));
+		final List<Element> lParams = eStep.getChildren("param");
+		for (final Element param : lParams) {
+			this.parameters.add(new Param(param));
+		} //for
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		final Variables variables = robot.getVariables();
+		final WebForm form = this.findForm(robot.getPageIndex(), variables);
+		if (form != null) {
+			robot.printLogger(form);
+			for (final Param compiled : this.parameters) {
+				final Param.Resolved param = compiled.resolve(variables);
+				// checkbox
+				if (param.type.equalsIgnoreCase("checkbox")) {
+					if (param.state) {
+						form.setCheckbox(param.name, param.value, param.state);
+					} else {
+						form.removeParameter(param.name);
+					}
+					// multiple
+				} else if (param.type.equals("multiple")) {
+					final LinkedList<String> s = new LinkedList<String>(Arrays.asList(form.getParameterValues(param.name)));
+					if (param.state && !s.contains(param.value)) {
+						s.add(param.value);
+					} else if (!param.state && !s.contains(param.value)) {
+						s.remove(param.value);
+					} // if elseif
+					form.setParameter(param.name, (String[]) s.toArray());
+					// sonst
+				} else {
+					form.setParameter(param.name, param.value);
+				} // if else if else
+			} // for parameters
+			robot.printLogger(form);
+			robot.logEvent(form);
+			final SubmitButton sb = getSubmitButton(form, resolve(this.button, variables));
+			return robot.execHTTP(sb != null ? form.getRequest(sb) : form.getRequest()); //wenn sb==null, dann Standard-Button ausführen
+		} // if form != null
+		return false;
+	} // execute
+
+
+
+	//Hilfsmethoden
+	/**
+	 * Sucht das Formular, Suchreihenfolge siehe HTMLRobots.mPOST.
+	 *
+	 * @param index Index der Antwort, in der gesucht wird
+	 * @param variables Parameter für Verweise in name und button
+	 * @return Formular, wenn nicht vorhanden null
+	 */
+	WebForm findForm(final PageIndex index, final Variables variables) throws Exception {
+		WebForm form = null;
+		if (this.name != null) {
+			form = index.findForm(this.name.resolve(variables)); //Abfrage via ID, wenn Tag "name=" im Quelltext nicht verwendet.
+		} //if name->ok
+		if (form == null) {
+			//wenn Spezifikation via Tag name/id nicht erfolgreich, dann Spezifikation via ID-Nummer oder Button-value
+			if (this.id != null) {
+				form = index.getForm(this.id.intValue());
+			} else {
+				form = index.findFormWithButton(resolve(this.button, variables));
+			} //if else
+		} //if form==null
+		return form;
+	} // findForm
+
+
+	/**
+	 * löst ein optionales Feld auf
+	 *
+	 * @return aufgelöster Text, null wenn das Feld fehlt
+	 */
+	static String resolve(final Template template, final Variables variables) {
+		return (template != null) ? template.resolve(variables) : null;
+	} // resolve
+
+
+	/**
+	 * gibt den entsprechenden Button im Formular zurück<br>
+	 * - Spezifikation der Suchreihenfolge siehe HTMLRobots.mPOST
+	 *
+	 *  @param form entsprechenden Formular
+	 *  @param button spezifizierter Button
+	 *  @return Button, wenn nicht vorhanden null
+	 */
+	static SubmitButton getSubmitButton(final WebForm form, final String button) throws Exception {
+		SubmitButton sb = null;
+		if ((button != null) && !button.equals("")) {
+			sb = form.getSubmitButton(button);
+			if (sb == null) {
+				sb = form.getSubmitButtonWithID(button);
+			} //if
+			if (sb == null) {
+				for (final SubmitButton sb_elem : form.getSubmitButtons()) {
+					if (sb_elem.getValue().equals(button)) {
+						sb = sb_elem;
+						break;
+					} //if
+				} //for
+			} //if
+		} //if name->ok
+		return sb;
+	} // getSubmitButton
+
+
+
+	/**
+	 * Compiled {@code <param>} of a POST step; name and value may reference
+	 * parameters and are resolved once per execution.
+	 */
+	static final class Param {
+		final String type;
+		final Template name;
+		final Template value;
+		final boolean state;
+
+		Param(final Element param) {
+			this.type = param.getChildText("type") == null ? "" : param.getChildText("type");
+			this.name = Template.compile(param.getChildText("name"));
+			this.value = Template.compile(param.getChildText("value"));
+			this.state = Boolean.valueOf(param.getChildText("state")).booleanValue();
+		}
+
+		Resolved resolve(final Variables variables) {
+			return new Resolved(this.type, PostStep.resolve(this.name, variables), PostStep.resolve(this.value, variables), this.state);
+		}
+
+		/**
+		 * Param with all references replaced.
+		 */
+		static final class Resolved {
+			final String type;
+			final String name;
+			final String value;
+			final boolean state;
+
+			Resolved(final String type, final String name, final String value, final boolean state) {
+				this.type = type;
+				this.name = name;
+				this.value = value;
+				this.state = state;
+			}
+		} // class Resolved
+	} // class Param
+
+} // class PostStep
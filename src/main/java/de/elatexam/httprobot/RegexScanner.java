@@ -0,0 +1,88 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regular expression search over a sliding window. A match is emitted as
+ * group 1 if the pattern has groups, else as a whole. Text is collected
+ * until 4 * WINDOW chars are available; after a search the last WINDOW
+ * chars are kept if a match could continue there, so matches up to
+ * WINDOW chars are found across chunk borders.
+ */
+final class RegexScanner implements TextScanner {
+
+	static final int WINDOW = 16 * 1024;
+
+	private final Pattern pattern;
+	private final StringBuilder window = new StringBuilder();
+
+
+	RegexScanner(final Pattern pattern) {
+		this.pattern = pattern;
+	}
+
+
+	public void feed(final CharSequence chars, final Output out) throws IOException {
+		this.window.append(chars);
+		if (this.window.length() >= 4 * WINDOW) {
+			this.scan(false, out);
+		}
+	} // feed
+
+
+	public void finish(final Output out) throws IOException {
+		this.scan(true, out);
+		this.window.setLength(0);
+	} // finish
+
+
+	private void scan(final boolean endOfInput, final Output out) throws IOException {
+		final Matcher m = this.pattern.matcher(this.window);
+		int keep = -1;
+		int end = 0;
+		while (m.find()) {
+			if (!endOfInput && m.hitEnd() && (this.window.length() - m.start() < WINDOW)) {
+				keep = m.start(); // Treffer könnte mit dem nächsten Block länger werden
+				break;
+			}
+			final String value = (m.groupCount() > 0) ? m.group(1) : m.group();
+			if (value != null) {
+				out.emit(value);
+			}
+			end = m.end();
+		} // while
+		if (keep < 0) {
+			keep = (!endOfInput && m.hitEnd()) ? Math.max(end, this.window.length() - WINDOW) : this.window.length();
+		}
+		this.window.delete(0, keep);
+	} // scan
+
+} // class RegexScanner
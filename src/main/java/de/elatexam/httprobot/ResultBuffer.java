@@ -0,0 +1,107 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * In-memory {@link ResultSink} holding the last response body.<br>
+ * The buffer is sized from the announced content length (at most 1 MB up
+ * front, beyond that it grows with the data) and hands out its content
+ * without further copies: {@link #getBytes()} returns the internal
+ * array once it has been trimmed, {@link #getInputStream()} and
+ * {@link #writeTo(WritableByteChannel)} read it in place.
+ */
+public class ResultBuffer extends ByteArrayOutputStream implements ResultSink {
+
+	/** Largest buffer allocated up front from the announced content length */
+	static final int MAX_PREALLOCATION = 1 << 20;
+
+	public ResultBuffer() {
+		super(0);
+	}
+
+
+	public synchronized void open(final String resultName, final int contentLength) {
+		this.reset();
+		//Content-Length stammt vom Server: nur begrenzt vorab reservieren, der Puffer wächst bei Bedarf
+		final int initial = Math.min(contentLength, ResultBuffer.MAX_PREALLOCATION);
+		if (initial > this.buf.length) {
+			this.buf = new byte[initial];
+		}
+	} // open
+
+
+	/**
+	 * @return content of the buffer; the array is shared and must not be
+	 *         modified by the caller
+	 */
+	public synchronized byte[] getBytes() {
+		if (this.buf.length != this.count) {
+			final byte[] trimmed = new byte[this.count];
+			System.arraycopy(this.buf, 0, trimmed, 0, this.count);
+			this.buf = trimmed;
+		} // if
+		return this.buf;
+	} // getBytes
+
+
+	/**
+	 * @param max maximum number of bytes
+	 * @return copy of the first bytes of the content
+	 */
+	public synchronized byte[] head(final int max) {
+		final byte[] head = new byte[Math.min(max, this.count)];
+		System.arraycopy(this.buf, 0, head, 0, head.length);
+		return head;
+	} // head
+
+
+	/**
+	 * @return stream reading the content in place
+	 */
+	public synchronized InputStream getInputStream() {
+		return new ByteArrayInputStream(this.buf, 0, this.count);
+	}
+
+
+	/**
+	 * Writes the content to a channel, e.g. a FileChannel.
+	 */
+	public synchronized void writeTo(final WritableByteChannel channel) throws IOException {
+		final ByteBuffer bb = ByteBuffer.wrap(this.buf, 0, this.count);
+		while (bb.hasRemaining()) {
+			channel.write(bb);
+		} // while
+	} // writeTo
+
+} // class ResultBuffer
@@ -0,0 +1,63 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.IOException;
+
+/**
+ * Receives the body of a http response while it is read from the network.<br>
+ * By default a {@link Robot} captures every body into a {@link ResultBuffer};
+ * a different sink can be set for the next response with
+ * {@link Robot#setResultSink(ResultSink)}, e.g. a {@link FileResultSink} to
+ * write large downloads straight to disk.
+ */
+public interface ResultSink {
+
+	/**
+	 * Called once before the first chunk of a body.
+	 *
+	 * @param resultName
+	 *            Dateiname des HTTP-Response (see Robot.getLastResultName)
+	 * @param contentLength
+	 *            announced length of the decoded body, -1 if unknown
+	 *            (e.g. with a Content-Encoding)
+	 * @throws IOException
+	 */
+	void open(String resultName, int contentLength) throws IOException;
+
+	/**
+	 * Receives the next chunk of the body. The buffer is reused by the caller
+	 * after this method returns.
+	 */
+	void write(byte[] buffer, int offset, int length) throws IOException;
+
+	/**
+	 * Called once after the last chunk, also if reading failed.
+	 */
+	void close() throws IOException;
+
+} // interface ResultSink
@@ -0,0 +1,508 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed store for saved responses (SAVE with parameter
+ * ResultStore).<br>
+ * Every body is identified by the SHA-256 of its content and stored once
+ * as a blob <code>&lt;dir&gt;/ab/abcdef...[.gz|.deflate]</code>, optionally
+ * compressed while it is written. Saving content that is already in the
+ * store writes nothing but an index line. Index lines are written once
+ * their blob is complete; saves of content whose blob is still being
+ * written wait for it and are dropped if it fails. The index
+ * <code>&lt;dir&gt;/index.tsv</code> maps each save to its blob, one
+ * tab-separated line per save:
+ *
+ * <pre>
+ * time  run  step  saveID  name  bytes  sha256  blob
+ * </pre>
+ *
+ * run identifies a Robot.run (ResultStoreRun, default time and number of
+ * the robot), step is the number of the step in the run. Blobs are read
+ * back with {@link #openBlob(File)}. One instance per directory is shared
+ * by all robots of the JVM (see {@link #open(String)}).
+ */
+public final class ResultStore {
+
+	/** Blobs unkomprimiert */
+	public static final String NONE = "none";
+
+	/** Blobs mit gzip komprimiert (.gz) */
+	public static final String GZIP = "gzip";
+
+	/** Blobs mit deflate (zlib) komprimiert (.deflate) */
+	public static final String DEFLATE = "deflate";
+
+	/** Name of the index file in the store directory */
+	public static final String INDEX_FILE = "index.tsv";
+
+	private static final String[] SUFFIXES = { "", ".gz", ".deflate" };
+	private static final Map<String, ResultStore> OPEN = new HashMap<String, ResultStore>();
+	private static final AtomicInteger runNumber = new AtomicInteger();
+	private static final AtomicLong tempNumber = new AtomicLong();
+
+	private final File directory;
+	//fertige Blobs und Blobs, die gerade geschrieben werden, je Hash; Zugriff synchronisiert
+	private final Map<String, File> blobs = new HashMap<String, File>();
+	private final Map<String, PendingBlob> writing = new HashMap<String, PendingBlob>();
+	private Writer index = null;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(ResultStore.class);
+
+
+	private ResultStore(final File directory) {
+		this.directory = directory;
+	}
+
+
+	/**
+	 * Returns the store in a directory, created on first use.
+	 *
+	 * @param directoryName store directory
+	 * @return shared store
+	 * @throws IOException directory cannot be created
+	 */
+	public static synchronized ResultStore open(final String directoryName) throws IOException {
+		final File directory = new File(directoryName).getAbsoluteFile();
+		ResultStore store = ResultStore.OPEN.get(directory.getPath());
+		if (store == null) {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Verzeichnis konnte nicht angelegt werden: " + directory);
+			}
+			store = new ResultStore(directory);
+			ResultStore.OPEN.put(directory.getPath(), store);
+		} // if
+		return store;
+	} // open
+
+
+	public File getDirectory() {
+		return this.directory;
+	}
+
+
+	public File getIndexFile() {
+		return new File(this.directory, ResultStore.INDEX_FILE);
+	}
+
+
+	/**
+	 * @param compression none | gzip | deflate
+	 * @return compression in canonical form
+	 */
+	static String checkCompression(final String compression) {
+		final String c = compression.toLowerCase();
+		if (!c.equals(ResultStore.NONE) && !c.equals(ResultStore.GZIP) && !c.equals(ResultStore.DEFLATE))
+			throw new IllegalArgumentException("Invalid compression, expected none, gzip or deflate, but was: " + compression);
+		return c;
+	} // checkCompression
+
+
+	/**
+	 * @return default run id: time and a number unique in the JVM
+	 */
+	static String newRun() {
+		return new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + ResultStore.runNumber.incrementAndGet();
+	}
+
+
+	/**
+	 * Stores a response held in memory. The hash is computed on the calling
+	 * thread; a new blob is written (and compressed) by the SaveWriter.
+	 *
+	 * @param content response, must not be modified afterwards
+	 * @param compression none | gzip | deflate
+	 * @param writer writer of the robot
+	 * @return absolute name of the blob
+	 */
+	String put(final ResultBuffer content, final String compression, final SaveWriter writer,
+			final String run, final int step, final String saveID, final String name) throws IOException, InterruptedException {
+		final MessageDigest sha = ResultStore.newDigest();
+		final byte[] bytes = content.getBytes();
+		sha.update(bytes, 0, content.size());
+		final String hash = ResultStore.toHex(sha.digest());
+
+		final File blob = this.blobFile(hash, compression);
+		final File existing = this.findBlob(hash, blob, new IndexEntry(run, step, saveID, name, content.size()));
+		if (existing != null) {
+			return existing.getPath();
+		}
+		boolean queued = false;
+		try {
+			writer.save(new SaveWriter.Content() {
+				public void writeTo(final FileOutputStream out) throws IOException {
+					final OutputStream os = ResultStore.compress(new Unclosable(out), compression);
+					content.writeTo(os);
+					os.close();
+				}
+
+				public void stored() throws IOException {
+					ResultStore.this.stored(hash, blob);
+				}
+
+				public void failed() {
+					ResultStore.this.failed(hash, blob);
+				}
+			}, blob);
+			queued = true;
+		} finally {
+			if (!queued) {
+				this.failed(hash, blob);
+			}
+		} // try finally
+		return blob.getPath();
+	} // put
+
+
+	/**
+	 * Creates a sink storing the next response while it is received:
+	 * hashed and compressed chunk by chunk, without holding it in memory.
+	 */
+	FileResultSink newSink(final String compression, final String run, final int step, final String saveID) {
+		return new Sink(compression, run, step, saveID);
+	} // newSink
+
+
+	/**
+	 * Opens a blob for reading, decompressed according to its suffix.
+	 *
+	 * @param blob file of the store
+	 * @return content
+	 */
+	public static InputStream openBlob(final File blob) throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(blob), 65536);
+		if (blob.getName().endsWith(".gz")) {
+			return new GZIPInputStream(in, 65536);
+		} else if (blob.getName().endsWith(".deflate")) {
+			return new InflaterInputStream(in);
+		}
+		return in;
+	} // openBlob
+
+
+
+	/**
+	 * Sucht einen vorhandenen Blob zum Hash (auch mit anderer Kompression)
+	 * und schreibt die Indexzeile. Wird der Blob gerade geschrieben, wartet
+	 * die Zeile auf stored; ist keiner vorhanden, wird blob für diesen Hash
+	 * reserviert und die Zeile mit stored geschrieben.
+	 *
+	 * @return vorhandener oder entstehender Blob, null wenn blob geschrieben werden muss
+	 */
+	private synchronized File findBlob(final String hash, final File blob, final IndexEntry entry) throws IOException {
+		final File known = this.blobs.get(hash);
+		if (known != null) {
+			this.addIndex(entry, hash, known);
+			return known;
+		}
+		final PendingBlob pending = this.writing.get(hash);
+		if (pending != null) {
+			pending.entries.add(entry);
+			return pending.blob;
+		}
+		for (final String suffix : ResultStore.SUFFIXES) {
+			final File file = new File(blob.getParentFile(), hash + suffix);
+			if (file.isFile()) {
+				this.blobs.put(hash, file);
+				this.addIndex(entry, hash, file);
+				return file;
+			}
+		} // for
+		if (!blob.getParentFile().isDirectory() && !blob.getParentFile().mkdirs() && !blob.getParentFile().isDirectory()) {
+			throw new IOException("Verzeichnis konnte nicht angelegt werden: " + blob.getParentFile());
+		}
+		this.writing.put(hash, new PendingBlob(blob, entry));
+		return null;
+	} // findBlob
+
+
+	/**
+	 * Der Blob ist vollständig: er wird für weitere Speicherungen verwendet,
+	 * die Indexzeilen aller Speicherungen dieses Inhalts werden geschrieben.
+	 */
+	private synchronized void stored(final String hash, final File blob) throws IOException {
+		final PendingBlob pending = this.writing.get(hash);
+		if ((pending == null) || !pending.blob.equals(blob)) {
+			return;
+		}
+		this.writing.remove(hash);
+		this.blobs.put(hash, blob);
+		for (final IndexEntry entry : pending.entries) {
+			this.addIndex(entry, hash, blob);
+		}
+	} // stored
+
+
+	/**
+	 * Der Blob konnte nicht geschrieben werden: auch die Speicherungen, die
+	 * auf ihn verweisen, entfallen.
+	 */
+	private synchronized void failed(final String hash, final File blob) {
+		final PendingBlob pending = this.writing.get(hash);
+		if ((pending == null) || !pending.blob.equals(blob)) {
+			return;
+		}
+		this.writing.remove(hash);
+		if (pending.entries.size() > 1) {
+			ResultStore.logger.error("Blob nicht geschrieben, " + (pending.entries.size() - 1)
+					+ " weitere Speicherung(en) desselben Inhalts nicht im Index: " + blob);
+		}
+	} // failed
+
+
+	private File blobFile(final String hash, final String compression) {
+		final String suffix = compression.equals(ResultStore.GZIP) ? ".gz" : compression.equals(ResultStore.DEFLATE) ? ".deflate" : "";
+		return new File(new File(this.directory, hash.substring(0, 2)), hash + suffix);
+	} // blobFile
+
+
+	/**
+	 * Hängt eine Zeile an den Index an.
+	 */
+	private synchronized void addIndex(final IndexEntry entry, final String hash, final File blob) throws IOException {
+		if (this.index == null) {
+			final File file = this.getIndexFile();
+			final boolean created = !file.exists();
+			this.index = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+			if (created) {
+				this.index.write("time\trun\tstep\tsaveID\tname\tbytes\tsha256\tblob\n");
+			}
+		} // if
+		final String path = blob.getPath().substring(this.directory.getPath().length() + 1).replace(File.separatorChar, '/');
+		this.index.write(entry.time + '\t' + clean(entry.run) + '\t' + entry.step
+				+ '\t' + clean(entry.saveID) + '\t' + clean(entry.name) + '\t' + entry.bytes + '\t' + hash + '\t' + path + '\n');
+		this.index.flush();
+	} // addIndex
+
+
+	private static String clean(final String s) {
+		return (s == null) ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+
+	private static OutputStream compress(final OutputStream out, final String compression) throws IOException {
+		if (compression.equals(ResultStore.GZIP)) {
+			return new GZIPOutputStream(out, 65536);
+		} else if (compression.equals(ResultStore.DEFLATE)) {
+			return new DeflaterOutputStream(out);
+		}
+		return out;
+	} // compress
+
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	} // newDigest
+
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder sb = new StringBuilder(2 * bytes.length);
+		for (final byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	} // toHex
+
+
+
+	/**
+	 * Ausgabe, deren close() den darunterliegenden Strom nur leert; der
+	 * SaveWriter schließt die Datei selbst.
+	 */
+	private static final class Unclosable extends FilterOutputStream {
+		Unclosable(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			this.out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.flush();
+		}
+	} // class Unclosable
+
+
+
+	/**
+	 * Indexzeile einer Speicherung ohne Hash und Blob, Zeitpunkt der Speicherung.
+	 */
+	private static final class IndexEntry {
+		final String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date());
+		final String run;
+		final int step;
+		final String saveID;
+		final String name;
+		final long bytes;
+
+		IndexEntry(final String run, final int step, final String saveID, final String name, final long bytes) {
+			this.run = run;
+			this.step = step;
+			this.saveID = saveID;
+			this.name = name;
+			this.bytes = bytes;
+		}
+	} // class IndexEntry
+
+
+	/**
+	 * Blob, der gerade geschrieben wird, mit den Indexzeilen, die auf ihn warten.
+	 */
+	private static final class PendingBlob {
+		final File blob;
+		final List<IndexEntry> entries = new ArrayList<IndexEntry>(2);
+
+		PendingBlob(final File blob, final IndexEntry entry) {
+			this.blob = blob;
+			this.entries.add(entry);
+		}
+	} // class PendingBlob
+
+
+
+	/**
+	 * Speichert die nächste Antwort beim Empfang: Hash und Kompression je
+	 * Block in eine temporäre Datei, die beim Schließen zum Blob wird oder
+	 * gelöscht, wenn der Inhalt schon vorhanden ist.
+	 */
+	private final class Sink extends FileResultSink {
+		private final String compression;
+		private final String run;
+		private final int step;
+		private final String saveID;
+		private final MessageDigest sha = ResultStore.newDigest();
+		private File temp = null;
+		private OutputStream out = null;
+		private String name = null;
+		private int contentLength = -1;
+		private long bytes = 0;
+		private String fileName = null;
+
+		Sink(final String compression, final String run, final int step, final String saveID) {
+			super(ResultStore.this.directory);
+			this.compression = compression;
+			this.run = run;
+			this.step = step;
+			this.saveID = saveID;
+		}
+
+		@Override
+		public void open(final String resultName, final int contentLength) throws IOException {
+			this.name = resultName;
+			this.contentLength = contentLength;
+			this.temp = new File(ResultStore.this.directory, "tmp-" + ResultStore.tempNumber.incrementAndGet() + SaveWriter.PART_SUFFIX);
+			this.out = ResultStore.compress(new BufferedOutputStream(new FileOutputStream(this.temp), 65536), this.compression);
+		} // open
+
+		@Override
+		public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+			this.sha.update(buffer, offset, length);
+			this.out.write(buffer, offset, length);
+			this.bytes += length;
+		} // write
+
+		@Override
+		public void close() throws IOException {
+			if (this.out == null) {
+				return;
+			}
+			boolean keep = false;
+			try {
+				final OutputStream os = this.out;
+				this.out = null;
+				os.close();
+				if (this.isFailed()) {
+					ResultStore.logger.warn("Antwort unvollständig, nicht gespeichert: " + this.bytes + " Bytes gelesen");
+					return;
+				}
+				if ((this.contentLength >= 0) && (this.bytes != this.contentLength)) {
+					ResultStore.logger.warn("Antwort unvollständig, nicht gespeichert: " + this.bytes + " von " + this.contentLength + " Bytes");
+					return;
+				}
+				final String hash = ResultStore.toHex(this.sha.digest());
+				final File blob = ResultStore.this.blobFile(hash, this.compression);
+				File stored = ResultStore.this.findBlob(hash, blob, new IndexEntry(this.run, this.step, this.saveID, this.name, this.bytes));
+				if (stored == null) {
+					if (!this.temp.renameTo(blob)) {
+						ResultStore.this.failed(hash, blob);
+						throw new IOException("Datei konnte nicht umbenannt werden: " + this.temp + " -> " + blob);
+					}
+					keep = true;
+					stored = blob;
+					ResultStore.this.stored(hash, blob);
+				} // if
+				this.fileName = stored.getPath();
+			} finally {
+				if (!keep) {
+					this.temp.delete();
+				}
+			} // try finally
+		} // close
+
+		@Override
+		public String getFileName() {
+			return this.fileName;
+		}
+	} // class Sink
+
+} // class ResultStore
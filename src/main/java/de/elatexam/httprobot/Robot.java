@@ -1,786 +1,1891 @@
-/*
- * ====================================================================
- *
-
- *  Licensed to the Apache Software Foundation (ASF) under one or more
- *  contributor license agreements.  See the NOTICE file distributed with
- *  this work for additional information regarding copyright ownership.
- *  The ASF licenses this file to You under the Apache License, Version 2.0
- *  (the "License"); you may not use this file except in compliance with
- *  the License.  You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- *  Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
- * ====================================================================
- *
- * This software consists of voluntary contributions made by many
- * individuals on behalf of the Apache Software Foundation.  For more
- * information on the Apache Software Foundation, please see
- * <http://www.apache.org/>.
- *
- */
-
-package de.elatexam.httprobot;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import org.apache.log4j.Level;
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.JDOMException;
-import org.jdom.input.SAXBuilder;
-
-import com.meterware.httpunit.Button;
-import com.meterware.httpunit.GetMethodWebRequest;
-import com.meterware.httpunit.HttpUnitOptions;
-import com.meterware.httpunit.WebConversation;
-import com.meterware.httpunit.WebForm;
-import com.meterware.httpunit.WebRequest;
-import com.meterware.httpunit.WebResponse;
-import com.meterware.httpunit.cookies.CookieProperties;
-
-
-/**
- * Die Klasse Robot stellt einen HTML-Bot unter Verwendung HttpUnit zur
- * Verfügung.<br>
- * Die einzelnen Schritte werden dabei mit einer XML-Datei oder einem
- * entsprechenden XML-Root-Element (org.jdom.Element) übergeben.<br>
- * <br>
- * Im einzelnen sind vor allem folgende Methoden relevant:<br>
- * Robot.init ... Initialisierung, �bergabe Parameter und Protokolldateiname.<br>
- * Robot.run ... Abarbeitung der einzelnen Schritte, Übergabe XML-Ablaufplan<br>
- * <br>
- * Robot.getLastByteResult ... Rückgabe zuletzt übertragener Daten als byte[]<br>
- * Robot.getLastTextResult ... Rückgabe zuletzt übertragener Daten als String<br>
- * Robot.getLastInputStreamResult ... Rückgabe zuletzt übertragener Daten als
- * InputStream<br>
- * <br>
- * Die einzelnen Schritte müssen in der Klasse HTMLRobots implementiert sein.<br>
- *
- * @see HTMLRobots
- * @author Oliver Niedtner
- * @version 0.9.1
- *
- */
-public class Robot {
-
-	private WebConversation httpClient = null;
-	private HTMLRobots htmlRobots = null;
-	private Boolean ContinueIfError = true;
-
-  private final Map<String, Map<String, String>> pending;
-
-	private WebResponse lastWebResponse = null;
-	private byte[] lastByteResult = null;
-	private String lastTextResult = null;
-	private String lastResultName = null;
-	private int lastResultStatus = 0;
-
-
-	//logging
-	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(Robot.class);
-
-	// Init, Run, Exit
-  /**
-   * <br>
-   * - Standard-Konfiguration des Web-Clients setzen (httpUnit.WebConversation)<br>
-   * - Verifizierung aller ssl-Zertifikate (Klasse XTrustProvider)<br>
-   *
-   * @throws Exception
-   */
-  public Robot(final String[] parameters) {
-		this.htmlRobots = new HTMLRobots();
-		this.httpClient = new WebConversation();
-    this.pending = new HashMap<String, Map<String, String>>();
-
-		this.lastByteResult = null;
-		this.lastTextResult = null;
-		this.lastResultName = null;
-		this.lastResultStatus = 0;
-
-		//Standard-Konfiguration des Web-Clients setzen
-		this.httpClient.getClientProperties().setAutoRedirect(true);
-		this.httpClient.getClientProperties().setAutoRefresh(true);
-		this.httpClient.getClientProperties().setSendReferer(true);
-		this.httpClient.getClientProperties().setAcceptGzip(true);
-		this.httpClient.getClientProperties().setAcceptCookies(true);
-		HttpUnitOptions.setScriptingEnabled(true);
-
-		//Cookie Richtlinie
-		CookieProperties.setDomainMatchingStrict(false);
-		CookieProperties.setPathMatchingStrict(false);
-
-		// Zertifikate einbinden
-		XTrustProvider.install();
-
-    init(parameters);
-	} // Robot()
-
-
-	/**
-	 * Initialisierung des Bots:<br>
-	 * - Speicherung übergebener Parameter / Konfigurationseinstellungen<br>
-	 * - Initialisierung Logging<br>
-	 *
-	 * @param protocolFileName
-	 *            Dateiname der Protokolldatei
-	 * @param parameters
-	 *            Übergabe Parameter, Format: NAME:WERT
-	 * @throws Exception
-	 */
-  public void init(final String[] parameters) {
-
-		// Parameter
-		if ((parameters != null)) {
-			for (final String param : parameters) {
-        int idx = param.indexOf(':');
-        if (idx == -1)
-          throw new IllegalArgumentException("Invalid parameter syntax, expected: 'name:value', but was: " + param);
-
-        String key = param.substring(0, idx);
-        String value = param.substring(idx + 1);
-        if (!this.setHttpClientParameters(key, value)) {
-          this.setPending("param", key, value);
-				} //if Parameter ist zur Konfiguration
-			} // for
-		} // if Parameter
-
-		Robot.logger.info("LogLevel: " + Robot.logger.getLevel());
-		Robot.logger.info("LogLevel: Zum �ndern den Start-Parameter ('LogLevel:ALL|TRACE|DEBUG|INFO|WARN|ERROR|FATAL') oder STEP-Element CONFIG verwenden.");
-
-
-
-		// Ausgabe Infos httpClient
-		this.printLogger(this.httpClient);
-	} // init
-
-
-  /**
-   * Run robotPlan as specified in XML provided by an inputstream.
-   *
-   * @param in
-   *          inputstream containing a robotplan xml
-   */
-  public void run(final InputStream in) {
-    Document xmlFile;
-    try {
-      xmlFile = new SAXBuilder().build(in);
-      this.run(xmlFile.getRootElement());
-    } catch (final JDOMException e) {
-      throw new RuntimeException(e);
-    } catch (final IOException e) {
-      throw new RuntimeException(e);
-    }
-
-  }
-	/**
-	 * Ausff�hrung des XML-Ablaufplans.<br>
-	 *
-	 * @param xmlFileName
-	 *            Dateiname XML-Datei
-	 * @throws Exception
-	 */
-	public void run(final String xmlFileName) throws Exception {
-		final Document xmlFile = new SAXBuilder().build(xmlFileName);
-		this.run(xmlFile.getRootElement());
-	} // run
-
-	/**
-	 * Ausff�hrung des XML-Ablaufplans.<br>
-	 *
-	 * @param eXMLRobotPlan
-	 *            XML-Rootelement (org.jdom.Element)
-	 * @throws Exception
-	 */
-  public void run(final Element eXMLRobotPlan) {
-		final List<Element> lSteps = eXMLRobotPlan.getChildren("step");
-		for (final Element eStep : lSteps) {
-			this.callMethod("m" + eStep.getChildText("mode"), eStep);
-		} // for
-	} // run
-
-
-	// getter/setter
-	/**
-	 *
-	 * @return aktuelles httpunit.WebResponse-Objekt
-	 */
-	WebResponse getLastWebResponse() {
-		return this.lastWebResponse;
-	} // getLastWebResponse
-
-
-	/**
-	 *
-	 * @return zuletzt �bertragene Daten als byte[]
-	 */
-	public byte[] getLastByteResult() {
-		return this.lastByteResult;
-	} // getLastByteResult
-
-
-	/**
-	 *
-	 * @return zuletzt �bertragene Daten als InputStream
-	 */
-	public InputStream getLastInputStreamResult() {
-		return new ByteArrayInputStream(this.lastByteResult);
-	}
-
-
-	/**
-	 *
-	 * @return zuletzt �bertragene Daten als String (null wenn Konvertierung aus
-	 *         den �bertragenen Daten nicht m�glich)
-	 */
-	public String getLastTextResult() {
-		return this.lastTextResult;
-	} // getLastTextResult
-
-
-	private void setLastByteResult(final InputStream input) throws Exception {
-		Robot.logger.debug("Methode: Robot.setLastByteResult");
-
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    if ((input != null)) {
-      int httpByte = 0;
-
-      while ((httpByte = input.read()) != -1) {
-        baos.write((byte) httpByte);
-      } // while
-    } // if dis
-		this.lastByteResult = baos.toByteArray();
-	} // setByteResult
-
-	void setLastTextResult(final String input) {
-		Robot.logger.debug("Methode: Robot.setLastTextResult");
-		Robot.logger.trace(input);
-		this.lastTextResult = input;
-	} // setLastTextResult
-
-
-	/**
-	 * gibt den Statuscode des letzten HTTP-Response
-	 *
-	 * @return Statuscode des letzten HTTP-Response
-	 */
-	public int getLastResultStatus() {
-		return this.lastResultStatus;
-	} // getLastStatusResult
-
-
-	/**
-	 * gibt des Dateinamen des letzten HTTP-Response
-	 *
-	 * @return Dateiname des letzten HTTP-Response
-	 */
-	public String getLastResultName() {
-		if (this.lastResultName == null || this.lastResultName.equals(""))
-      return "result.$$$";
-    else if (this.lastResultName.equals(".html"))
-      return "result.html";
-    else return this.lastResultName;
-	}
-
-
-	/**
-	 * speichert den letzten HTTP-Response als Datei<br>
-	 * wenn m�glich im Unterverzeichnis "files" relativ zum aktuellen Arbeitsverzeichnis, sonst im aktuellen Arbeitsverzeichnis
-	 *
-	 * @return Dateiname inkl. absoluter Pfad der Datei
-	 */
-	public String saveLastResult () throws Exception{
-		if (this.getLastByteResult().length > 0) {
-
-			//speichern im Unterverzeichnis files
-			File directory = new File("files");
-			if (!directory.exists()) {
-				//wenn Unterverzeichnis "files" nicht existent, anlegen
-				try {
-					directory.mkdir();
-				} catch (final Exception e) {
-					directory = new File("");
-				} //try catch
-			} else if (!directory.isDirectory()) {
-				directory = new File("");
-			}
-			return this.saveLastResult(directory.getAbsolutePath());
-		} //if Datenspeicherung
-		return null;
-	}
-
-
-
-	/**
-	 * speichert den letzten HTTP-Response als Datei<br>
-	 * - im angegebenen Verzeichnis
-	 *
-	 * @param path absolutes Verzeichnis
-	 *
-	 * @return Dateiname inkl. absoluter Pfad der Datei
-	 */
-	public String saveLastResult (final String path) throws Exception {
-		final File directory = new File(path);
-		if (   (this.getLastByteResult().length > 0)
-			&& directory.exists()
-			&& directory.isDirectory()
-		   ) {
-			//speichern im angegebenen Verzeichnis
-			final String filename = directory.getAbsolutePath() + File.separatorChar + this.getLastResultName();
-			Robot.logger.info("Dateiausgabe: " + filename);
-			final FileOutputStream fos = new FileOutputStream(filename);
-			fos.write(this.getLastByteResult());
-			fos.flush();
-			fos.close();
-			return filename;
-		} //if
-		return null;
-	} //saveLastResult(String)
-
-
-
-
-
-	/**
-	 * Setzt Daten zur http-Authentifikation
-	 *
-	 * @param realm
-	 *            Umgebung
-	 * @param username
-	 *            Benutzername
-	 * @param password
-	 *            Password
-	 * @throws Exception
-	 */
-	void setAuthentication(final String realm, final String username, final String password)	throws Exception {
-		this.httpClient.setAuthentication(realm, username, password);
-	} // setAutehntication
-
-
-	/**
-	 * Gibt Wert zuvor gespeicherter Daten zur�ck.<br>
-	 * Format: TYPE:NAME<br>
-	 * Aufrufbeispiel Parameter: Robot.getPending("param:PARAMETERNAME")<br>
-	 *
-	 * @param typeName
-	 *            Type und Name der Daten, Format TYPE:NAME
-	 * @return Wert
-	 * @throws Exception
-	 */
-	String getPending(final String typeName) throws Exception {
-		if (typeName != null && typeName.contains(":"))
-      return this.getPending(typeName.split(":", 2)[0], typeName.split(":", 2)[1]);
-		return "";
-	} // getPending
-
-
-  /**
-   * Gibt Wert zuvor gespeicherter Daten zur�ck.<br>
-   * Aufrufbeispiel Parameter: Robot.getPending("param","PARAMETERNAME")<br>
-   *
-   *
-   * @param type
-   *          Typ der Daten
-   * @param name
-   *          Name der Daten
-   * @return Wert
-   * @throws Exception
-   */
-  String getPending(final String type, final String name) throws Exception {
-    final Map<String, String> valuesOfType = this.pending.get(type);
-    String result = "";
-    if (valuesOfType != null) {
-      result = valuesOfType.get(name);
-    }
-    return result;
-  }
-
-
-	/**
-	 * Speichert Daten.
-	 *
-	 * @param type
-	 *            Typ der Daten
-	 * @param name
-	 *            Name der Daten
-	 * @param value
-	 *            Wert der Daten
-	 * @throws Exception
-	 */
-  void setPending(final String type, final String name, final String value) {
-    Map<String, String> map = pending.get(type);
-    if (map == null) {
-      map = new HashMap<String, String>();
-      pending.put(type, map);
-    }
-    map.put(name, value);
-  }
-
-
-	/**
-	 * Setzt Konfigurationseinstellungen des Bots.<br>
-	 * <br>
-	 * Konfigurations�bersicht / Standardeinstellungen:<br>
-	 * <ul>
-	 * <li>AutoRedirect: true [true | false]</li>
-	 * <li>AutoRefresh: true [true | false]</li>
-	 * <li>SendReferer: true [true | false]</li>
-	 * <li>AcceptGzip: true [true | false]</li>
-	 * <li>AcceptCookies: true [true | false]</li>
- 	 * <li>ExecJavaScript: true [true | false]</li>
- 	 * <li>ContinueIfError: true [true | false]</li>
- 	 * <li>UserAgent: httpunit/1.5 [beliebige Zeichenkette]</li>
-  	 * <li>LogLevel: WARN [ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF]</li>
-	 * </ul>
-	 *
-	 * @param name Parameterbezeichnung
-	 * @param sValue Parameterwert
-	 *
-	 * @return Konfigurationsparameter gefunden und gesetzt
-	 */
-	boolean setHttpClientParameters (final String name, final String sValue) {
-		if ((name != null) && (name != "")) {
-			//Unterscheidung der Verarbeitung: Value als String oder Boolean
-			//1. Verarbeitung als String
-			if (name.equals("LogLevel")) {
-				// ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF
-				Robot.logger.setLevel(Level.toLevel(sValue.toUpperCase(), Level.WARN));
-				return true;
-			} else if (name.equals("UserAgent")) {
-					this.httpClient.getClientProperties().setUserAgent(sValue);
-					return true;
-			} else { //2. Verarbeitung als Boolean
-				final boolean bValue = Boolean.parseBoolean(sValue);
-				if (name.equals("AutoRedirect")) {
-					this.httpClient.getClientProperties().setAutoRedirect(bValue);
-					return true;
-				} else if (name.equals("AutoRefresh")) {
-					this.httpClient.getClientProperties().setAutoRefresh(bValue);
-					return true;
-				} else if (name.equals("SendReferer")) {
-					this.httpClient.getClientProperties().setSendReferer(bValue);
-					return true;
-				} else if (name.equals("AcceptGzip")) {
-					this.httpClient.getClientProperties().setAcceptGzip(bValue);
-					return true;
-				} else if (name.equals("AcceptCookies")) {
-					this.httpClient.getClientProperties().setAcceptCookies(bValue);
-					return true;
-				} else if (name.equals("ExecJavaScript")) {
-					HttpUnitOptions.setScriptingEnabled(bValue);
-					return true;
-				} else if (name.equals("ContinueIfError")) {
-					this.ContinueIfError = bValue;
-					return true;
-				} //if -> versch. Boolean-Konfigurationen
-
-			} //if ->Unterscheidung der Verarbeitung
-
-
-		} //if name->ok
-		return false;
-	} //setHttpClientParameters
-
-
-
-
-// Hilfsfunktionen
-
-	// Logging
-
-	/**
-	 * Loggt alle relevanten Daten eines Formulars (httpunit.WebForm)
-	 *
-	 * @param form
-	 */
-	void printLogger(final WebForm form) {
-		// Logging Form: ohne Parameter
-		Robot.logger.info("Form: " + form.getName());
-		Robot.logger.trace("   Methode: " + form.getMethod());
-		Robot.logger.trace("   Action: " + form.getAction());
-
-		Robot.logger.trace("   Parameter: [Name] --- [Value]");
-		for (final String s : form.getParameterNames()) {
-			Robot.logger.trace("   Parameter: " + s + " --- " + form.getParameterValue(s));
-		}
-
-		Robot.logger.trace("   Button: [Name] --- [ID] --- [Type] --- [Value]");
-		for (final Button b : form.getButtons()) {
-			Robot.logger.trace("   Button: " + b.getName() + " --- " + b.getID() + " --- " + b.getType() + " --- " + b.getValue());
-		}
-
-		// robot.logger.info("Action: " + form);
-	} // printLogger WebForm
-
-
-
-	/**
-	 * Loggt alle relevanten Daten des aktuellen Web-Clients (httpunit.WebConversation)<br>
-	 * zzgl. LogLevel und Pending
-	 */
-	void printLoggerWebClient () {
-		//Logging Web-Client
-		this.printLogger(this.httpClient);
-
-		//Logging LogLevel
-		Robot.logger.info("   LogLevel: " + Robot.logger.getLevel());
-
-		//Logging Pending
-    if (Robot.logger.isTraceEnabled() && (this.pending.isEmpty() == false)) {
-      Robot.logger.trace("Pending: ");
-      Robot.logger.trace(pending);
-		} // if
-	} //printLoggerWebClient
-
-
-	/**
-	 * Loggt alle relevanten Daten eines Web-Clients (httpunit.WebConversation)
-	 *
-	 * @param client
-	 */
-	void printLogger (final WebConversation client) {
-		Robot.logger.info("Client: [Name] --- [Value]");
-		Robot.logger.info("   AutoRedirect: " + client.getClientProperties().isAutoRedirect());
-		Robot.logger.info("   AutoRefresh: " + client.getClientProperties().isAutoRefresh());
-		Robot.logger.info("   SendReferer: " + client.getClientProperties().isSendReferer());
-		Robot.logger.info("   UserAgent: " + client.getClientProperties().getUserAgent());
-		Robot.logger.info("   AcceptGZip: " + client.getClientProperties().isAcceptGzip());
-		Robot.logger.info("   AcceptCokies: " + client.getClientProperties().isAcceptCookies());
-		Robot.logger.info("   ExecJavaScript: " + HttpUnitOptions.isScriptingEnabled());
-	} // printLogger WebConversation
-
-	/**
-	 * Loggt alle relevanten Daten eines Web-Response (httpunit.WebResponse)
-	 *
-	 * @param response
-	 */
-	void printLogger(final WebResponse response) {
-		Robot.logger.info("Response: " + response.getURL().toString());
-		Robot.logger.debug("   Status: " + response.getResponseCode() + " (" + response.getResponseMessage() + ")");
-
-		if (Robot.logger.isDebugEnabled()) {
-			Robot.logger.debug("   Cookie: [Name] --- [Value]");
-			for (final String s : response.getClient().getCookieNames()) {
-				Robot.logger.debug("   Cookie  : " + s + " --- " + response.getClient().getCookieValue(s));
-				Robot.logger.trace("      URL  : " + response.getClient().getCookieDetails(s).getDomain());
-				Robot.logger.trace("      End  : " + response.getClient().getCookieDetails(s).getExpiredTime());
-				Robot.logger.trace("      Path : " + response.getClient().getCookieDetails(s).getPath());
-				Robot.logger.trace("      Name : " + response.getClient().getCookieDetails(s).getName());
-				Robot.logger.trace("      Value: " + response.getClient().getCookieDetails(s).getValue());
-			} //for Cookie
-
-			Robot.logger.debug("   CookieNew: [Name] --- [Value]");
-			for (final String s : response.getNewCookieNames()) {
-				Robot.logger.debug("   CookieNew: " + s + " --- " + response.getNewCookieValue(s));
-			} // for CookieNew
-
-			Robot.logger.debug("   Header: [Name] --- [Value]");
-			for (final String s : response.getHeaderFieldNames()) {
-				Robot.logger.debug("   Header: " + s + " --- " + response.getHeaderField(s));
-			} //for Header
-
-		} // if DebugEnabled
-	} // printLogger WebResponse
-
-
-
-
-
-
-
-	// HTMLRobots-call-Funktionen
-  private String callMethod(final String methode, final Element eStep) {
-		Robot.logger.info("Methode: Robot.callMethode -- Aufruf " + methode);
-		try {
-			return this.htmlRobots.getClass().getMethod(methode,
-					this.getClass(), eStep.getClass()).invoke(this.htmlRobots,
-					this, eStep).toString();
-		} catch (final Exception e) {
-			if (Robot.logger.isDebugEnabled()) {
-				Robot.logger.debug("FEHLER Robot.callElement: " + methode, e);
-			} else {
-				Robot.logger.warn("FEHLER Robot.callStep: " + methode);
-				Robot.logger.warn(e.toString());
-			} // if else
-			if (!this.ContinueIfError) {
-				new Exception("Fehler in der Abarbeitung, ContinueIfError==false, Fehlermeldung siehe Logdatei.\nDatum / Uhrzeit: "
-						        + new SimpleDateFormat("yyyyMMdd-HHmm").format(new Date()));
-			}
-		} // try catch
-		return "";
-	} // callMethod
-
-	private String callMethod(final String methode, final String htmlCode, final String name) {
-		try {
-			return this.htmlRobots.getClass().getMethod(methode,
-					this.getClass(), htmlCode.getClass(), name.getClass())
-					.invoke(this.htmlRobots, this, htmlCode, name).toString();
-		} catch (final Exception e) {
-			if (Robot.logger.isDebugEnabled()) {
-				Robot.logger.debug("FEHLER Robot.callElement: " + methode, e);
-			} else {
-				Robot.logger.warn("FEHLER Robot.callStep: " + methode);
-				Robot.logger.warn(e.toString());
-			} // if else
-			if (!this.ContinueIfError) {
-				new Exception("Fehler in der Abarbeitung, ContinueIfError==false, Fehlermeldung siehe Logdatei.\nDatum / Uhrzeit: "
-						        + new SimpleDateFormat("yyyyMMdd-HHmm").format(new Date()));
-			}
-		} // try catch
-		return "";
-	} // call Method
-
-
-
-
-	/**
-	 * F�hrt einen Web-Request mit dem aktuellen Web-Client aus.
-	 *
-	 * @param request
-	 *            auszuf�hrender Web-Request (httpunit.WebRequest)
-	 * @return Erfolg der Ausf�hrung
-	 * @throws Exception
-	 */
-	Boolean execHTTP(final WebRequest request) throws Exception {
-		Robot.logger.debug("execHTTP: " + request.getURL().toString());
-		this.lastWebResponse = this.httpClient.getResource(request);
-
-		if (this.lastWebResponse != null) {
-			this.printLogger(this.lastWebResponse);
-
-			// for (String s :
-			// this.lastWebResponse.getHeaderFields("set-cookie")) {
-			// this.httpClient.putCookie(s.split("=", 2)[0], s.split("=",
-			// 2)[1]);
-			// }
-
-			for (final String s : this.lastWebResponse.getNewCookieNames()) {
-				this.httpClient.putCookie(s, this.lastWebResponse
-						.getNewCookieValue(s));
-			} // for
-
-			switch (this.lastResultStatus = this.lastWebResponse.getResponseCode()) {
-			case 301:
-			case 302:
-			case 303:
-			case 304:
-			case 305:
-			case 306:
-			case 307: // http-Codes 301-307: Redirect, wenn AutoRedirect == true
-				if (this.httpClient.getClientProperties().isAutoRedirect()) {
-					Robot.logger.debug("REDIRECT " + this.lastResultStatus + ": " + this.lastWebResponse.getHeaderField("location"));
-					return this.execHTTP(new GetMethodWebRequest(new URL(this.lastWebResponse.getURL(), this.lastWebResponse.getHeaderField("location")).toString()));
-				} // if
-				// case 301-307: Redirect
-			default:
-				//Refresh per Meta-Tag wenn AutoRefresh == true
-				if (    this.httpClient.getClientProperties().isAutoRefresh()
-					&&  this.lastWebResponse.isHTML()
-					&& (this.lastWebResponse.getMetaTagContent("http-equiv", "refresh") != null)
-					&& (this.lastWebResponse.getMetaTagContent("http-equiv", "refresh").length > 0)
-				   ) {
-					final String refresh = this.lastWebResponse.getMetaTagContent("http-equiv", "refresh")[0];
-					Robot.logger.debug("REFRESH: " + refresh);
-					final int refresh_timeout = Integer.parseInt(refresh.split(";", 2)[0]);
-					final String refresh_url  = refresh.split(";", 2)[1].replaceFirst("url=", "");
-					Thread.sleep(refresh_timeout*1000+100);
-					return this.execHTTP(new GetMethodWebRequest(new URL(this.lastWebResponse.getURL(), refresh_url).toString()));
-				} //if Refresh per Meta-Tag
-
-
-				//speichern korrekter Dateiname (entweder aus Header oder aus URL)
-				if (   (this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION") != null)
-					&&  !this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION").equals("")
-				   ) {
-					this.lastResultName = this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION").replaceAll(";", "").replaceAll(".*?filename=", "").replaceAll("\"", "");
-				} else {
-					this.lastResultName = this.lastWebResponse.getURL().getPath().replaceAll("/.*/", "");
-					if (   this.lastWebResponse.isHTML()
-						&& !(this.lastResultName.endsWith(".htm") || this.lastResultName.endsWith(".html"))
-					   ) {
-						this.lastResultName += ".html";
-					} //if
-				} //if else Dateiname im Header �bertragen
-
-
-				//speichern Inhalt
-				this.setLastByteResult(this.lastWebResponse.getInputStream());
-				if (this.lastWebResponse.isHTML()) {
-					this.setLastTextResult(this.lastWebResponse.getText());
-				} // if
-
-				return true;
-				// default
-			} // switch
-		} // if
-		return false;
-	} // execHTTP
-
-
-
-
-
-
-
-
-
-
-
-	// Main
-	/**
-	 * Hauptmethode<br>
-	 * <ul>
-	 * <li>1. Paramter: XML-Datei</li>
-	 * <li>ab 2. Paramter:<br>
-	 *     - Konfiguration (siehe setHttpClientParameters) oder<br>
-	 *     - Paramter f�r die Abarbeitung (siehe Klasse HTMLRobots)</li>
-	 * </ul>
-	 * @see setHttpClientParameters
-	 * @see HTMLRobots
-	 * @param args Parameter
-	 * @throws Exception
-	 */
-	public static void main (final String[] args) throws Exception {
-
-		if ((args != null) && (args.length > 0)) {
-			Robot robot;
-
-			//1. Parameter abspalten, da XML-Datei
-			if (args.length > 1) {
-			  final String[] params = new String[args.length-1];
-			  System.arraycopy(args, 1, params, 0, params.length);
-
-        robot = new Robot(params);
-			} else {
-        robot = new Robot(null);
-			} // if else
-			robot.run(args[0]);
-			System.out.println(new String(robot.getLastByteResult()));
-			robot.saveLastResult();
-		} else {
-			Robot.logger.fatal("Parameter fehlt!");
-			System.out.println("Parameter fehlt!");
-			System.out.println("java Robot XMLDateiname Parameter");
-		} // if else
-	} // main
-
-
-} // class Robot
-
-
+/*
+ * ====================================================================
+ *
+
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Level;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.JDOMException;
+import org.jdom.input.SAXBuilder;
+
+import com.meterware.httpunit.Button;
+import com.meterware.httpunit.ClientProperties;
+import com.meterware.httpunit.FrameSelector;
+import com.meterware.httpunit.GetMethodWebRequest;
+import com.meterware.httpunit.HttpUnitOptions;
+import com.meterware.httpunit.WebConversation;
+import com.meterware.httpunit.WebForm;
+import com.meterware.httpunit.WebRequest;
+import com.meterware.httpunit.WebResponse;
+import com.meterware.httpunit.cookies.Cookie;
+import com.meterware.httpunit.cookies.CookieProperties;
+
+
+/**
+ * Die Klasse Robot stellt einen HTML-Bot unter Verwendung HttpUnit zur
+ * Verfügung.<br>
+ * Die einzelnen Schritte werden dabei mit einer XML-Datei oder einem
+ * entsprechenden XML-Root-Element (org.jdom.Element) übergeben.<br>
+ * <br>
+ * Im einzelnen sind vor allem folgende Methoden relevant:<br>
+ * Robot.init ... Initialisierung, �bergabe Parameter und Protokolldateiname.<br>
+ * Robot.run ... Abarbeitung der einzelnen Schritte, Übergabe XML-Ablaufplan<br>
+ * <br>
+ * Robot.getLastByteResult ... Rückgabe zuletzt übertragener Daten als byte[]<br>
+ * Robot.getLastTextResult ... Rückgabe zuletzt übertragener Daten als String<br>
+ * Robot.getLastInputStreamResult ... Rückgabe zuletzt übertragener Daten als
+ * InputStream<br>
+ * <br>
+ * Die einzelnen Schritte werden über die StepRegistry aufgelöst (siehe HTMLRobots).<br>
+ *
+ * @see HTMLRobots
+ * @see RobotPlan
+ * @author Oliver Niedtner
+ * @version 0.9.1
+ *
+ */
+public class Robot {
+
+	private RobotConversation httpClient = null;
+	private Boolean ContinueIfError = true;
+	private boolean ExecJavaScript = true;
+	private boolean LazyHTML = true;
+
+  private final Variables pending;
+	private final Map<String, String[]> authentication = new LinkedHashMap<String, String[]>();
+
+	private WebResponse lastWebResponse = null;
+	private PageIndex pageIndex = null;
+	private ResultBuffer lastByteResult = null;
+	private ResultSink nextResultSink = null;
+	private String nextResultSaveID = null;
+
+	private String httpCacheFile = null;
+	private long httpCacheMaxBytes = HttpCache.DEFAULT_MAX_BYTES;
+	private int connectTimeout = 0;
+	private int readTimeout = 0;
+	private int maxRedirects = Robot.DEFAULT_MAX_REDIRECTS;
+	private String sessionKey = null;
+	private boolean sessionRestore = true;
+
+	//vorgemerkter Refresh der letzten Seite
+	private String refreshURL = null;
+	private long refreshDue = 0;
+	private int refreshHops = 0;
+
+	//Metriken des laufenden Schrittes
+	private RobotMetrics metrics = null;
+	private String metricsFile = null;
+	private long stepStartNanos = 0;
+	private long stepFirstResponseNanos = 0;
+	private long stepFirstHeadersNanos = 0;
+	private long stepBytes = 0;
+	private int stepRedirects = 0;
+
+	//Zeitlimits je Schritt und Ablaufplan in ms (0 ohne), Beginn des Ablaufplans
+	private long stepTimeout = 0;
+	private long planTimeout = 0;
+	private long planStartNanos = 0;
+	private String hedge = "off";
+	private long hedgeMinDelay = HedgePolicy.DEFAULT_MIN_DELAY_MILLIS;
+
+	//SAVE im Hintergrund
+	private SaveWriter saveWriter = new SaveWriter();
+
+	//SAVE in den Ergebnisspeicher (ResultStore), null für Dateien
+	private ResultStore resultStore = null;
+	private String resultCompression = ResultStore.NONE;
+	private String resultRun = null;
+	private int stepNumber = 0;
+
+	//Ereignisprotokoll (EventLog), null wenn abgeschaltet
+	private EventLog eventLog = null;
+	private int eventRobot = 0;
+	private String lastTextResult = null;
+	private String lastTextCharset = null;
+	private SoftReference<String> lastTextCache = null;
+	private String lastResultName = null;
+	private int lastResultStatus = 0;
+
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(Robot.class);
+
+	private static boolean globalsInstalled = false;
+
+	/** Standard für MaxRedirects */
+	public static final int DEFAULT_MAX_REDIRECTS = 20;
+
+	/** Blockgröße beim Lesen der HTTP-Antworten */
+	private static final int TRANSFER_CHUNK_SIZE = 8192;
+
+	// Init, Run, Exit
+  /**
+   * <br>
+   * - Standard-Konfiguration des Web-Clients setzen (httpUnit.WebConversation)<br>
+   * - Verifizierung aller ssl-Zertifikate (Klasse XTrustProvider)<br>
+   * <br>
+   * All options are kept per instance, so several robots may run side by
+   * side in one JVM (see RobotPool). A single robot must not be used by
+   * more than one thread at a time.
+   *
+   * @throws Exception
+   */
+  public Robot(final String[] parameters) {
+		Robot.installGlobals();
+
+		this.httpClient = new RobotConversation();
+    this.pending = new Variables();
+
+		this.lastByteResult = null;
+		this.lastTextResult = null;
+		this.lastResultName = null;
+		this.lastResultStatus = 0;
+
+		//Standard-Konfiguration des Web-Clients setzen
+		this.httpClient.getClientProperties().setAutoRedirect(true);
+		this.httpClient.getClientProperties().setAutoRefresh(true);
+		this.httpClient.getClientProperties().setSendReferer(true);
+		this.httpClient.getClientProperties().setAcceptGzip(true);
+		this.httpClient.getClientProperties().setAcceptCookies(true);
+		this.ExecJavaScript = true;
+
+    init(parameters);
+	} // Robot()
+
+
+	/**
+	 * Setzt die JVM-weiten Einstellungen genau einmal:<br>
+	 * - Cookie Richtlinie (CookieProperties ist in httpunit global)<br>
+	 * - Scripting über SessionScriptingEngineFactory, die ExecJavaScript je
+	 *   Robot-Instanz auswertet<br>
+	 * - Verifizierung aller ssl-Zertifikate (Klasse XTrustProvider)<br>
+	 */
+	private static synchronized void installGlobals() {
+		if (Robot.globalsInstalled) {
+			return;
+		}
+		//Cookie Richtlinie
+		CookieProperties.setDomainMatchingStrict(false);
+		CookieProperties.setPathMatchingStrict(false);
+
+		//Scripting, Freigabe je Robot siehe callStep
+		HttpUnitOptions.setScriptEngineClassName(SessionScriptingEngineFactory.class.getName());
+		HttpUnitOptions.setScriptingEnabled(true);
+
+		// Zertifikate einbinden
+		XTrustProvider.install();
+		Robot.globalsInstalled = true;
+	} // installGlobals
+
+
+	/**
+	 * Initialisierung des Bots:<br>
+	 * - Speicherung übergebener Parameter / Konfigurationseinstellungen<br>
+	 * - Initialisierung Logging<br>
+	 *
+	 * @param protocolFileName
+	 *            Dateiname der Protokolldatei
+	 * @param parameters
+	 *            Übergabe Parameter, Format: NAME:WERT
+	 * @throws Exception
+	 */
+  public void init(final String[] parameters) {
+
+		// Parameter
+		if ((parameters != null)) {
+			for (final String param : parameters) {
+        int idx = param.indexOf(':');
+        if (idx == -1)
+          throw new IllegalArgumentException("Invalid parameter syntax, expected: 'name:value', but was: " + param);
+
+        String key = param.substring(0, idx);
+        String value = param.substring(idx + 1);
+        if (!this.setHttpClientParameters(key, value)) {
+          this.setPending("param", key, value);
+				} //if Parameter ist zur Konfiguration
+			} // for
+		} // if Parameter
+
+		Robot.logger.info("LogLevel: " + Robot.logger.getLevel());
+		Robot.logger.info("LogLevel: Zum �ndern den Start-Parameter ('LogLevel:ALL|TRACE|DEBUG|INFO|WARN|ERROR|FATAL') oder STEP-Element CONFIG verwenden.");
+
+
+
+		// Ausgabe Infos httpClient
+		this.printLogger(this.httpClient);
+	} // init
+
+
+  /**
+   * Run robotPlan as specified in XML provided by an inputstream.
+   *
+   * @param in
+   *          inputstream containing a robotplan xml
+   */
+  public void run(final InputStream in) {
+    Document xmlFile;
+    try {
+      xmlFile = new SAXBuilder().build(in);
+      this.run(xmlFile.getRootElement());
+    } catch (final JDOMException e) {
+      throw new RuntimeException(e);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+
+  }
+	/**
+	 * Ausff�hrung des XML-Ablaufplans.<br>
+	 *
+	 * @param xmlFileName
+	 *            Dateiname XML-Datei
+	 * @throws Exception
+	 */
+	public void run(final String xmlFileName) throws Exception {
+		final Document xmlFile = new SAXBuilder().build(xmlFileName);
+		this.run(xmlFile.getRootElement());
+	} // run
+
+	/**
+	 * Ausff�hrung des XML-Ablaufplans.<br>
+	 *
+	 * @param eXMLRobotPlan
+	 *            XML-Rootelement (org.jdom.Element)
+	 * @throws Exception
+	 */
+  public void run(final Element eXMLRobotPlan) {
+    final RobotPlan plan;
+    try {
+      plan = RobotPlan.compile(eXMLRobotPlan);
+    } catch (final RuntimeException e) {
+      throw e;
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+    this.run(plan);
+	} // run
+
+
+  /**
+   * Run a compiled robotPlan. The same plan may be run repeatedly.
+   *
+   * @param plan
+   *          compiled plan
+   */
+  public void run(final RobotPlan plan) {
+    final List<Step> steps = plan.getSteps();
+    for (int i = this.restoreCheckpoint(steps); i < steps.size(); i++) {
+      this.callStep(steps.get(i));
+      this.awaitRefresh();
+    } // for
+    this.finish();
+  } // run
+
+
+  /**
+   * Wartet nach dem Ablaufplan auf die gespeicherten Dateien und schreibt
+   * Metriken, HTTP-Cache und Aufzeichnung.
+   */
+  void finish() {
+    this.planStartNanos = 0;
+    final int failed = this.saveWriter.await();
+    if (failed > 0) {
+      Robot.logger.error(failed + " Datei(en) konnten nicht gespeichert werden");
+    }
+    if ((this.metrics != null) && (this.metricsFile != null)) {
+      try {
+        this.metrics.writeTo(this.metricsFile);
+      } catch (final IOException e) {
+        Robot.logger.error("Metriken konnten nicht geschrieben werden: " + this.metricsFile, e);
+      }
+    } // if Metriken
+    final HttpCache cache = this.httpClient.getCache();
+    if (cache != null) {
+      try {
+        cache.save();
+      } catch (final IOException e) {
+        Robot.logger.error("HTTP-Cache konnte nicht geschrieben werden: " + cache.getFile(), e);
+      }
+    } // if Cache
+    final Cassette cassette = this.httpClient.getCassette();
+    if ((cassette != null) && cassette.isRecording()) {
+      try {
+        cassette.save();
+      } catch (final IOException e) {
+        Robot.logger.error("Cassette konnte nicht geschrieben werden: " + cassette.getFile(), e);
+      }
+    } // if Aufzeichnung
+    if (this.eventLog != null) {
+      try {
+        this.eventLog.flush(5000);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } // if Ereignisprotokoll
+  } // finish
+
+
+	// getter/setter
+	/**
+	 *
+	 * @return aktuelles httpunit.WebResponse-Objekt
+	 */
+	WebResponse getLastWebResponse() {
+		return this.lastWebResponse;
+	} // getLastWebResponse
+
+
+	/**
+	 *
+	 * @return WebConversation des Robots (Cookies, Header, Transport)
+	 */
+	RobotConversation getHttpClient() {
+		return this.httpClient;
+	} // getHttpClient
+
+
+	/**
+	 *
+	 * @return neuer PooledHttpTransport mit den Timeouts des Robots
+	 */
+	PooledHttpTransport newPooledTransport() {
+		return new PooledHttpTransport(this.connectTimeout, this.readTimeout);
+	} // newPooledTransport
+
+
+	/**
+	 * zählt außerhalb von execHTTP übertragene Bytes zum laufenden Schritt (Metriken)
+	 */
+	void addStepBytes(final long n) {
+		this.stepBytes += n;
+	} // addStepBytes
+
+
+	/**
+	 *
+	 * @return Link-/Formularindex zu getLastWebResponse, wird je Antwort einmal aufgebaut
+	 */
+	PageIndex getPageIndex() {
+		if ((this.pageIndex == null) || (this.pageIndex.getResponse() != this.lastWebResponse)) {
+			this.pageIndex = new PageIndex(this.lastWebResponse);
+		}
+		return this.pageIndex;
+	} // getPageIndex
+
+
+	/**
+	 *
+	 * @return zuletzt �bertragene Daten als byte[]
+	 */
+	public byte[] getLastByteResult() {
+		return this.lastByteResult == null ? null : this.lastByteResult.getBytes();
+	} // getLastByteResult
+
+
+	/**
+	 *
+	 * @return zuletzt �bertragene Daten als InputStream
+	 */
+	public InputStream getLastInputStreamResult() {
+		return this.lastByteResult == null ? null : this.lastByteResult.getInputStream();
+	}
+
+
+	/**
+	 *
+	 * @return Zeichensatz der zuletzt übertragenen Daten (Header, Meta-Tag oder Standard)
+	 */
+	String getLastResultCharset() {
+		if (this.lastTextCharset != null) {
+			return this.lastTextCharset;
+		}
+		return (this.lastWebResponse != null) ? this.lastWebResponse.getCharacterSet() : "ISO-8859-1";
+	} // getLastResultCharset
+
+
+	/**
+	 *
+	 * Der Text einer HTML-Antwort wird erst beim ersten Aufruf aus
+	 * getLastByteResult mit dem Zeichensatz der Antwort dekodiert und nur
+	 * weich (SoftReference) zwischengespeichert.
+	 *
+	 * @return zuletzt �bertragene Daten als String (null wenn Konvertierung aus
+	 *         den �bertragenen Daten nicht m�glich)
+	 */
+	public String getLastTextResult() {
+		if ((this.lastTextResult != null) || (this.lastTextCharset == null)) {
+			return this.lastTextResult;
+		} // if Text gesetzt oder nicht dekodierbar
+
+		String text = (this.lastTextCache != null) ? this.lastTextCache.get() : null;
+		if (text == null) {
+			try {
+				text = this.lastByteResult.toString(this.lastTextCharset);
+			} catch (final UnsupportedEncodingException e) {
+				Robot.logger.warn("Zeichensatz nicht unterstützt: " + this.lastTextCharset);
+				this.lastTextCharset = null;
+				return null;
+			} // try catch
+			this.lastTextCache = new SoftReference<String>(text);
+			if (Robot.logger.isTraceEnabled()) {
+				Robot.logger.trace("Text dekodiert: " + text.length() + " Zeichen");
+			}
+		} // if
+		return text;
+	} // getLastTextResult
+
+
+	/**
+	 * Liest den Inhalt blockweise und übergibt ihn an die ResultSink
+	 * (Standard: Speicher-Puffer, siehe setResultSink).
+	 *
+	 * @return Inhalt im Speicher-Puffer abgelegt
+	 */
+	private boolean setLastByteResult(final InputStream input, final int contentLength) throws Exception {
+		Robot.logger.debug("Methode: Robot.setLastByteResult");
+
+		this.lastByteResult = new ResultBuffer();
+		final ResultSink sink = (this.nextResultSink != null) ? this.nextResultSink : this.lastByteResult;
+		final String saveID = this.nextResultSaveID;
+		this.nextResultSink = null;
+		this.nextResultSaveID = null;
+
+		sink.open(this.getLastResultName(), contentLength);
+		boolean complete = false;
+		try {
+			if ((input != null)) {
+				final byte[] chunk = new byte[Robot.TRANSFER_CHUNK_SIZE];
+				int n;
+				final long deadline = this.httpClient.getDeadline();
+				try {
+					//ein stockender Inhalt endet spätestens mit dem Lese-Timeout, den der Transport auf die Restzeit begrenzt
+					while ((n = input.read(chunk)) != -1) {
+						sink.write(chunk, 0, n);
+						this.stepBytes += n;
+						if ((deadline != 0) && (System.nanoTime() - deadline >= 0)) {
+							throw new IOException("Zeitlimit überschritten nach " + this.stepBytes + " Bytes: " + this.getLastResultName());
+						}
+					} // while
+				} catch (final IOException e) {
+					//den Rest nicht mehr lesen, Verbindung verwerfen
+					if (deadline != 0) {
+						this.httpClient.abortBody();
+					}
+					throw e;
+				} // try catch
+			} // if dis
+			complete = true;
+		} finally {
+			//unvollständiger Inhalt ersetzt keine Datei
+			if (!complete && (sink instanceof FileResultSink)) {
+				((FileResultSink) sink).fail();
+			}
+			sink.close();
+		} // try finally
+
+		if ((sink instanceof FileResultSink) && ((FileResultSink) sink).isFailed()) {
+			Robot.logger.warn("Antwort unvollständig, nicht gespeichert: " + this.getLastResultName());
+		} else if ((saveID != null) && (sink instanceof FileResultSink)) {
+			Robot.logger.info("Dateiausgabe: " + ((FileResultSink) sink).getFileName());
+			this.setPending("save", saveID, ((FileResultSink) sink).getFileName());
+		} // if
+		return sink == this.lastByteResult;
+	} // setByteResult
+
+
+	/**
+	 * Setzt den Transport für alle folgenden HTTP-Anfragen (z.B.
+	 * PooledHttpTransport oder eine eigene Implementierung). Cookies,
+	 * Redirects und die Auswertung der Antworten bleiben unverändert.
+	 *
+	 * @param transport Transport, null für die Anfragen durch httpunit
+	 */
+	public void setTransport(final HttpTransport transport) {
+		this.httpClient.setTransport(transport);
+	} // setTransport
+
+
+	/**
+	 * Setzt die Metriken, in die jeder ausgeführte Schritt eingetragen wird.
+	 * Eine Instanz kann von mehreren Robots gemeinsam genutzt werden.
+	 *
+	 * @param metrics Metriken, null zum Abschalten
+	 */
+	public void setMetrics(final RobotMetrics metrics) {
+		this.metrics = metrics;
+	} // setMetrics
+
+
+	/**
+	 * Schreibt SAVE-Ergebnisse über die Warteschlange eines anderen Robots,
+	 * dessen finish() dann auch auf die Dateien dieses Robots wartet (siehe
+	 * LoadRunner: ein finish() je virtuellem Benutzer).
+	 *
+	 * @param robot Robot, dessen Warteschlange verwendet wird
+	 */
+	void shareSaveWriter(final Robot robot) {
+		this.saveWriter = robot.saveWriter;
+	} // shareSaveWriter
+
+
+	/**
+	 * @return Metriken dieses Robots (null wenn nicht aktiviert), für Export auf Abruf
+	 */
+	public RobotMetrics getMetrics() {
+		return this.metrics;
+	} // getMetrics
+
+
+	/**
+	 * Setzt eine ResultSink, die den Inhalt der nächsten HTTP-Antwort beim
+	 * Empfang erhält. Der Inhalt wird dann nicht im Speicher gehalten,
+	 * getLastByteResult liefert für diese Antwort ein leeres Feld.
+	 *
+	 * @param sink Empfänger der nächsten Antwort, null für Standardverhalten
+	 */
+	public void setResultSink(final ResultSink sink) {
+		this.nextResultSink = sink;
+		this.nextResultSaveID = null;
+	} // setResultSink
+
+
+	/**
+	 * Schreibt die nächste HTTP-Antwort beim Empfang direkt als Datei (siehe
+	 * HTMLRobots.mSAVE, {@code <stream>}). Der Dateiname wird nach dem Empfang
+	 * unter "save" / saveID gespeichert.
+	 *
+	 * @param path Verzeichnis, null für Unterverzeichnis "files"
+	 * @param saveID ID der Datei
+	 * @return Vorbereitung erfolgreich (Verzeichnis vorhanden)
+	 */
+	boolean streamNextResult(final String path, final String saveID) {
+		if (this.resultStore != null) {
+			this.nextResultSink = this.resultStore.newSink(this.resultCompression, this.getResultRun(), this.stepNumber, saveID);
+			this.nextResultSaveID = saveID;
+			return true;
+		} // if Ergebnisspeicher
+		final File directory = (path == null) ? this.getDefaultSaveDirectory() : new File(path);
+		if (directory.exists() && directory.isDirectory()) {
+			this.nextResultSink = new FileResultSink(directory);
+			this.nextResultSaveID = saveID;
+			return true;
+		} // if
+		return false;
+	} // streamNextResult
+
+	void setLastTextResult(final String input) {
+		Robot.logger.debug("Methode: Robot.setLastTextResult");
+		if (Robot.logger.isTraceEnabled()) {
+			Robot.logger.trace("Text gesetzt: " + ((input != null) ? input.length() + " Zeichen" : null));
+		}
+		this.lastTextResult = input;
+		this.lastTextCharset = null;
+		this.lastTextCache = null;
+	} // setLastTextResult
+
+
+	/**
+	 * gibt den Statuscode des letzten HTTP-Response
+	 *
+	 * @return Statuscode des letzten HTTP-Response
+	 */
+	public int getLastResultStatus() {
+		return this.lastResultStatus;
+	} // getLastStatusResult
+
+
+	/**
+	 * gibt des Dateinamen des letzten HTTP-Response
+	 *
+	 * @return Dateiname des letzten HTTP-Response
+	 */
+	public String getLastResultName() {
+		if (this.lastResultName == null || this.lastResultName.equals(""))
+      return "result.$$$";
+    else if (this.lastResultName.equals(".html"))
+      return "result.html";
+    else return this.lastResultName;
+	}
+
+
+	/**
+	 * speichert den letzten HTTP-Response als Datei<br>
+	 * wenn m�glich im Unterverzeichnis "files" relativ zum aktuellen Arbeitsverzeichnis, sonst im aktuellen Arbeitsverzeichnis
+	 *
+	 * @return Dateiname inkl. absoluter Pfad der Datei
+	 */
+	public String saveLastResult () throws Exception{
+		if (this.lastByteResult.size() > 0) {
+			//speichern im Unterverzeichnis files
+			return this.saveLastResult(this.getDefaultSaveDirectory().getAbsolutePath());
+		} //if Datenspeicherung
+		return null;
+	}
+
+
+	/**
+	 * @return Unterverzeichnis "files" (wird bei Bedarf angelegt), sonst aktuelles Arbeitsverzeichnis
+	 */
+	File getDefaultSaveDirectory() {
+		File directory = new File("files");
+		if (!directory.exists()) {
+			//wenn Unterverzeichnis "files" nicht existent, anlegen
+			try {
+				directory.mkdir();
+			} catch (final Exception e) {
+				directory = new File("");
+			} //try catch
+		} else if (!directory.isDirectory()) {
+			directory = new File("");
+		}
+		return directory.getAbsoluteFile();
+	} // getDefaultSaveDirectory
+
+
+
+	/**
+	 * speichert den letzten HTTP-Response als Datei<br>
+	 * - im angegebenen Verzeichnis
+	 *
+	 * @param path absolutes Verzeichnis
+	 *
+	 * @return Dateiname inkl. absoluter Pfad der Datei
+	 */
+	public String saveLastResult (final String path) throws Exception {
+		final File file = this.getSaveFile(path);
+		if (file != null) {
+			//speichern im angegebenen Verzeichnis
+			final String filename = file.getPath();
+			Robot.logger.info("Dateiausgabe: " + filename);
+			final FileOutputStream fos = new FileOutputStream(filename);
+			try {
+				this.lastByteResult.writeTo(fos.getChannel());
+			} finally {
+				fos.close();
+			} // try finally
+			return filename;
+		} //if
+		return null;
+	} //saveLastResult(String)
+
+
+	/**
+	 * speichert den letzten HTTP-Response im Hintergrund (SaveWriter),
+	 * die Datei erscheint vollständig unter dem zurückgegebenen Namen,
+	 * sobald sie geschrieben ist; spätestens nach dem Ablaufplan.
+	 *
+	 * Mit Ergebnisspeicher (ResultStore) wird der Inhalt dort abgelegt und
+	 * der Pfad ignoriert.
+	 *
+	 * @param path Verzeichnis, null für "files" (siehe saveLastResult())
+	 * @param saveID ID der Datei (Index des Ergebnisspeichers)
+	 * @return Dateiname inkl. absoluter Pfad der Datei
+	 */
+	String queueLastResult(final String path, final String saveID) throws Exception {
+		if ((this.lastByteResult == null) || (this.lastByteResult.size() == 0)) {
+			return null;
+		}
+		if (this.resultStore != null) {
+			final String blob = this.resultStore.put(this.lastByteResult, this.resultCompression, this.saveWriter,
+					this.getResultRun(), this.stepNumber, saveID, this.getLastResultName());
+			Robot.logger.info("Dateiausgabe: " + blob);
+			return blob;
+		} // if Ergebnisspeicher
+		final File file = this.getSaveFile((path != null) ? path : this.getDefaultSaveDirectory().getPath());
+		if (file != null) {
+			Robot.logger.info("Dateiausgabe: " + file.getPath());
+			return this.saveWriter.save(this.lastByteResult, file);
+		}
+		return null;
+	} // queueLastResult
+
+
+	/**
+	 * @return Lauf im Index des Ergebnisspeichers (ResultStoreRun)
+	 */
+	private String getResultRun() {
+		if (this.resultRun == null) {
+			this.resultRun = ResultStore.newRun();
+		}
+		return this.resultRun;
+	} // getResultRun
+
+
+	/**
+	 * @return Datei für den letzten HTTP-Response im Verzeichnis, null wenn
+	 *         nichts zu speichern ist oder das Verzeichnis fehlt
+	 */
+	private File getSaveFile(final String path) {
+		final File directory = new File(path);
+		if (   (this.lastByteResult != null)
+			&& (this.lastByteResult.size() > 0)
+			&& directory.exists()
+			&& directory.isDirectory()
+		   ) {
+			return new File(directory.getAbsolutePath() + File.separatorChar + this.getLastResultName());
+		} //if
+		return null;
+	} // getSaveFile
+
+
+
+
+
+	/**
+	 * Setzt Daten zur http-Authentifikation
+	 *
+	 * @param realm
+	 *            Umgebung
+	 * @param username
+	 *            Benutzername
+	 * @param password
+	 *            Password
+	 * @throws Exception
+	 */
+	void setAuthentication(final String realm, final String username, final String password)	throws Exception {
+		this.httpClient.setAuthentication(realm, username, password);
+		this.authentication.put(realm, new String[] { username, password });
+	} // setAutehntication
+
+
+	/**
+	 * Sichert den Sitzungszustand: Cookies, Authentifizierung, Pending-Daten
+	 * und die letzte Seite (Header und Inhalt, sofern im Speicher).
+	 *
+	 * @return unveränderlicher Zustand, siehe restoreSession
+	 */
+	RobotSession getSession() {
+		final Map<String, String> cookies = new LinkedHashMap<String, String>();
+		for (final String name : this.httpClient.getCookieNames()) {
+			cookies.put(name, this.httpClient.getCookieValue(name));
+		}
+		if ((this.lastWebResponse == null) || (this.lastByteResult == null)) {
+			return new RobotSession(cookies, this.authentication, this.pending.toMap(), null, 0, null, null, null, null, null, null);
+		}
+		final byte[] body = this.lastByteResult.getBytes();
+		final List<String> names = new ArrayList<String>();
+		final List<String> values = new ArrayList<String>();
+		RobotResponse.copyHeaders(this.lastWebResponse, names, values, body.length);
+		return new RobotSession(cookies, this.authentication, this.pending.toMap(),
+				this.lastWebResponse.getURL(), this.lastResultStatus, this.lastWebResponse.getResponseMessage(),
+				names.toArray(new String[names.size()]), values.toArray(new String[values.size()]),
+				body, this.lastResultName, this.lastTextCharset);
+	} // getSession
+
+
+	/**
+	 * Übernimmt einen gesicherten Sitzungszustand, z.B. nach einem gemeinsamen
+	 * Login. Die letzte Seite wird für diesen Robot aus ihrem Inhalt neu
+	 * aufgebaut (DOM erst bei Bedarf), die Optionen des Robots bleiben
+	 * unverändert. Pending-Daten, die in diesem Lauf schon gesetzt sind
+	 * (z.B. param:* aus den Aufrufparametern), behalten ihren Wert.
+	 *
+	 * @param session Zustand aus getSession, auch eines anderen Robots
+	 */
+	void restoreSession(final RobotSession session) throws IOException {
+		this.restoreCredentials(session);
+		this.pending.putAbsent(session.pending);
+		if (session.hasPage()) {
+			this.lastByteResult = new ResultBuffer();
+			this.lastByteResult.write(session.pageBody, 0, session.pageBody.length);
+			this.lastWebResponse = new RobotResponse(this.httpClient, FrameSelector.TOP_FRAME, session.pageURL, session.pageStatus, session.pageMessage,
+					session.pageHeaderNames, session.pageHeaderValues, this.lastByteResult.getInputStream());
+			this.lastResultStatus = session.pageStatus;
+			this.lastResultName = session.pageResultName;
+			this.lastTextResult = null;
+			this.lastTextCache = null;
+			this.lastTextCharset = session.pageCharset;
+			this.pageIndex = null;
+		} // if Seite
+	} // restoreSession
+
+
+	/**
+	 * Erzeugt einen Robot mit den Optionen und dem Sitzungszustand dieses
+	 * Robots für einen parallelen Zweig (PARALLEL). Transport, Cache,
+	 * Cassette, Metriken, Ereignisprotokoll, Ergebnisspeicher und die
+	 * SAVE-Warteschlange werden geteilt, so dass finish() dieses Robots
+	 * auch die Dateien der Zweige abwartet.
+	 *
+	 * @return neuer Robot, vom aufrufenden Thread unabhängig nutzbar
+	 */
+	Robot fork() throws IOException {
+		final Robot branch = new Robot(null);
+		final ClientProperties from = this.httpClient.getClientProperties();
+		final ClientProperties to = branch.httpClient.getClientProperties();
+		to.setAutoRedirect(from.isAutoRedirect());
+		to.setAutoRefresh(from.isAutoRefresh());
+		to.setSendReferer(from.isSendReferer());
+		to.setAcceptGzip(from.isAcceptGzip());
+		to.setAcceptCookies(from.isAcceptCookies());
+		to.setUserAgent(from.getUserAgent());
+		branch.ContinueIfError = this.ContinueIfError;
+		branch.ExecJavaScript = this.ExecJavaScript;
+		branch.LazyHTML = this.LazyHTML;
+		branch.connectTimeout = this.connectTimeout;
+		branch.readTimeout = this.readTimeout;
+		branch.httpClient.set_connectTimeout(this.connectTimeout);
+		branch.httpClient.set_readTimeout(this.readTimeout);
+		branch.maxRedirects = this.maxRedirects;
+		branch.stepTimeout = this.stepTimeout;
+		branch.planTimeout = this.planTimeout;
+		branch.planStartNanos = this.planStartNanos;
+		branch.hedge = this.hedge;
+		branch.hedgeMinDelay = this.hedgeMinDelay;
+		branch.httpClient.setHedge(this.httpClient.getHedge());
+		branch.sessionKey = this.sessionKey;
+		branch.httpClient.setTransport(this.httpClient.getTransport());
+		branch.httpClient.setCache(this.httpClient.getCache());
+		branch.httpClient.setCassette(this.httpClient.getCassette());
+		branch.httpClient.setReplayLatency(this.httpClient.getReplayLatency());
+		branch.metrics = this.metrics;
+		branch.eventLog = this.eventLog;
+		branch.eventRobot = (this.eventLog != null) ? EventLog.nextRobot() : 0;
+		branch.saveWriter = this.saveWriter;
+		branch.resultStore = this.resultStore;
+		branch.resultCompression = this.resultCompression;
+		branch.resultRun = this.getResultRun();
+		branch.stepNumber = this.stepNumber;
+		branch.restoreSession(this.getSession());
+		return branch;
+	} // fork
+
+
+	/**
+	 * Übernimmt nach einem parallelen Zweig die dort neu gesetzten oder
+	 * geänderten Cookies und Pending-Daten. Cookies, die der Zweig verworfen
+	 * hat (z.B. Logout, neue Sitzungs-ID unter anderem Namen), werden auch
+	 * hier entfernt.
+	 *
+	 * @param branch Zweig aus fork
+	 * @param before Zustand beim Start des Zweiges (getSession)
+	 */
+	void join(final Robot branch, final RobotSession before) {
+		for (final String name : branch.httpClient.getCookieNames()) {
+			final String value = branch.httpClient.getCookieValue(name);
+			if ((value != null) && !value.equals(before.cookies.get(name))) {
+				this.httpClient.putCookie(name, value);
+			}
+		} // for Cookies
+		final List<String> kept = Arrays.asList(branch.httpClient.getCookieNames());
+		for (final String name : before.cookies.keySet()) {
+			if (!kept.contains(name) || (branch.httpClient.getCookieValue(name) == null)) {
+				this.httpClient.removeCookie(name);
+			}
+		} // for verworfene Cookies
+		final Map<String, String> changed = branch.pending.toMap();
+		changed.entrySet().removeAll(before.pending.entrySet());
+		this.pending.putAll(changed);
+	} // join
+
+
+	/**
+	 * Übernimmt Cookies und Authentifizierung eines gesicherten Zustands.
+	 */
+	private void restoreCredentials(final RobotSession session) {
+		for (final Map.Entry<String, String> cookie : session.cookies.entrySet()) {
+			this.httpClient.putCookie(cookie.getKey(), cookie.getValue());
+		}
+		for (final Map.Entry<String, String[]> realm : session.authentication.entrySet()) {
+			this.httpClient.setAuthentication(realm.getKey(), realm.getValue()[0], realm.getValue()[1]);
+			this.authentication.put(realm.getKey(), realm.getValue());
+		}
+	} // restoreCredentials
+
+
+	/**
+	 * Verwirft die Cookies und die mit restoreCredentials übernommene
+	 * Authentifizierung, die vorher gesetzte gilt wieder.
+	 *
+	 * @param credentials Authentifizierung vor restoreCredentials
+	 */
+	private void resetCredentials(final Map<String, String[]> credentials) {
+		this.httpClient.clearContents();
+		for (final String realm : new ArrayList<String>(this.authentication.keySet())) {
+			final String[] previous = credentials.get(realm);
+			if (previous == null) {
+				this.httpClient.removeAuthentication(realm);
+				this.authentication.remove(realm);
+			} else {
+				this.httpClient.setAuthentication(realm, previous[0], previous[1]);
+				this.authentication.put(realm, previous);
+			} // if else
+		} // for
+	} // resetCredentials
+
+
+	/**
+	 * @return Schlüssel für Sitzungsdateien (SessionKey, sonst Umgebungsvariable HTTPROBOT_SESSION_KEY), null wenn keiner gesetzt
+	 */
+	private String getSessionKey() {
+		if ((this.sessionKey != null) && !this.sessionKey.equals("")) {
+			return this.sessionKey;
+		}
+		final String key = System.getenv("HTTPROBOT_SESSION_KEY");
+		return ((key != null) && !key.equals("")) ? key : null;
+	} // getSessionKey
+
+
+	/**
+	 * Speichert den Sitzungszustand verschlüsselt (siehe SessionStore).
+	 *
+	 * @param file Sitzungsdatei
+	 * @return gespeichert; false ohne Schlüssel, unverschlüsselt wird nie gespeichert
+	 */
+	boolean saveSession(final File file) throws Exception {
+		final String key = this.getSessionKey();
+		if (key == null) {
+			Robot.logger.error("Sitzung nicht gespeichert, kein Schlüssel (SessionKey oder HTTPROBOT_SESSION_KEY): " + file);
+			return false;
+		}
+		SessionStore.save(this.getSession(), file, key);
+		Robot.logger.info("Sitzung gespeichert: " + file);
+		return true;
+	} // saveSession
+
+
+	/**
+	 * Setzt eine gespeicherte Sitzung fort: Gibt es unter den Schritten einen
+	 * SESSION_SAVE-Schritt, dessen Datei einen gültigen, nicht zu alten
+	 * Zustand enthält, werden Cookies und Authentifizierung übernommen und
+	 * mit einer Anfrage geprüft (Adresse check, sonst die gespeicherte Seite;
+	 * gültig bei Status unter 400 und ohne Weiterleitung auf eine andere Seite
+	 * bzw. wenn der Text expect enthält). Ohne check und expect wird keine
+	 * Sitzung fortgesetzt: die gespeicherte Seite ist nach dem Login oft das
+	 * Login-Formular selbst und antwortet auch ohne Sitzung mit 200. Bei
+	 * Erfolg wird der ganze Zustand
+	 * übernommen und die Schritte bis einschließlich SESSION_SAVE entfallen,
+	 * sonst bleibt der Robot ohne Cookies und ohne die gespeicherte
+	 * Authentifizierung für ein vollständiges Login.
+	 *
+	 * @param steps Schritte des Ablaufplans
+	 * @return Index des ersten auszuführenden Schrittes
+	 */
+	int restoreCheckpoint(final List<Step> steps) {
+		int checkpoint = -1;
+		for (int i = 0; i < steps.size(); i++) {
+			if (steps.get(i) instanceof SessionSaveStep) {
+				checkpoint = i;
+			}
+		} // for
+		if ((checkpoint < 0) || !this.sessionRestore) {
+			return 0;
+		}
+		final SessionSaveStep step = (SessionSaveStep) steps.get(checkpoint);
+		if ((step.getCheck(this.pending) == null) && (step.getExpect() == null)) {
+			Robot.logger.warn("SESSION_SAVE ohne <check> und <expect>, Sitzung wird nicht fortgesetzt, vollständiges Login");
+			return 0;
+		}
+		final String key = this.getSessionKey();
+		if (key == null) {
+			return 0;
+		}
+		final File file = step.getFile(this.pending);
+		final RobotSession session;
+		try {
+			session = SessionStore.load(file, key, step.getMaxAgeMillis());
+		} catch (final Exception e) {
+			Robot.logger.warn("Sitzung nicht lesbar, vollständiges Login: " + file + " (" + e.getMessage() + ")");
+			return 0;
+		} // try catch
+		if (session == null) {
+			Robot.logger.info("Keine gültige Sitzung gespeichert, vollständiges Login: " + file);
+			return 0;
+		}
+
+		final Map<String, String[]> credentials = new LinkedHashMap<String, String[]>(this.authentication);
+		this.restoreCredentials(session);
+		String check = step.getCheck(this.pending);
+		if (check == null) {
+			check = session.hasPage() ? session.pageURL.toString() : null;
+		}
+		if ((check != null) && !this.checkSession(check, step.getExpect())) {
+			Robot.logger.info("Gespeicherte Sitzung abgelaufen, vollständiges Login: " + file);
+			this.resetCredentials(credentials);
+			this.lastWebResponse = null;
+			this.lastByteResult = null;
+			this.lastResultStatus = 0;
+			return 0;
+		} // if
+		try {
+			this.restoreSession(session);
+		} catch (final IOException e) {
+			Robot.logger.warn("Sitzung nicht übernommen, vollständiges Login: " + e);
+			this.resetCredentials(credentials);
+			return 0;
+		} // try catch
+		Robot.logger.info("Sitzung fortgesetzt, " + (checkpoint + 1) + " Schritte übersprungen: " + file);
+		return checkpoint + 1;
+	} // restoreCheckpoint
+
+
+	/**
+	 * Prüft eine wiederhergestellte Sitzung mit einer GET-Anfrage.
+	 */
+	private boolean checkSession(final String url, final Pattern expect) {
+		try {
+			final boolean ok = Boolean.TRUE.equals(this.execHTTP(new GetMethodWebRequest(url)))
+					&& (this.lastResultStatus < 400);
+			this.refreshURL = null;
+			if (!ok) {
+				return false;
+			} else if (expect != null) {
+				final String text = this.getLastTextResult();
+				return (text != null) && expect.matcher(text).find();
+			}
+			// Weiterleitung z.B. auf die Login-Seite
+			return this.lastWebResponse.getURL().getPath().equals(new URL(url).getPath());
+		} catch (final Exception e) {
+			Robot.logger.debug("Sitzungsprüfung fehlgeschlagen: " + url, e);
+			return false;
+		} // try catch
+	} // checkSession
+
+
+	/**
+	 * Gibt Wert zuvor gespeicherter Daten zur�ck.<br>
+	 * Format: TYPE:NAME<br>
+	 * Aufrufbeispiel Parameter: Robot.getPending("param:PARAMETERNAME")<br>
+	 *
+	 * @param typeName
+	 *            Type und Name der Daten, Format TYPE:NAME
+	 * @return Wert
+	 * @throws Exception
+	 */
+	String getPending(final String typeName) throws Exception {
+		if (typeName != null && typeName.indexOf(':') != -1) {
+			final String value = this.pending.get(typeName);
+			return (value != null) ? value : "";
+		}
+		return "";
+	} // getPending
+
+
+  /**
+   * Gibt Wert zuvor gespeicherter Daten zur�ck.<br>
+   * Aufrufbeispiel Parameter: Robot.getPending("param","PARAMETERNAME")<br>
+   *
+   *
+   * @param type
+   *          Typ der Daten
+   * @param name
+   *          Name der Daten
+   * @return Wert, "" wenn nicht gesetzt
+   * @throws Exception
+   */
+  String getPending(final String type, final String name) throws Exception {
+    final String value = this.pending.get(type, name);
+    return (value != null) ? value : "";
+  }
+
+
+	/**
+	 * @return Variablen des Robots (Pending-Daten), für Template.resolve
+	 */
+	Variables getVariables() {
+		return this.pending;
+	} // getVariables
+
+
+	/**
+	 * Speichert Daten.
+	 *
+	 * @param type
+	 *            Typ der Daten
+	 * @param name
+	 *            Name der Daten
+	 * @param value
+	 *            Wert der Daten
+	 * @throws Exception
+	 */
+  void setPending(final String type, final String name, final String value) {
+    this.pending.put(type, name, value);
+  }
+
+
+	/**
+	 * Setzt Konfigurationseinstellungen des Bots.<br>
+	 * <br>
+	 * Konfigurations�bersicht / Standardeinstellungen:<br>
+	 * <ul>
+	 * <li>AutoRedirect: true [true | false]</li>
+	 * <li>AutoRefresh: true [true | false]</li>
+	 * <li>SendReferer: true [true | false]</li>
+	 * <li>AcceptGzip: true [true | false]</li>
+	 * <li>AcceptCookies: true [true | false]</li>
+ 	 * <li>ExecJavaScript: true [true | false]</li>
+ 	 * <li>ContinueIfError: true [true | false]</li>
+ 	 * <li>LazyHTML: true [true | false, HTML-Seiten erst bei Bedarf parsen]</li>
+ 	 * <li>UserAgent: httpunit/1.5 [beliebige Zeichenkette]</li>
+  	 * <li>LogLevel: WARN [ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF]</li>
+  	 * <li>MetricsFile: - [Dateiname für Metriken nach Robot.run, *.json als JSON, sonst Prometheus-Textformat]</li>
+  	 * <li>CassetteRecord: - [Dateiname, alle HTTP-Antworten aufzeichnen, geschrieben nach Robot.run]</li>
+  	 * <li>CassetteReplay: - [Dateiname, HTTP-Antworten nur aus der Aufzeichnung liefern]</li>
+  	 * <li>MaxRedirects: 20 [Weiterleitungen und Refreshs je Schritt]</li>
+  	 * <li>StepTimeout: 0 [Zeitlimit je Schritt in ms inkl. Weiterleitungen und Inhalt, 0 ohne Begrenzung; Anfragen mit Zeitlimit gehen über einen PooledHttpTransport]</li>
+  	 * <li>PlanTimeout: 0 [Zeitlimit des Ablaufplans in ms, danach werden keine Schritte mehr ausgeführt, 0 ohne Begrenzung]</li>
+  	 * <li>Hedge: off [off | p95 ..., GET erneut senden, wenn nach diesem Perzentil der Antwortzeiten des Hosts keine Antwort da ist, nur mit Transport pooled, siehe HedgePolicy]</li>
+  	 * <li>HedgeMinDelay: 10 [kürzeste Wartezeit vor dem zweiten GET in ms]</li>
+  	 * <li>Transport: httpunit [httpunit | pooled, pooled: persistente Verbindungen, siehe PooledHttpTransport]</li>
+  	 * <li>ConnectTimeout: 0 [Verbindungsaufbau in ms, 0 ohne Begrenzung]</li>
+  	 * <li>ReadTimeout: 0 [Lesen in ms, 0 ohne Begrenzung]</li>
+  	 * <li>MaxConnectionsPerHost: 8 [gleichzeitige Verbindungen je Host, JVM-weit, nur Transport pooled]</li>
+  	 * <li>ScriptCacheSize: 0 [übersetzte Skripte, 0 = aus; JVM-weit, der zuletzt gesetzte Wert gilt, siehe ScriptCache]</li>
+  	 * <li>HttpCache: - [Dateiname, GET-Antworten mit ETag/Last-Modified zwischenspeichern und bedingt anfragen]</li>
+  	 * <li>HttpCacheSize: 64 [Größe des HTTP-Cache in MB]</li>
+  	 * <li>CassetteLatency: 0 [Verzögerung je Antwort beim Abspielen in ms | recorded]</li>
+  	 * <li>SessionKey: - [Schlüssel für Sitzungsdateien (SESSION_SAVE), sonst Umgebungsvariable HTTPROBOT_SESSION_KEY]</li>
+  	 * <li>SessionRestore: true [true | false, gespeicherte Sitzung verwenden und Login überspringen]</li>
+  	 * <li>SaveQueue: 8 [Dateien eines Robots, die SAVE im Hintergrund schreibt, bevor der Schritt wartet; 0 = sofort schreiben]</li>
+  	 * <li>SaveSync: none [none | data | all, Datei vor dem Umbenennen auf die Platte schreiben (fsync)]</li>
+  	 * <li>SaveThreads: 2 [Schreib-Threads für SAVE, JVM-weit]</li>
+  	 * <li>ResultStore: - [Verzeichnis, SAVE legt jeden Inhalt einmal unter seinem SHA-256 ab, Index index.tsv, siehe ResultStore]</li>
+  	 * <li>ResultStoreCompression: none [none | gzip | deflate]</li>
+  	 * <li>ResultStoreRun: - [Lauf im Index, Standard Uhrzeit und Nummer des Robots]</li>
+  	 * <li>EventLog: - [Dateiname, Anfragen, Antworten, Cookies, Formulare und Schritte als JSON-Zeilen, siehe EventLog]</li>
+  	 * <li>EventLogBodySample: 100 [Inhalt jeder n-ten Antwort protokollieren, 0 nie]</li>
+  	 * <li>EventLogBodyBytes: 2048 [protokollierte Bytes einer Antwort]</li>
+	 * </ul>
+	 *
+	 * @param name Parameterbezeichnung
+	 * @param sValue Parameterwert
+	 *
+	 * @return Konfigurationsparameter gefunden und gesetzt
+	 */
+	boolean setHttpClientParameters (final String name, final String sValue) {
+		if ((name != null) && (name != "")) {
+			//Unterscheidung der Verarbeitung: Value als String oder Boolean
+			//1. Verarbeitung als String
+			if (name.equals("LogLevel")) {
+				// ALL | TRACE | DEBUG | INFO | WARN | ERROR | FATAL | OFF
+				Robot.logger.setLevel(Level.toLevel(sValue.toUpperCase(), Level.WARN));
+				return true;
+			} else if (name.equals("UserAgent")) {
+					this.httpClient.getClientProperties().setUserAgent(sValue);
+					return true;
+			} else if (name.equals("MetricsFile")) {
+					this.metricsFile = sValue;
+					if (this.metrics == null) {
+						this.metrics = new RobotMetrics();
+					}
+					return true;
+			} else if (name.equals("CassetteRecord") || name.equals("CassetteReplay")) {
+					try {
+						this.httpClient.setCassette(Cassette.open(sValue, name.equals("CassetteRecord")));
+					} catch (final IOException e) {
+						throw new IllegalArgumentException("Cassette nicht lesbar: " + sValue, e);
+					}
+					return true;
+			} else if (name.equals("HttpCache") || name.equals("HttpCacheSize")) {
+					if (name.equals("HttpCache")) {
+						this.httpCacheFile = sValue;
+					} else {
+						this.httpCacheMaxBytes = Long.parseLong(sValue) * 1024 * 1024;
+					}
+					if (this.httpCacheFile != null) {
+						try {
+							this.httpClient.setCache(HttpCache.open(this.httpCacheFile, this.httpCacheMaxBytes));
+						} catch (final IOException e) {
+							throw new IllegalArgumentException("HTTP-Cache nicht lesbar: " + this.httpCacheFile, e);
+						}
+					} // if
+					return true;
+			} else if (name.equals("Transport")) {
+					if (sValue.equalsIgnoreCase("pooled")) {
+						//JVM-weit, nur wenn ausdrücklich gewählt
+						PooledHttpTransport.initKeepAlive();
+						this.setTransport(this.newPooledTransport());
+					} else if (sValue.equalsIgnoreCase("httpunit")) {
+						this.setTransport(null);
+					} else {
+						throw new IllegalArgumentException("Unbekannter Transport: " + sValue);
+					}
+					return true;
+			} else if (name.equals("ConnectTimeout") || name.equals("ReadTimeout")) {
+					if (name.equals("ConnectTimeout")) {
+						this.connectTimeout = Integer.parseInt(sValue);
+						this.httpClient.set_connectTimeout(this.connectTimeout);
+					} else {
+						this.readTimeout = Integer.parseInt(sValue);
+						this.httpClient.set_readTimeout(this.readTimeout);
+					} // if else
+					if (this.httpClient.getTransport() instanceof PooledHttpTransport) {
+						((PooledHttpTransport) this.httpClient.getTransport()).setConnectTimeout(this.connectTimeout);
+						((PooledHttpTransport) this.httpClient.getTransport()).setReadTimeout(this.readTimeout);
+					}
+					return true;
+			} else if (name.equals("StepTimeout")) {
+					this.stepTimeout = Long.parseLong(sValue);
+					return true;
+			} else if (name.equals("PlanTimeout")) {
+					this.planTimeout = Long.parseLong(sValue);
+					return true;
+			} else if (name.equals("Hedge") || name.equals("HedgeMinDelay")) {
+					if (name.equals("Hedge")) {
+						this.hedge = sValue;
+					} else {
+						this.hedgeMinDelay = Long.parseLong(sValue);
+					}
+					this.httpClient.setHedge(HedgePolicy.parse(this.hedge, this.hedgeMinDelay));
+					return true;
+			} else if (name.equals("MaxRedirects")) {
+					this.maxRedirects = Integer.parseInt(sValue);
+					return true;
+			} else if (name.equals("MaxConnectionsPerHost")) {
+					PooledHttpTransport.setMaxConnectionsPerHost(Integer.parseInt(sValue));
+					return true;
+			} else if (name.equals("ScriptCacheSize")) {
+					final int maxScripts = Integer.parseInt(sValue);
+					ScriptCache.setMaxScripts(maxScripts);
+					//greift in Rhino und httpunit ein, daher nur auf ausdrücklichen Wunsch
+					if (maxScripts > 0) {
+						ScriptCache.install();
+					}
+					return true;
+			} else if (name.equals("SaveQueue")) {
+					this.saveWriter.setQueueSize(Integer.parseInt(sValue));
+					return true;
+			} else if (name.equals("SaveSync")) {
+					this.saveWriter.setSync(sValue);
+					return true;
+			} else if (name.equals("SaveThreads")) {
+					SaveWriter.setThreads(Integer.parseInt(sValue));
+					return true;
+			} else if (name.equals("ResultStore")) {
+					try {
+						this.resultStore = ResultStore.open(sValue);
+					} catch (final IOException e) {
+						throw new IllegalArgumentException("Ergebnisspeicher nicht verwendbar: " + sValue, e);
+					}
+					return true;
+			} else if (name.equals("ResultStoreCompression")) {
+					this.resultCompression = ResultStore.checkCompression(sValue);
+					return true;
+			} else if (name.equals("ResultStoreRun")) {
+					this.resultRun = sValue;
+					return true;
+			} else if (name.equals("EventLog")) {
+					try {
+						this.eventLog = EventLog.open(sValue);
+					} catch (final IOException e) {
+						throw new IllegalArgumentException("Ereignisprotokoll nicht schreibbar: " + sValue, e);
+					}
+					if (this.eventRobot == 0) {
+						this.eventRobot = EventLog.nextRobot();
+					}
+					return true;
+			} else if (name.equals("EventLogBodySample") || name.equals("EventLogBodyBytes")) {
+					if (this.eventLog == null) {
+						throw new IllegalArgumentException(name + " ohne EventLog");
+					}
+					if (name.equals("EventLogBodySample")) {
+						this.eventLog.setBodySample(Integer.parseInt(sValue));
+					} else {
+						this.eventLog.setMaxBodyBytes(Integer.parseInt(sValue));
+					}
+					return true;
+			} else if (name.equals("SessionKey")) {
+					this.sessionKey = sValue;
+					return true;
+			} else if (name.equals("CassetteLatency")) {
+					this.httpClient.setReplayLatency(sValue.equalsIgnoreCase("recorded") ? RobotConversation.RECORDED_LATENCY : Long.parseLong(sValue));
+					return true;
+			} else { //2. Verarbeitung als Boolean
+				final boolean bValue = Boolean.parseBoolean(sValue);
+				if (name.equals("AutoRedirect")) {
+					this.httpClient.getClientProperties().setAutoRedirect(bValue);
+					return true;
+				} else if (name.equals("AutoRefresh")) {
+					this.httpClient.getClientProperties().setAutoRefresh(bValue);
+					return true;
+				} else if (name.equals("SendReferer")) {
+					this.httpClient.getClientProperties().setSendReferer(bValue);
+					return true;
+				} else if (name.equals("AcceptGzip")) {
+					this.httpClient.getClientProperties().setAcceptGzip(bValue);
+					return true;
+				} else if (name.equals("AcceptCookies")) {
+					this.httpClient.getClientProperties().setAcceptCookies(bValue);
+					return true;
+				} else if (name.equals("ExecJavaScript")) {
+					this.ExecJavaScript = bValue;
+					return true;
+				} else if (name.equals("LazyHTML")) {
+					this.LazyHTML = bValue;
+					return true;
+				} else if (name.equals("ContinueIfError")) {
+					this.ContinueIfError = bValue;
+					return true;
+				} else if (name.equals("SessionRestore")) {
+					this.sessionRestore = bValue;
+					return true;
+				} //if -> versch. Boolean-Konfigurationen
+
+			} //if ->Unterscheidung der Verarbeitung
+
+
+		} //if name->ok
+		return false;
+	} //setHttpClientParameters
+
+
+
+
+// Hilfsfunktionen
+
+	// Logging
+
+	/**
+	 * Loggt alle relevanten Daten eines Formulars (httpunit.WebForm)
+	 *
+	 * @param form
+	 */
+	void printLogger(final WebForm form) {
+		// Logging Form: ohne Parameter
+		Robot.logger.info("Form: " + form.getName());
+		if (!Robot.logger.isTraceEnabled()) {
+			return;
+		}
+		Robot.logger.trace("   Methode: " + form.getMethod());
+		Robot.logger.trace("   Action: " + form.getAction());
+
+		Robot.logger.trace("   Parameter: [Name] --- [Value]");
+		for (final String s : form.getParameterNames()) {
+			Robot.logger.trace("   Parameter: " + s + " --- " + form.getParameterValue(s));
+		}
+
+		Robot.logger.trace("   Button: [Name] --- [ID] --- [Type] --- [Value]");
+		for (final Button b : form.getButtons()) {
+			Robot.logger.trace("   Button: " + b.getName() + " --- " + b.getID() + " --- " + b.getType() + " --- " + b.getValue());
+		}
+
+		// robot.logger.info("Action: " + form);
+	} // printLogger WebForm
+
+
+
+	/**
+	 * Loggt alle relevanten Daten des aktuellen Web-Clients (httpunit.WebConversation)<br>
+	 * zzgl. LogLevel und Pending
+	 */
+	void printLoggerWebClient () {
+		//Logging Web-Client
+		this.printLogger(this.httpClient);
+
+		//Logging LogLevel
+		Robot.logger.info("   LogLevel: " + Robot.logger.getLevel());
+
+		//Logging Pending
+    if (Robot.logger.isTraceEnabled() && (this.pending.isEmpty() == false)) {
+      Robot.logger.trace("Pending: ");
+      Robot.logger.trace(this.pending);
+		} // if
+	} //printLoggerWebClient
+
+
+	/**
+	 * Loggt alle relevanten Daten eines Web-Clients (httpunit.WebConversation)
+	 *
+	 * @param client
+	 */
+	void printLogger (final WebConversation client) {
+		Robot.logger.info("Client: [Name] --- [Value]");
+		Robot.logger.info("   AutoRedirect: " + client.getClientProperties().isAutoRedirect());
+		Robot.logger.info("   AutoRefresh: " + client.getClientProperties().isAutoRefresh());
+		Robot.logger.info("   SendReferer: " + client.getClientProperties().isSendReferer());
+		Robot.logger.info("   UserAgent: " + client.getClientProperties().getUserAgent());
+		Robot.logger.info("   AcceptGZip: " + client.getClientProperties().isAcceptGzip());
+		Robot.logger.info("   AcceptCokies: " + client.getClientProperties().isAcceptCookies());
+		Robot.logger.info("   ExecJavaScript: " + this.ExecJavaScript);
+		Robot.logger.info("   LazyHTML: " + this.LazyHTML);
+	} // printLogger WebConversation
+
+	/**
+	 * Loggt alle relevanten Daten eines Web-Response (httpunit.WebResponse)
+	 *
+	 * @param response
+	 */
+	void printLogger(final WebResponse response) {
+		Robot.logger.info("Response: " + response.getURL().toString());
+		Robot.logger.debug("   Status: " + response.getResponseCode() + " (" + response.getResponseMessage() + ")");
+
+		if (Robot.logger.isDebugEnabled()) {
+			Robot.logger.debug("   Cookie: [Name] --- [Value]");
+			final boolean trace = Robot.logger.isTraceEnabled();
+			for (final String s : response.getClient().getCookieNames()) {
+				Robot.logger.debug("   Cookie  : " + s + " --- " + response.getClient().getCookieValue(s));
+				if (trace) {
+					final Cookie cookie = response.getClient().getCookieDetails(s);
+					Robot.logger.trace("      URL  : " + cookie.getDomain());
+					Robot.logger.trace("      End  : " + cookie.getExpiredTime());
+					Robot.logger.trace("      Path : " + cookie.getPath());
+					Robot.logger.trace("      Name : " + cookie.getName());
+					Robot.logger.trace("      Value: " + cookie.getValue());
+				} // if
+			} //for Cookie
+
+			Robot.logger.debug("   CookieNew: [Name] --- [Value]");
+			for (final String s : response.getNewCookieNames()) {
+				Robot.logger.debug("   CookieNew: " + s + " --- " + response.getNewCookieValue(s));
+			} // for CookieNew
+
+			Robot.logger.debug("   Header: [Name] --- [Value]");
+			for (final String s : response.getHeaderFieldNames()) {
+				Robot.logger.debug("   Header: " + s + " --- " + response.getHeaderField(s));
+			} //for Header
+
+		} // if DebugEnabled
+	} // printLogger WebResponse
+
+
+	/**
+	 * Protokolliert das abzuschickende Formular im Ereignisprotokoll, nur
+	 * die Namen der Parameter, keine Werte.
+	 *
+	 * @param form
+	 */
+	void logEvent(final WebForm form) {
+		if (this.eventLog != null) {
+			this.eventLog.log(this.eventRobot, "form", "name", form.getName(), "action", form.getAction(),
+					"method", form.getMethod(), "params", form.getParameterNames());
+		}
+	} // logEvent WebForm
+
+
+
+
+
+
+
+	// Step-call-Funktionen
+	/**
+	 * Führt einen Schritt mit Fehlerbehandlung (ContinueIfError) aus.
+	 *
+	 * @param step auszuführender Schritt
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 */
+  Boolean callStep(final Step step) {
+		Robot.logger.info("Methode: Robot.callStep -- Aufruf " + step.getMode());
+		final long start = System.nanoTime();
+		if (this.planStartNanos == 0) {
+			this.planStartNanos = start;
+		}
+		long deadline = 0;
+		if (this.planTimeout > 0) {
+			deadline = this.planStartNanos + this.planTimeout * 1000000L;
+			if (start - deadline >= 0) {
+				Robot.logger.warn("FEHLER Robot.callStep: " + step.getMode() + " nicht ausgeführt, PlanTimeout " + this.planTimeout + " ms überschritten");
+				return false;
+			}
+		} // if Ablaufplan
+		if ((this.stepTimeout > 0) && ((deadline == 0) || (start + this.stepTimeout * 1000000L - deadline < 0))) {
+			deadline = start + this.stepTimeout * 1000000L;
+		}
+		this.httpClient.setDeadline(deadline);
+
+		final boolean scripting = SessionScriptingEngineFactory.setEnabled(this.ExecJavaScript);
+		this.stepNumber++;
+		this.stepStartNanos = start;
+		this.stepFirstResponseNanos = 0;
+		this.stepFirstHeadersNanos = 0;
+		this.stepBytes = 0;
+		this.stepRedirects = 0;
+		if (step != RefreshStep.INSTANCE) {
+			this.refreshHops = 0;
+		}
+		Boolean result = Boolean.FALSE;
+		try {
+			result = step.execute(this);
+		} catch (final Exception e) {
+			if (Robot.logger.isDebugEnabled()) {
+				Robot.logger.debug("FEHLER Robot.callStep: " + step.getMode(), e);
+			} else {
+				Robot.logger.warn("FEHLER Robot.callStep: " + step.getMode());
+				Robot.logger.warn(e.toString());
+			} // if else
+			if (!this.ContinueIfError) {
+				new Exception("Fehler in der Abarbeitung, ContinueIfError==false, Fehlermeldung siehe Logdatei.\nDatum / Uhrzeit: "
+						        + new SimpleDateFormat("yyyyMMdd-HHmm").format(new Date()));
+			}
+		} finally {
+			SessionScriptingEngineFactory.setEnabled(scripting);
+			this.httpClient.setDeadline(0);
+			if (this.eventLog != null) {
+				this.eventLog.log(this.eventRobot, "step", "mode", step.getMode(), "ok", result,
+						"ms", Long.valueOf((System.nanoTime() - this.stepStartNanos) / 1000000L), "status", Integer.valueOf(this.lastResultStatus));
+			} // if Ereignisprotokoll
+			if (this.metrics != null) {
+				final long end = System.nanoTime();
+				this.metrics.record(step.getMode(), Boolean.TRUE.equals(result),
+						(end - this.stepStartNanos) / 1000000L,
+						(this.stepFirstResponseNanos == 0) ? -1 : (this.stepFirstResponseNanos - this.stepStartNanos) / 1000000L,
+						(this.stepFirstHeadersNanos == 0) ? -1 : (this.stepFirstHeadersNanos - this.stepStartNanos) / 1000000L,
+						this.stepBytes, this.stepRedirects, this.lastResultStatus);
+			} // if Metriken
+		} // try catch finally
+		return result;
+	} // callStep
+
+
+
+
+	/**
+	 * F�hrt einen Web-Request mit dem aktuellen Web-Client aus.<br>
+	 * Redirects (301-307) und Refresh per Meta-Tag ohne Wartezeit werden
+	 * iterativ verfolgt, höchstens MaxRedirects Weiterleitungen. Wird eine
+	 * Adresse mit unveränderten Cookies erneut angefordert, bricht die
+	 * Verfolgung als Schleife ab. Ein Refresh mit Wartezeit wird nicht
+	 * abgewartet, sondern vorgemerkt (siehe getRefreshDelay).
+	 *
+	 * @param request
+	 *            auszuf�hrender Web-Request (httpunit.WebRequest)
+	 * @return Erfolg der Ausf�hrung
+	 * @throws Exception
+	 */
+	Boolean execHTTP(final WebRequest request) throws Exception {
+		this.refreshURL = null;
+		final Set<String> visited = new HashSet<String>();
+		WebRequest next = request;
+		for (int hops = 0; ; hops++) {
+			final String url = next.getURL().toString();
+			if (hops > this.maxRedirects) {
+				throw new IOException("Zu viele Weiterleitungen (MaxRedirects " + this.maxRedirects + "): " + url);
+			}
+			if (!visited.add(url + ' ' + this.getCookieState())) {
+				throw new IOException("Weiterleitungsschleife: " + url);
+			}
+
+			Robot.logger.debug("execHTTP: " + url);
+			final long requestNanos = System.nanoTime();
+			if (this.eventLog != null) {
+				this.eventLog.log(this.eventRobot, "request", "method", next.getMethod(), "url", url);
+			}
+			this.httpClient.takeHeadersNanos();
+			this.lastWebResponse = this.httpClient.getResource(next);
+			if (this.stepFirstResponseNanos == 0) {
+				this.stepFirstResponseNanos = System.nanoTime();
+				//nur der Transport meldet das Eintreffen der Header, httpunit liest vorher den ganzen Inhalt
+				this.stepFirstHeadersNanos = this.httpClient.takeHeadersNanos();
+			}
+			if (this.lastWebResponse == null) {
+				return false;
+			}
+			this.printLogger(this.lastWebResponse);
+			if (this.eventLog != null) {
+				this.eventLog.log(this.eventRobot, "response", "url", url, "status", Integer.valueOf(this.lastWebResponse.getResponseCode()),
+						"type", this.lastWebResponse.getContentType(), "length", Integer.valueOf(this.lastWebResponse.getContentLength()),
+						"ms", Long.valueOf((System.nanoTime() - requestNanos) / 1000000L));
+			} // if Ereignisprotokoll
+
+			for (final String s : this.lastWebResponse.getNewCookieNames()) {
+				this.httpClient.putCookie(s, this.lastWebResponse.getNewCookieValue(s));
+				if (this.eventLog != null) {
+					final Cookie cookie = this.httpClient.getCookieDetails(s);
+					this.eventLog.log(this.eventRobot, "cookie", "name", s, "domain", (cookie != null) ? cookie.getDomain() : null,
+							"path", (cookie != null) ? cookie.getPath() : null, "expires", (cookie != null) ? Long.valueOf(cookie.getExpiredTime()) : null);
+				} // if Ereignisprotokoll
+			} // for
+
+			switch (this.lastResultStatus = this.lastWebResponse.getResponseCode()) {
+			case 301:
+			case 302:
+			case 303:
+			case 304:
+			case 305:
+			case 306:
+			case 307: // http-Codes 301-307: Redirect, wenn AutoRedirect == true
+				if (this.httpClient.getClientProperties().isAutoRedirect()) {
+					Robot.logger.debug("REDIRECT " + this.lastResultStatus + ": " + this.lastWebResponse.getHeaderField("location"));
+					this.stepRedirects++;
+					next = new GetMethodWebRequest(new URL(this.lastWebResponse.getURL(), this.lastWebResponse.getHeaderField("location")).toString());
+					continue;
+				} // if
+				// case 301-307: Redirect
+			default:
+				//mit LazyHTML wird der DOM erst aufgebaut, wenn ein folgender Schritt ihn benötigt
+				//eine Extraktion (EXTRACT stream) durchsucht die Bytes selbst, auch sie braucht keinen DOM
+				final boolean lazy = this.LazyHTML && ((this.nextResultSink == null) || (this.nextResultSink instanceof ExtractSink)) && this.lastWebResponse.isHTML();
+
+				//Refresh per Meta-Tag wenn AutoRefresh == true
+				if (    !lazy
+					&&  this.httpClient.getClientProperties().isAutoRefresh()
+					&&  this.lastWebResponse.isHTML()
+					&& (this.lastWebResponse.getMetaTagContent("http-equiv", "refresh") != null)
+					&& (this.lastWebResponse.getMetaTagContent("http-equiv", "refresh").length > 0)
+				   ) {
+					next = this.handleRefresh(this.lastWebResponse.getMetaTagContent("http-equiv", "refresh")[0], url);
+					if (next != null) {
+						continue;
+					}
+				} //if Refresh per Meta-Tag
+
+
+				//speichern korrekter Dateiname (entweder aus Header oder aus URL)
+				if (   (this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION") != null)
+					&&  !this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION").equals("")
+				   ) {
+					this.lastResultName = this.lastWebResponse.getHeaderField("CONTENT-DISPOSITION").replaceAll(";", "").replaceAll(".*?filename=", "").replaceAll("\"", "");
+				} else {
+					this.lastResultName = this.lastWebResponse.getURL().getPath().replaceAll("/.*/", "");
+					if (   this.lastWebResponse.isHTML()
+						&& !(this.lastResultName.endsWith(".htm") || this.lastResultName.endsWith(".html"))
+					   ) {
+						this.lastResultName += ".html";
+					} //if
+				} //if else Dateiname im Header �bertragen
+
+
+				//speichern Inhalt
+				final WebResponse response = this.lastWebResponse;
+				if (this.nextResultSink instanceof ExtractSink) {
+					((ExtractSink) this.nextResultSink).setCharset(response.getCharacterSet());
+				}
+				//httpunit entpackt gzip, die Content-Length gilt dann nicht für den gelesenen Inhalt
+				final int contentLength = (response.getHeaderField("Content-Encoding") == null) ? response.getContentLength() : -1;
+				final boolean inMemory = this.setLastByteResult(response.getInputStream(), contentLength);
+				//Text wird erst bei Bedarf dekodiert (siehe getLastTextResult)
+				this.lastTextResult = null;
+				this.lastTextCache = null;
+				this.lastTextCharset = (inMemory && response.isHTML()) ? response.getCharacterSet() : null;
+				if ((this.eventLog != null) && inMemory) {
+					final int sample = this.eventLog.sampleBody();
+					if (sample > 0) {
+						this.eventLog.logBody(this.eventRobot, "body", this.lastByteResult.head(sample), response.getCharacterSet(),
+								"url", url, "bytes", Integer.valueOf(this.lastByteResult.size()));
+					}
+				} // if Ereignisprotokoll
+
+				if (lazy && inMemory) {
+					//DOM später aus den empfangenen Daten, Zeichensatz und Refresh ohne DOM
+					this.lastWebResponse = RobotResponse.withBody(response, this.lastByteResult.getInputStream(), this.lastByteResult.size());
+					String html = null;
+					if (HtmlScanner.getHeaderCharset(response.getHeaderField("Content-Type")) == null) {
+						html = HtmlScanner.head(this.lastByteResult.head(HtmlScanner.HEAD_LIMIT));
+						final String charset = HtmlScanner.findMetaCharset(html);
+						if (charset != null) {
+							this.lastTextCharset = charset;
+						}
+					} // if Zeichensatz nicht im Header
+					if (this.httpClient.getClientProperties().isAutoRefresh()) {
+						if (html == null) {
+							html = HtmlScanner.head(this.lastByteResult.head(HtmlScanner.HEAD_LIMIT));
+						}
+						final String refresh = HtmlScanner.findMetaRefresh(html);
+						if (refresh != null) {
+							next = this.handleRefresh(refresh, url);
+							if (next != null) {
+								continue;
+							}
+						} // if
+					} // if AutoRefresh
+				} // if lazy
+
+				return true;
+				// default
+			} // switch
+		} // for Weiterleitungen
+	} // execHTTP
+
+
+	/**
+	 * Wertet einen Refresh per Meta-Tag aus: ohne Wartezeit wird die Adresse
+	 * sofort aufgerufen, sonst vorgemerkt (siehe getRefreshDelay).
+	 *
+	 * @param refresh Inhalt des Meta-Tags, z.B. "5; url=next.html"
+	 * @param url Adresse der aktuellen Seite
+	 * @return sofort aufzurufender Request, null wenn vorgemerkt
+	 */
+	private WebRequest handleRefresh(final String refresh, final String url) throws Exception {
+		Robot.logger.debug("REFRESH: " + refresh);
+		final int refresh_timeout = Integer.parseInt(refresh.split(";", 2)[0].trim());
+		final String refresh_url = (refresh.indexOf(';') == -1) ? url
+				: new URL(new URL(url), refresh.split(";", 2)[1].trim().replaceFirst("(?i)url=", "")).toString();
+		if (refresh_timeout <= 0) {
+			this.stepRedirects++;
+			return new GetMethodWebRequest(refresh_url);
+		}
+		//Refresh mit Wartezeit: Seite wird gespeichert, Aufruf folgt als eigener Schritt
+		this.refreshURL = refresh_url;
+		this.refreshDue = System.currentTimeMillis() + refresh_timeout * 1000L + 100;
+		return null;
+	} // handleRefresh
+
+
+	/**
+	 * @return Cookies des Web-Clients als Zeichenkette (Erkennung von Weiterleitungsschleifen)
+	 */
+	private String getCookieState() {
+		final String[] names = this.httpClient.getCookieNames();
+		Arrays.sort(names);
+		final StringBuilder sb = new StringBuilder();
+		for (final String name : names) {
+			sb.append(name).append('=').append(this.httpClient.getCookieValue(name)).append(';');
+		}
+		return sb.toString();
+	} // getCookieState
+
+
+	/**
+	 * Wartezeit bis zum vorgemerkten Refresh der letzten Seite. Der Aufruf
+	 * erfolgt mit followRefresh; die Wartezeit kann der Aufrufer nutzen, statt
+	 * den Thread zu blockieren (siehe RobotPool).
+	 *
+	 * @return Wartezeit in ms (0 wenn fällig), -1 wenn kein Refresh vorgemerkt
+	 */
+	public long getRefreshDelay() {
+		if (this.refreshURL == null) {
+			return -1;
+		}
+		return Math.max(0, this.refreshDue - System.currentTimeMillis());
+	} // getRefreshDelay
+
+
+	/**
+	 * Ruft die vorgemerkte Refresh-Adresse auf (als Schritt REFRESH).
+	 *
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 */
+	public Boolean followRefresh() {
+		return this.callStep(RefreshStep.INSTANCE);
+	} // followRefresh
+
+
+	/**
+	 * Wartet vorgemerkte Refreshs ab und folgt ihnen (blockierend).
+	 */
+	public void awaitRefresh() {
+		long delay;
+		while ((delay = this.getRefreshDelay()) >= 0) {
+			if ((this.planTimeout > 0) && (this.planStartNanos != 0)
+					&& (System.nanoTime() + delay * 1000000L - (this.planStartNanos + this.planTimeout * 1000000L) >= 0)) {
+				//Refresh nach dem Ende des Ablaufplans nicht mehr abwarten
+				Robot.logger.warn("Refresh nach " + delay + " ms verworfen, PlanTimeout " + this.planTimeout + " ms");
+				this.refreshURL = null;
+				return;
+			} // if
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} // try catch
+			} // if
+			this.followRefresh();
+		} // while
+	} // awaitRefresh
+
+
+	/**
+	 * Führt den vorgemerkten Refresh aus, höchstens MaxRedirects Refreshs
+	 * nach einem Schritt des Ablaufplans.
+	 */
+	Boolean execRefresh() throws Exception {
+		final String url = this.refreshURL;
+		this.refreshURL = null;
+		if (url == null) {
+			return false;
+		}
+		if (++this.refreshHops > this.maxRedirects) {
+			throw new IOException("Zu viele Refreshs (MaxRedirects " + this.maxRedirects + "): " + url);
+		}
+		this.stepRedirects++;
+		return this.execHTTP(new GetMethodWebRequest(url));
+	} // execRefresh
+
+
+
+
+
+
+
+
+
+
+
+	// Main
+	/**
+	 * Hauptmethode<br>
+	 * <ul>
+	 * <li>1. Paramter: XML-Datei</li>
+	 * <li>ab 2. Paramter:<br>
+	 *     - Konfiguration (siehe setHttpClientParameters) oder<br>
+	 *     - Paramter f�r die Abarbeitung (siehe Klasse HTMLRobots)</li>
+	 * </ul>
+	 * @see setHttpClientParameters
+	 * @see HTMLRobots
+	 * @param args Parameter
+	 * @throws Exception
+	 */
+	public static void main (final String[] args) throws Exception {
+
+		if ((args != null) && (args.length > 0)) {
+			Robot robot;
+
+			//1. Parameter abspalten, da XML-Datei
+			if (args.length > 1) {
+			  final String[] params = new String[args.length-1];
+			  System.arraycopy(args, 1, params, 0, params.length);
+
+        robot = new Robot(params);
+			} else {
+        robot = new Robot(null);
+			} // if else
+			robot.run(args[0]);
+			System.out.println(new String(robot.getLastByteResult()));
+			robot.saveLastResult();
+		} else {
+			Robot.logger.fatal("Parameter fehlt!");
+			System.out.println("Parameter fehlt!");
+			System.out.println("java Robot XMLDateiname Parameter");
+		} // if else
+	} // main
+
+
+} // class Robot
+
+
@@ -0,0 +1,769 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.meterware.httpunit.FrameSelector;
+import com.meterware.httpunit.WebClient;
+import com.meterware.httpunit.WebConversation;
+import com.meterware.httpunit.WebRequest;
+import com.meterware.httpunit.WebResponse;
+import com.meterware.httpunit.cookies.Cookie;
+
+/**
+ * WebConversation of a Robot. Without a cassette requests go to the network
+ * as usual. With a recording {@link Cassette} every response is read once,
+ * stored and served from the recorded bytes; with a replay cassette no
+ * request leaves the JVM and responses are served from the archive,
+ * optionally delayed by a fixed or the recorded latency.<br>
+ * Repeated requests for the same url are answered in recording order, the
+ * last recorded response is repeated.<br>
+ * With an {@link HttpCache} GET requests are revalidated (If-None-Match,
+ * If-Modified-Since) and 304 answers are served from the cache as 200.<br>
+ * With an {@link HttpTransport} requests are sent by the transport instead
+ * of httpunit; the response is handed to httpunit for parsing as usual.<br>
+ * With a deadline (see Robot, StepTimeout/PlanTimeout) or a
+ * {@link HedgePolicy} requests are sent on a separate thread, so a stuck
+ * response does not hold the robot beyond its deadline. These requests go
+ * over a {@link PooledHttpTransport}, which limits its timeouts to the
+ * deadline and drops the connection of a request that is given up;
+ * without a transport one with the client's timeouts is used, as httpunit
+ * cannot cancel a request. Hedging needs a transport, httpunit cannot send
+ * requests of one client concurrently.
+ */
+class RobotConversation extends WebConversation {
+
+	/** Latency: use the response time measured while recording */
+	static final long RECORDED_LATENCY = -1;
+
+	/** WebRequest.getContentType, not public in httpunit */
+	private static final Method CONTENT_TYPE;
+	/** WebClient._credentials, httpunit cannot remove credentials */
+	private static final Field CREDENTIALS;
+
+	static {
+		try {
+			CONTENT_TYPE = WebRequest.class.getDeclaredMethod("getContentType");
+			CONTENT_TYPE.setAccessible(true);
+			CREDENTIALS = WebClient.class.getDeclaredField("_credentials");
+			CREDENTIALS.setAccessible(true);
+		} catch (final NoSuchMethodException e) {
+			throw new ExceptionInInitializerError(e);
+		} catch (final NoSuchFieldException e) {
+			throw new ExceptionInInitializerError(e);
+		} // try catch
+	} // static
+
+	private Cassette cassette = null;
+	private HttpCache cache = null;
+	private HttpTransport transport = null;
+	private InputStream openBody = null;
+	private long headersNanos = 0;
+	private long latencyMillis = 0;
+	private final Map<String, Integer> replayPositions = new HashMap<String, Integer>();
+	private volatile long deadlineNanos = 0;
+	private HedgePolicy hedge = null;
+	private boolean hedgeIgnored = false;
+	/** Cookies removed with removeCookie, httpunit cannot remove a cookie from its jar */
+	private final Set<String> removedCookies = Collections.synchronizedSet(new HashSet<String>());
+
+	/** Most threads for requests with deadline or hedging, JVM-wide */
+	static final int MAX_ATTEMPT_THREADS = 256;
+	/** Threads for requests with deadline or hedging */
+	private static final ExecutorService ATTEMPTS = new ThreadPoolExecutor(0, RobotConversation.MAX_ATTEMPT_THREADS,
+			60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new AttemptThreadFactory());
+
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(RobotConversation.class);
+
+
+	/**
+	 * @param cassette cassette for recording or replay, null for network access
+	 */
+	void setCassette(final Cassette cassette) {
+		this.cassette = cassette;
+		this.replayPositions.clear();
+	} // setCassette
+
+
+	Cassette getCassette() {
+		return this.cassette;
+	}
+
+
+	/**
+	 * @param cache validation cache for GET requests, null for none
+	 */
+	void setCache(final HttpCache cache) {
+		this.cache = cache;
+	} // setCache
+
+
+	HttpCache getCache() {
+		return this.cache;
+	}
+
+
+	/**
+	 * @param transport transport for requests, null for httpunit's own handling
+	 */
+	void setTransport(final HttpTransport transport) {
+		this.transport = transport;
+	} // setTransport
+
+
+	HttpTransport getTransport() {
+		return this.transport;
+	}
+
+
+	/**
+	 * @param latencyMillis injected latency per replayed response, RECORDED_LATENCY for the recorded one
+	 */
+	void setReplayLatency(final long latencyMillis) {
+		this.latencyMillis = latencyMillis;
+	}
+
+
+	long getReplayLatency() {
+		return this.latencyMillis;
+	}
+
+
+	/**
+	 * @param deadlineNanos System.nanoTime by which responses must have arrived, 0 for none
+	 */
+	void setDeadline(final long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+
+
+	long getDeadline() {
+		return this.deadlineNanos;
+	}
+
+
+	/**
+	 * @param hedge hedging of GET requests, null for none
+	 */
+	void setHedge(final HedgePolicy hedge) {
+		this.hedge = hedge;
+	}
+
+
+	HedgePolicy getHedge() {
+		return this.hedge;
+	}
+
+
+	@Override
+	protected WebResponse newResponse(final WebRequest request, final FrameSelector frame) throws IOException {
+		final WebResponse response = ((this.cache != null) && "GET".equals(request.getMethod()))
+			? this.validate(request, frame) : this.fetch(request, frame);
+		// httpunit takes the new cookies into its jar, removed ones count again
+		if (!this.removedCookies.isEmpty()) {
+			this.removedCookies.removeAll(Arrays.asList(response.getNewCookieNames()));
+		}
+		return response;
+	} // newResponse
+
+
+	/**
+	 * Sends a GET request conditionally if the response is cached and serves
+	 * a 304 answer from the cache.
+	 */
+	private WebResponse validate(final WebRequest request, final FrameSelector frame) throws IOException {
+		final URL url = request.getURL();
+		final Map<String, String> headers = this.getRequestHeaders(request, true);
+		final Cassette.Exchange cached = this.cache.get(url.toString(), headers);
+		if (cached != null) {
+			final String etag = HttpCache.header(cached, "ETag");
+			final String lastModified = HttpCache.header(cached, "Last-Modified");
+			if (etag != null) {
+				request.setHeaderField("If-None-Match", etag);
+			}
+			if (lastModified != null) {
+				request.setHeaderField("If-Modified-Since", lastModified);
+			}
+		} // if
+
+		final long start = System.nanoTime();
+		final WebResponse response = this.fetch(request, frame);
+		if ((cached != null) && (response.getResponseCode() == 304)) {
+			return new RobotResponse(this, frame, url, HttpCache.withHeaders(cached, response.getHeaderFields("Set-Cookie")));
+		} // if not modified
+
+		final int contentLength = response.getContentLength();
+		if (   HttpCache.isCacheable(response.getResponseCode(), response.getHeaderField("ETag"),
+				response.getHeaderField("Last-Modified"), response.getHeaderField("Cache-Control"),
+				headers.containsKey("cookie") || headers.containsKey("authorization"))
+			&& (contentLength >= 0) && (contentLength <= this.cache.getMaxEntryBytes())
+		   ) {
+			final Cassette.Exchange exchange = toExchange(request, url, null, response, start);
+			this.cache.put(exchange, headers);
+			return new RobotResponse(this, frame, url, exchange);
+		} // if cacheable
+		return response;
+	} // validate
+
+
+	/**
+	 * Sends a request over the network or the cassette.
+	 */
+	private WebResponse fetch(final WebRequest request, final FrameSelector frame) throws IOException {
+		if (this.cassette == null) {
+			return this.send(request, frame);
+		}
+		final URL url = request.getURL();
+		final String digest = Cassette.digest(this.getRequestBody(request));
+		return this.cassette.isRecording() ? this.record(request, frame, url, digest) : this.replay(request, frame, url, digest);
+	} // fetch
+
+
+	/**
+	 * Sends a request over the network, with the transport if one is set.
+	 * With a deadline or hedging (GET only) the request is sent on a
+	 * separate thread, see sendTimed.
+	 */
+	private WebResponse send(final WebRequest request, final FrameSelector frame) throws IOException {
+		// a response the robot did not read to the end gives its connection back now
+		if (this.openBody != null) {
+			this.openBody.close();
+			this.openBody = null;
+		}
+		HedgePolicy hedge = "GET".equals(request.getMethod()) ? this.hedge : null;
+		if ((hedge != null) && (this.transport == null)) {
+			if (!this.hedgeIgnored) {
+				RobotConversation.logger.warn("Hedge ignored without a transport (Transport: pooled)");
+				this.hedgeIgnored = true;
+			}
+			hedge = null;
+		} // if
+		if ((this.deadlineNanos == 0) && (hedge == null)) {
+			try {
+				return this.accept(this.newAttempt(request, frame, null).call());
+			} catch (final IOException e) {
+				throw e;
+			} catch (final Exception e) {
+				throw toIOException(e);
+			} // try catch
+		} // if
+		return this.sendTimed(request, frame, hedge);
+	} // send
+
+
+	/**
+	 * Prepares sending a request; the attempt may be called on any thread.
+	 * With call the request is sent over a transport and can be cancelled
+	 * (PooledHttpTransport); the response of a cancelled request is closed.
+	 *
+	 * @param call handle of the request, null to send it with the transport or httpunit as set
+	 */
+	private Callable<Attempt> newAttempt(final WebRequest request, final FrameSelector frame, final PooledHttpTransport.Call call) throws IOException {
+		final HttpTransport transport;
+		if ((this.transport == null) && (call != null)) {
+			transport = new PooledHttpTransport(this.get_connectTimeout(), this.get_readTimeout());
+		} else {
+			transport = this.transport;
+		}
+		if (transport == null) {
+			return new Callable<Attempt>() {
+				public Attempt call() throws IOException {
+					final long start = System.nanoTime();
+					final WebResponse response = RobotConversation.super.newResponse(request, frame);
+					return new Attempt(response, null, (System.nanoTime() - start) / 1000000L);
+				}
+			};
+		} // if httpunit
+
+		final URL url = request.getURL();
+		final Map<String, String> headers = this.getRequestHeaders(request, false);
+		final byte[] body = this.getRequestBody(request);
+		if (body != null) {
+			final String contentType = getContentType(request);
+			if (contentType != null) {
+				headers.put("Content-Type", contentType);
+			}
+		} // if
+		return new Callable<Attempt>() {
+			public Attempt call() throws IOException {
+				final long start = System.nanoTime();
+				final HttpTransport.Response response;
+				if ((call != null) && (transport instanceof PooledHttpTransport)) {
+					response = ((PooledHttpTransport) transport).send(request.getMethod(), url, new LinkedHashMap<String, String>(headers), body, call);
+				} else {
+					response = transport.send(request.getMethod(), url, new LinkedHashMap<String, String>(headers), body);
+					if ((call != null) && call.isCancelled()) {
+						response.getBody().close();
+						throw new InterruptedIOException("Request cancelled: " + url);
+					}
+				} // if else
+				return new Attempt(new RobotResponse(RobotConversation.this, frame, url, response.getStatus(), response.getMessage(),
+						response.getHeaderNames(), response.getHeaderValues(), response.getBody()),
+						response.getBody(), (System.nanoTime() - start) / 1000000L);
+			}
+		};
+	} // newAttempt
+
+
+	private WebResponse accept(final Attempt attempt) {
+		this.openBody = attempt.body;
+		if (attempt.body != null) {
+			this.headersNanos = System.nanoTime();
+		}
+		return attempt.response;
+	} // accept
+
+
+	/**
+	 * Drops the connection of the last response instead of reading the rest
+	 * of its body, e.g. after its deadline passed.
+	 */
+	void abortBody() throws IOException {
+		if (this.openBody != null) {
+			if (!PooledHttpTransport.abort(this.openBody)) {
+				this.openBody.close();
+			}
+			this.openBody = null;
+		} // if
+	} // abortBody
+
+
+	/**
+	 * Arrival of the headers of the last response sent over the transport;
+	 * httpunit returns responses only after reading the body, replayed
+	 * responses arrive without a request, so both report 0.
+	 *
+	 * @return System.nanoTime of the last response headers, 0 if unknown; resets the value
+	 */
+	long takeHeadersNanos() {
+		final long nanos = this.headersNanos;
+		this.headersNanos = 0;
+		return nanos;
+	} // takeHeadersNanos
+
+
+	/**
+	 * Sends a request on a separate thread and waits at most until the
+	 * deadline. With hedging, the request is sent a second time when no
+	 * response arrived after the delay of the policy; the first response
+	 * is used. Requests that are not used (or not answered by the deadline)
+	 * are cancelled.
+	 */
+	private WebResponse sendTimed(final WebRequest request, final FrameSelector frame, final HedgePolicy hedge) throws IOException {
+		final URL url = request.getURL();
+		final CompletionService<Attempt> completion = new ExecutorCompletionService<Attempt>(RobotConversation.ATTEMPTS);
+		final List<Future<Attempt>> attempts = new ArrayList<Future<Attempt>>(2);
+		final List<PooledHttpTransport.Call> calls = new ArrayList<PooledHttpTransport.Call>(2);
+		final long start = System.nanoTime();
+		final long hedgeDelay = (hedge != null) ? hedge.getDelayMillis(url) : -1;
+		final long deadline = this.deadlineNanos;
+		this.submit(completion, request, frame, deadline, attempts, calls);
+
+		Future<Attempt> winner = null;
+		try {
+			IOException failure = null;
+			int failed = 0;
+			while (winner == null) {
+				final long now = System.nanoTime();
+				long wait = Long.MAX_VALUE;
+				if ((hedgeDelay >= 0) && (attempts.size() == 1)) {
+					wait = start + hedgeDelay * 1000000L - now;
+				}
+				if (deadline != 0) {
+					wait = Math.min(wait, deadline - now);
+				}
+				final Future<Attempt> done = (wait == Long.MAX_VALUE) ? completion.take() : completion.poll(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+				if (done == null) {
+					if ((deadline != 0) && (System.nanoTime() - deadline >= 0)) {
+						throw new IOException("Zeitlimit überschritten nach " + (System.nanoTime() - start) / 1000000L + " ms: " + url);
+					}
+					this.submit(completion, request, frame, deadline, attempts, calls);
+					continue;
+				} // if Hedge
+				try {
+					done.get();
+					winner = done;
+				} catch (final ExecutionException e) {
+					if (failure == null) {
+						failure = toIOException(e.getCause());
+					}
+					if (++failed == attempts.size()) {
+						throw failure;
+					}
+				} // try catch
+			} // while
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Anfrage unterbrochen: " + url);
+		} finally {
+			for (int i = 0; i < attempts.size(); i++) {
+				if (attempts.get(i) != winner) {
+					cancel(attempts.get(i), calls.get(i));
+				}
+			} // for
+		} // try catch finally
+
+		final Attempt result;
+		try {
+			result = winner.get();
+		} catch (final Exception e) {
+			throw toIOException(e);
+		}
+		if (hedge != null) {
+			HedgePolicy.record(url, result.millis);
+			if (attempts.size() > 1) {
+				HedgePolicy.countHedge(winner != attempts.get(0));
+			}
+		} // if
+		return this.accept(result);
+	} // sendTimed
+
+
+	/**
+	 * Starts an attempt of a request on a thread of ATTEMPTS.
+	 */
+	private void submit(final CompletionService<Attempt> completion, final WebRequest request, final FrameSelector frame, final long deadline,
+			final List<Future<Attempt>> attempts, final List<PooledHttpTransport.Call> calls) throws IOException {
+		final PooledHttpTransport.Call call = new PooledHttpTransport.Call(deadline);
+		final Callable<Attempt> attempt = this.newAttempt(request, frame, call);
+		try {
+			attempts.add(completion.submit(attempt));
+		} catch (final RejectedExecutionException e) {
+			throw new IOException("More than " + RobotConversation.MAX_ATTEMPT_THREADS + " requests with deadline or hedging in progress: " + request.getURL());
+		} // try catch
+		calls.add(call);
+	} // submit
+
+
+	/**
+	 * Cancels an attempt that is not used: its connection is dropped and
+	 * its body, if already received, is not read.
+	 */
+	private static void cancel(final Future<Attempt> attempt, final PooledHttpTransport.Call call) {
+		call.cancel();
+		if (!attempt.cancel(true) && !attempt.isCancelled()) {
+			try {
+				final Attempt a = attempt.get();
+				if ((a.body != null) && !PooledHttpTransport.abort(a.body)) {
+					a.body.close();
+				}
+			} catch (final Exception e) {
+				// Antwort wird nicht verwendet
+			} // try catch
+		} // if
+	} // cancel
+
+
+	private static IOException toIOException(final Throwable e) {
+		if (e instanceof IOException) {
+			return (IOException) e;
+		}
+		if (e instanceof ExecutionException) {
+			return toIOException(e.getCause());
+		}
+		if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		}
+		if (e instanceof Error) {
+			throw (Error) e;
+		}
+		final IOException io = new IOException(String.valueOf(e));
+		io.initCause(e);
+		return io;
+	} // toIOException
+
+
+	/**
+	 * @return content type of a request body as set by httpunit (form encoding or multipart)
+	 */
+	private static String getContentType(final WebRequest request) throws IOException {
+		try {
+			return (String) RobotConversation.CONTENT_TYPE.invoke(request);
+		} catch (final Exception e) {
+			throw new IOException("Content type of request not available: " + e);
+		} // try catch
+	} // getContentType
+
+
+	/**
+	 * Removes the credentials set with setAuthentication for a realm.
+	 */
+	void removeAuthentication(final String realm) {
+		try {
+			((Map<?, ?>) RobotConversation.CREDENTIALS.get(this)).remove(realm);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException("Credentials of client not available: " + e);
+		} // try catch
+	} // removeAuthentication
+
+
+	/**
+	 * Removes all cookies of a name, whatever their domain and path. The
+	 * cookie stays in httpunit's jar, but is neither sent nor reported until
+	 * it is set again, by putCookie or by a response.
+	 */
+	void removeCookie(final String name) {
+		this.removedCookies.add(name);
+	} // removeCookie
+
+
+	@Override
+	public void putCookie(final String name, final String value) {
+		this.removedCookies.remove(name);
+		super.putCookie(name, value);
+	} // putCookie
+
+
+	@Override
+	public String[] getCookieNames() {
+		final String[] names = super.getCookieNames();
+		if (this.removedCookies.isEmpty()) {
+			return names;
+		}
+		final List<String> kept = new ArrayList<String>(names.length);
+		for (final String name : names) {
+			if (!this.removedCookies.contains(name)) {
+				kept.add(name);
+			}
+		} // for
+		return kept.toArray(new String[kept.size()]);
+	} // getCookieNames
+
+
+	@Override
+	public String getCookieValue(final String name) {
+		return this.removedCookies.contains(name) ? null : super.getCookieValue(name);
+	}
+
+
+	@Override
+	public Cookie getCookieDetails(final String name) {
+		return this.removedCookies.contains(name) ? null : super.getCookieDetails(name);
+	}
+
+
+	/**
+	 * Drops removed cookies from the Cookie header.
+	 */
+	@Override
+	protected Dictionary getHeaderFields(final URL url) {
+		final Dictionary headers = super.getHeaderFields(url);
+		final Object cookies = headers.get("Cookie");
+		if ((cookies == null) || this.removedCookies.isEmpty()) {
+			return headers;
+		}
+		final StringBuilder kept = new StringBuilder();
+		for (final String pair : cookies.toString().split(";")) {
+			final int eq = pair.indexOf('=');
+			if (!this.removedCookies.contains(((eq < 0) ? pair : pair.substring(0, eq)).trim())) {
+				kept.append((kept.length() == 0) ? "" : "; ").append(pair.trim());
+			}
+		} // for
+		final Hashtable<Object, Object> filtered = new Hashtable<Object, Object>();
+		for (final Enumeration<?> e = headers.keys(); e.hasMoreElements();) {
+			final Object name = e.nextElement();
+			filtered.put(name, headers.get(name));
+		} // for
+		if (kept.length() == 0) {
+			filtered.remove("Cookie");
+		} else {
+			filtered.put("Cookie", kept.toString());
+		}
+		return filtered;
+	} // getHeaderFields
+
+
+	private WebResponse record(final WebRequest request, final FrameSelector frame, final URL url, final String digest) throws IOException {
+		final long start = System.nanoTime();
+		final Cassette.Exchange exchange = toExchange(request, url, digest, this.send(request, frame), start);
+		this.cassette.add(exchange);
+		return new RobotResponse(this, frame, url, exchange);
+	} // record
+
+
+	/**
+	 * Reads a response completely.
+	 *
+	 * @param start request start (System.nanoTime)
+	 * @return response with decoded body
+	 */
+	private static Cassette.Exchange toExchange(final WebRequest request, final URL url, final String digest, final WebResponse response, final long start) throws IOException {
+		final byte[] body = readFully(response.getInputStream());
+		final long elapsed = (System.nanoTime() - start) / 1000000L;
+
+		// the body is stored decoded, so Content-Encoding is dropped
+		final List<String> names = new ArrayList<String>();
+		final List<String> values = new ArrayList<String>();
+		RobotResponse.copyHeaders(response, names, values, body.length);
+
+		return new Cassette.Exchange(request.getMethod(), url.toString(), digest,
+				response.getResponseCode(), response.getResponseMessage(), elapsed,
+				names.toArray(new String[names.size()]), values.toArray(new String[values.size()]), body);
+	} // toExchange
+
+
+	/**
+	 * Ein gesendeter Request: Antwort, deren ungelesener Inhalt (nur mit
+	 * Transport) und Antwortzeit bis zu den Headern.
+	 */
+	private static final class Attempt {
+		final WebResponse response;
+		final InputStream body;
+		final long millis;
+
+		Attempt(final WebResponse response, final InputStream body, final long millis) {
+			this.response = response;
+			this.body = body;
+			this.millis = millis;
+		}
+	} // class Attempt
+
+
+
+	private static final class AttemptThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "request-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class AttemptThreadFactory
+
+
+	private WebResponse replay(final WebRequest request, final FrameSelector frame, final URL url, final String digest) throws IOException {
+		final List<Cassette.Exchange> found = this.cassette.find(request.getMethod(), url.toString(), digest);
+		if (found.isEmpty()) {
+			throw new IOException("Not recorded in cassette " + this.cassette.getFile() + ": " + request.getMethod() + " " + url);
+		}
+		final String key = Cassette.key(request.getMethod(), url.toString(), null);
+		final Integer position = this.replayPositions.get(key);
+		final int next = (position == null) ? 0 : position.intValue();
+		this.replayPositions.put(key, Integer.valueOf(next + 1));
+		final Cassette.Exchange exchange = found.get(Math.min(next, found.size() - 1));
+
+		final long delay = (this.latencyMillis == RobotConversation.RECORDED_LATENCY) ? exchange.getElapsedMillis() : this.latencyMillis;
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} // if
+		return new RobotResponse(this, frame, url, exchange);
+	} // replay
+
+
+	/**
+	 * @return headers the client sends with every request to the url (User-Agent, Cookie, Authorization, ...)
+	 */
+	Map<String, String> getClientHeaders(final URL url) {
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		copyHeaders(this.getHeaderFields(url), headers, false);
+		return headers;
+	} // getClientHeaders
+
+
+	/**
+	 * @return headers sent with a request (client and request headers)
+	 */
+	private Map<String, String> getRequestHeaders(final WebRequest request, final boolean lowerCase) throws IOException {
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		copyHeaders(this.getHeaderFields(request.getURL()), headers, lowerCase);
+		copyHeaders(request.getHeaders(), headers, lowerCase);
+		return headers;
+	} // getRequestHeaders
+
+
+	private static void copyHeaders(final Dictionary<?, ?> from, final Map<String, String> to, final boolean lowerCase) {
+		if (from == null) {
+			return;
+		}
+		for (final Enumeration<?> e = from.keys(); e.hasMoreElements();) {
+			final Object name = e.nextElement();
+			final Object value = from.get(name);
+			if (value != null) {
+				to.put(lowerCase ? name.toString().toLowerCase() : name.toString(), value.toString());
+			}
+		} // for
+	} // copyHeaders
+
+
+	private byte[] getRequestBody(final WebRequest request) throws IOException {
+		if (!"POST".equals(request.getMethod()) && !"PUT".equals(request.getMethod())) {
+			return null;
+		}
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		this.writeMessageBody(request, body);
+		return body.toByteArray();
+	} // getRequestBody
+
+
+	private static byte[] readFully(final InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (in != null) {
+			final byte[] chunk = new byte[8192];
+			int n;
+			while ((n = in.read(chunk)) != -1) {
+				out.write(chunk, 0, n);
+			}
+		} // if
+		return out.toByteArray();
+	} // readFully
+
+} // class RobotConversation
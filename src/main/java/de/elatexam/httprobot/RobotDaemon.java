@@ -0,0 +1,552 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daemon mode: a resident process that accepts robotPlans over a local
+ * socket and runs them in warm robots, so short plans do not pay JVM
+ * startup, class loading, XTrustProvider.install() and a cold JIT each
+ * time.<br>
+ * Plan files are compiled once and recompiled when they change. A few
+ * fresh {@link Robot}s are kept ready; every plan gets one of its own, so
+ * sessions never leak between submissions.
+ * <br>
+ * Aufruf: java de.elatexam.httprobot.RobotDaemon Parameter<br>
+ * with the daemon parameters
+ * <ul>
+ * <li>DaemonPort: 7411 [TCP-Port]</li>
+ * <li>DaemonBind: 127.0.0.1 [Adresse, nur lokal erreichbar; andere Adressen nur mit DaemonToken]</li>
+ * <li>DaemonToken: - [Zugangsschlüssel, sonst Umgebungsvariable HTTPROBOT_DAEMON_TOKEN]</li>
+ * <li>DaemonThreads: 8 [gleichzeitig abgearbeitete Pläne]</li>
+ * <li>DaemonWarm: DaemonThreads [bereitgehaltene Robots]</li>
+ * </ul>
+ * All other parameters are defaults for every plan (see Robot.init), the
+ * parameters of a submission are applied on top of them.
+ * <p>
+ * Protocol, one request line after another per connection, fields
+ * separated by tabs (or by spaces if the line has no tab), UTF-8:
+ * <pre>
+ * RUN  plan.xml [NAME:WERT ...]       Plan-Datei auf dem Rechner des Daemons
+ * PLAN length [NAME:WERT ...]         gefolgt von length Bytes Plan-XML
+ * PING
+ * </pre>
+ * With a token every request line starts with it as an extra first field,
+ * e.g. "TOKEN RUN plan.xml"; a line with a wrong or missing token is
+ * answered with ERROR and the connection is closed.
+ * Results are streamed while the plan runs, one line per step and the last
+ * response at the end:
+ * <pre>
+ * STEP  n  mode  ok|failed  status  ms
+ * DONE  status  name  length          gefolgt von length Bytes letzte Antwort
+ * ERROR message                       Anfrage abgelehnt oder Plan fehlerhaft
+ * PONG
+ * </pre>
+ */
+public class RobotDaemon {
+
+	/** Standard-Port */
+	public static final int DEFAULT_PORT = 7411;
+
+	/** größter Plan, der mit PLAN übertragen werden darf */
+	static final int MAX_PLAN_BYTES = 16 * 1024 * 1024;
+
+	/** längste Anfragezeile */
+	private static final int MAX_LINE_BYTES = 64 * 1024;
+
+	private final String[] parameters;
+	private final Semaphore running;
+	private final BlockingQueue<Robot> warm;
+	private final int warmCount;
+	private final Set<Socket> open = Collections.synchronizedSet(new HashSet<Socket>());
+	private final ConcurrentMap<String, CachedPlan> plans = new ConcurrentHashMap<String, CachedPlan>();
+	private final ExecutorService connections = Executors.newCachedThreadPool(new DaemonThreadFactory("daemon-connection"));
+	private final ExecutorService warmer = Executors.newSingleThreadExecutor(new DaemonThreadFactory("daemon-warmer"));
+	private final AtomicInteger submissions = new AtomicInteger();
+	private ServerSocket server = null;
+	private byte[] token = null;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(RobotDaemon.class);
+
+
+	/**
+	 * @param parameters
+	 *            Übergabe Parameter aller Robots, Format: NAME:WERT
+	 * @param threads
+	 *            maximum number of plans running at the same time
+	 * @param warm
+	 *            number of robots kept ready
+	 */
+	public RobotDaemon(final String[] parameters, final int threads, final int warm) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads, expected at least 1, but was: " + threads);
+		if (warm < 0)
+			throw new IllegalArgumentException("Invalid number of warm robots, expected at least 0, but was: " + warm);
+		this.parameters = (parameters != null) ? parameters : new String[0];
+		this.running = new Semaphore(threads, true);
+		this.warm = new LinkedBlockingQueue<Robot>(Math.max(warm, 1));
+		this.warmCount = warm;
+		for (int i = 0; i < warm; i++) {
+			this.warmUp();
+		} // for
+	}
+
+
+	/**
+	 * Sets the token every request line has to start with; must be called
+	 * before start.
+	 *
+	 * @param token
+	 *            access token, null or "" for none (loopback addresses only)
+	 */
+	public synchronized void setToken(final String token) throws IOException {
+		if (this.server != null)
+			throw new IllegalStateException("RobotDaemon already started");
+		this.token = ((token != null) && !token.equals("")) ? token.getBytes("UTF-8") : null;
+	} // setToken
+
+
+	/**
+	 * Binds the server socket and accepts connections in a background thread.
+	 *
+	 * @param address
+	 *            local address, e.g. 127.0.0.1; other than loopback only with a token
+	 * @param port
+	 *            TCP port, 0 for any free port
+	 * @return bound port
+	 */
+	public synchronized int start(final InetAddress address, final int port) throws IOException {
+		if (this.server != null)
+			throw new IllegalStateException("RobotDaemon already started");
+		if ((this.token == null) && !address.isLoopbackAddress())
+			throw new IllegalArgumentException("Refusing to bind " + address.getHostAddress() + " without DaemonToken, expected a loopback address");
+		final ServerSocket server = new ServerSocket();
+		server.setReuseAddress(true);
+		server.bind(new InetSocketAddress(address, port), 50);
+		this.server = server;
+		this.connections.execute(new Runnable() {
+			public void run() {
+				RobotDaemon.this.accept(server);
+			}
+		});
+		RobotDaemon.logger.info("RobotDaemon: " + server.getLocalSocketAddress());
+		return server.getLocalPort();
+	} // start
+
+
+	/**
+	 * Closes the server socket and all connections; running plans are not
+	 * waited for.
+	 */
+	public synchronized void stop() throws IOException {
+		if (this.server != null) {
+			this.server.close();
+		}
+		synchronized (this.open) {
+			for (final Socket socket : this.open) {
+				close(socket);
+			} // for
+		} // synchronized
+		this.connections.shutdownNow();
+		this.warmer.shutdownNow();
+	} // stop
+
+
+	private void accept(final ServerSocket server) {
+		while (!server.isClosed()) {
+			final Socket socket;
+			try {
+				socket = server.accept();
+			} catch (final IOException e) {
+				if (!server.isClosed()) {
+					RobotDaemon.logger.error("RobotDaemon: accept fehlgeschlagen", e);
+				}
+				return;
+			} // try catch
+			try {
+				this.connections.execute(new Runnable() {
+					public void run() {
+						RobotDaemon.this.serve(socket);
+					}
+				});
+			} catch (final RuntimeException e) {
+				close(socket);
+				return; // gestoppt
+			} // try catch
+		} // while
+	} // accept
+
+
+	/**
+	 * Beantwortet die Anfragen einer Verbindung, bis der Client sie schließt.
+	 */
+	private void serve(final Socket socket) {
+		this.open.add(socket);
+		try {
+			socket.setTcpNoDelay(true);
+			final InputStream in = new BufferedInputStream(socket.getInputStream());
+			final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			String line;
+			while ((line = readLine(in)) != null) {
+				if (line.length() == 0) {
+					continue;
+				}
+				String[] fields = line.split((line.indexOf('\t') != -1) ? "\t" : " +");
+				if (this.token != null) {
+					if (!MessageDigest.isEqual(this.token, fields[0].getBytes("UTF-8"))) {
+						RobotDaemon.logger.warn("RobotDaemon: Anfrage ohne gültigen Token von " + socket.getRemoteSocketAddress());
+						writeLine(out, "ERROR\tUnauthorized");
+						out.flush();
+						return;
+					} // if
+					fields = Arrays.asList(fields).subList(1, fields.length).toArray(new String[0]);
+					if (fields.length == 0) {
+						continue;
+					}
+				} // if Token
+				final String command = fields[0].toUpperCase();
+				final String[] parameters = Arrays.asList(fields).subList(Math.min(2, fields.length), fields.length).toArray(new String[0]);
+				if (command.equals("PING")) {
+					writeLine(out, "PONG");
+				} else if (command.equals("RUN") && (fields.length > 1)) {
+					final RobotPlan plan = this.compile(fields[1], null, out);
+					if (plan != null) {
+						this.submit(plan, fields[1], parameters, out);
+					}
+				} else if (command.equals("PLAN") && (fields.length > 1)) {
+					final RobotPlan plan = this.compile(null, readPlan(in, fields[1]), out);
+					if (plan != null) {
+						this.submit(plan, "<plan>", parameters, out);
+					}
+				} else {
+					writeLine(out, "ERROR\tUnknown request: " + line);
+				} // if else
+				out.flush();
+			} // while
+		} catch (final SocketException e) {
+			RobotDaemon.logger.debug("RobotDaemon: Verbindung beendet: " + e.getMessage());
+		} catch (final IOException e) {
+			RobotDaemon.logger.warn("RobotDaemon: Verbindung abgebrochen: " + e);
+		} finally {
+			this.open.remove(socket);
+			close(socket);
+		} // try finally
+	} // serve
+
+
+	/**
+	 * Übersetzt den Plan einer Anfrage, Fehler werden als ERROR gemeldet.
+	 *
+	 * @param fileName Plan-Datei oder null
+	 * @param xml Plan-XML, wenn fileName null ist
+	 * @return übersetzter Plan, null bei Fehlern
+	 */
+	private RobotPlan compile(final String fileName, final byte[] xml, final OutputStream out) throws IOException {
+		try {
+			return (fileName != null) ? this.getPlan(fileName) : RobotPlan.load(new ByteArrayInputStream(xml));
+		} catch (final Exception e) {
+			RobotDaemon.logger.warn("RobotDaemon: Plan abgelehnt: " + ((fileName != null) ? fileName : "<plan>") + " (" + e + ")");
+			writeLine(out, "ERROR\t" + error(e));
+			return null;
+		} // try catch
+	} // compile
+
+
+	/**
+	 * Führt den Plan in einem eigenen Robot aus, die Ergebnisse werden während
+	 * der Abarbeitung geschrieben.
+	 */
+	private void submit(final RobotPlan plan, final String name, final String[] parameters, final OutputStream out)
+			throws IOException {
+		final Robot robot = this.takeRobot();
+		try {
+			robot.init(parameters);
+		} catch (final RuntimeException e) {
+			writeLine(out, "ERROR\t" + error(e));
+			return;
+		} // try catch
+
+		final int submission = this.submissions.incrementAndGet();
+		try {
+			this.running.acquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			writeLine(out, "ERROR\tRobotDaemon stopped");
+			return;
+		} // try catch
+		final long start = System.currentTimeMillis();
+		try {
+			final List<Step> steps = plan.getSteps();
+			for (int i = robot.restoreCheckpoint(steps); i < steps.size(); i++) {
+				final long stepStart = System.currentTimeMillis();
+				final boolean ok = Boolean.TRUE.equals(robot.callStep(steps.get(i)));
+				robot.awaitRefresh();
+				writeLine(out, "STEP\t" + (i + 1) + "\t" + steps.get(i).getMode() + "\t" + (ok ? "ok" : "failed") + "\t"
+						+ robot.getLastResultStatus() + "\t" + (System.currentTimeMillis() - stepStart));
+				out.flush();
+			} // for
+			robot.finish();
+		} finally {
+			this.running.release();
+		} // try finally
+
+		final byte[] result = robot.getLastByteResult();
+		final int length = (result != null) ? result.length : 0;
+		final String resultName = robot.getLastResultName();
+		writeLine(out, "DONE\t" + robot.getLastResultStatus() + "\t" + ((resultName != null) ? resultName : "") + "\t" + length);
+		if (length > 0) {
+			out.write(result);
+		}
+		RobotDaemon.logger.info("RobotDaemon: #" + submission + " " + name + " " + robot.getLastResultStatus() + " "
+				+ (System.currentTimeMillis() - start) + "ms");
+	} // submit
+
+
+	/**
+	 * @return bereitgehaltener Robot, sonst ein neuer; für Ersatz wird gesorgt
+	 */
+	private Robot takeRobot() {
+		final Robot robot = this.warm.poll();
+		this.warmUp();
+		return (robot != null) ? robot : new Robot(this.parameters);
+	} // takeRobot
+
+
+	private void warmUp() {
+		if (this.warmCount == 0) {
+			return;
+		}
+		try {
+			this.warmer.execute(new Runnable() {
+				public void run() {
+					if (RobotDaemon.this.warm.remainingCapacity() > 0) {
+						RobotDaemon.this.warm.offer(new Robot(RobotDaemon.this.parameters));
+					}
+				}
+			});
+		} catch (final RuntimeException e) {
+			// gestoppt
+		} // try catch
+	} // warmUp
+
+
+	/**
+	 * @return übersetzter Plan der Datei, neu übersetzt wenn sie sich geändert hat
+	 */
+	RobotPlan getPlan(final String fileName) throws Exception {
+		final File file = new File(fileName).getAbsoluteFile();
+		final String key = file.getPath();
+		final long modified = file.lastModified();
+		final long length = file.length();
+		if (modified == 0L)
+			throw new IllegalArgumentException("Plan not found: " + fileName);
+		final CachedPlan cached = this.plans.get(key);
+		if ((cached != null) && (cached.modified == modified) && (cached.length == length)) {
+			return cached.plan;
+		}
+		final RobotPlan plan = RobotPlan.load(key);
+		this.plans.put(key, new CachedPlan(plan, modified, length));
+		return plan;
+	} // getPlan
+
+
+
+	//Hilfsmethoden
+	/**
+	 * Liest eine Zeile (UTF-8) bis \n, ohne \r.
+	 *
+	 * @return Zeile, null am Ende der Verbindung
+	 */
+	static String readLine(final InputStream in) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				return (line.size() > 0) ? line.toString("UTF-8") : null;
+			}
+			if (line.size() >= MAX_LINE_BYTES)
+				throw new IOException("Request line too long");
+			line.write(b);
+		} // while
+		final String s = line.toString("UTF-8");
+		return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+	} // readLine
+
+
+	private static byte[] readPlan(final InputStream in, final String length) throws IOException {
+		final int n;
+		try {
+			n = Integer.parseInt(length.trim());
+		} catch (final NumberFormatException e) {
+			throw new IOException("Invalid plan length, expected a number, but was: " + length);
+		}
+		if ((n < 0) || (n > MAX_PLAN_BYTES))
+			throw new IOException("Invalid plan length: " + n);
+		final byte[] xml = new byte[n];
+		int off = 0;
+		while (off < n) {
+			final int read = in.read(xml, off, n - off);
+			if (read == -1)
+				throw new EOFException("Plan incomplete, " + off + " of " + n + " bytes");
+			off += read;
+		} // while
+		return xml;
+	} // readPlan
+
+
+	private static void writeLine(final OutputStream out, final String line) throws IOException {
+		out.write((line + "\n").getBytes("UTF-8"));
+	}
+
+
+	private static String error(final Exception e) {
+		return String.valueOf((e.getMessage() != null) ? e.getMessage() : e.toString()).replace('\n', ' ').replace('\t', ' ');
+	}
+
+
+	private static void close(final Socket socket) {
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			// ignorieren
+		}
+	} // close
+
+
+
+	private static final class CachedPlan {
+		final RobotPlan plan;
+		final long modified;
+		final long length;
+
+		CachedPlan(final RobotPlan plan, final long modified, final long length) {
+			this.plan = plan;
+			this.modified = modified;
+			this.length = length;
+		}
+	} // class CachedPlan
+
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		DaemonThreadFactory(final String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, this.name + "-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class DaemonThreadFactory
+
+
+
+	/**
+	 * Startet den Daemon und wartet, bis der Prozess beendet wird.
+	 *
+	 * @param args
+	 *            Übergabe Parameter, Format: NAME:WERT
+	 */
+	public static void main(final String[] args) throws Exception {
+		final List<String> robotParameters = new ArrayList<String>();
+		int port = DEFAULT_PORT;
+		int threads = 8;
+		int warm = -1;
+		String token = System.getenv("HTTPROBOT_DAEMON_TOKEN");
+		InetAddress address = InetAddress.getByName("127.0.0.1");
+		for (final String arg : args) {
+			final int idx = arg.indexOf(':');
+			if (idx == -1)
+				throw new IllegalArgumentException("Invalid parameter syntax, expected: 'name:value', but was: " + arg);
+			final String key = arg.substring(0, idx);
+			final String value = arg.substring(idx + 1);
+			if (key.equals("DaemonPort")) {
+				port = Integer.parseInt(value);
+			} else if (key.equals("DaemonBind")) {
+				address = InetAddress.getByName(value);
+			} else if (key.equals("DaemonThreads")) {
+				threads = Integer.parseInt(value);
+			} else if (key.equals("DaemonWarm")) {
+				warm = Integer.parseInt(value);
+			} else if (key.equals("DaemonToken")) {
+				token = value;
+			} else if (key.startsWith("Daemon")) {
+				throw new IllegalArgumentException("Unknown daemon parameter: " + key);
+			} else {
+				robotParameters.add(arg);
+			}
+		} // for
+
+		final RobotDaemon daemon = new RobotDaemon(robotParameters.toArray(new String[robotParameters.size()]), threads,
+				(warm >= 0) ? warm : threads);
+		daemon.setToken(token);
+		final int bound = daemon.start(address, port);
+		System.out.println("RobotDaemon: " + address.getHostAddress() + ":" + bound);
+		final Object forever = new Object();
+		synchronized (forever) {
+			while (true) {
+				forever.wait();
+			}
+		}
+	} // main
+
+} // class RobotDaemon
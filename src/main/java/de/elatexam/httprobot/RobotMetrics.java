@@ -0,0 +1,276 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-step metrics of one or more robots, aggregated per step mode.<br>
+ * For every executed step the wall time, time to the first response, time
+ * to first byte (only measured with a transport), received bytes, number
+ * of redirect hops and the final http status are recorded into
+ * {@link Histogram}s. The metrics can be exported at any time as JSON
+ * or in the Prometheus text exposition format. One instance may be shared by
+ * many robots (see Robot.setMetrics).
+ */
+public class RobotMetrics {
+
+	/** Bucket bounds for response sizes in bytes */
+	public static final long[] SIZE_BYTES = { 1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216, 67108864, 268435456, 1073741824 };
+
+	/** Bucket bounds for redirect hops */
+	public static final long[] REDIRECT_HOPS = { 0, 1, 2, 3, 5, 10 };
+
+	private final ConcurrentMap<String, StepMetrics> steps = new ConcurrentHashMap<String, StepMetrics>();
+
+
+	/**
+	 * Records one executed step.
+	 *
+	 * @param mode mode of the step
+	 * @param success result of the step
+	 * @param durationMillis wall time of the step
+	 * @param responseMillis time until the first response of the step was available, -1 if the step sent no request
+	 * @param ttfbMillis time until the headers of the first response arrived, -1 if not measured
+	 *                   (no request, or no transport: httpunit reads the whole body first)
+	 * @param bytes received body bytes
+	 * @param redirects followed redirects and meta refreshes
+	 * @param status final http status (Robot.getLastResultStatus)
+	 */
+	public void record(final String mode, final boolean success, final long durationMillis, final long responseMillis,
+			final long ttfbMillis, final long bytes, final int redirects, final int status) {
+		final StepMetrics m = this.get(mode);
+		m.duration.record(durationMillis);
+		if (ttfbMillis >= 0) {
+			m.ttfb.record(ttfbMillis);
+		}
+		if (responseMillis >= 0) {
+			m.response.record(responseMillis);
+			m.bytes.record(bytes);
+			m.redirects.record(redirects);
+		} // if Request
+		if (!success) {
+			m.errors.incrementAndGet();
+		}
+		AtomicLong counter = m.status.get(Integer.valueOf(status));
+		if (counter == null) {
+			final AtomicLong created = new AtomicLong();
+			counter = m.status.putIfAbsent(Integer.valueOf(status), created);
+			if (counter == null) {
+				counter = created;
+			}
+		} // if
+		counter.incrementAndGet();
+	} // record
+
+
+	private StepMetrics get(final String mode) {
+		StepMetrics m = this.steps.get(mode);
+		if (m == null) {
+			final StepMetrics created = new StepMetrics();
+			m = this.steps.putIfAbsent(mode, created);
+			if (m == null) {
+				m = created;
+			}
+		} // if
+		return m;
+	} // get
+
+
+	private Map<String, StepMetrics> sorted() {
+		return new TreeMap<String, StepMetrics>(this.steps);
+	}
+
+
+	/**
+	 * @return metrics as JSON document
+	 */
+	public String toJSON() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("{\"steps\":{");
+		boolean first = true;
+		for (final Map.Entry<String, StepMetrics> e : this.sorted().entrySet()) {
+			final StepMetrics m = e.getValue();
+			if (!first) sb.append(',');
+			first = false;
+			sb.append(jsonString(e.getKey())).append(":{");
+			sb.append("\"errors\":").append(m.errors.get());
+			sb.append(",\"status\":{");
+			boolean firstStatus = true;
+			for (final Map.Entry<Integer, AtomicLong> s : new TreeMap<Integer, AtomicLong>(m.status).entrySet()) {
+				if (!firstStatus) sb.append(',');
+				firstStatus = false;
+				sb.append('"').append(s.getKey()).append("\":").append(s.getValue().get());
+			} // for status
+			sb.append('}');
+			appendJSON(sb.append(",\"duration_ms\":"), m.duration);
+			appendJSON(sb.append(",\"response_ms\":"), m.response);
+			appendJSON(sb.append(",\"ttfb_ms\":"), m.ttfb);
+			appendJSON(sb.append(",\"bytes\":"), m.bytes);
+			appendJSON(sb.append(",\"redirects\":"), m.redirects);
+			sb.append('}');
+		} // for steps
+		sb.append("}}");
+		return sb.toString();
+	} // toJSON
+
+
+	private static void appendJSON(final StringBuilder sb, final Histogram h) {
+		sb.append("{\"count\":").append(h.getCount());
+		sb.append(",\"sum\":").append(h.getSum());
+		sb.append(",\"max\":").append(h.getMax());
+		sb.append(",\"p50\":").append(h.getPercentile(0.5));
+		sb.append(",\"p90\":").append(h.getPercentile(0.9));
+		sb.append(",\"p99\":").append(h.getPercentile(0.99));
+		sb.append(",\"buckets\":{");
+		final long[] bounds = h.getBounds();
+		for (int i = 0; i < bounds.length; i++) {
+			sb.append('"').append(bounds[i]).append("\":").append(h.getBucketCount(i)).append(',');
+		} // for
+		sb.append("\"+Inf\":").append(h.getBucketCount(bounds.length)).append("}}");
+	} // appendJSON
+
+
+	private static String jsonString(final String s) {
+		final StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				sb.append(c);
+			}
+		} // for
+		return sb.append('"').toString();
+	} // jsonString
+
+
+	/**
+	 * @return metrics in the Prometheus text exposition format (version 0.0.4)
+	 */
+	public String toPrometheus() {
+		final Map<String, StepMetrics> sorted = this.sorted();
+		final StringBuilder sb = new StringBuilder();
+		sb.append("# HELP httprobot_step_errors_total Failed robot steps\n");
+		sb.append("# TYPE httprobot_step_errors_total counter\n");
+		for (final Map.Entry<String, StepMetrics> e : sorted.entrySet()) {
+			sb.append("httprobot_step_errors_total{mode=").append(promLabel(e.getKey())).append("} ").append(e.getValue().errors.get()).append('\n');
+		} // for
+		sb.append("# HELP httprobot_step_status_total Final http status of robot steps\n");
+		sb.append("# TYPE httprobot_step_status_total counter\n");
+		for (final Map.Entry<String, StepMetrics> e : sorted.entrySet()) {
+			for (final Map.Entry<Integer, AtomicLong> s : new TreeMap<Integer, AtomicLong>(e.getValue().status).entrySet()) {
+				sb.append("httprobot_step_status_total{mode=").append(promLabel(e.getKey()))
+					.append(",status=\"").append(s.getKey()).append("\"} ").append(s.getValue().get()).append('\n');
+			} // for status
+		} // for
+		appendPrometheus(sb, sorted, "httprobot_step_duration_milliseconds", "Wall time of robot steps", 0);
+		appendPrometheus(sb, sorted, "httprobot_step_response_milliseconds", "Time to first response of robot steps", 4);
+		appendPrometheus(sb, sorted, "httprobot_step_ttfb_milliseconds", "Time to first response headers of robot steps (transport only)", 1);
+		appendPrometheus(sb, sorted, "httprobot_step_received_bytes", "Received body bytes of robot steps", 2);
+		appendPrometheus(sb, sorted, "httprobot_step_redirects", "Redirect hops of robot steps", 3);
+		return sb.toString();
+	} // toPrometheus
+
+
+	private static void appendPrometheus(final StringBuilder sb, final Map<String, StepMetrics> sorted,
+			final String name, final String help, final int which) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" histogram\n");
+		for (final Map.Entry<String, StepMetrics> e : sorted.entrySet()) {
+			final Histogram h = e.getValue().histogram(which);
+			final String mode = promLabel(e.getKey());
+			final long[] bounds = h.getBounds();
+			long cumulative = 0;
+			for (int i = 0; i < bounds.length; i++) {
+				cumulative += h.getBucketCount(i);
+				sb.append(name).append("_bucket{mode=").append(mode).append(",le=\"").append(bounds[i]).append("\"} ").append(cumulative).append('\n');
+			} // for
+			cumulative += h.getBucketCount(bounds.length);
+			sb.append(name).append("_bucket{mode=").append(mode).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+			sb.append(name).append("_sum{mode=").append(mode).append("} ").append(h.getSum()).append('\n');
+			sb.append(name).append("_count{mode=").append(mode).append("} ").append(h.getCount()).append('\n');
+		} // for
+	} // appendPrometheus
+
+
+	private static String promLabel(final String value) {
+		return '"' + String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+	}
+
+
+	/**
+	 * Writes the metrics into a file, as JSON if the name ends with ".json",
+	 * otherwise in the Prometheus text format.
+	 *
+	 * @param fileName Dateiname
+	 * @throws IOException
+	 */
+	public void writeTo(final String fileName) throws IOException {
+		final String content = fileName.endsWith(".json") ? this.toJSON() : this.toPrometheus();
+		final Writer w = new OutputStreamWriter(new FileOutputStream(new File(fileName)), "UTF-8");
+		try {
+			w.write(content);
+		} finally {
+			w.close();
+		} // try finally
+	} // writeTo
+
+
+
+	private static final class StepMetrics {
+		final Histogram duration = new Histogram(Histogram.LATENCY_MILLIS);
+		final Histogram response = new Histogram(Histogram.LATENCY_MILLIS);
+		final Histogram ttfb = new Histogram(Histogram.LATENCY_MILLIS);
+		final Histogram bytes = new Histogram(SIZE_BYTES);
+		final Histogram redirects = new Histogram(REDIRECT_HOPS);
+		final AtomicLong errors = new AtomicLong();
+		final ConcurrentMap<Integer, AtomicLong> status = new ConcurrentHashMap<Integer, AtomicLong>();
+
+		Histogram histogram(final int which) {
+			switch (which) {
+			case 0: return this.duration;
+			case 1: return this.ttfb;
+			case 2: return this.bytes;
+			case 3: return this.redirects;
+			default: return this.response;
+			}
+		}
+	} // class StepMetrics
+
+} // class RobotMetrics
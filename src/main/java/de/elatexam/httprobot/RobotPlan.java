@@ -0,0 +1,124 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+
+/**
+ * Compiled, immutable form of a robotPlan.<br>
+ * The XML is parsed and every {@code <step>} is translated into a {@link Step}
+ * exactly once, so a plan can be run many times (and by many robots at once)
+ * without reflection or DOM lookups per step.
+ *
+ * @see Robot#run(RobotPlan)
+ */
+public final class RobotPlan {
+
+	private final List<Step> steps;
+
+
+	public RobotPlan(final List<Step> steps) {
+		this.steps = Collections.unmodifiableList(new ArrayList<Step>(steps));
+	}
+
+
+	/**
+	 * Compiles a plan using the default {@link StepRegistry}.
+	 *
+	 * @param eXMLRobotPlan
+	 *            XML-Rootelement (org.jdom.Element)
+	 * @return compiled plan
+	 * @throws Exception
+	 */
+	public static RobotPlan compile(final Element eXMLRobotPlan) throws Exception {
+		return compile(eXMLRobotPlan, StepRegistry.getDefault());
+	} // compile
+
+
+	/**
+	 * Compiles a plan.
+	 *
+	 * @param eXMLRobotPlan
+	 *            XML-Rootelement (org.jdom.Element)
+	 * @param registry
+	 *            registry used to resolve the step modes
+	 * @return compiled plan
+	 * @throws Exception
+	 */
+	public static RobotPlan compile(final Element eXMLRobotPlan, final StepRegistry registry) throws Exception {
+		final List<Element> lSteps = eXMLRobotPlan.getChildren("step");
+		final List<Step> steps = new ArrayList<Step>(lSteps.size());
+		for (final Element eStep : lSteps) {
+			steps.add(registry.compile(eStep));
+		} // for
+		return new RobotPlan(steps);
+	} // compile
+
+
+	/**
+	 * Loads and compiles a plan from a XML file.
+	 *
+	 * @param xmlFileName
+	 *            Dateiname XML-Datei
+	 * @return compiled plan
+	 * @throws Exception
+	 */
+	public static RobotPlan load(final String xmlFileName) throws Exception {
+		final Document xmlFile = new SAXBuilder().build(xmlFileName);
+		return compile(xmlFile.getRootElement());
+	} // load
+
+
+	/**
+	 * Loads and compiles a plan from a XML stream.
+	 *
+	 * @param in
+	 *            inputstream containing a robotplan xml
+	 * @return compiled plan
+	 * @throws Exception
+	 */
+	public static RobotPlan load(final InputStream in) throws Exception {
+		final Document xmlFile = new SAXBuilder().build(in);
+		return compile(xmlFile.getRootElement());
+	} // load
+
+
+	/**
+	 * @return steps in execution order (unmodifiable)
+	 */
+	public List<Step> getSteps() {
+		return this.steps;
+	}
+
+} // class RobotPlan
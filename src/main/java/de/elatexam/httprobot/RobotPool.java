@@ -0,0 +1,237 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent sessions of a compiled {@link RobotPlan} concurrently.<br>
+ * Every session gets its own {@link Robot} (and therefore its own
+ * WebConversation, cookies, pending values and options). The number of
+ * sessions running at the same time is bounded by the pool size. A session
+ * waiting for a delayed meta refresh does not occupy a thread.
+ *
+ * <pre>
+ * RobotPool pool = new RobotPool(8);
+ * List&lt;Robot&gt; robots = pool.runAll(RobotPlan.load("plan.xml"), params, 50);
+ * pool.shutdown();
+ * </pre>
+ */
+public class RobotPool {
+
+	private final ScheduledExecutorService executor;
+	//laufende Sessions, auch während sie auf einen Refresh warten; Zugriff synchronisiert
+	private int live = 0;
+	private boolean closing = false;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(RobotPool.class);
+
+
+	/**
+	 * @param threads
+	 *            maximum number of sessions running at the same time
+	 */
+	public RobotPool(final int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid pool size, expected at least 1, but was: " + threads);
+		this.executor = Executors.newScheduledThreadPool(threads, new RobotThreadFactory());
+	}
+
+
+	/**
+	 * Starts one session of the plan.
+	 *
+	 * @param plan
+	 *            compiled plan
+	 * @param parameters
+	 *            Übergabe Parameter, Format: NAME:WERT
+	 * @return the robot of the session, after the plan has been run
+	 */
+	public Future<Robot> submit(final RobotPlan plan, final String[] parameters) {
+		final Session session = new Session(plan, parameters);
+		synchronized (this) {
+			if (this.closing) {
+				throw new RejectedExecutionException("RobotPool is shut down");
+			}
+			this.live++;
+		} // synchronized
+		try {
+			this.executor.execute(session);
+		} catch (final RuntimeException e) {
+			this.ended();
+			throw e;
+		} // try catch
+		return session;
+	} // submit
+
+
+	/**
+	 * Runs the plan in the given number of sessions and waits for all of them.
+	 *
+	 * @param plan
+	 *            compiled plan
+	 * @param parameters
+	 *            Übergabe Parameter, Format: NAME:WERT (same for all sessions)
+	 * @param sessions
+	 *            number of sessions
+	 * @return robots of all sessions, in submission order
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 *             if a session failed outside of its steps
+	 */
+	public List<Robot> runAll(final RobotPlan plan, final String[] parameters, final int sessions)
+			throws InterruptedException, ExecutionException {
+		final List<Future<Robot>> futures = new ArrayList<Future<Robot>>(sessions);
+		for (int i = 0; i < sessions; i++) {
+			futures.add(this.submit(plan, parameters));
+		} // for
+		final List<Robot> robots = new ArrayList<Robot>(sessions);
+		for (final Future<Robot> future : futures) {
+			robots.add(future.get());
+		} // for
+		RobotPool.logger.info("RobotPool: " + sessions + " Sessions beendet");
+		return robots;
+	} // runAll
+
+
+	/**
+	 * Stops accepting sessions and waits for the running ones, including
+	 * sessions waiting for a delayed refresh.
+	 */
+	public void shutdown() throws InterruptedException {
+		synchronized (this) {
+			this.closing = true;
+			if (this.live == 0) {
+				this.executor.shutdown();
+			}
+		} // synchronized
+		this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	} // shutdown
+
+
+	/**
+	 * Eine Session ist beendet; nach shutdown endet der Executor mit der letzten.
+	 */
+	private synchronized void ended() {
+		this.live--;
+		if (this.closing && (this.live == 0)) {
+			this.executor.shutdown();
+		}
+	} // ended
+
+
+
+	/**
+	 * One session of a plan. It runs steps until the plan is done or the last
+	 * page asks for a delayed refresh; then it is rescheduled for the due time
+	 * and the thread is free for other sessions meanwhile.
+	 */
+	private final class Session extends FutureTask<Robot> implements Runnable {
+		private final RobotPlan plan;
+		private final String[] parameters;
+		private Robot robot = null;
+		private int next = 0;
+
+		Session(final RobotPlan plan, final String[] parameters) {
+			super(new Runnable() {
+				public void run() {
+				}
+			}, null);
+			this.plan = plan;
+			this.parameters = parameters;
+		}
+
+		@Override
+		public void run() {
+			if (this.isDone()) {
+				return;
+			}
+			boolean finishing = false;
+			try {
+				if (this.robot == null) {
+					this.robot = new Robot(this.parameters);
+					this.next = this.robot.restoreCheckpoint(this.plan.getSteps());
+				}
+				final List<Step> steps = this.plan.getSteps();
+				while (true) {
+					final long delay = this.robot.getRefreshDelay();
+					if (delay > 0) {
+						RobotPool.this.executor.schedule(this, delay, TimeUnit.MILLISECONDS);
+						return;
+					} else if (delay == 0) {
+						this.robot.followRefresh();
+					} else if (this.next < steps.size()) {
+						this.robot.callStep(steps.get(this.next++));
+					} else {
+						break;
+					}
+				} // while
+				finishing = true;
+				this.robot.finish();
+				this.set(this.robot);
+			} catch (final Throwable e) {
+				// Errors (OutOfMemoryError, NoClassDefFoundError, ...) must complete the future too, or get() waits forever
+				//gespeicherte Dateien, Cache und Aufzeichnung auch nach einem Fehler schreiben
+				if ((this.robot != null) && !finishing) {
+					try {
+						this.robot.finish();
+					} catch (final Throwable f) {
+						RobotPool.logger.error("RobotPool: Session nicht abgeschlossen", f);
+					}
+				} // if
+				this.setException(e);
+			} // try catch
+			RobotPool.this.ended();
+		} // run
+	} // class Session
+
+
+
+	private static final class RobotThreadFactory implements ThreadFactory {
+		private static final AtomicInteger poolNumber = new AtomicInteger();
+		private final int pool = poolNumber.incrementAndGet();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "robot-" + this.pool + "-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class RobotThreadFactory
+
+} // class RobotPool
@@ -0,0 +1,152 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.meterware.httpunit.FrameSelector;
+import com.meterware.httpunit.WebClient;
+import com.meterware.httpunit.WebResponse;
+
+/**
+ * WebResponse built from a status, headers and a body stream, used for
+ * responses served from a {@link Cassette}, the {@link HttpCache} or an
+ * {@link HttpTransport}. Gzip encoded bodies are decoded by httpunit.
+ */
+class RobotResponse extends WebResponse {
+
+	private final int status;
+	private final String message;
+	private final String[] headerNames;
+	private final String[] headerValues;
+
+
+	RobotResponse(final WebClient client, final FrameSelector frame, final URL url, final int status, final String message,
+			final String[] headerNames, final String[] headerValues, final InputStream body) throws IOException {
+		super(client, frame, url);
+		this.status = status;
+		this.message = (message == null) ? "" : message;
+		this.headerNames = headerNames;
+		this.headerValues = headerValues;
+		this.setContentTypeHeader(this.getHeaderField("Content-Type"));
+		this.defineRawInputStream(body);
+	} // RobotResponse
+
+
+	/**
+	 * Response with a recorded (decoded) body, read in place.
+	 */
+	RobotResponse(final WebClient client, final FrameSelector frame, final URL url, final Cassette.Exchange exchange) throws IOException {
+		this(client, frame, url, exchange.status, exchange.message, exchange.headerNames, exchange.headerValues,
+				new ByteArrayInputStream(exchange.body));
+	} // RobotResponse
+
+
+	/**
+	 * Response with the body of another response that has already been
+	 * read and decoded (gzip), e.g. to parse it later (see Robot, LazyHTML).
+	 */
+	static RobotResponse withBody(final WebResponse response, final InputStream body, final int contentLength) throws IOException {
+		final List<String> names = new ArrayList<String>();
+		final List<String> values = new ArrayList<String>();
+		copyHeaders(response, names, values, contentLength);
+		return new RobotResponse(response.getClient(), FrameSelector.TOP_FRAME, response.getURL(), response.getResponseCode(), response.getResponseMessage(),
+				names.toArray(new String[names.size()]), values.toArray(new String[values.size()]), body);
+	} // withBody
+
+
+	/**
+	 * Copies the headers of a response whose body is passed on decoded:
+	 * Content-Encoding is dropped and Content-Length replaced.
+	 */
+	static void copyHeaders(final WebResponse response, final List<String> names, final List<String> values, final int contentLength) {
+		for (final String name : response.getHeaderFieldNames()) {
+			if ((name == null) || name.equalsIgnoreCase("Content-Encoding") || name.equalsIgnoreCase("Content-Length")) {
+				continue;
+			}
+			for (final String value : response.getHeaderFields(name)) {
+				names.add(name);
+				values.add(value);
+			}
+		} // for
+		names.add("Content-Length");
+		values.add(String.valueOf(contentLength));
+	} // copyHeaders
+
+
+	@Override
+	public int getResponseCode() {
+		return this.status;
+	}
+
+	@Override
+	public String getResponseMessage() {
+		return this.message;
+	}
+
+	@Override
+	public String[] getHeaderFieldNames() {
+		final Set<String> names = new LinkedHashSet<String>();
+		for (final String name : this.headerNames) {
+			names.add(name);
+		}
+		return names.toArray(new String[names.size()]);
+	} // getHeaderFieldNames
+
+	@Override
+	public String getHeaderField(final String name) {
+		for (int i = 0; i < this.headerNames.length; i++) {
+			if (this.headerNames[i].equalsIgnoreCase(name)) {
+				return this.headerValues[i];
+			}
+		} // for
+		return null;
+	} // getHeaderField
+
+	public String[] getHeaderFields(final String name) {
+		final List<String> values = new ArrayList<String>(1);
+		for (int i = 0; i < this.headerNames.length; i++) {
+			if (this.headerNames[i].equalsIgnoreCase(name)) {
+				values.add(this.headerValues[i]);
+			}
+		} // for
+		return values.toArray(new String[values.size()]);
+	} // getHeaderFields
+
+	@Override
+	public String toString() {
+		return "RobotResponse [" + this.status + " " + this.getURL() + "]";
+	}
+
+} // class RobotResponse
@@ -0,0 +1,87 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the session state of a {@link Robot}: cookies, http
+ * authentication, pending values and the last page (headers and body).<br>
+ * A snapshot is taken once, e.g. after a login, and can then be restored
+ * into any number of fresh robots, also concurrently (see DataRunner). The
+ * options of the robot (parameters, CONFIG steps) are not part of it.
+ *
+ * @see Robot#getSession()
+ * @see Robot#restoreSession(RobotSession)
+ */
+final class RobotSession {
+
+	final Map<String, String> cookies;
+	final Map<String, String[]> authentication;
+	/** Pending-Daten, Schlüssel "type:name" (siehe Variables) */
+	final Map<String, String> pending;
+
+	// letzte Seite, null wenn keine vorhanden
+	final URL pageURL;
+	final int pageStatus;
+	final String pageMessage;
+	final String[] pageHeaderNames;
+	final String[] pageHeaderValues;
+	final byte[] pageBody;
+	final String pageResultName;
+	final String pageCharset;
+
+
+	RobotSession(final Map<String, String> cookies, final Map<String, String[]> authentication, final Map<String, String> pending,
+			final URL pageURL, final int pageStatus, final String pageMessage, final String[] pageHeaderNames, final String[] pageHeaderValues,
+			final byte[] pageBody, final String pageResultName, final String pageCharset) {
+		this.cookies = Collections.unmodifiableMap(new LinkedHashMap<String, String>(cookies));
+		this.authentication = Collections.unmodifiableMap(new LinkedHashMap<String, String[]>(authentication));
+		this.pending = Collections.unmodifiableMap(new HashMap<String, String>(pending));
+		this.pageURL = pageURL;
+		this.pageStatus = pageStatus;
+		this.pageMessage = pageMessage;
+		this.pageHeaderNames = pageHeaderNames;
+		this.pageHeaderValues = pageHeaderValues;
+		this.pageBody = pageBody;
+		this.pageResultName = pageResultName;
+		this.pageCharset = pageCharset;
+	}
+
+
+	/**
+	 * @return true, wenn die letzte Seite enthalten ist
+	 */
+	boolean hasPage() {
+		return this.pageURL != null;
+	}
+
+} // class RobotSession
@@ -0,0 +1,82 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+/**
+ * Step SAVE, see {@link HTMLRobots#mSAVE}.
+ */
+public class SaveStep implements Step {
+
+	public static final String MODE = "SAVE";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new SaveStep(eStep);
+		}
+	};
+
+	private final Template path;
+	private final Template saveID;
+	private final boolean stream;
+
+
+	public SaveStep(final Element eStep) {
+		final String path = eStep.getChildText("path");
+		this.path = (path != null && !path.equals("")) ? Template.compile(path) : null;
+		this.saveID = Template.compile((eStep.getChildText("saveID") != null) ? eStep.getChildText("saveID") : "null");
+		this.stream = Boolean.valueOf(eStep.getChildText("stream")).booleanValue();
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		final String path = (this.path != null) ? this.path.resolve(robot.getVariables()) : null;
+		final String saveID = this.saveID.resolve(robot.getVariables());
+		if (this.stream) {
+			//nächste Antwort direkt in Datei schreiben, Pending wird nach dem Empfang gesetzt
+			return robot.streamNextResult(path, saveID);
+		} // if stream
+
+		//im Hintergrund schreiben, ohne Verzeichnis in "files"
+		final String fileName = robot.queueLastResult(path, saveID);
+
+		//im Pending speichern, bevor die Datei geschrieben ist
+		robot.setPending("save", saveID, fileName);
+		return true;
+	} // execute
+
+} // class SaveStep
@@ -0,0 +1,404 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes saved responses (SAVE) in the background, so the next request of
+ * a robot overlaps with the disk write of the previous result.<br>
+ * Each robot owns one writer; the threads doing the I/O are shared by all
+ * robots of the JVM (setThreads). A robot may have at most queueSize files
+ * in flight, a further save blocks the step until one is written
+ * (backpressure), so memory stays bounded if the disk is slower than the
+ * network. With queueSize 0 files are written on the step thread.<br>
+ * A file is written under a temporary name in the target directory and
+ * renamed when complete, so readers never see a partial file. If the same
+ * file is saved again before the first write finished, only the latest
+ * content is kept. The sync policy decides whether the content is forced
+ * to the disk before the rename:
+ * <ul>
+ * <li>none: left to the operating system (default)</li>
+ * <li>data: file content (FileChannel.force(false))</li>
+ * <li>all: content and metadata (FileChannel.force(true))</li>
+ * </ul>
+ */
+public class SaveWriter {
+
+	/** Default number of writer threads in the JVM */
+	public static final int DEFAULT_THREADS = 2;
+
+	/** Default number of files a robot may have in flight */
+	public static final int DEFAULT_QUEUE_SIZE = 8;
+
+	/** Suffix of files being written */
+	static final String PART_SUFFIX = ".part";
+
+	private static ThreadPoolExecutor executor = null;
+	private static int threads = SaveWriter.DEFAULT_THREADS;
+
+	//letzter Auftrag je Zieldatei, nur dieser wird umbenannt
+	private static final ConcurrentMap<String, Long> LATEST = new ConcurrentHashMap<String, Long>();
+	private static final AtomicLong sequence = new AtomicLong();
+
+	private int queueSize = SaveWriter.DEFAULT_QUEUE_SIZE;
+	private Semaphore slots = new Semaphore(SaveWriter.DEFAULT_QUEUE_SIZE);
+	private boolean forceData = false;
+	private boolean forceMetadata = false;
+	private final List<Future<String>> pending = new ArrayList<Future<String>>();
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(SaveWriter.class);
+
+
+	/**
+	 * @param max number of writer threads of the JVM
+	 */
+	public static synchronized void setThreads(final int max) {
+		if (max < 1)
+			throw new IllegalArgumentException("Invalid number of save threads, expected at least 1, but was: " + max);
+		SaveWriter.threads = max;
+		if (SaveWriter.executor != null) {
+			if (max > SaveWriter.executor.getMaximumPoolSize()) {
+				SaveWriter.executor.setMaximumPoolSize(max);
+				SaveWriter.executor.setCorePoolSize(max);
+			} else {
+				SaveWriter.executor.setCorePoolSize(max);
+				SaveWriter.executor.setMaximumPoolSize(max);
+			} // if else
+		} // if
+	} // setThreads
+
+
+	private static synchronized ExecutorService getExecutor() {
+		if (SaveWriter.executor == null) {
+			SaveWriter.executor = new ThreadPoolExecutor(SaveWriter.threads, SaveWriter.threads, 30, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new SaveThreadFactory());
+			SaveWriter.executor.allowCoreThreadTimeOut(true);
+		} // if
+		return SaveWriter.executor;
+	} // getExecutor
+
+
+	/**
+	 * @param queueSize files in flight before a save blocks, 0 writes on the calling thread
+	 */
+	public synchronized void setQueueSize(final int queueSize) {
+		if (queueSize < 0)
+			throw new IllegalArgumentException("Invalid save queue, expected at least 0, but was: " + queueSize);
+		this.await();
+		this.queueSize = queueSize;
+		this.slots = new Semaphore(Math.max(queueSize, 1));
+	} // setQueueSize
+
+
+	/**
+	 * @param sync none | data | all
+	 */
+	public void setSync(final String sync) {
+		if (sync.equalsIgnoreCase("none")) {
+			this.forceData = false;
+			this.forceMetadata = false;
+		} else if (sync.equalsIgnoreCase("data")) {
+			this.forceData = true;
+			this.forceMetadata = false;
+		} else if (sync.equalsIgnoreCase("all")) {
+			this.forceData = true;
+			this.forceMetadata = true;
+		} else {
+			throw new IllegalArgumentException("Invalid save sync, expected none, data or all, but was: " + sync);
+		}
+	} // setSync
+
+
+	/**
+	 * Saves a response into a file. Returns once the content is handed to
+	 * a writer thread (or written, with queue size 0); blocks while the
+	 * robot has queueSize files in flight.
+	 *
+	 * @param content response, must not be modified afterwards
+	 * @param target file
+	 * @return absolute name of the file
+	 * @throws IOException only when written on the calling thread
+	 * @throws InterruptedException while waiting for a free slot
+	 */
+	public String save(final ResultBuffer content, final File target) throws IOException, InterruptedException {
+		return this.save(new Content() {
+			public void writeTo(final FileOutputStream out) throws IOException {
+				content.writeTo(out.getChannel());
+			}
+
+			public void stored() {
+			}
+
+			public void failed() {
+			}
+		}, target);
+	} // save
+
+
+	/**
+	 * Like save(ResultBuffer, File) for content that is produced while it
+	 * is written, e.g. compressed (see ResultStore).
+	 */
+	String save(final Content content, final File target) throws IOException, InterruptedException {
+		final String fileName = target.getAbsolutePath();
+		final Long seq = SaveWriter.reserve(fileName);
+		final boolean force = this.forceData;
+		final boolean metadata = this.forceMetadata;
+
+		final Semaphore slots;
+		synchronized (this) {
+			if (this.queueSize == 0) {
+				SaveWriter.write(content, fileName, seq, force, metadata);
+				return fileName;
+			}
+			slots = this.slots;
+			this.collect();
+		} // synchronized
+		slots.acquire();
+		try {
+			final Future<String> future = SaveWriter.getExecutor().submit(new Callable<String>() {
+				public String call() throws IOException {
+					try {
+						return SaveWriter.write(content, fileName, seq, force, metadata);
+					} finally {
+						slots.release();
+					}
+				}
+			});
+			synchronized (this) {
+				this.pending.add(future);
+			}
+		} catch (final RuntimeException e) {
+			slots.release();
+			throw e;
+		} // try catch
+		return fileName;
+	} // save
+
+
+	/**
+	 * Waits until all files of this writer are written.
+	 *
+	 * @return number of files that could not be written (logged)
+	 */
+	public synchronized int await() {
+		int failed = 0;
+		boolean interrupted = false;
+		for (final Future<String> future : this.pending) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				} catch (final ExecutionException e) {
+					failed++;
+					SaveWriter.logger.error("Datei konnte nicht gespeichert werden", e.getCause());
+					break;
+				} // try catch
+			} // while
+		} // for
+		this.pending.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		return failed;
+	} // await
+
+
+	/**
+	 * Entfernt fertige Aufträge aus der Liste, Fehler werden protokolliert.
+	 */
+	private void collect() {
+		for (int i = this.pending.size() - 1; i >= 0; i--) {
+			final Future<String> future = this.pending.get(i);
+			if (future.isDone()) {
+				this.pending.remove(i);
+				try {
+					future.get();
+				} catch (final ExecutionException e) {
+					SaveWriter.logger.error("Datei konnte nicht gespeichert werden", e.getCause());
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} // try catch
+			} // if
+		} // for
+	} // collect
+
+
+	/**
+	 * Schreibt in eine temporäre Datei und benennt sie um, wenn kein
+	 * neuerer Auftrag für dieselbe Datei vorliegt.
+	 */
+	private static String write(final Content content, final String fileName, final Long seq,
+			final boolean force, final boolean metadata) throws IOException {
+		try {
+			final boolean complete = SaveWriter.writeFile(content, fileName, seq, force, metadata);
+			if (complete) {
+				content.stored();
+			}
+			return fileName;
+		} catch (final IOException e) {
+			content.failed();
+			throw e;
+		} catch (final RuntimeException e) {
+			content.failed();
+			throw e;
+		} // try catch
+	} // write
+
+
+	/**
+	 * @return true, wenn die Datei umbenannt wurde; false, wenn ein neuerer Auftrag sie ersetzt
+	 */
+	private static boolean writeFile(final Content content, final String fileName, final Long seq,
+			final boolean force, final boolean metadata) throws IOException {
+		final File part = SaveWriter.partFile(fileName, seq);
+		boolean complete = false;
+		try {
+			final FileOutputStream fos = new FileOutputStream(part);
+			try {
+				content.writeTo(fos);
+				if (force) {
+					fos.getChannel().force(metadata);
+				}
+			} finally {
+				fos.close();
+			} // try finally
+
+			complete = SaveWriter.rename(part, fileName, seq);
+			return complete;
+		} finally {
+			if (!complete) {
+				SaveWriter.discard(part, fileName, seq);
+			}
+		} // try finally
+	} // writeFile
+
+
+	/**
+	 * Vergibt die Nummer eines Auftrags für eine Zieldatei; nur der letzte
+	 * Auftrag je Datei wird umbenannt.
+	 */
+	static Long reserve(final String fileName) {
+		final Long seq = Long.valueOf(SaveWriter.sequence.incrementAndGet());
+		SaveWriter.LATEST.put(fileName, seq);
+		return seq;
+	} // reserve
+
+
+	/**
+	 * @return temporäre Datei eines Auftrags
+	 */
+	static File partFile(final String fileName, final Long seq) {
+		return new File(fileName + '.' + seq + SaveWriter.PART_SUFFIX);
+	}
+
+
+	/**
+	 * Benennt die fertige temporäre Datei in die Zieldatei um, wenn kein
+	 * neuerer Auftrag für dieselbe Datei vorliegt.
+	 *
+	 * @return true, wenn die Datei umbenannt wurde; false, wenn ein neuerer Auftrag sie ersetzt
+	 */
+	static boolean rename(final File part, final String fileName, final Long seq) throws IOException {
+		boolean complete = false;
+		synchronized (SaveWriter.LATEST) {
+			if (seq.equals(SaveWriter.LATEST.get(fileName))) {
+				final File target = new File(fileName);
+				if (!part.renameTo(target)) {
+					//Windows: vorhandene Datei wird nicht ersetzt
+					target.delete();
+					if (!part.renameTo(target)) {
+						throw new IOException("Datei konnte nicht umbenannt werden: " + part + " -> " + target);
+					}
+				} // if
+				SaveWriter.LATEST.remove(fileName, seq);
+				complete = true;
+			} // if
+		} // synchronized
+		SaveWriter.logger.debug("Datei gespeichert: " + fileName + (complete ? "" : " (ersetzt)"));
+		return complete;
+	} // rename
+
+
+	/**
+	 * Verwirft die temporäre Datei eines Auftrags, der nicht umbenannt wird.
+	 */
+	static void discard(final File part, final String fileName, final Long seq) {
+		part.delete();
+		SaveWriter.LATEST.remove(fileName, seq);
+	} // discard
+
+
+
+	/**
+	 * Inhalt eines Auftrags, geschrieben im Schreib-Thread.
+	 */
+	interface Content {
+		void writeTo(FileOutputStream out) throws IOException;
+
+		/** nach dem Umbenennen in die Zieldatei */
+		void stored() throws IOException;
+
+		/** wenn die Datei nicht geschrieben werden konnte */
+		void failed();
+	} // interface Content
+
+
+
+	private static final class SaveThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread t = new Thread(r, "save-" + this.threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	} // class SaveThreadFactory
+
+} // class SaveWriter
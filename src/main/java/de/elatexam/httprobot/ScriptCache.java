@@ -0,0 +1,283 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+
+package de.elatexam.httprobot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Interpreter;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.ScriptOrFnNode;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.optimizer.Codegen;
+
+import com.meterware.httpunit.HttpUnitOptions;
+
+/**
+ * JVM-wide cache of compiled Rhino scripts, shared by all responses and
+ * robots.<br>
+ * httpunit evaluates every script of a page from source, so pages of the
+ * same site compile the same large scripts over and over. The cache keeps
+ * the compiled scripts by a SHA-256 hash of the parsed script (Rhino's
+ * encoded source plus the compiler settings) and creates a new script
+ * object from the cached code for every evaluation, so compilation happens
+ * once per distinct script. Parsing still happens per evaluation, it takes
+ * place in Rhino before any hook.<br>
+ * Rhino has no public hook for this. The cache replaces the code generator
+ * class in Context and raises httpunit's optimization level to 0, so that
+ * Rhino asks the generator; scripts are still compiled as httpunit would
+ * have done it (interpreted by default). With another Rhino version the
+ * cache stays inactive. It is only installed when a robot sets
+ * ScriptCacheSize above 0, and stays installed for the life of the JVM. It
+ * is bounded by the number of scripts, least recently used first out; like
+ * the cache itself the bound is JVM-wide, so the ScriptCacheSize set last
+ * by any robot applies to all. Cached code holds no per-run state (regular
+ * expressions and functions are created per script object), so it may run
+ * in any scope and thread.
+ */
+public final class ScriptCache {
+
+	/** Standard für die Anzahl gespeicherter Skripte */
+	public static final int DEFAULT_MAX_SCRIPTS = 256;
+
+	private static int maxScripts = DEFAULT_MAX_SCRIPTS;
+	private static final LinkedHashMap<String, Object> scripts = new LinkedHashMap<String, Object>(16, 0.75f, true);
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static boolean installed = false;
+	/** Skripte wie httpunit interpretieren (Optimierungsstufe < 0) oder in Klassen übersetzen */
+	private static boolean interpreted = true;
+	/** InterpretedFunction.createScript(InterpreterData, Object) */
+	private static Method createScript = null;
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(ScriptCache.class);
+
+
+	private ScriptCache() {
+	}
+
+
+	/**
+	 * Installs the cache as code generator of Rhino.
+	 *
+	 * @return true, if the cache is active
+	 */
+	static synchronized boolean install() {
+		if (!ScriptCache.installed) {
+			try {
+				final Method createScript = Class.forName("org.mozilla.javascript.InterpretedFunction")
+						.getDeclaredMethod("createScript", Class.forName("org.mozilla.javascript.InterpreterData"), Object.class);
+				createScript.setAccessible(true);
+				final Field codegen = Context.class.getDeclaredField("codegenClass");
+				codegen.setAccessible(true);
+				codegen.set(null, CachingCompiler.class);
+				ScriptCache.createScript = createScript;
+				ScriptCache.interpreted = HttpUnitOptions.getJavaScriptOptimizationLevel() < 0;
+				HttpUnitOptions.setJavaScriptOptimizationLevel(Math.max(0, HttpUnitOptions.getJavaScriptOptimizationLevel()));
+				ScriptCache.installed = true;
+			} catch (final Exception e) {
+				ScriptCache.logger.warn("Skript-Cache nicht verfügbar: " + e);
+			} // try catch
+		} // if
+		return ScriptCache.installed;
+	} // install
+
+
+	/**
+	 * Sets the bound for all robots of the JVM, the last call wins.
+	 *
+	 * @param maxScripts
+	 *            number of compiled scripts kept, 0 turns the cache off
+	 */
+	public static void setMaxScripts(final int maxScripts) {
+		if (maxScripts < 0)
+			throw new IllegalArgumentException("Invalid script cache size, expected at least 0, but was: " + maxScripts);
+		synchronized (ScriptCache.scripts) {
+			ScriptCache.maxScripts = maxScripts;
+			trim();
+		}
+	} // setMaxScripts
+
+
+	public static int size() {
+		synchronized (ScriptCache.scripts) {
+			return ScriptCache.scripts.size();
+		}
+	}
+
+	public static long getHits() {
+		return ScriptCache.hits.get();
+	}
+
+	public static long getMisses() {
+		return ScriptCache.misses.get();
+	}
+
+
+	/**
+	 * Empties the cache, e.g. to free the generated classes.
+	 */
+	public static void clear() {
+		synchronized (ScriptCache.scripts) {
+			ScriptCache.scripts.clear();
+		}
+	} // clear
+
+
+	private static Object get(final String key) {
+		synchronized (ScriptCache.scripts) {
+			return ScriptCache.scripts.get(key);
+		}
+	} // get
+
+
+	private static void put(final String key, final Object script) {
+		synchronized (ScriptCache.scripts) {
+			if (ScriptCache.maxScripts > 0) {
+				ScriptCache.scripts.put(key, script);
+				trim();
+			}
+		}
+	} // put
+
+
+	private static void trim() {
+		while (ScriptCache.scripts.size() > ScriptCache.maxScripts) {
+			ScriptCache.scripts.remove(ScriptCache.scripts.keySet().iterator().next());
+		} // while
+	} // trim
+
+
+	/**
+	 * Schlüssel eines übersetzten Skriptes: Compiler-Einstellungen, Quellname
+	 * und SHA-256 des von Rhino kodierten Quelltextes (ohne Kommentare und
+	 * Leerraum).
+	 *
+	 * @return Schlüssel, null wenn Rhino keinen kodierten Quelltext liefert
+	 */
+	static String key(final CompilerEnvirons env, final ScriptOrFnNode tree, final String encodedSource) {
+		if (encodedSource == null) {
+			return null;
+		}
+		final MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			return null;
+		}
+		// Zeichen unverändert hashen, der kodierte Quelltext ist kein gültiges UTF-16
+		final byte[] buffer = new byte[8192];
+		int n = 0;
+		for (int i = 0; i < encodedSource.length(); i++) {
+			final char c = encodedSource.charAt(i);
+			buffer[n++] = (byte) (c >>> 8);
+			buffer[n++] = (byte) c;
+			if (n == buffer.length) {
+				sha.update(buffer, 0, n);
+				n = 0;
+			}
+		} // for
+		sha.update(buffer, 0, n);
+
+		final StringBuilder sb = new StringBuilder(128);
+		sb.append(env.getOptimizationLevel()).append('/').append(env.getLanguageVersion()).append('/')
+				.append(env.isUseDynamicScope()).append('/').append(env.isGenerateDebugInfo()).append('/')
+				.append(tree.getSourceName()).append('/').append(encodedSource.length()).append('/');
+		for (final byte b : sha.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		} // for
+		return sb.toString();
+	} // key
+
+
+
+	/**
+	 * Compiler used by Rhino instead of Codegen: reuses the code of a script
+	 * compiled before, otherwise compiles it with the Interpreter (or Codegen,
+	 * if httpunit was configured for it) and keeps the code. Functions (new
+	 * Function(...)) are compiled as before. Rhino creates one instance per
+	 * compilation.
+	 */
+	public static final class CachingCompiler extends Interpreter {
+		private final Interpreter compiler = ScriptCache.interpreted ? new Interpreter() : new Codegen();
+		private String key = null;
+		private Object cached = null;
+
+		@Override
+		public Object compile(final CompilerEnvirons env, final ScriptOrFnNode tree, final String encodedSource,
+				final boolean returnFunction) {
+			if (!returnFunction && (ScriptCache.maxScripts > 0)) {
+				this.key = key(env, tree, encodedSource);
+				this.cached = (this.key != null) ? get(this.key) : null;
+				if (this.cached != null) {
+					ScriptCache.hits.incrementAndGet();
+					return this.cached;
+				}
+				ScriptCache.misses.incrementAndGet();
+			} // if Skript
+			return this.compiler.compile(env, tree, encodedSource, returnFunction);
+		} // compile
+
+
+		@Override
+		public Script createScriptObject(final Object bytecode, final Object staticSecurityDomain) {
+			if ((this.cached != null) && (bytecode == this.cached)) {
+				try {
+					if (bytecode instanceof Class<?>) {
+						return (Script) ((Class<?>) bytecode).newInstance();
+					}
+					return (Script) ScriptCache.createScript.invoke(null, bytecode, staticSecurityDomain);
+				} catch (final Exception e) {
+					throw new RuntimeException("Cached script not instantiable: " + e, e);
+				}
+			} // if aus dem Cache
+			final Script script = this.compiler.createScriptObject(bytecode, staticSecurityDomain);
+			if ((this.key != null) && (staticSecurityDomain == null)) {
+				// Codegen: erzeugte Klasse, Interpreter: übersetzter Code (InterpreterData)
+				put(this.key, (this.compiler instanceof Codegen) ? script.getClass() : bytecode);
+			}
+			return script;
+		} // createScriptObject
+
+
+		@Override
+		public Function createFunctionObject(final Context cx, final Scriptable scope, final Object bytecode,
+				final Object staticSecurityDomain) {
+			return this.compiler.createFunctionObject(cx, scope, bytecode, staticSecurityDomain);
+		} // createFunctionObject
+	} // class CachingCompiler
+
+} // class ScriptCache
@@ -0,0 +1,446 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds elements matching a CSS selector in HTML that is fed chunk by chunk
+ * (see ExtractSink, Crawler), without building a DOM. Only the current tag and the
+ * text of the current match are kept, each limited to MAX_LENGTH chars.
+ * <p>
+ * Supported are simple selectors, optionally separated by commas: a tag
+ * name or *, #id, .class and attribute conditions [a], [a=v], [a~=v],
+ * [a|=v], [a^=v], [a$=v], [a*=v]. Combinators (descendant, &gt;, +, ~) and
+ * pseudo classes are not supported.
+ * <p>
+ * For each matching element the value of the given attribute is emitted;
+ * without attribute the text content of the element.
+ */
+final class SelectorScanner implements TextScanner {
+
+	/** maximum length of a tag and of an emitted text */
+	static final int MAX_LENGTH = 64 * 1024;
+
+	private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList("area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"));
+	private static final Pattern ATTRIBUTE = Pattern.compile("([^\\s=/>\"']+)(?:\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+)))?");
+	private static final Pattern ENTITY = Pattern.compile("&(#[xX][0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+	private static final Map<String, String> NAMED_ENTITIES = new HashMap<String, String>();
+	static {
+		NAMED_ENTITIES.put("amp", "&");
+		NAMED_ENTITIES.put("lt", "<");
+		NAMED_ENTITIES.put("gt", ">");
+		NAMED_ENTITIES.put("quot", "\"");
+		NAMED_ENTITIES.put("apos", "'");
+		NAMED_ENTITIES.put("nbsp", "\u00a0");
+	}
+
+	// Zustände
+	private static final int TEXT = 0;
+	private static final int TAG = 1;
+	private static final int COMMENT = 2;
+	private static final int RAW_TEXT = 3;
+
+	private final List<Selector> selectors = new ArrayList<Selector>();
+	private final String attribute;
+
+	private int state = TEXT;
+	private final StringBuilder tag = new StringBuilder();
+	private boolean tagOverflow = false;
+	private char quote = 0;
+	private String rawEnd = null;
+	private int rawMatched = 0;
+	private int commentDashes = 0;
+
+	private String captureTag = null;
+	private int captureDepth = 0;
+	private final StringBuilder capture = new StringBuilder();
+
+
+	/**
+	 * @param selector CSS-Selektor
+	 * @param attribute Attribut, dessen Wert ausgegeben wird, null für den Text des Elements
+	 * @throws IllegalArgumentException wenn der Selektor nicht unterstützt wird
+	 */
+	SelectorScanner(final String selector, final String attribute) {
+		for (final String group : selector.split(",")) {
+			this.selectors.add(new Selector(group.trim(), selector));
+		} // for
+		this.attribute = (attribute != null) ? attribute.toLowerCase() : null;
+	}
+
+
+	public void feed(final CharSequence chars, final Output out) throws IOException {
+		final int length = chars.length();
+		for (int i = 0; i < length; i++) {
+			if ((this.state == TEXT) && (this.captureTag == null)) {
+				// Text außerhalb eines Treffers bis zum nächsten Tag überspringen
+				while ((i < length) && (chars.charAt(i) != '<')) {
+					i++;
+				}
+				if (i == length) {
+					break;
+				}
+			} // if
+			final char c = chars.charAt(i);
+			switch (this.state) {
+			case TEXT:
+				if (c == '<') {
+					this.startTag();
+				} else if (this.captureTag != null) {
+					this.appendCapture(c);
+				}
+				break;
+			case TAG:
+				if ((this.tag.length() == 0) && !Character.isLetter(c) && (c != '/') && (c != '!') && (c != '?')) {
+					// kein Tag, z.B. "a < b"
+					this.state = TEXT;
+					if (this.captureTag != null) {
+						this.appendCapture('<');
+					}
+					if (c == '<') {
+						this.startTag();
+					} else if (this.captureTag != null) {
+						this.appendCapture(c);
+					}
+				} else if ((c == '>') && (this.quote == 0)) {
+					this.state = TEXT;
+					if (!this.tagOverflow) {
+						this.endTag(out);
+					}
+				} else {
+					if (this.quote != 0) {
+						if (c == this.quote) this.quote = 0;
+					} else if (((c == '"') || (c == '\'')) && (this.tag.length() > 0) && (this.tag.charAt(0) != '!')) {
+						this.quote = c;
+					} // if else Anführungszeichen
+					if (this.tag.length() < MAX_LENGTH) {
+						this.tag.append(c);
+					} else {
+						this.tagOverflow = true;
+					}
+					if ((this.tag.length() == 3) && (this.tag.charAt(0) == '!') && (this.tag.charAt(1) == '-') && (this.tag.charAt(2) == '-')) {
+						this.state = COMMENT;
+						this.commentDashes = 0;
+					}
+				} // if else Tagende
+				break;
+			case COMMENT:
+				if ((c == '>') && (this.commentDashes >= 2)) {
+					this.state = TEXT;
+				}
+				this.commentDashes = (c == '-') ? this.commentDashes + 1 : 0;
+				break;
+			case RAW_TEXT:
+				// Inhalt von script/style bis zum schließenden Tag
+				if (Character.toLowerCase(c) == this.rawEnd.charAt(this.rawMatched)) {
+					if (++this.rawMatched == this.rawEnd.length()) {
+						this.startTag();
+						this.tag.append(this.rawEnd, 1, this.rawEnd.length());
+					}
+				} else {
+					if (this.captureTag != null) {
+						this.appendCapture(this.rawEnd, this.rawMatched);
+					}
+					this.rawMatched = 0;
+					if (c == '<') {
+						this.rawMatched = 1;
+					} else if (this.captureTag != null) {
+						this.appendCapture(c);
+					}
+				} // if else
+				break;
+			} // switch
+		} // for
+	} // feed
+
+
+	public void finish(final Output out) throws IOException {
+		this.state = TEXT;
+		this.captureTag = null;
+		this.capture.setLength(0);
+	} // finish
+
+
+	private void startTag() {
+		this.state = TAG;
+		this.tag.setLength(0);
+		this.tagOverflow = false;
+		this.quote = 0;
+	} // startTag
+
+
+	/**
+	 * Wertet das vollständig gelesene Tag (ohne spitze Klammern) aus.
+	 */
+	private void endTag(final Output out) throws IOException {
+		final String tag = this.tag.toString();
+		if (tag.startsWith("/")) {
+			if ((this.captureTag != null) && tagName(tag, 1).equals(this.captureTag) && (--this.captureDepth == 0)) {
+				out.emit(normalize(this.capture));
+				this.captureTag = null;
+				this.capture.setLength(0);
+			}
+			return;
+		} // if Endtag
+		if (!Character.isLetter(tag.charAt(0))) {
+			return; // Doctype oder Processing Instruction
+		}
+
+		final String name = tagName(tag, 0);
+		final boolean empty = tag.endsWith("/") || VOID_ELEMENTS.contains(name);
+		if (this.captureTag != null) {
+			if (!empty && name.equals(this.captureTag)) {
+				this.captureDepth++;
+			}
+		} else {
+			Map<String, String> attributes = null;
+			for (final Selector selector : this.selectors) {
+				if (selector.matchesName(name)) {
+					if (attributes == null) {
+						attributes = parseAttributes(tag, name.length());
+					}
+					if (selector.matches(attributes)) {
+						this.select(name, empty, attributes, out);
+						break;
+					}
+				} // if
+			} // for
+		} // if else
+		if (!empty && (name.equals("script") || name.equals("style"))) {
+			this.state = RAW_TEXT;
+			this.rawEnd = "</" + name;
+			this.rawMatched = 0;
+		}
+	} // endTag
+
+
+	private void select(final String name, final boolean empty, final Map<String, String> attributes, final Output out) throws IOException {
+		if (this.attribute != null) {
+			final String value = attributes.get(this.attribute);
+			if (value != null) {
+				out.emit(value);
+			}
+		} else if (!empty) {
+			this.captureTag = name;
+			this.captureDepth = 1;
+			this.capture.setLength(0);
+		} // if else
+	} // select
+
+
+	private void appendCapture(final char c) {
+		if (this.capture.length() < MAX_LENGTH) {
+			this.capture.append(c);
+		}
+	}
+
+
+	private void appendCapture(final CharSequence s, final int length) {
+		for (int i = 0; i < length; i++) {
+			this.appendCapture(s.charAt(i));
+		}
+	}
+
+
+	private static String tagName(final String tag, final int start) {
+		int end = start;
+		while ((end < tag.length()) && !Character.isWhitespace(tag.charAt(end)) && (tag.charAt(end) != '/')) {
+			end++;
+		}
+		return tag.substring(start, end).toLowerCase();
+	} // tagName
+
+
+	private static Map<String, String> parseAttributes(final String tag, final int start) {
+		final Map<String, String> attributes = new HashMap<String, String>();
+		final Matcher m = ATTRIBUTE.matcher(tag);
+		m.region(start, tag.length());
+		while (m.find()) {
+			final String name = m.group(1).toLowerCase();
+			if (!attributes.containsKey(name)) {
+				String value = "";
+				for (int i = 2; i <= 4; i++) {
+					if (m.group(i) != null) {
+						value = decodeEntities(m.group(i));
+						break;
+					}
+				} // for
+				attributes.put(name, value);
+			} // if erstes Vorkommen
+		} // while
+		return attributes;
+	} // parseAttributes
+
+
+	/**
+	 * Ersetzt Zeichenreferenzen (&amp;amp; &amp;#38; &amp;#x26; u.a.).
+	 */
+	static String decodeEntities(final String s) {
+		if (s.indexOf('&') < 0) {
+			return s;
+		}
+		final Matcher m = ENTITY.matcher(s);
+		final StringBuffer sb = new StringBuffer(s.length());
+		while (m.find()) {
+			final String entity = m.group(1);
+			String replacement = null;
+			try {
+				if (entity.startsWith("#x") || entity.startsWith("#X")) {
+					replacement = new String(Character.toChars(Integer.parseInt(entity.substring(2), 16)));
+				} else if (entity.startsWith("#")) {
+					replacement = new String(Character.toChars(Integer.parseInt(entity.substring(1))));
+				} else {
+					replacement = NAMED_ENTITIES.get(entity);
+				}
+			} catch (final IllegalArgumentException e) {
+				replacement = null; // Zahl zu groß oder kein gültiges Zeichen
+			} // try catch
+			m.appendReplacement(sb, Matcher.quoteReplacement((replacement != null) ? replacement : m.group()));
+		} // while
+		m.appendTail(sb);
+		return sb.toString();
+	} // decodeEntities
+
+
+	/**
+	 * Text eines Elements: Zeichenreferenzen ersetzt, Leerraum zusammengefasst.
+	 */
+	private static String normalize(final CharSequence text) {
+		return decodeEntities(text.toString()).replaceAll("[\\s\u00a0]+", " ").trim();
+	} // normalize
+
+
+
+	/**
+	 * One simple selector: tag name and attribute conditions.
+	 */
+	private static final class Selector {
+		private final String name;
+		private final List<String[]> conditions = new ArrayList<String[]>();
+
+		Selector(final String s, final String selector) {
+			int i = 0;
+			while ((i < s.length()) && (Character.isLetterOrDigit(s.charAt(i)) || (s.charAt(i) == '-') || (s.charAt(i) == '*'))) {
+				i++;
+			}
+			this.name = ((i == 0) || s.substring(0, i).equals("*")) ? null : s.substring(0, i).toLowerCase();
+			while (i < s.length()) {
+				final char c = s.charAt(i);
+				if ((c == '#') || (c == '.')) {
+					int end = i + 1;
+					while ((end < s.length()) && (Character.isLetterOrDigit(s.charAt(end)) || (s.charAt(end) == '-') || (s.charAt(end) == '_'))) {
+						end++;
+					}
+					if (end == i + 1) {
+						throw unsupported(selector);
+					}
+					this.conditions.add((c == '#') ? new String[] { "id", "=", s.substring(i + 1, end) } : new String[] { "class", "~=", s.substring(i + 1, end) });
+					i = end;
+				} else if (c == '[') {
+					final int end = s.indexOf(']', i);
+					if (end < 0) {
+						throw unsupported(selector);
+					}
+					this.conditions.add(parseCondition(s.substring(i + 1, end), selector));
+					i = end + 1;
+				} else {
+					throw unsupported(selector);
+				} // if else
+			} // while
+			if ((this.name == null) && this.conditions.isEmpty() && !s.equals("*")) {
+				throw unsupported(selector);
+			}
+		}
+
+
+		private static String[] parseCondition(final String condition, final String selector) {
+			final int eq = condition.indexOf('=');
+			if (eq < 0) {
+				return new String[] { condition.trim().toLowerCase(), null, null };
+			}
+			final boolean prefixed = (eq > 0) && ("~|^$*".indexOf(condition.charAt(eq - 1)) >= 0);
+			final String attribute = condition.substring(0, prefixed ? eq - 1 : eq).trim().toLowerCase();
+			String value = condition.substring(eq + 1).trim();
+			if ((value.length() >= 2) && ((value.charAt(0) == '"') || (value.charAt(0) == '\'')) && (value.charAt(value.length() - 1) == value.charAt(0))) {
+				value = value.substring(1, value.length() - 1);
+			}
+			if (attribute.equals("")) {
+				throw unsupported(selector);
+			}
+			return new String[] { attribute, prefixed ? condition.substring(eq - 1, eq + 1) : "=", value };
+		} // parseCondition
+
+
+		private static IllegalArgumentException unsupported(final String selector) {
+			return new IllegalArgumentException("Unsupported selector, expected simple selectors like a[href*=id] or input#sesskey, but was: " + selector);
+		}
+
+
+		boolean matchesName(final String tagName) {
+			return (this.name == null) || this.name.equals(tagName);
+		}
+
+
+		boolean matches(final Map<String, String> attributes) {
+			for (final String[] condition : this.conditions) {
+				final String actual = attributes.get(condition[0]);
+				if (actual == null) {
+					return false;
+				}
+				final String op = condition[1];
+				final String value = condition[2];
+				if (op == null) {
+					continue;
+				} else if (op.equals("=")) {
+					if (!actual.equals(value)) return false;
+				} else if (op.equals("~=")) {
+					if (!Arrays.asList(actual.trim().split("\\s+")).contains(value)) return false;
+				} else if (op.equals("|=")) {
+					if (!actual.equals(value) && !actual.startsWith(value + "-")) return false;
+				} else if (op.equals("^=")) {
+					if (value.equals("") || !actual.startsWith(value)) return false;
+				} else if (op.equals("$=")) {
+					if (value.equals("") || !actual.endsWith(value)) return false;
+				} else if (op.equals("*=")) {
+					if (value.equals("") || !actual.contains(value)) return false;
+				} // if else
+			} // for
+			return true;
+		} // matches
+	} // class Selector
+
+} // class SelectorScanner
@@ -0,0 +1,121 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.File;
+import java.util.regex.Pattern;
+
+import org.jdom.Element;
+
+/**
+ * Step SESSION_SAVE, see {@link HTMLRobots#mSESSION_SAVE}. The step also
+ * marks the end of the steps a restored session skips (see
+ * Robot#restoreCheckpoint).
+ */
+public class SessionSaveStep implements Step {
+
+	public static final String MODE = "SESSION_SAVE";
+
+	public static final StepFactory FACTORY = new StepFactory() {
+		public String getMode() {
+			return MODE;
+		}
+
+		public Step create(final Element eStep) {
+			return new SessionSaveStep(eStep);
+		}
+	};
+
+	/** Standard für maxAge in Sekunden */
+	public static final long DEFAULT_MAX_AGE = 3600;
+
+	private final Template file;
+	private final Template check;
+	private final Pattern expect;
+	private final long maxAgeMillis;
+
+
+	public SessionSaveStep(final Element eStep) {
+		final String file = eStep.getChildText("file");
+		if ((file == null) || file.equals("")) {
+			throw new IllegalArgumentException("SESSION_SAVE needs a <file> for the session snapshot");
+		}
+		this.file = Template.compile(file);
+		final String check = eStep.getChildText("check");
+		this.check = (check != null && !check.equals("")) ? Template.compile(check) : null;
+		final String expect = eStep.getChildText("expect");
+		this.expect = (expect != null && !expect.equals("")) ? Pattern.compile(expect) : null;
+		final String maxAge = eStep.getChildText("maxAge");
+		if (maxAge != null && !maxAge.equals("")) {
+			try {
+				this.maxAgeMillis = Long.parseLong(maxAge.trim()) * 1000L;
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid maxAge, expected seconds, but was: " + maxAge);
+			}
+		} else {
+			this.maxAgeMillis = SessionSaveStep.DEFAULT_MAX_AGE * 1000L;
+		}
+	}
+
+
+	public String getMode() {
+		return MODE;
+	}
+
+
+	public Boolean execute(final Robot robot) throws Exception {
+		return robot.saveSession(this.getFile(robot.getVariables()));
+	} // execute
+
+
+	/**
+	 * @param variables Parameter für Verweise im Dateinamen
+	 */
+	File getFile(final Variables variables) {
+		return new File(this.file.resolve(variables));
+	}
+
+	/**
+	 * @param variables Parameter für Verweise in der Adresse
+	 * @return Adresse zur Prüfung einer wiederhergestellten Sitzung, null für die gespeicherte Seite
+	 */
+	String getCheck(final Variables variables) {
+		return (this.check != null) ? this.check.resolve(variables) : null;
+	}
+
+	/**
+	 * @return Muster, das die Prüfseite enthalten muss, null wenn nur Status und Adresse zählen
+	 */
+	Pattern getExpect() {
+		return this.expect;
+	}
+
+	long getMaxAgeMillis() {
+		return this.maxAgeMillis;
+	}
+
+} // class SessionSaveStep
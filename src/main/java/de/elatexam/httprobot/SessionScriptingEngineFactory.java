@@ -0,0 +1,112 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import com.meterware.httpunit.HTMLElement;
+import com.meterware.httpunit.WebResponse;
+import com.meterware.httpunit.javascript.JavaScriptEngineFactory;
+import com.meterware.httpunit.scripting.ScriptableDelegate;
+import com.meterware.httpunit.scripting.ScriptingEngineFactory;
+import com.meterware.httpunit.scripting.ScriptingHandler;
+
+/**
+ * Scripting engine factory installed JVM-wide by {@link Robot}.<br>
+ * httpunit only knows a global scripting switch. This factory keeps that
+ * switch on and decides per thread whether scripts are run, so that the
+ * ExecJavaScript option of each robot only affects its own steps.
+ */
+public class SessionScriptingEngineFactory implements ScriptingEngineFactory {
+
+	private static final ThreadLocal<Boolean> ENABLED = new ThreadLocal<Boolean>() {
+		protected Boolean initialValue() {
+			return Boolean.TRUE;
+		}
+	};
+
+	private final ScriptingEngineFactory delegate = new JavaScriptEngineFactory();
+
+
+	/**
+	 * Enables or disables scripting for the current thread.
+	 *
+	 * @param enabled
+	 *            run scripts of responses handled by this thread
+	 * @return previous setting, to be restored by the caller
+	 */
+	static boolean setEnabled(final boolean enabled) {
+		final boolean previous = ENABLED.get().booleanValue();
+		ENABLED.set(Boolean.valueOf(enabled));
+		return previous;
+	} // setEnabled
+
+
+	private static boolean isEnabledForThread() {
+		return ENABLED.get().booleanValue();
+	}
+
+
+	public boolean isEnabled() {
+		return this.delegate.isEnabled();
+	}
+
+	public void associate(final WebResponse response) {
+		if (isEnabledForThread()) {
+			this.delegate.associate(response);
+		}
+	}
+
+	public void load(final WebResponse response) {
+		if (isEnabledForThread()) {
+			this.delegate.load(response);
+		}
+	}
+
+	public void setThrowExceptionsOnError(final boolean throwExceptions) {
+		this.delegate.setThrowExceptionsOnError(throwExceptions);
+	}
+
+	public boolean isThrowExceptionsOnError() {
+		return this.delegate.isThrowExceptionsOnError();
+	}
+
+	public String[] getErrorMessages() {
+		return this.delegate.getErrorMessages();
+	}
+
+	public void clearErrorMessages() {
+		this.delegate.clearErrorMessages();
+	}
+
+	public ScriptingHandler createHandler(final HTMLElement elementBase) {
+		return isEnabledForThread() ? this.delegate.createHandler(elementBase) : ScriptableDelegate.NULL_SCRIPT_ENGINE;
+	}
+
+	public ScriptingHandler createHandler(final WebResponse response) {
+		return isEnabledForThread() ? this.delegate.createHandler(response) : ScriptableDelegate.NULL_SCRIPT_ENGINE;
+	}
+
+} // class SessionScriptingEngineFactory
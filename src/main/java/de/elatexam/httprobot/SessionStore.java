@@ -0,0 +1,307 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypted file format for {@link RobotSession} snapshots (see
+ * SessionSaveStep).<br>
+ * The snapshot is serialized, gzip compressed, encrypted with AES-128/CBC and
+ * authenticated with HMAC-SHA256 (encrypt-then-MAC). Both keys are derived
+ * from a secret with PBKDF2 and a random salt per file. A file with a wrong
+ * key or modified content is rejected as a whole. Files are written to a
+ * temporary file, readable by the owner only, and then renamed.
+ * <p>
+ * Format: "HRS1" | salt (16) | iv (16) | ciphertext | mac (32)
+ */
+final class SessionStore {
+
+	private static final byte[] MAGIC = { 'H', 'R', 'S', '1' };
+	private static final int SALT_LENGTH = 16;
+	private static final int IV_LENGTH = 16;
+	private static final int MAC_LENGTH = 32;
+	private static final int ITERATIONS = 20000;
+	private static final int VERSION = 2;
+
+	private static final SecureRandom random = new SecureRandom();
+
+
+	private SessionStore() {
+	}
+
+
+	/**
+	 * Schreibt einen Sitzungszustand verschlüsselt in eine Datei.
+	 *
+	 * @param session Zustand
+	 * @param file Datei, wird ersetzt
+	 * @param secret Schlüssel (Passphrase)
+	 */
+	static void save(final RobotSession session, final File file, final String secret) throws IOException, GeneralSecurityException {
+		final byte[] salt = new byte[SessionStore.SALT_LENGTH];
+		final byte[] iv = new byte[SessionStore.IV_LENGTH];
+		SessionStore.random.nextBytes(salt);
+		SessionStore.random.nextBytes(iv);
+		final byte[][] keys = deriveKeys(secret, salt);
+
+		final Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(keys[0], "AES"), new IvParameterSpec(iv));
+		final byte[] ciphertext = cipher.doFinal(serialize(session, System.currentTimeMillis()));
+		final byte[] mac = mac(keys[1], salt, iv, ciphertext);
+
+		final File dir = file.getAbsoluteFile().getParentFile();
+		final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			// nur für den Eigentümer lesbar
+			tmp.setReadable(false, false);
+			tmp.setReadable(true, true);
+			tmp.setWritable(false, false);
+			tmp.setWritable(true, true);
+			final FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				out.write(SessionStore.MAGIC);
+				out.write(salt);
+				out.write(iv);
+				out.write(ciphertext);
+				out.write(mac);
+				out.getFD().sync();
+			} finally {
+				out.close();
+			} // try finally
+			if (!tmp.renameTo(file)) {
+				// Windows: Ziel zuerst entfernen
+				file.delete();
+				if (!tmp.renameTo(file)) {
+					throw new IOException("Session file could not be replaced: " + file);
+				}
+			} // if
+		} finally {
+			tmp.delete();
+		} // try finally
+	} // save
+
+
+	/**
+	 * Liest einen verschlüsselten Sitzungszustand.
+	 *
+	 * @param file Datei
+	 * @param secret Schlüssel (Passphrase)
+	 * @param maxAgeMillis höchstes Alter des Zustands, 0 ohne Begrenzung
+	 * @return Zustand, null wenn die Datei fehlt oder der Zustand zu alt ist
+	 * @throws GeneralSecurityException falscher Schlüssel oder veränderte Datei
+	 */
+	static RobotSession load(final File file, final String secret, final long maxAgeMillis) throws IOException, GeneralSecurityException {
+		if (!file.isFile()) {
+			return null;
+		}
+		final byte[] data = new byte[(int) file.length()];
+		final DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(data);
+		} finally {
+			in.close();
+		} // try finally
+
+		final int header = SessionStore.MAGIC.length + SessionStore.SALT_LENGTH + SessionStore.IV_LENGTH;
+		if ((data.length < header + SessionStore.MAC_LENGTH)
+				|| !MessageDigest.isEqual(SessionStore.MAGIC, copy(data, 0, SessionStore.MAGIC.length))) {
+			throw new GeneralSecurityException("Not a session file: " + file);
+		}
+		final byte[] salt = copy(data, SessionStore.MAGIC.length, SessionStore.SALT_LENGTH);
+		final byte[] iv = copy(data, SessionStore.MAGIC.length + SessionStore.SALT_LENGTH, SessionStore.IV_LENGTH);
+		final byte[] ciphertext = copy(data, header, data.length - header - SessionStore.MAC_LENGTH);
+		final byte[] mac = copy(data, data.length - SessionStore.MAC_LENGTH, SessionStore.MAC_LENGTH);
+
+		final byte[][] keys = deriveKeys(secret, salt);
+		if (!MessageDigest.isEqual(mac, mac(keys[1], salt, iv, ciphertext))) {
+			throw new GeneralSecurityException("Session file corrupt or wrong key: " + file);
+		}
+		final Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+		cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(keys[0], "AES"), new IvParameterSpec(iv));
+		return deserialize(cipher.doFinal(ciphertext), maxAgeMillis);
+	} // load
+
+
+	/**
+	 * @return AES-Schlüssel und MAC-Schlüssel
+	 */
+	private static byte[][] deriveKeys(final String secret, final byte[] salt) throws GeneralSecurityException {
+		final SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+		final byte[] key = factory.generateSecret(new PBEKeySpec(secret.toCharArray(), salt, SessionStore.ITERATIONS, 256)).getEncoded();
+		return new byte[][] { copy(key, 0, 16), copy(key, 16, 16) };
+	} // deriveKeys
+
+
+	private static byte[] mac(final byte[] key, final byte[] salt, final byte[] iv, final byte[] ciphertext) throws GeneralSecurityException {
+		final Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(key, "HmacSHA256"));
+		mac.update(SessionStore.MAGIC);
+		mac.update(salt);
+		mac.update(iv);
+		return mac.doFinal(ciphertext);
+	} // mac
+
+
+	private static byte[] copy(final byte[] data, final int offset, final int length) {
+		final byte[] part = new byte[length];
+		System.arraycopy(data, offset, part, 0, length);
+		return part;
+	} // copy
+
+
+	private static byte[] serialize(final RobotSession session, final long created) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+		out.writeInt(SessionStore.VERSION);
+		out.writeLong(created);
+		writeMap(out, session.cookies);
+		out.writeInt(session.authentication.size());
+		for (final Map.Entry<String, String[]> realm : session.authentication.entrySet()) {
+			writeString(out, realm.getKey());
+			writeString(out, realm.getValue()[0]);
+			writeString(out, realm.getValue()[1]);
+		}
+		writeMap(out, session.pending);
+		out.writeBoolean(session.hasPage());
+		if (session.hasPage()) {
+			writeString(out, session.pageURL.toString());
+			out.writeInt(session.pageStatus);
+			writeString(out, session.pageMessage);
+			out.writeInt(session.pageHeaderNames.length);
+			for (int i = 0; i < session.pageHeaderNames.length; i++) {
+				writeString(out, session.pageHeaderNames[i]);
+				writeString(out, session.pageHeaderValues[i]);
+			}
+			out.writeInt(session.pageBody.length);
+			out.write(session.pageBody);
+			writeString(out, session.pageResultName);
+			writeString(out, session.pageCharset);
+		} // if Seite
+		out.close();
+		return bytes.toByteArray();
+	} // serialize
+
+
+	private static RobotSession deserialize(final byte[] data, final long maxAgeMillis) throws IOException {
+		final DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(data)));
+		if (in.readInt() != SessionStore.VERSION) {
+			throw new IOException("Unsupported session file version");
+		}
+		final long created = in.readLong();
+		if ((maxAgeMillis > 0) && (System.currentTimeMillis() - created > maxAgeMillis)) {
+			return null;
+		}
+		final Map<String, String> cookies = readMap(in);
+		final Map<String, String[]> authentication = new LinkedHashMap<String, String[]>();
+		for (int n = in.readInt(); n > 0; n--) {
+			authentication.put(readString(in), new String[] { readString(in), readString(in) });
+		}
+		final Map<String, String> pending = readMap(in);
+		if (!in.readBoolean()) {
+			return new RobotSession(cookies, authentication, pending, null, 0, null, null, null, null, null, null);
+		}
+		final URL url = new URL(readString(in));
+		final int status = in.readInt();
+		final String message = readString(in);
+		final String[] names = new String[in.readInt()];
+		final String[] values = new String[names.length];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = readString(in);
+			values[i] = readString(in);
+		}
+		final byte[] body = new byte[in.readInt()];
+		in.readFully(body);
+		return new RobotSession(cookies, authentication, pending, url, status, message, names, values, body, readString(in), readString(in));
+	} // deserialize
+
+
+	private static void writeMap(final DataOutputStream out, final Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+		for (final Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	} // writeMap
+
+
+	private static Map<String, String> readMap(final DataInputStream in) throws IOException {
+		final Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int n = in.readInt(); n > 0; n--) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	} // readMap
+
+
+	/**
+	 * Zeichenkette als UTF-8 mit Länge (-1 für null), ohne die 64K-Grenze von writeUTF.
+	 */
+	private static void writeString(final DataOutputStream out, final String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] b = s.getBytes("UTF-8");
+		out.writeInt(b.length);
+		out.write(b);
+	} // writeString
+
+
+	private static String readString(final DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		final byte[] b = new byte[length];
+		in.readFully(b);
+		return new String(b, "UTF-8");
+	} // readString
+
+} // class SessionStore
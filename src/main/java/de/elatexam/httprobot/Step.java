@@ -0,0 +1,55 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+/**
+ * A single, compiled step of a robotPlan.<br>
+ * Steps are created once per plan by a {@link StepFactory} and hold all values
+ * of their XML element in pre-resolved form. Implementations must not keep
+ * per-run state, the same step instance is executed by every run of a plan.
+ *
+ * @see StepRegistry
+ * @see RobotPlan
+ */
+public interface Step {
+
+	/**
+	 * @return mode of this step as given in {@code <mode>}
+	 */
+	String getMode();
+
+	/**
+	 * Executes this step against the given robot.
+	 *
+	 * @param robot
+	 *            robot holding the session state
+	 * @return erfolgreiche Abarbeitung (true/false)
+	 * @throws Exception
+	 */
+	Boolean execute(Robot robot) throws Exception;
+
+} // interface Step
@@ -0,0 +1,57 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import org.jdom.Element;
+
+/**
+ * Service provider interface for step types.<br>
+ * A factory translates the {@code <step>} element of one mode into a
+ * {@link Step}. Additional step types can be added without touching this
+ * library by registering a factory with {@link StepRegistry#register} or by
+ * listing the implementation in
+ * {@code META-INF/services/de.elatexam.httprobot.StepFactory}.
+ */
+public interface StepFactory {
+
+	/**
+	 * @return mode handled by this factory, e.g. "GET"
+	 */
+	String getMode();
+
+	/**
+	 * Compiles a step element.
+	 *
+	 * @param eStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return compiled step
+	 * @throws Exception
+	 *             if the element is malformed
+	 */
+	Step create(Element eStep) throws Exception;
+
+} // interface StepFactory
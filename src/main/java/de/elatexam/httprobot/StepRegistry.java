@@ -0,0 +1,138 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import org.jdom.Element;
+
+/**
+ * Maps step modes to their {@link StepFactory}.<br>
+ * The default registry knows all steps documented in {@link HTMLRobots} and
+ * every factory found via {@link ServiceLoader}. A factory registered later
+ * for the same mode replaces the earlier one.
+ *
+ * @see RobotPlan
+ */
+public class StepRegistry {
+
+	private static StepRegistry defaultRegistry = null;
+
+	private final Map<String, StepFactory> factories = new HashMap<String, StepFactory>();
+
+	//logging
+	private static final org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(StepRegistry.class);
+
+
+	/**
+	 * @return shared registry with the built-in steps and all service providers
+	 */
+	public static synchronized StepRegistry getDefault() {
+		if (defaultRegistry == null) {
+			final StepRegistry registry = new StepRegistry();
+			registry.registerBuiltins();
+			final Iterator<StepFactory> it = ServiceLoader.load(StepFactory.class).iterator();
+			while (it.hasNext()) {
+				registry.register(it.next());
+			} // while
+			defaultRegistry = registry;
+		} // if
+		return defaultRegistry;
+	} // getDefault
+
+
+	/**
+	 * Registers the steps implemented by this library.
+	 */
+	public void registerBuiltins() {
+		this.register(ConfigStep.FACTORY);
+		this.register(GetStep.FACTORY);
+		this.register(GetLinkStep.FACTORY);
+		this.register(ExtractLinksStep.FACTORY);
+		this.register(ExtractStep.FACTORY);
+		this.register(CrawlStep.FACTORY);
+		this.register(SessionSaveStep.FACTORY);
+		this.register(SaveStep.FACTORY);
+		this.register(PostStep.FACTORY);
+		this.register(AuthStep.FACTORY);
+		this.register(ParallelStep.FACTORY);
+	} // registerBuiltins
+
+
+	public synchronized void register(final StepFactory factory) {
+		StepRegistry.logger.debug("StepFactory: " + factory.getMode() + " --- " + factory.getClass().getName());
+		this.factories.put(factory.getMode(), factory);
+	} // register
+
+
+	public synchronized StepFactory getFactory(final String mode) {
+		return this.factories.get(mode);
+	} // getFactory
+
+
+	/**
+	 * Compiles a single {@code <step>} element. Unknown modes result in a step
+	 * that fails on execution, so that ContinueIfError keeps working as for
+	 * any other failing step.
+	 *
+	 * @param eStep
+	 *            JDOM-XML-Element des Abarbeitungsschrittes
+	 * @return compiled step
+	 * @throws Exception
+	 *             if the factory rejects the element
+	 */
+	public Step compile(final Element eStep) throws Exception {
+		final String mode = eStep.getChildText("mode");
+		final StepFactory factory = this.getFactory(mode);
+		if (factory == null) {
+			return new UnknownStep(mode);
+		}
+		return factory.create(eStep);
+	} // compile
+
+
+
+	private static final class UnknownStep implements Step {
+		private final String mode;
+
+		UnknownStep(final String mode) {
+			this.mode = mode;
+		}
+
+		public String getMode() {
+			return this.mode;
+		}
+
+		public Boolean execute(final Robot robot) throws Exception {
+			throw new UnsupportedOperationException("Unknown step mode: " + this.mode);
+		}
+	} // class UnknownStep
+
+} // class StepRegistry
@@ -0,0 +1,176 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Step field with variable references, parsed once when the plan is
+ * compiled and resolved against the {@link Variables} of a Robot on every
+ * execution.
+ * <ul>
+ * <li>{@code ${type:name}} is replaced by the variable, e.g.
+ * {@code ${param:coursename}} or {@code ${save:export}}; {@code ${name}} is
+ * short for {@code ${param:name}}. Undefined variables are replaced by "".</li>
+ * <li><code>$${</code> stands for a literal <code>${</code>.</li>
+ * <li>A field that consists of a reference "type:name" only (the former
+ * syntax, e.g. {@code param:un}) is replaced by the variable if it is set
+ * and not empty, and used literally otherwise.</li>
+ * </ul>
+ * Fields without references resolve to the same String without copying.
+ */
+final class Template {
+
+	private final String source;
+	/** n+1 feste Teile um n Variablen */
+	private final String[] literals;
+	/** Schlüssel "type:name" der Variablen */
+	private final String[] keys;
+	/** ganzes Feld als Verweis "type:name" (bisherige Syntax), sonst null */
+	private final String legacyKey;
+	private final int length;
+
+
+	private Template(final String source) {
+		this.source = source;
+		final List<String> literals = new ArrayList<String>();
+		final List<String> keys = new ArrayList<String>();
+		final StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < source.length()) {
+			if (source.startsWith("$${", i)) {
+				literal.append("${");
+				i += 3;
+			} else if (source.startsWith("${", i)) {
+				final int end = source.indexOf('}', i + 2);
+				if (end == -1) {
+					throw new IllegalArgumentException("Unterminated ${ in step field: " + source);
+				}
+				final String ref = source.substring(i + 2, end).trim();
+				if (ref.length() == 0) {
+					throw new IllegalArgumentException("Empty ${} in step field: " + source);
+				}
+				literals.add(literal.toString());
+				literal.setLength(0);
+				keys.add((ref.indexOf(':') == -1) ? Variables.key("param", ref) : ref);
+				i = end + 1;
+			} else {
+				literal.append(source.charAt(i++));
+			}
+		} // while
+		literals.add(literal.toString());
+		this.literals = literals.toArray(new String[literals.size()]);
+		this.keys = keys.toArray(new String[keys.size()]);
+
+		// bisherige Syntax: Feld "type:name", keine Adresse wie http://...
+		final int colon = source.indexOf(':');
+		this.legacyKey = (this.keys.length == 0) && (colon > 0) && (colon < source.length() - 1) && (source.charAt(colon + 1) != '/')
+				? source : null;
+		int length = 0;
+		for (final String part : this.literals) {
+			length += part.length();
+		}
+		this.length = length;
+	}
+
+
+	/**
+	 * @param text Inhalt des Feldes
+	 * @return übersetztes Feld, null wenn text null ist
+	 * @throws IllegalArgumentException bei fehlerhaften Verweisen
+	 */
+	static Template compile(final String text) {
+		return (text == null) ? null : new Template(text);
+	} // compile
+
+
+	/**
+	 * @return Inhalt des Feldes mit den aktuellen Werten der Variablen
+	 */
+	String resolve(final Variables variables) {
+		if (this.keys.length == 0) {
+			if (this.legacyKey != null) {
+				final String value = variables.get(this.legacyKey);
+				if ((value != null) && !value.equals("")) {
+					return value;
+				}
+			} // if
+			return this.literals[0];
+		} // if ohne ${}
+
+		final StringBuilder sb = new StringBuilder(this.length + 16 * this.keys.length);
+		for (int i = 0; i < this.keys.length; i++) {
+			sb.append(this.literals[i]);
+			final String value = variables.get(this.keys[i]);
+			if (value != null) {
+				sb.append(value);
+			}
+		} // for
+		return sb.append(this.literals[this.keys.length]).toString();
+	} // resolve
+
+
+	/**
+	 * @param key Schlüssel "type:name"
+	 * @return true, wenn das Feld diese Variable verwendet
+	 */
+	boolean references(final String key) {
+		if (key.equals(this.legacyKey)) {
+			return true;
+		}
+		for (final String k : this.keys) {
+			if (k.equals(key)) {
+				return true;
+			}
+		} // for
+		return false;
+	} // references
+
+
+	/**
+	 * @return true, wenn das Feld keine Verweise enthält (Wert steht beim Übersetzen fest)
+	 */
+	boolean isConstant() {
+		return (this.keys.length == 0) && (this.legacyKey == null);
+	}
+
+
+	/**
+	 * @return Inhalt ohne Variablen, nur gültig wenn isConstant()
+	 */
+	String getText() {
+		return this.literals[0];
+	}
+
+
+	@Override
+	public String toString() {
+		return this.source;
+	}
+
+} // class Template
@@ -0,0 +1,56 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.IOException;
+
+/**
+ * Finds values in text that is fed chunk by chunk, e.g. a response body
+ * while it is received (see ExtractSink, Crawler).
+ */
+interface TextScanner {
+
+	/**
+	 * Receives the values found by a scanner.
+	 */
+	interface Output {
+		void emit(String value) throws IOException;
+	} // interface Output
+
+
+	/**
+	 * Receives the next chunk of text; the chunk is reused by the caller.
+	 */
+	void feed(CharSequence chars, Output out) throws IOException;
+
+
+	/**
+	 * Called after the last chunk.
+	 */
+	void finish(Output out) throws IOException;
+
+} // interface TextScanner
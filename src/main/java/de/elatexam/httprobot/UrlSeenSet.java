@@ -0,0 +1,127 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of the urls a crawl has already seen (see Crawler), with a fixed
+ * memory footprint: a Bloom filter sized for the expected number of urls
+ * plus an exact set of the most recently seen urls. Links to recent pages
+ * (navigation, pagination) are answered exactly by the recent set; older
+ * urls by the filter, which may take a new url for a seen one with the
+ * given probability, but never the other way round.
+ * <p>
+ * Not thread-safe.
+ */
+final class UrlSeenSet {
+
+	private final BitSet bits;
+	private final int bitCount;
+	private final int hashCount;
+	private final Map<String, Boolean> recent;
+	private int size = 0;
+
+
+	/**
+	 * @param expected erwartete Anzahl Urls
+	 * @param falsePositives Wahrscheinlichkeit, eine neue Url für bekannt zu halten
+	 * @param recentCapacity Anzahl der exakt gemerkten letzten Urls
+	 */
+	UrlSeenSet(final int expected, final double falsePositives, final int recentCapacity) {
+		final double ln2 = Math.log(2);
+		this.bitCount = (int) Math.min(Integer.MAX_VALUE - 1, Math.ceil(-expected * Math.log(falsePositives) / (ln2 * ln2)));
+		this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expected * ln2));
+		this.bits = new BitSet(this.bitCount);
+		this.recent = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+				return this.size() > recentCapacity;
+			}
+		};
+	}
+
+
+	/**
+	 * Merkt eine Url.
+	 *
+	 * @param url Url
+	 * @return true, wenn die Url neu ist
+	 */
+	boolean add(final String url) {
+		if (this.recent.get(url) != null) {
+			return false;
+		}
+		this.recent.put(url, Boolean.TRUE);
+
+		// Double Hashing: k Positionen aus zwei 32-Bit-Hashes
+		final long hash = hash64(url);
+		final int h1 = (int) hash;
+		final int h2 = (int) (hash >>> 32);
+		boolean known = true;
+		for (int i = 0; i < this.hashCount; i++) {
+			final int index = ((h1 + i * h2) & Integer.MAX_VALUE) % this.bitCount;
+			if (!this.bits.get(index)) {
+				known = false;
+				this.bits.set(index);
+			}
+		} // for
+		if (!known) {
+			this.size++;
+		}
+		return !known;
+	} // add
+
+
+	/**
+	 * @return Anzahl der als neu gemeldeten Urls
+	 */
+	int size() {
+		return this.size;
+	}
+
+
+	/**
+	 * FNV-1a über die Zeichen, anschließend durchmischt (SplitMix64), damit
+	 * auch die oberen 32 Bit gut verteilt sind.
+	 */
+	private static long hash64(final String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+		h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+		return h ^ (h >>> 31);
+	} // hash64
+
+} // class UrlSeenSet
@@ -0,0 +1,113 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Flat store of the variables of a Robot (pending values, see
+ * Robot#getPending). Every value has a type (param, save, extract, crawl,
+ * data, ...) and a name; both are joined to one key "type:name", so a
+ * lookup is a single hash access and a {@link Template} can prepare its
+ * keys when the plan is compiled.
+ * <p>
+ * Not thread-safe, like the Robot it belongs to.
+ */
+final class Variables {
+
+	private final Map<String, String> values = new HashMap<String, String>();
+
+
+	/**
+	 * @return Schlüssel "type:name"
+	 */
+	static String key(final String type, final String name) {
+		return type + ':' + name;
+	}
+
+
+	/**
+	 * @param key Schlüssel "type:name"
+	 * @return Wert, null wenn nicht gesetzt
+	 */
+	String get(final String key) {
+		return this.values.get(key);
+	}
+
+
+	String get(final String type, final String name) {
+		return this.values.get(key(type, name));
+	}
+
+
+	void put(final String type, final String name, final String value) {
+		this.values.put(key(type, name), value);
+	}
+
+
+	/**
+	 * @return Kopie aller Werte, Schlüssel "type:name"
+	 */
+	Map<String, String> toMap() {
+		return new HashMap<String, String>(this.values);
+	}
+
+
+	/**
+	 * @param values Werte, Schlüssel "type:name"
+	 */
+	void putAll(final Map<String, String> values) {
+		this.values.putAll(values);
+	}
+
+
+	/**
+	 * Übernimmt nur Werte, die noch nicht gesetzt sind.
+	 *
+	 * @param values Werte, Schlüssel "type:name"
+	 */
+	void putAbsent(final Map<String, String> values) {
+		for (final Map.Entry<String, String> value : values.entrySet()) {
+			if (!this.values.containsKey(value.getKey())) {
+				this.values.put(value.getKey(), value.getValue());
+			}
+		} // for
+	} // putAbsent
+
+
+	boolean isEmpty() {
+		return this.values.isEmpty();
+	}
+
+
+	@Override
+	public String toString() {
+		return this.values.toString();
+	}
+
+} // class Variables
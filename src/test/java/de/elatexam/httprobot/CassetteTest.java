@@ -0,0 +1,133 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Recording and replay with {@link Cassette}.
+ */
+public class CassetteTest {
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("cassette", ".hrc");
+		this.file.delete();
+	}
+
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+
+	private static Cassette.Exchange exchange(final String method, final String url, final byte[] request, final String body) throws IOException {
+		return new Cassette.Exchange(method, url, Cassette.digest(request), 200, "OK", 12, new String[] { "Content-Type" },
+				new String[] { "text/html; charset=utf-8" }, body.getBytes("UTF-8"));
+	}
+
+
+	@Test
+	public void readsBackWhatWasSaved() throws Exception {
+		final char[] policy = new char[100000];
+		Arrays.fill(policy, 'ü');
+		final Cassette recording = Cassette.open(this.file.getPath(), true);
+		recording.add(new Cassette.Exchange("GET", "http://example.org/", null, 200, null, 42, new String[] { "Content-Security-Policy", "X-Empty" },
+				new String[] { new String(policy), null }, "<html>ä</html>".getBytes("UTF-8")));
+		recording.save();
+
+		final Cassette replay = Cassette.open(this.file.getPath(), false);
+		final List<Cassette.Exchange> found = replay.find("GET", "http://example.org/", null);
+		assertEquals(1, found.size());
+		final Cassette.Exchange exchange = found.get(0);
+		assertEquals(200, exchange.getStatus());
+		assertEquals("", exchange.message);
+		assertEquals(42, exchange.getElapsedMillis());
+		assertNull(exchange.bodyDigest);
+		assertEquals(new String(policy), exchange.headerValues[0]);
+		assertNull(exchange.headerValues[1]);
+		assertArrayEquals("<html>ä</html>".getBytes("UTF-8"), exchange.body);
+	} // readsBackWhatWasSaved
+
+
+	@Test
+	public void matchesRequestBodiesBeforeUrls() throws Exception {
+		final Cassette cassette = Cassette.open(this.file.getPath(), true);
+		cassette.add(exchange("POST", "http://example.org/login", "user=a".getBytes("UTF-8"), "a"));
+		cassette.add(exchange("POST", "http://example.org/login", "user=b".getBytes("UTF-8"), "b"));
+
+		assertEquals("b", new String(cassette.find("POST", "http://example.org/login", Cassette.digest("user=b".getBytes("UTF-8"))).get(0).body, "UTF-8"));
+		assertEquals(2, cassette.find("POST", "http://example.org/login", Cassette.digest("token=1".getBytes("UTF-8"))).size());
+		assertTrue(cassette.find("GET", "http://example.org/login", null).isEmpty());
+	} // matchesRequestBodiesBeforeUrls
+
+
+	@Test(expected = IOException.class)
+	public void rejectsOtherFiles() throws Exception {
+		final GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(this.file));
+		out.write("not a cassette".getBytes("UTF-8"));
+		out.close();
+		Cassette.open(this.file.getPath(), false);
+	} // rejectsOtherFiles
+
+
+	@Test
+	public void replaysARecordedRunWithoutServer() throws Exception {
+		final TestServer server = new TestServer();
+		server.page("/page.html", "text/html", "<html><body>recorded</body></html>");
+		final String plan = "<robotPlan><step><mode>GET</mode><url>" + server.url("/page.html") + "</url></step></robotPlan>";
+		try {
+			TestServer.run(new Robot(new String[] { "LogLevel:ERROR", "CassetteRecord:" + this.file.getPath() }), plan);
+		} finally {
+			server.stop();
+		}
+
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "CassetteReplay:" + this.file.getPath() });
+		TestServer.run(robot, plan);
+		assertEquals(200, robot.getLastResultStatus());
+		assertTrue(robot.getLastTextResult().contains("recorded"));
+	} // replaysARecordedRunWithoutServer
+
+} // class CassetteTest
@@ -0,0 +1,153 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Breadth-first crawls of {@link Crawler} via the CRAWL step.
+ */
+public class CrawlerTest {
+
+	private TestServer server;
+
+	private File directory;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/pub/start.html", "text/html", "<html><body><a href=\"a.html\">A</a> <a href=\"moved.html\">Moved</a>"
+				+ " <a href=\"away.html\">Away</a> <a href=\"broken.html\">Broken</a> <a href=\"/other/x.html\">X</a></body></html>");
+		this.server.page("/pub/a.html", "text/html", "<html><body><a href=\"c.html\">C</a></body></html>");
+		this.server.page("/pub/b.html", "text/html", "<html><body>b</body></html>");
+		this.server.page("/pub/c.html", "text/html", "<html><body>c</body></html>");
+		this.server.page("/other/x.html", "text/html", "<html><body>x</body></html>");
+		this.server.redirect("/pub/moved.html", this.server.url("/pub/b.html"));
+		this.server.redirect("/pub/away.html", this.server.url("/other/x.html"));
+		this.server.handle("/pub/broken.html", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, 1000);
+				final OutputStream out = exchange.getResponseBody();
+				out.write("<html>".getBytes("UTF-8"));
+				out.flush();
+				exchange.close();
+			}
+		});
+		this.directory = File.createTempFile("crawl", "");
+		this.directory.delete();
+		this.directory.mkdir();
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		ResultStoreTest.delete(this.directory);
+	}
+
+
+	private Robot crawl(final int depth) throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		TestServer.run(robot, "<robotPlan><step><mode>GET</mode><url>" + this.server.url("/pub/start.html") + "</url></step>"
+				+ "<step><mode>CRAWL</mode><pattern>/pub/</pattern><depth>" + depth + "</depth><path>" + this.directory.getPath()
+				+ "</path></step></robotPlan>");
+		return robot;
+	}
+
+
+	private Map<String, String> index(final Robot robot) throws Exception {
+		final Map<String, String> files = new HashMap<String, String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(robot.getPending("save:crawl")), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				files.put(fields[0].substring(fields[0].lastIndexOf('/') + 1), fields[2]);
+			}
+		} finally {
+			reader.close();
+		}
+		return files;
+	} // index
+
+
+	@Test
+	public void followsRedirectsOnlyToMatchingUrls() throws Exception {
+		final Robot robot = this.crawl(1);
+
+		assertEquals(1, this.server.requests("/pub/b.html"));
+		assertEquals(0, this.server.requests("/other/x.html"));
+		assertEquals(0, this.server.requests("/pub/c.html"));
+		assertEquals("5", robot.getPending("crawl:crawl.count"));
+	} // followsRedirectsOnlyToMatchingUrls
+
+
+	@Test
+	public void followsLinksLevelByLevel() throws Exception {
+		this.crawl(2);
+
+		assertEquals(1, this.server.requests("/pub/a.html"));
+		assertEquals(1, this.server.requests("/pub/c.html"));
+		assertEquals(0, this.server.requests("/other/x.html"));
+	} // followsLinksLevelByLevel
+
+
+	@Test
+	public void indexesOnlySavedPages() throws Exception {
+		final Map<String, String> files = this.index(this.crawl(1));
+
+		assertEquals(5, files.size());
+		assertTrue(new File(files.get("a.html")).isFile());
+		assertTrue(new File(files.get("b.html")).isFile());
+		assertEquals("-", files.get("moved.html"));
+		assertEquals("-", files.get("away.html"));
+		assertEquals("-", files.get("broken.html"));
+		assertEquals(3, this.directory.list().length);
+		assertFalse(files.containsKey("x.html"));
+	} // indexesOnlySavedPages
+
+} // class CrawlerTest
@@ -0,0 +1,178 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * CSV and JSONL parsing of {@link DataRows}.
+ */
+public class DataRowsTest {
+
+	private static DataRows csv(final String text) throws IOException {
+		return new DataRows(new StringReader(text), false);
+	}
+
+
+	private static DataRows jsonl(final String text) throws IOException {
+		return new DataRows(new StringReader(text), true);
+	}
+
+
+	@Test
+	public void csvHeaderAndRows() throws IOException {
+		final DataRows rows = csv("un,pw\nbob,secret\nalice,1234\n");
+		assertEquals(Arrays.asList("un", "pw"), rows.getColumns());
+		assertEquals("{un=bob, pw=secret}", rows.next().toString());
+		assertEquals("{un=alice, pw=1234}", rows.next().toString());
+		assertNull(rows.next());
+		assertNull(rows.next());
+	}
+
+
+	@Test
+	public void csvByteOrderMarkAndCrLf() throws IOException {
+		final DataRows rows = csv("\uFEFFun,pw\r\nbob,secret\r\n");
+		assertEquals(Arrays.asList("un", "pw"), rows.getColumns());
+		final Map<String, String> row = rows.next();
+		assertEquals("bob", row.get("un"));
+		assertEquals("secret", row.get("pw"));
+	}
+
+
+	@Test
+	public void csvSemicolonSeparator() throws IOException {
+		final DataRows rows = csv("un;course\nbob;Mathe, Teil 1\n");
+		assertEquals(Arrays.asList("un", "course"), rows.getColumns());
+		assertEquals("Mathe, Teil 1", rows.next().get("course"));
+	}
+
+
+	@Test
+	public void csvQuotedFields() throws IOException {
+		final DataRows rows = csv("un,text\n\"bob\",\"a, \"\"quoted\"\" b\"\n");
+		final Map<String, String> row = rows.next();
+		assertEquals("bob", row.get("un"));
+		assertEquals("a, \"quoted\" b", row.get("text"));
+	}
+
+
+	@Test
+	public void csvLineBreakInQuotedField() throws IOException {
+		final DataRows rows = csv("un,text\nbob,\"line 1\nline 2\"\nalice,x\n");
+		assertEquals("line 1\nline 2", rows.next().get("text"));
+		assertEquals("alice", rows.next().get("un"));
+		assertNull(rows.next());
+	}
+
+
+	@Test
+	public void csvMissingFieldsAndBlankLines() throws IOException {
+		final DataRows rows = csv("a,b,c\n\n1\n   \n1,2,3,4\n");
+		assertEquals("{a=1, b=, c=}", rows.next().toString());
+		assertEquals("{a=1, b=2, c=3}", rows.next().toString());
+		assertNull(rows.next());
+	}
+
+
+	@Test
+	public void csvEmptyFile() throws IOException {
+		final DataRows rows = csv("");
+		assertEquals(Collections.emptyList(), rows.getColumns());
+		assertNull(rows.next());
+	}
+
+
+	@Test(expected = IOException.class)
+	public void csvUnterminatedQuote() throws IOException {
+		csv("un,text\nbob,\"open\n").next();
+	}
+
+
+	@Test
+	public void jsonlValues() throws IOException {
+		final DataRows rows = jsonl("{\"un\": \"bob\", \"id\": 17, \"admin\": false, \"note\": null}\n");
+		assertEquals(Arrays.asList("un", "id", "admin", "note"), rows.getColumns());
+		assertEquals("{un=bob, id=17, admin=false, note=}", rows.next().toString());
+		assertNull(rows.next());
+	}
+
+
+	@Test
+	public void jsonlEscapesAndEmptyLines() throws IOException {
+		final DataRows rows = jsonl("{\"t\":\"a\\\"b\\\\c\\n\\u00e4\\/\"}\n\n{}\n");
+		assertEquals("a\"b\\c\n\u00e4/", rows.next().get("t"));
+		assertEquals(0, rows.next().size());
+		assertNull(rows.next());
+	}
+
+
+	@Test
+	public void jsonlColumnsFromFirstLine() throws IOException {
+		final DataRows rows = jsonl("{\"a\":\"1\"}\n{\"b\":\"2\"}\n");
+		assertEquals(Arrays.asList("a"), rows.getColumns());
+		assertEquals("1", rows.next().get("a"));
+		assertEquals("2", rows.next().get("b"));
+	}
+
+
+	@Test
+	public void jsonlRejectsNestedValues() throws IOException {
+		assertRejected("{\"a\": {\"b\": 1}}");
+		assertRejected("{\"a\": [1, 2]}");
+	}
+
+
+	@Test
+	public void jsonlRejectsMalformedLines() throws IOException {
+		assertRejected("[\"a\"]");
+		assertRejected("{\"a\": \"1\"");
+		assertRejected("{\"a\" \"1\"}");
+		assertRejected("{\"a\": \"open}");
+	}
+
+
+	private static void assertRejected(final String line) {
+		try {
+			jsonl(line + "\n").next();
+			fail("accepted: " + line);
+		} catch (final IOException e) {
+			// erwartet
+		}
+	}
+
+} // class DataRowsTest
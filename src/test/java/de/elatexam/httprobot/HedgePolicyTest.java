@@ -0,0 +1,192 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Hedged requests ({@link HedgePolicy}) and the StepTimeout and PlanTimeout
+ * deadlines.
+ */
+public class HedgePolicyTest {
+
+	private TestServer server;
+
+	/** Request number of /stall.html that stalls, 0 for all */
+	private volatile int stall;
+
+	private final AtomicInteger stallRequests = new AtomicInteger();
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/page.html", "text/html", "<html><body>page</body></html>");
+		this.server.handle("/stall.html", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				final int n = HedgePolicyTest.this.stallRequests.incrementAndGet();
+				if ((HedgePolicyTest.this.stall == 0) || (HedgePolicyTest.this.stall == n)) {
+					try {
+						Thread.sleep(3000);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				} // if
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, 0);
+				final OutputStream out = exchange.getResponseBody();
+				out.write("<html><body>stall</body></html>".getBytes("UTF-8"));
+				out.close();
+			}
+		});
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	private String get(final String path) {
+		return "<step><mode>GET</mode><url>" + this.server.url(path) + "</url></step>";
+	}
+
+
+	private static long millisSince(final long start) {
+		return (System.nanoTime() - start) / 1000000L;
+	}
+
+
+	@Test
+	public void parsesPercentiles() {
+		assertNull(HedgePolicy.parse("off", 10));
+		assertNull(HedgePolicy.parse("", 10));
+		assertEquals(0.95, HedgePolicy.parse("p95", 10).getQuantile(), 1e-9);
+		assertEquals(0.995, HedgePolicy.parse("P99.5", 10).getQuantile(), 1e-9);
+		assertEquals(25, HedgePolicy.parse("p95", 25).getMinDelayMillis());
+		for (final String invalid : new String[] { "p100", "p-5", "fast" }) {
+			try {
+				HedgePolicy.parse(invalid, 10);
+				throw new AssertionError("accepted " + invalid);
+			} catch (final IllegalArgumentException e) {
+				// expected
+			} // try catch
+		} // for
+	} // parsesPercentiles
+
+
+	@Test
+	public void hedgesOnlyWithEnoughSamples() throws Exception {
+		// host of its own, the latencies are shared JVM-wide
+		final URL url = new URL("http://hedge-samples.invalid:8081/page.html");
+		final HedgePolicy policy = new HedgePolicy(0.5, 10);
+		for (int i = 1; i < HedgePolicy.MIN_SAMPLES; i++) {
+			HedgePolicy.record(url, 100);
+		}
+		assertEquals(-1, policy.getDelayMillis(url));
+		HedgePolicy.record(url, 100);
+		final long delay = policy.getDelayMillis(url);
+		assertTrue("delay " + delay, (delay >= 80) && (delay <= 120));
+		assertEquals(-1, policy.getDelayMillis(new URL("http://hedge-samples.invalid:8082/page.html")));
+	} // hedgesOnlyWithEnoughSamples
+
+
+	@Test
+	public void delayIsAtLeastTheMinimum() throws Exception {
+		final URL url = new URL("http://hedge-minimum.invalid/page.html");
+		for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+			HedgePolicy.record(url, 1);
+		}
+		assertEquals(50, new HedgePolicy(0.95, 50).getDelayMillis(url));
+	} // delayIsAtLeastTheMinimum
+
+
+	@Test
+	public void hedgedRequestAnswersFirst() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "Transport:pooled", "Hedge:p50", "HedgeMinDelay:50" });
+		final StringBuilder plan = new StringBuilder("<robotPlan>");
+		for (int i = 0; i < HedgePolicy.MIN_SAMPLES; i++) {
+			plan.append(this.get("/page.html"));
+		}
+		TestServer.run(robot, plan.append("</robotPlan>").toString());
+
+		// only the first request to the host stalls, the second one sent after the delay answers
+		this.stall = 1;
+		final long wins = HedgePolicy.getHedgeWins();
+		final long start = System.nanoTime();
+		TestServer.run(robot, "<robotPlan>" + this.get("/stall.html") + "</robotPlan>");
+		final long millis = HedgePolicyTest.millisSince(start);
+
+		assertTrue("hedged GET took " + millis + " ms", millis < 2000);
+		assertEquals(200, robot.getLastResultStatus());
+		assertTrue(robot.getLastTextResult().contains("stall"));
+		assertEquals(2, this.server.requests("/stall.html"));
+		assertTrue(HedgePolicy.getHedgeWins() > wins);
+	} // hedgedRequestAnswersFirst
+
+
+	@Test
+	public void stepTimeoutEndsAStalledStep() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "StepTimeout:500" });
+		final long start = System.nanoTime();
+		TestServer.run(robot, "<robotPlan>" + this.get("/stall.html") + this.get("/page.html") + "</robotPlan>");
+		final long millis = HedgePolicyTest.millisSince(start);
+
+		assertTrue("plan took " + millis + " ms", millis < 2000);
+		// the next step runs with a deadline of its own
+		assertEquals(1, this.server.requests("/page.html"));
+		assertTrue(robot.getLastTextResult().contains("page"));
+	} // stepTimeoutEndsAStalledStep
+
+
+	@Test
+	public void planTimeoutSkipsTheRemainingSteps() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "PlanTimeout:500" });
+		final long start = System.nanoTime();
+		TestServer.run(robot, "<robotPlan>" + this.get("/page.html") + this.get("/stall.html") + this.get("/page.html") + "</robotPlan>");
+		final long millis = HedgePolicyTest.millisSince(start);
+
+		assertTrue("plan took " + millis + " ms", millis < 2000);
+		assertEquals(1, this.server.requests("/page.html"));
+	} // planTimeoutSkipsTheRemainingSteps
+
+} // class HedgePolicyTest
@@ -0,0 +1,85 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Buckets and percentiles of {@link Histogram}.
+ */
+public class HistogramTest {
+
+	@Test
+	public void countsValuesIntoInclusiveBuckets() {
+		final Histogram histogram = new Histogram(new long[] { 10, 100 });
+		histogram.record(10);
+		histogram.record(11);
+		histogram.record(100);
+		histogram.record(1000);
+
+		assertEquals(1, histogram.getBucketCount(0));
+		assertEquals(2, histogram.getBucketCount(1));
+		assertEquals(1, histogram.getBucketCount(2));
+		assertEquals(4, histogram.getCount());
+		assertEquals(1121, histogram.getSum());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(280.25, histogram.getMean(), 0.001);
+	} // countsValuesIntoInclusiveBuckets
+
+
+	@Test
+	public void estimatesPercentilesByBucketBound() {
+		final Histogram histogram = new Histogram(Histogram.LATENCY_MILLIS);
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+
+		assertEquals(50, histogram.getPercentile(0.5));
+		assertEquals(100, histogram.getPercentile(0.9));
+		assertEquals(100, histogram.getPercentile(0.99));
+		assertEquals(1, histogram.getPercentile(0.01));
+	} // estimatesPercentilesByBucketBound
+
+
+	@Test
+	public void isEmptyWithoutValues() {
+		final Histogram histogram = new Histogram(Histogram.LATENCY_MILLIS);
+
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(0.99));
+		assertEquals(0.0, histogram.getMean(), 0);
+	} // isEmptyWithoutValues
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnorderedBounds() {
+		new Histogram(new long[] { 10, 5 });
+	}
+
+} // class HistogramTest
@@ -0,0 +1,163 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Conditional requests with {@link HttpCache}.
+ */
+public class HttpCacheTest {
+
+	private TestServer server;
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.file = File.createTempFile("cache", ".hrh");
+		this.file.delete();
+	}
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		this.file.delete();
+	}
+
+
+	/**
+	 * Serves a page with an ETag and answers 304 if the request names it.
+	 */
+	private void validated(final String path, final String cacheControl) {
+		this.server.handle(path, new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				if (cacheControl != null) {
+					exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+				}
+				if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+				final byte[] body = "<html><body>cached</body></html>".getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, body.length);
+				final OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+	} // validated
+
+
+	private Robot get(final String... paths) throws Exception {
+		final StringBuilder plan = new StringBuilder("<robotPlan>");
+		for (final String path : paths) {
+			plan.append("<step><mode>GET</mode><url>").append(this.server.url(path)).append("</url></step>");
+		}
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "HttpCache:" + this.file.getPath() });
+		TestServer.run(robot, plan.append("</robotPlan>").toString());
+		return robot;
+	} // get
+
+
+	@Test
+	public void servesNotModifiedFromTheCache() throws Exception {
+		this.validated("/page.html", null);
+		this.get("/page.html");
+		final Robot robot = this.get("/page.html");
+
+		assertEquals(2, this.server.requests("/page.html"));
+		assertEquals("\"v1\"", this.server.requestHeader("/page.html", "If-None-Match"));
+		assertEquals(200, robot.getLastResultStatus());
+		assertTrue(robot.getLastTextResult().contains("cached"));
+		assertTrue(this.file.isFile());
+	} // servesNotModifiedFromTheCache
+
+
+	@Test
+	public void skipsPrivateResponses() throws Exception {
+		this.validated("/private.html", "private, max-age=0");
+		this.get("/private.html");
+		this.get("/private.html");
+
+		assertNull(this.server.requestHeader("/private.html", "If-None-Match"));
+	} // skipsPrivateResponses
+
+
+	@Test
+	public void skipsResponsesToRequestsWithCookies() throws Exception {
+		this.server.handle("/login.html", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Set-Cookie", "session=alice; Path=/");
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, -1);
+				exchange.close();
+			}
+		});
+		this.validated("/my.html", null);
+		this.validated("/logo.html", "public");
+		this.get("/login.html", "/my.html", "/logo.html");
+		this.get("/my.html", "/logo.html");
+
+		assertNull(this.server.requestHeader("/my.html", "If-None-Match"));
+		assertEquals("\"v1\"", this.server.requestHeader("/logo.html", "If-None-Match"));
+	} // skipsResponsesToRequestsWithCookies
+
+
+	@Test
+	public void decidesCacheability() {
+		assertTrue(HttpCache.isCacheable(200, "\"a\"", null, null, false));
+		assertTrue(HttpCache.isCacheable(200, null, "Mon, 12 Oct 2026 10:00:00 GMT", "max-age=60", false));
+		assertFalse(HttpCache.isCacheable(200, null, null, null, false));
+		assertFalse(HttpCache.isCacheable(404, "\"a\"", null, null, false));
+		assertFalse(HttpCache.isCacheable(200, "\"a\"", null, "no-store", false));
+		assertFalse(HttpCache.isCacheable(200, "\"a\"", null, "Private", false));
+		assertFalse(HttpCache.isCacheable(200, "\"a\"", null, null, true));
+		assertTrue(HttpCache.isCacheable(200, "\"a\"", null, "public, max-age=60", true));
+	} // decidesCacheability
+
+} // class HttpCacheTest
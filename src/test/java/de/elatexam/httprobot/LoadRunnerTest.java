@@ -0,0 +1,139 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Virtual users of {@link LoadRunner}.
+ */
+public class LoadRunnerTest {
+
+	private TestServer server;
+
+	private File directory;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/page.html", "text/html", "<html><body>page</body></html>");
+		this.directory = File.createTempFile("load", "");
+		this.directory.delete();
+		this.directory.mkdir();
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		ResultStoreTest.delete(this.directory);
+	}
+
+
+	private RobotPlan plan(final String steps) throws Exception {
+		return RobotPlan.load(new ByteArrayInputStream(("<robotPlan><step><mode>GET</mode><url>" + this.server.url("/page.html")
+				+ "</url></step>" + steps + "</robotPlan>").getBytes("UTF-8")));
+	}
+
+
+	@Test
+	public void runsEveryIterationOfEveryUser() throws Exception {
+		final LoadRunner runner = new LoadRunner(new String[] { "LogLevel:ERROR" });
+		runner.setUsers(2);
+		runner.setIterations(3);
+		final LoadReport report = runner.run(this.plan(""));
+
+		assertEquals(6, report.getIterations());
+		assertEquals(6, this.server.requests("/page.html"));
+		assertEquals(6, report.getLatencies().get("GET").getCount());
+		assertEquals(0, report.getErrors("GET"));
+	} // runsEveryIterationOfEveryUser
+
+
+	@Test
+	public void stopsWhenTheDurationIsOver() throws Exception {
+		final LoadRunner runner = new LoadRunner(new String[] { "LogLevel:ERROR" });
+		runner.setIterations(0);
+		runner.setDurationMillis(300);
+		runner.setThinkTimeMillis(20);
+		final LoadReport report = runner.run(this.plan(""));
+
+		assertTrue(report.getIterations() > 0);
+		assertTrue(report.getElapsedMillis() < 5000);
+	} // stopsWhenTheDurationIsOver
+
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsUnboundedRuns() throws Exception {
+		final LoadRunner runner = new LoadRunner(new String[] { "LogLevel:ERROR" });
+		runner.setIterations(0);
+		runner.run(this.plan(""));
+	} // rejectsUnboundedRuns
+
+
+	@Test
+	public void finishesEachUserAfterItsLastIteration() throws Exception {
+		final File metrics = new File(this.directory, "metrics.prom");
+		final AtomicBoolean written = new AtomicBoolean();
+		this.server.handle("/next.html", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				written.compareAndSet(false, metrics.exists());
+				exchange.sendResponseHeaders(200, 0);
+				final OutputStream out = exchange.getResponseBody();
+				out.write("<html><body>next</body></html>".getBytes("UTF-8"));
+				out.close();
+			}
+		});
+		final LoadRunner runner = new LoadRunner(new String[] { "LogLevel:ERROR", "MetricsFile:" + metrics.getPath() });
+		runner.setIterations(3);
+		runner.setMetrics(new RobotMetrics());
+		runner.run(this.plan("<step><mode>SAVE</mode><path>" + this.directory.getPath() + "</path><saveID>page</saveID></step>"
+				+ "<step><mode>GET</mode><url>" + this.server.url("/next.html") + "</url></step>"));
+
+		assertEquals(3, this.server.requests("/next.html"));
+		assertFalse("metrics written within the measured loop", written.get());
+		assertTrue(metrics.isFile());
+		assertTrue(new File(this.directory, "page.html").isFile());
+	} // finishesEachUserAfterItsLastIteration
+
+} // class LoadRunnerTest
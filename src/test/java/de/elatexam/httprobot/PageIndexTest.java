@@ -0,0 +1,145 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.meterware.httpunit.HttpUnitOptions;
+import com.meterware.httpunit.WebConversation;
+import com.meterware.httpunit.WebForm;
+import com.meterware.httpunit.WebLink;
+import com.meterware.httpunit.WebResponse;
+
+/**
+ * Lookups of {@link PageIndex} against the httpunit methods it replaces.
+ */
+public class PageIndexTest {
+
+	private static final String PAGE = "<html><body>"
+			+ "<a href=\"/1.html\">First link</a>"
+			+ "<a href=\"/2.html\" name=\"second\">Second link</a>"
+			+ "<a href=\"/3.html\" id=\"third\">Third</a>"
+			+ "<a href=\"/4.html\"><img src=\"/logo.gif\" alt=\"Logo\"></a>"
+			+ "<a href=\"/5.html\" name=\"second\">Another one</a>"
+			+ "<form name=\"login\" action=\"/login\"><input type=\"submit\" name=\"go\" value=\"Login\"></form>"
+			+ "<form id=\"search\" action=\"/search\"><input type=\"submit\" id=\"find\" value=\"Find\"></form>"
+			+ "</body></html>";
+
+	private TestServer server;
+
+	private boolean ignoreCase;
+
+	private WebResponse response;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.ignoreCase = HttpUnitOptions.getMatchesIgnoreCase();
+		this.server = new TestServer();
+		this.server.page("/page.html", "text/html", PageIndexTest.PAGE);
+		this.response = new WebConversation().getResponse(this.server.url("/page.html"));
+	}
+
+
+	@After
+	public void tearDown() {
+		HttpUnitOptions.setMatchesIgnoreCase(this.ignoreCase);
+		this.server.stop();
+	}
+
+
+	private static String url(final WebLink link) {
+		return (link == null) ? null : link.getURLString();
+	}
+
+
+	private static String action(final WebForm form) {
+		return (form == null) ? null : form.getAction();
+	}
+
+
+	@Test
+	public void findsLinksLikeHttpunit() throws Exception {
+		final PageIndex index = new PageIndex(this.response);
+		assertEquals(url(this.response.getLinkWith("Second")), url(index.findLink("Second")));
+		assertEquals("/1.html", url(index.findLink("link")));
+		assertEquals(url(this.response.getLinkWithName("second")), url(index.findLink("second")));
+		assertEquals(url(this.response.getLinkWithID("third")), url(index.findLink("third")));
+		assertEquals(url(this.response.getLinkWithImageText("Logo")), url(index.findLink("Logo")));
+		assertEquals("/1.html", url(index.findLink("")));
+		assertNull(index.findLink("missing"));
+	} // findsLinksLikeHttpunit
+
+
+	@Test
+	public void firstLinkWithANameWins() throws Exception {
+		HttpUnitOptions.setMatchesIgnoreCase(false);
+		final PageIndex index = new PageIndex(this.response);
+		// "second" is no link text if the case counts, the first of both names matches
+		assertEquals("/2.html", url(index.findLink("second")));
+		assertEquals(url(this.response.getLinkWithName("second")), url(index.findLink("second")));
+	} // firstLinkWithANameWins
+
+
+	@Test
+	public void matchesCaseAsConfigured() throws Exception {
+		HttpUnitOptions.setMatchesIgnoreCase(false);
+		assertNull(new PageIndex(this.response).findLink("FIRST"));
+		assertNull(new PageIndex(this.response).findForm("LOGIN"));
+		HttpUnitOptions.setMatchesIgnoreCase(true);
+		assertEquals("/1.html", url(new PageIndex(this.response).findLink("FIRST")));
+		assertEquals("/login", action(new PageIndex(this.response).findForm("LOGIN")));
+	} // matchesCaseAsConfigured
+
+
+	@Test
+	public void findsFormsLikeHttpunit() throws Exception {
+		final PageIndex index = new PageIndex(this.response);
+		assertEquals(action(this.response.getFormWithName("login")), action(index.findForm("login")));
+		assertEquals(action(this.response.getFormWithID("search")), action(index.findForm("search")));
+		assertNull(index.findForm("missing"));
+		assertEquals(action(this.response.getForms()[1]), action(index.getForm(1)));
+	} // findsFormsLikeHttpunit
+
+
+	@Test
+	public void findsFormsByButton() throws Exception {
+		final PageIndex index = new PageIndex(this.response);
+		assertEquals("/login", action(index.findFormWithButton("go")));
+		assertEquals("/login", action(index.findFormWithButton("Login")));
+		assertEquals("/search", action(index.findFormWithButton("find")));
+		assertEquals("/search", action(index.findFormWithButton("Find")));
+		assertNull(index.findFormWithButton(""));
+		assertNull(index.findFormWithButton("missing"));
+	} // findsFormsByButton
+
+} // class PageIndexTest
@@ -0,0 +1,146 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Fork and join of {@link ParallelStep}.
+ */
+public class ParallelStepTest {
+
+	private TestServer server;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/start.html", "text/html", "<html><body>start</body></html>");
+		this.server.page("/check.html", "text/html", "<html><body>check</body></html>");
+		this.cookie("/a.html", "a=1");
+		this.cookie("/b.html", "b=2");
+		this.server.handle("/slow.html", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(3000);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.sendResponseHeaders(200, -1);
+				exchange.close();
+			}
+		});
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	private void cookie(final String path, final String cookie) {
+		this.server.handle(path, new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Set-Cookie", cookie + "; Path=/");
+				exchange.getResponseHeaders().add("Content-Type", "text/html");
+				exchange.sendResponseHeaders(200, 0);
+				final OutputStream out = exchange.getResponseBody();
+				out.write("<html><body>cookie</body></html>".getBytes("UTF-8"));
+				out.close();
+			}
+		});
+	} // cookie
+
+
+	private String get(final String path) {
+		return "<step><mode>GET</mode><url>" + this.server.url(path) + "</url></step>";
+	}
+
+
+	@Test
+	public void joinsCookiesOfAllBranches() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		TestServer.run(robot, "<robotPlan>" + this.get("/start.html") + "<step><mode>PARALLEL</mode>" + this.get("/a.html")
+				+ "<branch>" + this.get("/start.html") + this.get("/b.html") + "</branch></step>" + this.get("/check.html") + "</robotPlan>");
+
+		assertEquals("ok", robot.getPending("parallel:parallel.1"));
+		assertEquals("ok", robot.getPending("parallel:parallel.2"));
+		assertEquals("200", robot.getPending("parallel:parallel.2.status"));
+		final String cookies = this.server.requestHeader("/check.html", "Cookie");
+		assertTrue(cookies, cookies.contains("a=1") && cookies.contains("b=2"));
+		assertTrue(robot.getLastTextResult().contains("check"));
+	} // joinsCookiesOfAllBranches
+
+
+	@Test
+	public void dropsCookiesTheBranchRemoved() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		TestServer.run(robot, "<robotPlan>" + this.get("/a.html") + this.get("/b.html") + "</robotPlan>");
+		final RobotSession before = robot.getSession();
+		final Robot branch = robot.fork();
+		branch.getHttpClient().removeCookie("a");
+		robot.join(branch, before);
+
+		assertNull(robot.getHttpClient().getCookieValue("a"));
+		TestServer.run(robot, "<robotPlan>" + this.get("/check.html") + "</robotPlan>");
+		assertEquals("b=2", this.server.requestHeader("/check.html", "Cookie"));
+
+		TestServer.run(robot, "<robotPlan>" + this.get("/a.html") + this.get("/check.html") + "</robotPlan>");
+		assertEquals("1", robot.getHttpClient().getCookieValue("a"));
+		assertTrue(this.server.requestHeader("/check.html", "Cookie").contains("a=1"));
+	} // dropsCookiesTheBranchRemoved
+
+
+	@Test
+	public void cancelsBranchesAtTheStepDeadline() throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "StepTimeout:500" });
+		final long start = System.nanoTime();
+		TestServer.run(robot, "<robotPlan>" + this.get("/start.html") + "<step><mode>PARALLEL</mode>" + this.get("/a.html")
+				+ "<branch>" + this.get("/slow.html") + this.get("/b.html") + "</branch></step></robotPlan>");
+		final long millis = (System.nanoTime() - start) / 1000000L;
+
+		assertTrue("join took " + millis + " ms", millis < 2000);
+		assertEquals("ok", robot.getPending("parallel:parallel.1"));
+		assertEquals("failed", robot.getPending("parallel:parallel.2"));
+		assertEquals("1", robot.getHttpClient().getCookieValue("a"));
+		assertEquals(0, this.server.requests("/b.html"));
+	} // cancelsBranchesAtTheStepDeadline
+
+} // class ParallelStepTest
@@ -0,0 +1,188 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Connection limit, cancel and deadline of {@link PooledHttpTransport}.
+ */
+public class PooledHttpTransportTest {
+
+	private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+	private TestServer server;
+
+	private PooledHttpTransport transport;
+
+
+	@Before
+	public void setUp() throws Exception {
+		// each server listens on a new port, so the limit applies to it
+		PooledHttpTransport.setMaxConnectionsPerHost(1);
+		this.server = new TestServer();
+		this.server.page("/page.html", "text/html", "<html><body>page</body></html>");
+		this.transport = new PooledHttpTransport(1000, 1000);
+	}
+
+
+	@After
+	public void tearDown() {
+		PooledHttpTransport.setMaxConnectionsPerHost(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST);
+		this.server.stop();
+	}
+
+
+	private HttpTransport.Response get(final PooledHttpTransport.Call call) throws IOException {
+		return this.transport.send("GET", new URL(this.server.url("/page.html")), PooledHttpTransportTest.NO_HEADERS, null, call);
+	}
+
+
+	private static void readAll(final InputStream in) throws IOException {
+		final byte[] buffer = new byte[4096];
+		while (in.read(buffer) != -1) {
+			// skip
+		}
+	} // readAll
+
+
+	/**
+	 * A body read to the end returns its connection permit.
+	 */
+	@Test
+	public void testPermitReturnedAtEndOfBody() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			final HttpTransport.Response response = this.get(new PooledHttpTransport.Call(System.nanoTime() + 2000000000L));
+			assertEquals(200, response.getStatus());
+			PooledHttpTransportTest.readAll(response.getBody());
+		}
+		assertEquals(3, this.server.requests("/page.html"));
+	} // testPermitReturnedAtEndOfBody
+
+
+	/**
+	 * With one connection per host a second request waits for the first
+	 * body and fails by its deadline.
+	 */
+	@Test
+	public void testMaxConnectionsPerHost() throws Exception {
+		final HttpTransport.Response first = this.get(new PooledHttpTransport.Call(0));
+		try {
+			this.get(new PooledHttpTransport.Call(System.nanoTime() + 300000000L));
+			fail("second connection to the host");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("MaxConnectionsPerHost"));
+		} // try catch
+		first.getBody().close();
+		PooledHttpTransportTest.readAll(this.get(new PooledHttpTransport.Call(0)).getBody());
+		assertEquals(2, this.server.requests("/page.html"));
+	} // testMaxConnectionsPerHost
+
+
+	/**
+	 * A cancelled request is not sent and returns its permit.
+	 */
+	@Test
+	public void testCancelledCall() throws Exception {
+		final PooledHttpTransport.Call call = new PooledHttpTransport.Call(0);
+		call.cancel();
+		assertTrue(call.isCancelled());
+		try {
+			this.get(call);
+			fail("cancelled request sent");
+		} catch (final InterruptedIOException e) {
+			// expected
+		} // try catch
+		assertEquals(0, this.server.requests("/page.html"));
+		PooledHttpTransportTest.readAll(this.get(new PooledHttpTransport.Call(0)).getBody());
+	} // testCancelledCall
+
+
+	/**
+	 * Cancel drops a response whose body is not read yet.
+	 */
+	@Test
+	public void testCancelAfterResponse() throws Exception {
+		final PooledHttpTransport.Call call = new PooledHttpTransport.Call(0);
+		this.get(call);
+		call.cancel();
+		PooledHttpTransportTest.readAll(this.get(new PooledHttpTransport.Call(System.nanoTime() + 2000000000L)).getBody());
+	} // testCancelAfterResponse
+
+
+	/**
+	 * A request whose deadline has passed is not sent.
+	 */
+	@Test
+	public void testDeadlinePassed() throws Exception {
+		try {
+			this.get(new PooledHttpTransport.Call(System.nanoTime() - 1000000L));
+			fail("request sent after its deadline");
+		} catch (final SocketTimeoutException e) {
+			// expected
+		} // try catch
+		assertEquals(0, this.server.requests("/page.html"));
+	} // testDeadlinePassed
+
+
+	/**
+	 * http.maxConnections given on the command line is kept.
+	 */
+	@Test
+	public void testInitKeepAliveKeepsProperty() {
+		final String before = System.getProperty("http.maxConnections");
+		try {
+			System.setProperty("http.maxConnections", "3");
+			PooledHttpTransport.initKeepAlive();
+			assertEquals("3", System.getProperty("http.maxConnections"));
+			System.clearProperty("http.maxConnections");
+			PooledHttpTransport.initKeepAlive();
+			assertEquals(String.valueOf(PooledHttpTransport.DEFAULT_MAX_CONNECTIONS_PER_HOST), System.getProperty("http.maxConnections"));
+		} finally {
+			if (before == null) {
+				System.clearProperty("http.maxConnections");
+			} else {
+				System.setProperty("http.maxConnections", before);
+			}
+		} // try finally
+	} // testInitKeepAliveKeepsProperty
+
+} // class PooledHttpTransportTest
@@ -0,0 +1,110 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Matches of {@link RegexScanner} across chunk borders.
+ */
+public class RegexScannerTest {
+
+	/** Text that fills the window up to the given length */
+	private static String filler(final int length) {
+		final char[] c = new char[length];
+		Arrays.fill(c, 'x');
+		return new String(c);
+	}
+
+
+	private static List<String> scan(final String regex, final String... chunks) throws IOException {
+		final List<String> found = new ArrayList<String>();
+		final TextScanner.Output out = new TextScanner.Output() {
+			public void emit(final String value) {
+				found.add(value);
+			}
+		};
+		final RegexScanner scanner = new RegexScanner(Pattern.compile(regex));
+		for (final String chunk : chunks) {
+			scanner.feed(chunk, out);
+		}
+		scanner.finish(out);
+		return found;
+	}
+
+
+	@Test
+	public void groupOrWholeMatch() throws IOException {
+		assertEquals(Arrays.asList("12", "7"), scan("id=(\\d+)", "a id=12 b id=7"));
+		assertEquals(Arrays.asList("id=12", "id=7"), scan("id=\\d+", "a id=12 b id=7"));
+	}
+
+
+	@Test
+	public void matchSplitBeforeScan() throws IOException {
+		// der Anfang des Treffers steht am Ende des Fensters, das gerade durchsucht wird
+		final String head = filler(4 * RegexScanner.WINDOW - 3) + "id=";
+		assertEquals(Arrays.asList("12345"), scan("id=(\\d+)", head, "12345;"));
+	}
+
+
+	@Test
+	public void matchThatCouldGrowIsKept() throws IOException {
+		final String head = filler(4 * RegexScanner.WINDOW - 5) + "id=12";
+		assertEquals(Arrays.asList("12345"), scan("id=(\\d+)", head, "345;"));
+	}
+
+
+	@Test
+	public void matchesOnBothSidesOfTheBorder() throws IOException {
+		final String head = "id=1;" + filler(4 * RegexScanner.WINDOW) + "id=2";
+		assertEquals(Arrays.asList("1", "23", "4"), scan("id=(\\d+)", head, "3;", filler(5 * RegexScanner.WINDOW), "id=4"));
+	}
+
+
+	@Test
+	public void matchesInManySmallChunks() throws IOException {
+		final String text = "<a href=\"one\">" + filler(RegexScanner.WINDOW) + "<a href=\"two\">";
+		final List<String> chunks = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			chunks.add(text);
+		}
+		final List<String> found = scan("href=\"([^\"]*)\"", chunks.toArray(new String[chunks.size()]));
+		assertEquals(40, found.size());
+		assertEquals("one", found.get(0));
+		assertEquals("two", found.get(39));
+	}
+
+} // class RegexScannerTest
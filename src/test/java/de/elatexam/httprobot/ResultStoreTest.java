@@ -0,0 +1,187 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * SAVE into a {@link ResultStore}, streamed and queued.
+ */
+public class ResultStoreTest {
+
+	private TestServer server;
+	private File directory;
+	private byte[] export;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.server = new TestServer();
+		this.directory = File.createTempFile("store", "");
+		this.directory.delete();
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; sb.length() < 200000; i++) {
+			sb.append("user").append(i).append(";user").append(i).append("@example.org\n");
+		}
+		this.export = sb.toString().getBytes("UTF-8");
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		delete(this.directory);
+	}
+
+
+	private Robot robot() {
+		return new Robot(new String[] { "ResultStore:" + this.directory.getPath(), "LogLevel:ERROR" });
+	}
+
+
+	private String plan(final String path, final String save) {
+		return "<robotPlan>" + save + "<step><mode>GET</mode><url>" + this.server.url(path) + "</url></step></robotPlan>";
+	}
+
+
+	@Test
+	public void streamsGzipResponseIntoStore() throws Exception {
+		this.server.page("/export.txt", "text/plain", this.export, true);
+		final Robot robot = this.robot();
+		TestServer.run(robot, this.plan("/export.txt", "<step><mode>SAVE</mode><stream>true</stream><saveID>st</saveID></step>"));
+
+		final String blob = robot.getPending("save:st");
+		assertFalse("not stored", blob.equals(""));
+		assertArrayEquals(this.export, read(ResultStore.openBlob(new File(blob))));
+		assertEquals(1, this.index().size());
+	} // streamsGzipResponseIntoStore
+
+
+	@Test
+	public void storesSameContentOnce() throws Exception {
+		this.server.page("/export.txt", "text/plain", this.export, false);
+		final Robot robot = this.robot();
+		TestServer.run(robot, "<robotPlan><step><mode>SAVE</mode><stream>true</stream><saveID>st</saveID></step>"
+				+ "<step><mode>GET</mode><url>" + this.server.url("/export.txt") + "</url></step>"
+				+ "<step><mode>GET</mode><url>" + this.server.url("/export.txt") + "</url></step>"
+				+ "<step><mode>SAVE</mode><saveID>again</saveID></step></robotPlan>");
+
+		assertEquals(robot.getPending("save:st"), robot.getPending("save:again"));
+		final List<String> index = this.index();
+		assertEquals(2, index.size());
+		assertEquals(index.get(0).split("\t")[7], index.get(1).split("\t")[7]);
+	} // storesSameContentOnce
+
+
+	@Test
+	public void dropsTruncatedResponse() throws Exception {
+		this.server.handle("/cut.txt", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, 100000);
+				final OutputStream out = exchange.getResponseBody();
+				out.write(new byte[1000]);
+				out.flush();
+				throw new IOException("connection lost");
+			}
+		});
+		final Robot robot = this.robot();
+		TestServer.run(robot, this.plan("/cut.txt", "<step><mode>SAVE</mode><stream>true</stream><saveID>st</saveID></step>"));
+
+		assertEquals("", robot.getPending("save:st"));
+		assertEquals(0, this.index().size());
+	} // dropsTruncatedResponse
+
+
+	/**
+	 * @return index lines without the header
+	 */
+	private List<String> index() throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		final File file = new File(this.directory, ResultStore.INDEX_FILE);
+		if (!file.exists()) {
+			return lines;
+		}
+		final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			in.readLine();
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				lines.add(line);
+			}
+		} finally {
+			in.close();
+		} // try finally
+		return lines;
+	} // index
+
+
+	static byte[] read(final InputStream in) throws IOException {
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[8192];
+			int n;
+			while ((n = in.read(chunk)) != -1) {
+				out.write(chunk, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		} // try finally
+	} // read
+
+
+	static void delete(final File file) {
+		final File[] files = file.listFiles();
+		if (files != null) {
+			for (final File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	} // delete
+
+} // class ResultStoreTest
@@ -0,0 +1,108 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Concurrent sessions of {@link RobotPool}.
+ */
+public class RobotPoolTest {
+
+	private static final String[] PARAMETERS = { "LogLevel:ERROR", "AutoRefresh:true" };
+
+	private TestServer server;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/start.html", "text/html", "<html><body><a href=\"/next.html\">Next</a></body></html>");
+		this.server.page("/next.html", "text/html", "<html><body>next</body></html>");
+		this.server.page("/wait.html", "text/html",
+				"<html><head><meta http-equiv=\"refresh\" content=\"1; url=/next.html\"></head><body>wait</body></html>");
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+	}
+
+
+	private RobotPlan plan(final String path) throws Exception {
+		return RobotPlan.load(new ByteArrayInputStream(("<robotPlan><step><mode>GET</mode><url>" + this.server.url(path)
+				+ "</url></step></robotPlan>").getBytes("UTF-8")));
+	}
+
+
+	@Test
+	public void runsEverySessionWithItsOwnRobot() throws Exception {
+		final RobotPool pool = new RobotPool(4);
+		final List<Robot> robots = pool.runAll(this.plan("/start.html"), PARAMETERS, 12);
+		pool.shutdown();
+
+		assertEquals(12, robots.size());
+		assertEquals(12, this.server.requests("/start.html"));
+		for (final Robot robot : robots) {
+			assertEquals(200, robot.getLastResultStatus());
+		}
+		assertEquals(12, new HashSet<Robot>(robots).size());
+	} // runsEverySessionWithItsOwnRobot
+
+
+	@Test
+	public void shutdownWaitsForDelayedRefresh() throws Exception {
+		final RobotPool pool = new RobotPool(1);
+		final Future<Robot> session = pool.submit(this.plan("/wait.html"), PARAMETERS);
+		pool.shutdown();
+
+		assertTrue(session.isDone());
+		assertEquals(200, session.get().getLastResultStatus());
+		assertEquals(1, this.server.requests("/next.html"));
+	} // shutdownWaitsForDelayedRefresh
+
+
+	@Test(expected = RejectedExecutionException.class)
+	public void rejectsSessionsAfterShutdown() throws Exception {
+		final RobotPool pool = new RobotPool(1);
+		pool.shutdown();
+		pool.submit(this.plan("/start.html"), PARAMETERS);
+	} // rejectsSessionsAfterShutdown
+
+} // class RobotPoolTest
@@ -0,0 +1,106 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Restoring a SESSION_SAVE snapshot in a later run of {@link Robot}.
+ */
+public class RobotSessionTest {
+
+	private TestServer server;
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = new TestServer();
+		this.server.page("/login.html", "text/html", "<html><body>login</body></html>");
+		this.server.page("/home.html", "text/html", "<html><body>home</body></html>");
+		this.server.page("/check.html", "text/html", "<html><body>welcome</body></html>");
+		this.server.page("/course1.html", "text/html", "<html><body>one</body></html>");
+		this.server.page("/course2.html", "text/html", "<html><body>two</body></html>");
+		this.file = File.createTempFile("session", ".hrs");
+		this.file.delete();
+	} // setUp
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		this.file.delete();
+	}
+
+
+	private String plan(final String check) {
+		return "<robotPlan><step><mode>GET</mode><url>" + this.server.url("/login.html") + "</url></step>"
+				+ "<step><mode>GET</mode><url>" + this.server.url("/home.html") + "</url></step>"
+				+ "<step><mode>SESSION_SAVE</mode><file>" + this.file.getPath() + "</file>" + check + "</step>"
+				+ "<step><mode>GET</mode><url>" + this.server.url("/course${param:course}.html") + "</url></step></robotPlan>";
+	}
+
+
+	private Robot run(final String plan, final String course) throws Exception {
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR", "SessionKey:secret", "course:" + course });
+		TestServer.run(robot, plan);
+		return robot;
+	}
+
+
+	@Test
+	public void keepsParametersOfTheCurrentRun() throws Exception {
+		final String plan = this.plan("<expect>welcome</expect><check>" + this.server.url("/check.html") + "</check>");
+		this.run(plan, "1");
+		final Robot robot = this.run(plan, "2");
+
+		assertEquals(1, this.server.requests("/login.html"));
+		assertEquals(1, this.server.requests("/check.html"));
+		assertEquals(1, this.server.requests("/course2.html"));
+		assertEquals("2", robot.getPending("param:course"));
+	} // keepsParametersOfTheCurrentRun
+
+
+	@Test
+	public void logsInAgainWithoutCheck() throws Exception {
+		final String plan = this.plan("");
+		this.run(plan, "1");
+		this.run(plan, "1");
+
+		assertEquals(2, this.server.requests("/login.html"));
+		assertEquals(2, this.server.requests("/home.html"));
+		assertEquals(2, this.server.requests("/course1.html"));
+	} // logsInAgainWithoutCheck
+
+} // class RobotSessionTest
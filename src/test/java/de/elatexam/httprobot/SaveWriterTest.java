@@ -0,0 +1,153 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Background SAVE with {@link SaveWriter} and streamed SAVE with
+ * {@link FileResultSink}: files appear complete under their name or not
+ * at all.
+ */
+public class SaveWriterTest {
+
+	private TestServer server;
+	private File directory;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.server = new TestServer();
+		this.directory = File.createTempFile("save", "");
+		this.directory.delete();
+		this.directory.mkdirs();
+	}
+
+
+	@After
+	public void tearDown() {
+		this.server.stop();
+		ResultStoreTest.delete(this.directory);
+	}
+
+
+	private static ResultBuffer buffer(final String content) throws IOException {
+		final ResultBuffer buffer = new ResultBuffer();
+		final byte[] bytes = content.getBytes("UTF-8");
+		buffer.write(bytes, 0, bytes.length);
+		return buffer;
+	} // buffer
+
+
+	private void write(final String name, final String content) throws IOException {
+		final OutputStream out = new FileOutputStream(new File(this.directory, name));
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	} // write
+
+
+	private String read(final String name) throws IOException {
+		return new String(ResultStoreTest.read(new FileInputStream(new File(this.directory, name))), "UTF-8");
+	}
+
+
+	@Test
+	public void lastSaveOfAFileWins() throws Exception {
+		final SaveWriter writer = new SaveWriter();
+		final File target = new File(this.directory, "result.txt");
+		for (int i = 0; i < 20; i++) {
+			writer.save(buffer("version " + i), target);
+		}
+		assertEquals(0, writer.await());
+		assertEquals("version 19", this.read("result.txt"));
+		assertEquals(1, this.directory.list().length);
+	} // lastSaveOfAFileWins
+
+
+	@Test
+	public void writesOnCallingThreadWithoutQueue() throws Exception {
+		final SaveWriter writer = new SaveWriter();
+		writer.setQueueSize(0);
+		writer.save(buffer("now"), new File(this.directory, "now.txt"));
+		assertEquals("now", this.read("now.txt"));
+	} // writesOnCallingThreadWithoutQueue
+
+
+	@Test
+	public void streamsCompleteResponseIntoFile() throws Exception {
+		final byte[] content = new byte[300000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		this.server.page("/data.bin", "application/octet-stream", content, true);
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		TestServer.run(robot, "<robotPlan><step><mode>SAVE</mode><stream>true</stream><path>" + this.directory.getPath()
+				+ "</path><saveID>st</saveID></step><step><mode>GET</mode><url>" + this.server.url("/data.bin") + "</url></step></robotPlan>");
+
+		assertEquals(new File(this.directory, "data.bin").getCanonicalFile(), new File(robot.getPending("save:st")).getCanonicalFile());
+		assertArrayEquals(content, ResultStoreTest.read(new FileInputStream(new File(this.directory, "data.bin"))));
+		assertEquals(1, this.directory.list().length);
+	} // streamsCompleteResponseIntoFile
+
+
+	@Test
+	public void keepsFileWhenStreamedResponseBreaksOff() throws Exception {
+		this.write("cut.txt", "previous run");
+		this.server.handle("/cut.txt", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Content-Type", "text/plain");
+				exchange.sendResponseHeaders(200, 100000);
+				final OutputStream out = exchange.getResponseBody();
+				out.write(new byte[1000]);
+				out.flush();
+				throw new IOException("connection lost");
+			}
+		});
+		final Robot robot = new Robot(new String[] { "LogLevel:ERROR" });
+		TestServer.run(robot, "<robotPlan><step><mode>SAVE</mode><stream>true</stream><path>" + this.directory.getPath()
+				+ "</path><saveID>st</saveID></step><step><mode>GET</mode><url>" + this.server.url("/cut.txt") + "</url></step></robotPlan>");
+
+		assertEquals("", robot.getPending("save:st"));
+		assertEquals("previous run", this.read("cut.txt"));
+		assertEquals(1, this.directory.list().length);
+	} // keepsFileWhenStreamedResponseBreaksOff
+
+} // class SaveWriterTest
@@ -0,0 +1,132 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * CSS selectors of {@link SelectorScanner} on HTML fed in chunks.
+ */
+public class SelectorScannerTest {
+
+	private static List<String> scan(final String selector, final String attribute, final String... chunks) throws IOException {
+		final List<String> found = new ArrayList<String>();
+		final TextScanner.Output out = new TextScanner.Output() {
+			public void emit(final String value) {
+				found.add(value);
+			}
+		};
+		final SelectorScanner scanner = new SelectorScanner(selector, attribute);
+		for (final String chunk : chunks) {
+			scanner.feed(chunk, out);
+		}
+		scanner.finish(out);
+		return found;
+	}
+
+
+	/** every character as a chunk of its own */
+	private static String[] single(final String html) {
+		final String[] chunks = new String[html.length()];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = html.substring(i, i + 1);
+		}
+		return chunks;
+	}
+
+
+	@Test
+	public void attributeOfMatchingElements() throws IOException {
+		final String html = "<p><a href=\"/course/view.php?id=3\">A</a> <A HREF='/user/1'>B</A> <a href=/mod/x>C</a></p>";
+		assertEquals(Arrays.asList("/course/view.php?id=3", "/user/1", "/mod/x"), scan("a", "href", html));
+		assertEquals(Arrays.asList("/course/view.php?id=3"), scan("a[href*=course]", "href", html));
+		assertEquals(Arrays.asList("/user/1", "/mod/x"), scan("a[href^=/user], a[href$=x]", "HREF", html));
+	}
+
+
+	@Test
+	public void chunkBordersInsideTagsAndText() throws IOException {
+		final String html = "<input type=\"hidden\" name=\"sesskey\" value=\"a>b\"><div id=\"main\">Hallo <b>Welt</b></div>";
+		assertEquals(Arrays.asList("a>b"), scan("input[name=sesskey]", "value", single(html)));
+		assertEquals(Arrays.asList("Hallo Welt"), scan("#main", null, single(html)));
+		assertEquals(Arrays.asList("Hallo Welt"), scan("div#main", null, "<inp", html.substring(4, 50), html.substring(50)));
+	}
+
+
+	@Test
+	public void textIsDecodedAndNormalized() throws IOException {
+		final String html = "<span class=\"x name\">  Tom &amp;\n\t Jerry&#33; &lt;&#x41;&gt;&nbsp;</span>";
+		assertEquals(Arrays.asList("Tom & Jerry! <A>"), scan(".name", null, html));
+	}
+
+
+	@Test
+	public void nestedElementsOfTheSameName() throws IOException {
+		final String html = "<div class=\"c\">a<div>b</div>c</div><div>d</div>";
+		assertEquals(Arrays.asList("abc"), scan("div.c", null, html));
+	}
+
+
+	@Test
+	public void commentsAndScriptsAreSkipped() throws IOException {
+		final String html = "<!-- <a href=\"c1\"> --><script>var s = '<a href=\"s1\">';</script><a href=\"ok\">x</a><style>a{}</style>";
+		assertEquals(Arrays.asList("ok"), scan("a", "href", html));
+		assertEquals(Arrays.asList("ok"), scan("a", "href", single(html)));
+	}
+
+
+	@Test
+	public void attributeConditions() throws IOException {
+		final String html = "<html lang=\"de-DE\"><i data-x></i><i class=\"a b\"></i><img src=\"p.png\" alt=\"\">";
+		assertEquals(Arrays.asList("de-DE"), scan("[lang|=de]", "lang", html));
+		assertEquals(Arrays.asList(""), scan("i[data-x]", "data-x", html));
+		assertEquals(Arrays.asList("a b"), scan("i[class~=b]", "class", html));
+		assertEquals(Arrays.asList("p.png"), scan("*[src]", "src", html));
+		assertEquals(Collections.emptyList(), scan("img[alt^=\"\"]", "src", html));
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void descendantSelectorIsRejected() {
+		new SelectorScanner("div a", "href");
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void pseudoClassIsRejected() {
+		new SelectorScanner("a:first-child", "href");
+	}
+
+} // class SelectorScannerTest
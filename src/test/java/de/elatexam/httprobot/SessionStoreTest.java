@@ -0,0 +1,182 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Encrypted session files of {@link SessionStore}.
+ */
+public class SessionStoreTest {
+
+	private static final String KEY = "correct horse battery staple";
+
+	private File file;
+
+
+	@Before
+	public void setUp() throws IOException {
+		this.file = File.createTempFile("session", ".hrs");
+		this.file.delete();
+	}
+
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+
+	private static RobotSession session() throws IOException {
+		final Map<String, String> cookies = new LinkedHashMap<String, String>();
+		cookies.put("MoodleSession", "abc123");
+		final Map<String, String[]> authentication = new LinkedHashMap<String, String[]>();
+		authentication.put("Moodle", new String[] { "bob", "sécret" });
+		final Map<String, String> pending = new HashMap<String, String>();
+		pending.put("save:export", "42");
+		return new RobotSession(cookies, authentication, pending, new URL("http://example.org/my/"), 200, "OK",
+				new String[] { "Content-Type" }, new String[] { "text/html; charset=utf-8" }, "<html>ü</html>".getBytes("UTF-8"), "my", "utf-8");
+	}
+
+
+	@Test
+	public void roundTrip() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		final RobotSession loaded = SessionStore.load(this.file, SessionStoreTest.KEY, 0);
+		assertEquals("{MoodleSession=abc123}", loaded.cookies.toString());
+		assertArrayEquals(new String[] { "bob", "sécret" }, loaded.authentication.get("Moodle"));
+		assertEquals("42", loaded.pending.get("save:export"));
+		assertEquals("http://example.org/my/", loaded.pageURL.toString());
+		assertEquals(200, loaded.pageStatus);
+		assertEquals("OK", loaded.pageMessage);
+		assertArrayEquals(new String[] { "Content-Type" }, loaded.pageHeaderNames);
+		assertArrayEquals(new String[] { "text/html; charset=utf-8" }, loaded.pageHeaderValues);
+		assertArrayEquals("<html>ü</html>".getBytes("UTF-8"), loaded.pageBody);
+		assertEquals("my", loaded.pageResultName);
+		assertEquals("utf-8", loaded.pageCharset);
+	}
+
+
+	@Test
+	public void fileDoesNotContainPlainText() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		final byte[] data = new byte[(int) this.file.length()];
+		final RandomAccessFile in = new RandomAccessFile(this.file, "r");
+		try {
+			in.readFully(data);
+		} finally {
+			in.close();
+		}
+		final String text = new String(data, "ISO-8859-1");
+		assertFalse(text.contains("abc123"));
+		assertFalse(text.contains("MoodleSession"));
+	}
+
+
+	@Test
+	public void missingFileIsNoSession() throws Exception {
+		assertNull(SessionStore.load(this.file, SessionStoreTest.KEY, 0));
+	}
+
+
+	@Test
+	public void expiredSessionIsIgnored() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		Thread.sleep(20);
+		assertNull(SessionStore.load(this.file, SessionStoreTest.KEY, 10));
+	}
+
+
+	@Test(expected = GeneralSecurityException.class)
+	public void wrongKeyIsRejected() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		SessionStore.load(this.file, "wrong key", 0);
+	}
+
+
+	@Test
+	public void tamperedFileIsRejected() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		final long length = this.file.length();
+		// Salt, IV, verschlüsselter Inhalt und MAC
+		for (final long position : new long[] { 4, 20, 40, length - 40, length - 1 }) {
+			flip(this.file, position);
+			try {
+				SessionStore.load(this.file, SessionStoreTest.KEY, 0);
+				fail("tampered byte " + position + " accepted");
+			} catch (final GeneralSecurityException e) {
+				// erwartet
+			}
+			flip(this.file, position);
+		} // for
+		SessionStore.load(this.file, SessionStoreTest.KEY, 0);
+	}
+
+
+	@Test(expected = GeneralSecurityException.class)
+	public void truncatedFileIsRejected() throws Exception {
+		SessionStore.save(session(), this.file, SessionStoreTest.KEY);
+		final RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+		try {
+			raf.setLength(20);
+		} finally {
+			raf.close();
+		}
+		SessionStore.load(this.file, SessionStoreTest.KEY, 0);
+	}
+
+
+	private static void flip(final File file, final long position) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(position);
+			final int b = raf.read();
+			raf.seek(position);
+			raf.write(b ^ 0x01);
+		} finally {
+			raf.close();
+		}
+	}
+
+} // class SessionStoreTest
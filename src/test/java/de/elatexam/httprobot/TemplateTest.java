@@ -0,0 +1,140 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Parsing and resolving of step fields, see {@link Template}.
+ */
+public class TemplateTest {
+
+	private Variables variables;
+
+
+	@Before
+	public void setUp() {
+		this.variables = new Variables();
+		this.variables.put("param", "un", "bob");
+		this.variables.put("save", "export", "42");
+		this.variables.put("param", "empty", "");
+	}
+
+
+	@Test
+	public void constantFieldIsNotCopied() {
+		final String text = "http://example.org/course/view.php?id=1";
+		final Template template = Template.compile(text);
+		assertTrue(template.isConstant());
+		assertEquals(text, template.resolve(this.variables));
+		assertSame(template.resolve(this.variables), template.resolve(this.variables));
+		assertEquals(text, template.getText());
+	}
+
+
+	@Test
+	public void nullFieldCompilesToNull() {
+		assertNull(Template.compile(null));
+	}
+
+
+	@Test
+	public void referencesAreReplaced() {
+		final Template template = Template.compile("user=${param:un}&id=${save:export}");
+		assertFalse(template.isConstant());
+		assertEquals("user=bob&id=42", template.resolve(this.variables));
+		assertTrue(template.references("param:un"));
+		assertTrue(template.references("save:export"));
+		assertFalse(template.references("param:export"));
+	}
+
+
+	@Test
+	public void nameWithoutTypeIsParam() {
+		assertEquals("[bob]", Template.compile("[${un}]").resolve(this.variables));
+		assertEquals("[bob]", Template.compile("[${ un }]").resolve(this.variables));
+	}
+
+
+	@Test
+	public void undefinedReferenceIsEmpty() {
+		assertEquals("a--b", Template.compile("a-${extract:missing}-b").resolve(this.variables));
+	}
+
+
+	@Test
+	public void escapedReferenceIsLiteral() {
+		final Template template = Template.compile("$${un} ${un}");
+		assertEquals("${un} bob", template.resolve(this.variables));
+		assertEquals("${un}", Template.compile("$${un}").resolve(this.variables));
+		assertTrue(Template.compile("$${un}").isConstant());
+	}
+
+
+	@Test
+	public void legacyFieldIsReplacedWhenSet() {
+		final Template template = Template.compile("param:un");
+		assertFalse(template.isConstant());
+		assertTrue(template.references("param:un"));
+		assertEquals("bob", template.resolve(this.variables));
+	}
+
+
+	@Test
+	public void legacyFieldIsLiteralWhenUnsetOrEmpty() {
+		assertEquals("param:nobody", Template.compile("param:nobody").resolve(this.variables));
+		assertEquals("param:empty", Template.compile("param:empty").resolve(this.variables));
+	}
+
+
+	@Test
+	public void urlIsNoLegacyField() {
+		assertTrue(Template.compile("http://example.org/").isConstant());
+		assertTrue(Template.compile("param:").isConstant());
+		assertTrue(Template.compile(":un").isConstant());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unterminatedReferenceIsRejected() {
+		Template.compile("id=${save:export");
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyReferenceIsRejected() {
+		Template.compile("id=${ }");
+	}
+
+} // class TemplateTest
@@ -0,0 +1,189 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process http server for the tests, after the benchmark module's
+ * CannedServer. Serves pages and custom handlers by path and counts the
+ * requests per path.
+ */
+class TestServer {
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, HttpHandler> handlers = new ConcurrentHashMap<String, HttpHandler>();
+	private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+	private final Map<String, Headers> lastHeaders = new ConcurrentHashMap<String, Headers>();
+
+
+	TestServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 50);
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(final Runnable r) {
+				final Thread t = new Thread(r, "test-server");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/", new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				final String path = exchange.getRequestURI().getPath();
+				TestServer.this.lastHeaders.put(path, exchange.getRequestHeaders());
+				TestServer.this.requests.putIfAbsent(path, new AtomicInteger());
+				TestServer.this.requests.get(path).incrementAndGet();
+				final HttpHandler handler = TestServer.this.handlers.get(path);
+				try {
+					if (handler == null) {
+						exchange.sendResponseHeaders(404, -1);
+					} else {
+						handler.handle(exchange);
+					}
+				} finally {
+					exchange.close();
+				} // try finally
+			}
+		});
+		this.server.start();
+	} // TestServer
+
+
+	/**
+	 * Serves a page with status 200.
+	 */
+	void page(final String path, final String type, final String content) throws UnsupportedEncodingException {
+		this.page(path, type, content.getBytes("UTF-8"), false);
+	}
+
+
+	/**
+	 * Serves a body with status 200 and a Content-Length, gzip-encoded if gzip is set.
+	 */
+	void page(final String path, final String type, final byte[] content, final boolean gzip) {
+		this.handle(path, new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				final byte[] body = gzip ? TestServer.gzip(content) : content;
+				exchange.getResponseHeaders().add("Content-Type", type);
+				if (gzip) {
+					exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+				}
+				exchange.sendResponseHeaders(200, body.length);
+				final OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+	} // page
+
+
+	/**
+	 * Answers with a redirect to location.
+	 */
+	void redirect(final String path, final String location) {
+		this.handle(path, new HttpHandler() {
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Location", location);
+				exchange.sendResponseHeaders(302, -1);
+			}
+		});
+	} // redirect
+
+
+	void handle(final String path, final HttpHandler handler) {
+		this.handlers.put(path, handler);
+	}
+
+
+	/**
+	 * @return number of requests for path
+	 */
+	int requests(final String path) {
+		final AtomicInteger count = this.requests.get(path);
+		return (count == null) ? 0 : count.get();
+	}
+
+
+	/**
+	 * @return header of the last request for path, null if none
+	 */
+	String requestHeader(final String path, final String name) {
+		final Headers headers = this.lastHeaders.get(path);
+		return (headers == null) ? null : headers.getFirst(name);
+	}
+
+
+	/**
+	 * @return absolute url of path
+	 */
+	String url(final String path) {
+		return "http://127.0.0.1:" + this.server.getAddress().getPort() + path;
+	}
+
+
+	void stop() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+
+	static byte[] gzip(final byte[] content) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final GZIPOutputStream out = new GZIPOutputStream(bytes);
+		out.write(content);
+		out.close();
+		return bytes.toByteArray();
+	} // gzip
+
+
+	/**
+	 * Runs a plan given as xml.
+	 */
+	static void run(final Robot robot, final String plan) throws UnsupportedEncodingException {
+		robot.run(new ByteArrayInputStream(plan.getBytes("UTF-8")));
+	}
+
+} // class TestServer
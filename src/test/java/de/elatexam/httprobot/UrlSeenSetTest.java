@@ -0,0 +1,78 @@
+/*
+ * ====================================================================
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ * ====================================================================
+ *
+ * This software consists of voluntary contributions made by many
+ * individuals on behalf of the Apache Software Foundation.  For more
+ * information on the Apache Software Foundation, please see
+ * <http://www.apache.org/>.
+ *
+ */
+
+package de.elatexam.httprobot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Bloom filter plus recent set of {@link UrlSeenSet}.
+ */
+public class UrlSeenSetTest {
+
+	@Test
+	public void reportsEachUrlOnce() {
+		final UrlSeenSet seen = new UrlSeenSet(100, 0.001, 10);
+		assertTrue(seen.add("http://example.org/a"));
+		assertTrue(seen.add("http://example.org/b"));
+		assertFalse(seen.add("http://example.org/a"));
+		assertEquals(2, seen.size());
+	} // reportsEachUrlOnce
+
+
+	@Test
+	public void remembersUrlsBeyondTheRecentSet() {
+		final UrlSeenSet seen = new UrlSeenSet(10000, 0.001, 10);
+		for (int i = 0; i < 1000; i++) {
+			seen.add("http://example.org/page?id=" + i);
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertFalse(seen.add("http://example.org/page?id=" + i));
+		}
+	} // remembersUrlsBeyondTheRecentSet
+
+
+	@Test
+	public void keepsFalsePositivesNearTheGivenRate() {
+		final UrlSeenSet seen = new UrlSeenSet(10000, 0.001, 10);
+		for (int i = 0; i < 10000; i++) {
+			seen.add("http://example.org/page?id=" + i);
+		}
+		// add() records the new urls too, so probe only a few
+		int known = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (!seen.add("http://example.org/other?id=" + i)) {
+				known++;
+			}
+		}
+		assertTrue("false positives: " + known, known < 10);
+	} // keepsFalsePositivesNearTheGivenRate
+
+} // class UrlSeenSetTest